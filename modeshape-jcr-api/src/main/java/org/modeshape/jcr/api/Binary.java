@@ -16,11 +16,13 @@
 package org.modeshape.jcr.api;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.security.MessageDigest;
 import javax.jcr.RepositoryException;
 
 /**
- * An extension of the standard {@link javax.jcr.Binary} interface, with methods to obtain the SHA-1 hash of the binary value.
+ * An extension of the standard {@link javax.jcr.Binary} interface, with methods to obtain the SHA-1 hash of the binary value and
+ * to read its content from a given position.
  */
 public interface Binary extends javax.jcr.Binary {
 
@@ -71,4 +73,17 @@ public interface Binary extends javax.jcr.Binary {
      */
     public String getMimeType( String name ) throws IOException, RepositoryException;
 
+    /**
+     * Get a stream of this binary's content that starts at the given position. Implementations that can start reading at a
+     * position directly do so rather than reading all of the content before the position, so this is the most efficient way to
+     * read a range of the content. The caller is responsible for closing the stream.
+     * 
+     * @param position the position of the first byte in the stream; must not be negative
+     * @return the stream; never null, and at its end if the position is at or beyond the end of the content
+     * @throws IOException if there is a problem reading the content before the position
+     * @throws RepositoryException if an error occurs.
+     * @see #read(byte[], long)
+     */
+    public InputStream getStream( long position ) throws IOException, RepositoryException;
+
 }
@@ -18,6 +18,7 @@ package org.modeshape.jcr.api;
 import javax.jcr.Node;
 import javax.jcr.Property;
 import javax.jcr.RepositoryException;
+import javax.jcr.UnsupportedRepositoryOperationException;
 
 /**
  * A specialization of the standard JCR {@link javax.jcr.Session} interface that returns the ModeShape-specific extension
@@ -82,4 +83,42 @@ public interface Session extends javax.jcr.Session {
      */
     String decode( final String localName );
 
+    /**
+     * Start loading content in bulk with this session. Bulk loading is intended for the initial import or migration of large
+     * amounts of content, and makes saving new and changed nodes much cheaper:
+     * <ul>
+     * <li>saved nodes are not indexed when they are saved; instead, the content that was saved while loading is re-indexed once
+     * when {@link #endBulkLoad()} is called;</li>
+     * <li>no observation events are generated for the creation or modification of nodes and properties, and thus such changes
+     * are also not sequenced. Removals still generate events.</li>
+     * </ul>
+     * Until {@link #endBulkLoad()} is called, queries may not find content saved by this session. If the session is
+     * {@link #logout() logged out} while still loading content in bulk, the content saved while loading is indexed during the
+     * logout. Calling this method when the session is already loading content in bulk has no effect.
+     * 
+     * @throws UnsupportedRepositoryOperationException if this session is read-only
+     * @throws RepositoryException if there is a problem with this session
+     * @see #endBulkLoad()
+     * @see #isBulkLoading()
+     */
+    void beginBulkLoad() throws RepositoryException;
+
+    /**
+     * Stop loading content in bulk with this session, and re-index all of the content saved since {@link #beginBulkLoad()} was
+     * called. This method blocks until the indexing is completed. Any changes not yet saved will be saved normally. Calling this
+     * method when the session is not loading content in bulk has no effect.
+     * 
+     * @throws javax.jcr.AccessDeniedException if the session does not have the privileges to reindex the loaded content
+     * @throws RepositoryException if there is a problem with this session or while indexing the content
+     * @see #beginBulkLoad()
+     */
+    void endBulkLoad() throws RepositoryException;
+
+    /**
+     * Determine whether this session is {@link #beginBulkLoad() loading content in bulk}.
+     * 
+     * @return true if the session is loading content in bulk, or false otherwise
+     */
+    boolean isBulkLoading();
+
 }
@@ -44,7 +44,14 @@ public enum DurationMetric {
      * instances are strings containing the sequencer name and the input and output paths.
      */
     SEQUENCER_EXECUTION_TIME("sequencer-execution-time", "Sequencing duration",
-                             "The metric measuring how long sequencers take to run and save the changes.");
+                             "The metric measuring how long sequencers take to run and save the changes."),
+    /**
+     * The metric that captures how long {@link Session#save() saves} wait to lock the stored nodes that are changed by other
+     * sessions. Note that the payload of the {@link DurationActivity} instances are the keys of the nodes and the number of
+     * attempts made to lock them.
+     */
+    LOCK_WAIT_TIME("lock-wait-time", "Lock wait duration",
+                   "The metric measuring how long saves wait to lock nodes that are being changed by other sessions.");
 
     private static final Map<String, DurationMetric> BY_LITERAL;
     private static final Map<String, DurationMetric> BY_NAME;
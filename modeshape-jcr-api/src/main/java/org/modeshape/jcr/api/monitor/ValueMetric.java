@@ -99,7 +99,34 @@ public enum ValueMetric {
     /**
      * The metric that records the number of nodes that were sequenced.
      */
-    SEQUENCED_COUNT("sequenced-count", false, "Sequenced nodes", "The number of nodes that were sequenced during the window.");
+    SEQUENCED_COUNT("sequenced-count", false, "Sequenced nodes", "The number of nodes that were sequenced during the window."),
+    /**
+     * The metric that records the number of times that {@link Session#save() saves} had to wait and try again to lock nodes that
+     * were being changed by other sessions.
+     */
+    LOCK_ACQUISITION_RETRIES("lock-acquisition-retries", false, "Lock retries",
+                             "The number of times during the window that saves waited to lock nodes being changed by other sessions."),
+    /**
+     * The metric that records the number of times that a requested node was found in a workspace's size-bounded node cache.
+     */
+    NODE_CACHE_HITS("node-cache-hits", false, "Node cache hits",
+                    "The number of times during the window that requested nodes were found in the workspace node caches."),
+    /**
+     * The metric that records the number of times that a requested node was not found in a workspace's size-bounded node cache.
+     */
+    NODE_CACHE_MISSES("node-cache-misses", false, "Node cache misses",
+                      "The number of times during the window that requested nodes were not found in the workspace node caches."),
+    /**
+     * The metric that records the number of nodes evicted from the workspaces' size-bounded node caches to make room for other
+     * nodes.
+     */
+    NODE_CACHE_EVICTIONS("node-cache-evictions", false, "Node cache evictions",
+                         "The number of nodes evicted from the workspace node caches during the window to make room for other nodes."),
+    /**
+     * The metric that records the estimated size in bytes of the nodes in the workspaces' size-bounded node caches.
+     */
+    NODE_CACHE_SIZE("node-cache-size", true, "Node cache size",
+                    "The estimated size in bytes of the nodes in the workspace node caches at the end of the window.");
 
     private static final Map<String, ValueMetric> BY_LITERAL;
     private static final Map<String, ValueMetric> BY_NAME;
@@ -37,6 +37,17 @@ public interface Query extends javax.jcr.query.Query {
      */
     public void includeSystemContent( boolean includeSystemContent );
 
+    /**
+     * Specify whether the results of this query should be streamed. By default, the rows of the query results are kept (in memory
+     * or in temporary buffers) as they are read, so that the results can be iterated more than once. Streamed results are instead
+     * produced only as they are read and are released as soon as they have been read, so that very large results can be
+     * processed without holding all of the rows. However, streamed results can be iterated only once (via either
+     * {@link QueryResult#getRows()} or {@link QueryResult#getNodes()}), and the size of the results may not be known.
+     * 
+     * @param streamResults true if the results should be streamed, or false if the results can be iterated more than once
+     */
+    public void streamResults( boolean streamResults );
+
     /**
      * Signal that the query, if currently {@link Query#execute() executing}, should be cancelled and stopped (with an exception).
      * This method does not block until the query is actually stopped.
@@ -80,6 +80,7 @@ import org.modeshape.jcr.cache.NodeKey;
 import org.modeshape.jcr.cache.NodeNotFoundInParentException;
 import org.modeshape.jcr.cache.PropertyTypeUtil;
 import org.modeshape.jcr.cache.SessionCache;
+import org.modeshape.jcr.cache.document.DocumentCache;
 import org.modeshape.jcr.value.Name;
 import org.modeshape.jcr.value.NamespaceRegistry;
 import org.modeshape.jcr.value.Path;
@@ -3580,5 +3581,17 @@ abstract class AbstractJcrNode extends AbstractJcrItem implements Node {
                 return null;
             }
         }
+
+        @Override
+        public void prefetch( List<ChildReference> refs ) {
+            NodeCache cache = session.cache().unwrap();
+            if (cache instanceof DocumentCache) {
+                List<NodeKey> keys = new ArrayList<>(refs.size());
+                for (ChildReference ref : refs) {
+                    keys.add(ref.getKey());
+                }
+                ((DocumentCache)cache).workspaceCache().prefetch(keys);
+            }
+        }
     }
 }
@@ -28,16 +28,26 @@ import org.modeshape.jcr.cache.ChildReferences;
 /**
  * A concrete {@link NodeIterator} implementation for children. Where possible, the creator should pass in the size. However, if
  * it is not known, the size is computed by this iterator only when needed.
+ * <p>
+ * The child references are read ahead in batches, and the resolver is asked to {@link NodeResolver#prefetch(List) prefetch} each
+ * batch before any of its nodes are resolved, so that iterating over many children that are not yet cached requires only a few
+ * requests to the document store.
+ * </p>
  */
 @NotThreadSafe
 final class JcrChildNodeIterator implements NodeIterator {
 
     protected static interface NodeResolver {
         public Node nodeFrom( ChildReference ref );
+
+        public void prefetch( List<ChildReference> refs );
     }
 
+    protected static final int PREFETCH_SIZE = 100;
+
     private final NodeResolver resolver;
     private final Iterator<ChildReference> iterator;
+    private final LinkedList<ChildReference> prefetched = new LinkedList<>();
     private Node resolvedNode;
     private Iterator<Node> nodeIterator;
     private int ndx;
@@ -82,8 +92,8 @@ final class JcrChildNodeIterator implements NodeIterator {
             size = ndx;
         }
 
-        while (iterator.hasNext()) {
-            Node node = resolver.nodeFrom(iterator.next());
+        while (hasNextReference()) {
+            Node node = resolver.nodeFrom(nextReference());
             if (node != null) {
                 remainingNodes.add(node);
                 ++size;
@@ -99,8 +109,8 @@ final class JcrChildNodeIterator implements NodeIterator {
             return nodeIterator.hasNext();
         }
         //we need to look ahead in the child reference iterator, because the resolver might not return a node
-        while (iterator.hasNext() && resolvedNode == null) {
-            ChildReference ref = iterator.next();
+        while (hasNextReference() && resolvedNode == null) {
+            ChildReference ref = nextReference();
             resolvedNode = resolver.nodeFrom(ref);
         }
         return resolvedNode != null;
@@ -119,7 +129,7 @@ final class JcrChildNodeIterator implements NodeIterator {
         Node child = null;
         if (resolvedNode == null) {
             do {
-                ChildReference childRef = iterator.next();
+                ChildReference childRef = nextReference();
                 child = resolver.nodeFrom(childRef);
             } while (child == null);
         } else {
@@ -130,6 +140,21 @@ final class JcrChildNodeIterator implements NodeIterator {
         return child;
     }
 
+    private boolean hasNextReference() {
+        return !prefetched.isEmpty() || iterator.hasNext();
+    }
+
+    private ChildReference nextReference() {
+        if (prefetched.isEmpty()) {
+            // Read ahead the next batch of references, and let the resolver load them all at once ...
+            while (iterator.hasNext() && prefetched.size() < PREFETCH_SIZE) {
+                prefetched.add(iterator.next());
+            }
+            if (prefetched.size() > 1) resolver.prefetch(prefetched);
+        }
+        return prefetched.removeFirst();
+    }
+
     @Override
     public void remove() {
         throw new UnsupportedOperationException();
@@ -121,6 +121,8 @@ public final class JcrI18n {
     public static I18n indexMustHaveProviderName;
     public static I18n errorRefreshingIndexDefinitions;
     public static I18n errorNotifyingProviderOfIndexChanges;
+    public static I18n localIndexProviderMustHaveDirectory;
+    public static I18n localIndexProviderDirectoryMustBeWritable;
 
     public static I18n rootNodeHasNoParent;
     public static I18n rootNodeIsNotProperty;
@@ -172,6 +174,8 @@ public final class JcrI18n {
     public static I18n unableToCreateNodeWithPrimaryTypeThatDoesNotExist;
     public static I18n unableToCreateNodeWithNoDefaultPrimaryTypeOnChildNodeDefinition;
     public static I18n unableToSaveNodeThatWasCreatedSincePreviousSave;
+    public static I18n unableToBulkLoadWithReadOnlySession;
+    public static I18n unableToIndexBulkLoadedContent;
     public static I18n unableToSetMultiValuedPropertyUsingSingleValue;
     public static I18n cannotSetProtectedPropertyValue;
     public static I18n unableToSetSingleValuedPropertyUsingMultipleValues;
@@ -459,6 +463,7 @@ public final class JcrI18n {
     public static I18n unableToDeleteTemporaryFile;
     public static I18n unableToFindBinaryValue;
     public static I18n unableToFindBinaryValueInCache;
+    public static I18n unableToFindChunkOfBinaryValue;
     public static I18n tempDirectorySystemPropertyMustBeSet;
     public static I18n errorReadingBinaryValue;
     public static I18n errorStoringBinaryValue;
@@ -470,6 +475,7 @@ public final class JcrI18n {
     // Lucene query engine ...
     public static I18n errorRetrievingExtractedTextFile;
     public static I18n errorExtractingTextFromBinary;
+    public static I18n errorNotifyingTextExtractionListener;
     public static I18n errorAddingBinaryTextToIndex;
     public static I18n missingQueryVariableValue;
     public static I18n errorClosingLuceneReaderForIndex;
@@ -251,7 +251,8 @@ class JcrQueryManager implements QueryManager {
         @Override
         public CancellableQuery createExecutableQuery( QueryCommand query,
                                                        PlanHints hints,
-                                                       Map<String, Object> variables ) throws RepositoryException {
+                                                       Map<String, Object> variables,
+                                                       BufferManager bufferMgr ) throws RepositoryException {
             session.checkLive();
             // Submit immediately to the workspace graph ...
             Schemata schemata = session.workspace().nodeTypeManager().schemata();
@@ -274,7 +275,7 @@ class JcrQueryManager implements QueryManager {
                 workspaceNames = Collections.singleton(workspaceName);
             }
             return queryManager.query(context, repoCache, workspaceNames, overriddenNodeCaches, query, schemata, indexDefns,
-                                      nodeTypes, hints, variables);
+                                      nodeTypes, hints, variables, bufferMgr);
         }
 
         @Override
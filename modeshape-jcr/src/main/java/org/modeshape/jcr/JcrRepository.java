@@ -94,6 +94,7 @@ import org.modeshape.jcr.api.AnonymousCredentials;
 import org.modeshape.jcr.api.Repository;
 import org.modeshape.jcr.api.RepositoryManager;
 import org.modeshape.jcr.api.Workspace;
+import org.modeshape.jcr.api.monitor.DurationMetric;
 import org.modeshape.jcr.api.monitor.ValueMetric;
 import org.modeshape.jcr.api.query.Query;
 import org.modeshape.jcr.api.value.DateTime;
@@ -111,6 +112,7 @@ import org.modeshape.jcr.cache.WorkspaceNotFoundException;
 import org.modeshape.jcr.cache.document.DocumentStore;
 import org.modeshape.jcr.cache.document.LocalDocumentStore;
 import org.modeshape.jcr.cache.document.TransactionalWorkspaceCaches;
+import org.modeshape.jcr.cache.document.WeightedNodeCache;
 import org.modeshape.jcr.clustering.ClusteringService;
 import org.modeshape.jcr.federation.FederatedDocumentStore;
 import org.modeshape.jcr.journal.ChangeJournal;
@@ -135,6 +137,7 @@ import org.modeshape.jcr.spi.index.provider.IndexWriter.IndexingContext;
 import org.modeshape.jcr.txn.NoClientTransactions;
 import org.modeshape.jcr.txn.SynchronizedTransactions;
 import org.modeshape.jcr.txn.Transactions;
+import org.modeshape.jcr.value.BinaryValue;
 import org.modeshape.jcr.value.DateTimeFactory;
 import org.modeshape.jcr.value.Name;
 import org.modeshape.jcr.value.NamespaceRegistry;
@@ -1139,8 +1142,31 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
                     String journalId = this.journal != null ? this.journal.journalId() : null;
                     final SessionEnvironment sessionEnv = new RepositorySessionEnvironment(this.transactions, journalId);
                     CacheContainer workspaceCacheContainer = this.config.getWorkspaceContentCacheContainer();
+                    final RepositoryStatistics statistics = this.statistics;
+                    WeightedNodeCache.Listener nodeCacheListener = new WeightedNodeCache.Listener() {
+                        @Override
+                        public void hit() {
+                            statistics.increment(ValueMetric.NODE_CACHE_HITS);
+                        }
+
+                        @Override
+                        public void miss() {
+                            statistics.increment(ValueMetric.NODE_CACHE_MISSES);
+                        }
+
+                        @Override
+                        public void evicted( int count ) {
+                            statistics.increment(ValueMetric.NODE_CACHE_EVICTIONS, count);
+                        }
+
+                        @Override
+                        public void sizeChanged( long delta ) {
+                            statistics.increment(ValueMetric.NODE_CACHE_SIZE, delta);
+                        }
+                    };
                     this.cache = new RepositoryCache(context, documentStore, clusteringService, config, systemContentInitializer,
-                                                     sessionEnv, changeBus, workspaceCacheContainer, Upgrades.STANDARD_UPGRADES);
+                                                     sessionEnv, changeBus, workspaceCacheContainer, nodeCacheListener,
+                                                     Upgrades.STANDARD_UPGRADES);
 
                     // Set up the node type manager ...
                     this.nodeTypes = new RepositoryNodeTypeManager(this, true, true);
@@ -1209,6 +1235,18 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
                 this.repositoryQueryManager = new RepositoryQueryManager(this, indexingExecutor, config);
                 this.changeBus.register(this.repositoryQueryManager.getListener());
 
+                // Add the text extracted from binary values to the indexes as soon as it is available ...
+                final RepositoryQueryManager queryManager = this.repositoryQueryManager;
+                this.extractors.addListener(new TextExtractors.Listener() {
+                    @Override
+                    public void textExtracted( BinaryValue binaryValue ) {
+                        IndexWriter writer = queryManager.getIndexWriter();
+                        if (!writer.canBeSkipped()) {
+                            writer.addBinaryToIndex(binaryValue, writer.createIndexingContext(null));
+                        }
+                    }
+                });
+
                 // Check that we have parsers for all the required languages ...
                 assert this.queryParsers.getParserFor(Query.XPATH) != null;
                 assert this.queryParsers.getParserFor(Query.SQL) != null;
@@ -1953,6 +1991,13 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
                     runningState.statistics().increment(ValueMetric.NODE_CHANGES, changedNodesCount);
                 }
 
+                @Override
+                public void recordLockWait( String key,
+                                            long waitTimeInNanos,
+                                            int attempts ) {
+                    recordLockWaitStatistics(runningState, key, waitTimeInNanos, attempts);
+                }
+
                 @Override
                 public void recordAdd( String workspace,
                                        NodeKey key,
@@ -1982,6 +2027,17 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
             };
         }
 
+        protected static void recordLockWaitStatistics( RunningState runningState,
+                                                        String key,
+                                                        long waitTimeInNanos,
+                                                        int attempts ) {
+            Map<String, String> payload = new HashMap<String, String>();
+            payload.put("key", key);
+            payload.put("attempts", Integer.toString(attempts));
+            runningState.statistics().recordDuration(DurationMetric.LOCK_WAIT_TIME, waitTimeInNanos, TimeUnit.NANOSECONDS, payload);
+            if (attempts > 1) runningState.statistics().increment(ValueMetric.LOCK_ACQUISITION_RETRIES, attempts - 1);
+        }
+
         private Monitor statisticsMonitor() {
             // Happens only when the repository's initial content is being initialized,
             // so return a monitor that captures statistics but does not index ...
@@ -1993,6 +2049,13 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
                     runningState.statistics().increment(ValueMetric.NODE_CHANGES, changedNodesCount);
                 }
 
+                @Override
+                public void recordLockWait( String key,
+                                            long waitTimeInNanos,
+                                            int attempts ) {
+                    recordLockWaitStatistics(runningState, key, waitTimeInNanos, attempts);
+                }
+
                 @Override
                 public void recordAdd( String workspace,
                                        NodeKey key,
@@ -19,13 +19,16 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.security.AccessControlException;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -60,6 +63,8 @@ import javax.jcr.version.Version;
 import javax.jcr.version.VersionException;
 import javax.jcr.version.VersionIterator;
 import org.infinispan.schematic.SchematicEntry;
+import org.modeshape.common.annotation.GuardedBy;
+import org.modeshape.common.annotation.ThreadSafe;
 import org.modeshape.common.collection.LinkedListMultimap;
 import org.modeshape.common.collection.Multimap;
 import org.modeshape.common.i18n.I18n;
@@ -93,6 +98,7 @@ import org.modeshape.jcr.cache.SessionCacheWrapper;
 import org.modeshape.jcr.cache.WorkspaceNotFoundException;
 import org.modeshape.jcr.cache.WrappedException;
 import org.modeshape.jcr.cache.document.WorkspaceCache;
+import org.modeshape.jcr.cache.document.WritableSessionCache;
 import org.modeshape.jcr.query.BufferManager;
 import org.modeshape.jcr.security.AdvancedAuthorizationProvider;
 import org.modeshape.jcr.security.AuthorizationProvider;
@@ -127,7 +133,7 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
     protected final JcrRepository repository;
     private final SessionCache cache;
     private final JcrRootNode rootNode;
-    private final ConcurrentMap<NodeKey, AbstractJcrNode> jcrNodes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<NodeKey, AbstractJcrNode> jcrNodes;
     private final Map<String, Object> sessionAttributes;
     private final JcrWorkspace workspace;
     private final JcrNamespaceRegistry sessionRegistry;
@@ -139,6 +145,7 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
     private volatile boolean isLive = true;
     private final long nanosCreated;
     private volatile BufferManager bufferMgr;
+    private final Set<Path> bulkLoadedPaths = new HashSet<>();
 
     private ExecutionContext context;
 
@@ -198,6 +205,7 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
 
         // Create the session cache ...
         this.cache = repositoryCache.createSession(context, workspaceName, readOnly);
+        this.jcrNodes = newNodeMap(readOnly);
         this.rootNode = new JcrRootNode(this, this.cache.getRootKey());
         this.jcrNodes.put(this.rootNode.key(), this.rootNode);
         this.sessionAttributes = sessionAttributes != null ? sessionAttributes : Collections.<String, Object>emptyMap();
@@ -225,6 +233,7 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
 
         // Create a new session cache and root node ...
         this.cache = repository.repositoryCache().createSession(context, this.workspace.getName(), readOnly);
+        this.jcrNodes = newNodeMap(readOnly);
         this.rootNode = new JcrRootNode(this, this.cache.getRootKey());
         this.jcrNodes.put(this.rootNode.key(), this.rootNode);
 
@@ -234,6 +243,20 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
         acm = new AccessControlManagerImpl(this);
     }
 
+    /**
+     * Create the map of {@link AbstractJcrNode} objects. Read-only sessions have no transient state and use the same
+     * {@link CachedNode} instances as all other sessions, so a node object that is dropped can be cheaply recreated; bounding the
+     * number keeps large numbers of long-lived read-only sessions from each holding an object for every node it has ever read.
+     * 
+     * @param readOnly true if the session is read-only
+     * @return the new map; never null
+     */
+    private ConcurrentMap<NodeKey, AbstractJcrNode> newNodeMap( boolean readOnly ) {
+        int maxNodes = readOnly ? repository.getConfiguration().getMaxNodesInReadOnlySession() : 0;
+        if (maxNodes > 0) return new BoundedNodeMap(maxNodes);
+        return new ConcurrentHashMap<>();
+    }
+
     final JcrWorkspace workspace() {
         return workspace;
     }
@@ -244,7 +267,8 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
 
     final synchronized BufferManager bufferManager() {
         if (bufferMgr == null) {
-            bufferMgr = new BufferManager(this.context);
+            long memoryBudget = repository.getConfiguration().getQuery().getBufferMemoryBudget();
+            bufferMgr = new BufferManager(this.context, memoryBudget);
         }
         return bufferMgr;
     }
@@ -1130,12 +1154,14 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
         SystemContent systemContent = new SystemContent(systemCache);
         Map<NodeKey, NodeKey> baseVersionKeys = this.baseVersionKeys.get();
         Map<NodeKey, NodeKey> originalVersionKeys = this.originalVersionKeys.get();
+        Path bulkLoadedPath = bulkLoadedPath(cache().getChangedNodeKeys());
         try {
             cache().save(systemContent.cache(),
                          new JcrPreSave(systemContent, baseVersionKeys, originalVersionKeys, aclChangesCount()));
             this.baseVersionKeys.set(null);
             this.originalVersionKeys.set(null);
             this.aclChangesCount.set(0);
+            addBulkLoadedPath(bulkLoadedPath);
         } catch (WrappedException e) {
             Throwable cause = e.getCause();
             throw (cause instanceof RepositoryException) ? (RepositoryException)cause : new RepositoryException(e.getCause());
@@ -1204,9 +1230,11 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
         SystemContent systemContent = new SystemContent(systemCache);
         Map<NodeKey, NodeKey> baseVersionKeys = this.baseVersionKeys.get();
         Map<NodeKey, NodeKey> originalVersionKeys = this.originalVersionKeys.get();
+        Path bulkLoadedPath = bulkLoadedPath(keysToBeSaved);
         try {
             sessionCache.save(keysToBeSaved, systemContent.cache(), new JcrPreSave(systemContent, baseVersionKeys,
                                                                                    originalVersionKeys, aclChangesCount()));
+            addBulkLoadedPath(bulkLoadedPath);
         } catch (WrappedException e) {
             Throwable cause = e.getCause();
             throw (cause instanceof RepositoryException) ? (RepositoryException)cause : new RepositoryException(e.getCause());
@@ -1619,6 +1647,7 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
 
     @Override
     public synchronized void logout() {
+        if (this.isLive) endBulkLoadOnLogout();
         this.isLive = false;
         cleanLocks();
         try {
@@ -1872,6 +1901,98 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
         return Path.JSR283_ENCODER.encode(localName);
     }
 
+    @Override
+    public void beginBulkLoad() throws RepositoryException {
+        checkLive();
+        SessionCache sessionCache = cache().unwrap();
+        if (!(sessionCache instanceof WritableSessionCache)) {
+            throw new UnsupportedRepositoryOperationException(JcrI18n.unableToBulkLoadWithReadOnlySession.text(workspaceName()));
+        }
+        ((WritableSessionCache)sessionCache).setBulkLoading(true);
+    }
+
+    @Override
+    public void endBulkLoad() throws RepositoryException {
+        checkLive();
+        if (!isBulkLoading() && bulkLoadedPaths.isEmpty()) return;
+        for (Path path : bulkLoadedPaths) {
+            checkPermission(workspaceName(), path, ModeShapePermissions.INDEX_WORKSPACE);
+        }
+        indexBulkLoadedContent();
+    }
+
+    /**
+     * Stop loading content in bulk and index all of the content that was saved while loading. Each path is forgotten only once
+     * its content has been indexed, so that if indexing fails the remaining content is indexed by the next call.
+     */
+    private void indexBulkLoadedContent() {
+        SessionCache sessionCache = cache().unwrap();
+        if (sessionCache instanceof WritableSessionCache) {
+            ((WritableSessionCache)sessionCache).setBulkLoading(false);
+        }
+        for (Path path : new ArrayList<>(bulkLoadedPaths)) {
+            repository().runningState().queryManager().reindexContent(workspace(), path, Integer.MAX_VALUE);
+            bulkLoadedPaths.remove(path);
+        }
+    }
+
+    /**
+     * Index any content that was loaded in bulk but not yet indexed, since otherwise it would never be found by queries. The
+     * session saved this content itself, so no additional permissions are required.
+     */
+    private void endBulkLoadOnLogout() {
+        if (!isBulkLoading() && bulkLoadedPaths.isEmpty()) return;
+        try {
+            indexBulkLoadedContent();
+        } catch (RuntimeException e) {
+            Logger.getLogger(getClass()).error(e, JcrI18n.unableToIndexBulkLoadedContent, workspaceName(), bulkLoadedPaths,
+                                               e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isBulkLoading() {
+        SessionCache sessionCache = cache().unwrap();
+        return sessionCache instanceof WritableSessionCache && ((WritableSessionCache)sessionCache).isBulkLoading();
+    }
+
+    /**
+     * Find the path of the lowest node that is at or above all of the supplied changed nodes, if this session is loading content
+     * in bulk.
+     * 
+     * @param changedNodeKeys the keys of the nodes that are about to be saved; may not be null
+     * @return the path of the content that is to be indexed after loading completes, or null if this session is not loading
+     *         content in bulk or if there are no such nodes
+     */
+    private Path bulkLoadedPath( Collection<NodeKey> changedNodeKeys ) {
+        if (!isBulkLoading()) return null;
+        SessionCache cache = cache();
+        Path result = null;
+        for (NodeKey key : changedNodeKeys) {
+            CachedNode node = cache.getNode(key);
+            if (node == null) continue; // removed nodes are removed from the indexes when saved
+            try {
+                Path path = node.getPath(cache);
+                result = result == null ? path : result.getCommonAncestor(path);
+            } catch (NodeNotFoundException e) {
+                // The node is not reachable from the root of this workspace ...
+                continue;
+            }
+            if (result.isRoot()) break;
+        }
+        return result;
+    }
+
+    private void addBulkLoadedPath( Path path ) {
+        if (path == null) return;
+        for (Iterator<Path> iter = bulkLoadedPaths.iterator(); iter.hasNext();) {
+            Path existing = iter.next();
+            if (path.isAtOrBelow(existing)) return;
+            if (existing.isAtOrBelow(path)) iter.remove();
+        }
+        bulkLoadedPaths.add(path);
+    }
+
     /**
      * Define the operations that are to be performed on all the nodes that were created or modified within this session. This
      * class was designed to be as efficient as possible for most nodes, since most nodes do not need any additional processing.
@@ -2318,4 +2439,96 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
             cache().checkForTransaction();
         }
     }
+
+    /**
+     * The map of {@link AbstractJcrNode} objects used by read-only sessions, which holds no more than a fixed number of nodes.
+     * When the map becomes too large, the least-recently-used node is dropped.
+     */
+    @ThreadSafe
+    protected static final class BoundedNodeMap extends AbstractMap<NodeKey, AbstractJcrNode>
+        implements ConcurrentMap<NodeKey, AbstractJcrNode> {
+        @GuardedBy( "this" )
+        private final LinkedHashMap<NodeKey, AbstractJcrNode> nodes;
+
+        protected BoundedNodeMap( final int maxSize ) {
+            assert maxSize > 0;
+            this.nodes = new LinkedHashMap<NodeKey, AbstractJcrNode>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry( Map.Entry<NodeKey, AbstractJcrNode> eldest ) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        @Override
+        public synchronized int size() {
+            return nodes.size();
+        }
+
+        @Override
+        public synchronized boolean containsKey( Object key ) {
+            return nodes.containsKey(key);
+        }
+
+        @Override
+        public synchronized AbstractJcrNode get( Object key ) {
+            return nodes.get(key);
+        }
+
+        @Override
+        public synchronized AbstractJcrNode put( NodeKey key,
+                                                 AbstractJcrNode value ) {
+            return nodes.put(key, value);
+        }
+
+        @Override
+        public synchronized AbstractJcrNode putIfAbsent( NodeKey key,
+                                                         AbstractJcrNode value ) {
+            AbstractJcrNode existing = nodes.get(key);
+            return existing != null ? existing : nodes.put(key, value);
+        }
+
+        @Override
+        public synchronized AbstractJcrNode remove( Object key ) {
+            return nodes.remove(key);
+        }
+
+        @Override
+        public synchronized boolean remove( Object key,
+                                            Object value ) {
+            AbstractJcrNode existing = nodes.get(key);
+            if (existing == null || !existing.equals(value)) return false;
+            nodes.remove(key);
+            return true;
+        }
+
+        @Override
+        public synchronized boolean replace( NodeKey key,
+                                             AbstractJcrNode oldValue,
+                                             AbstractJcrNode newValue ) {
+            AbstractJcrNode existing = nodes.get(key);
+            if (existing == null || !existing.equals(oldValue)) return false;
+            nodes.put(key, newValue);
+            return true;
+        }
+
+        @Override
+        public synchronized AbstractJcrNode replace( NodeKey key,
+                                                     AbstractJcrNode value ) {
+            return nodes.containsKey(key) ? nodes.put(key, value) : null;
+        }
+
+        @Override
+        public synchronized void clear() {
+            nodes.clear();
+        }
+
+        @Override
+        public synchronized Set<Map.Entry<NodeKey, AbstractJcrNode>> entrySet() {
+            // Return a snapshot, since iterating over the map itself would change the access order ...
+            return new HashMap<>(nodes).entrySet();
+        }
+    }
 }
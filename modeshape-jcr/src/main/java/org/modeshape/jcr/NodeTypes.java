@@ -46,6 +46,19 @@ import org.modeshape.jcr.value.NameFactory;
 
 @Immutable
 public class NodeTypes {
+
+    /**
+     * A component that can supply the current (immutable) snapshot of the node types.
+     */
+    public static interface Supplier {
+        /**
+         * Get the current snapshot of the node types.
+         * 
+         * @return the immutable node types; never null
+         */
+        NodeTypes getNodeTypes();
+    }
+
     /**
      * List of ways to filter the returned property definitions
      * 
@@ -588,6 +601,37 @@ public class NodeTypes {
         return this.unmodifiableMixinNodeTypes;
     }
 
+    /**
+     * Determine whether the named node type is the same as or a subtype of the named candidate supertype.
+     * 
+     * @param nodeTypeName the name of the node type; may be null
+     * @param candidateSupertypeName the name of the potential supertype; may not be null
+     * @return true if the named node type exists and is or subtypes the candidate supertype, or false otherwise
+     */
+    public boolean isTypeOrSubtype( Name nodeTypeName,
+                                    Name candidateSupertypeName ) {
+        if (nodeTypeName == null) return false;
+        if (nodeTypeName.equals(candidateSupertypeName)) return true;
+        JcrNodeType nodeType = getNodeType(nodeTypeName);
+        return nodeType != null && nodeType.isNodeType(candidateSupertypeName);
+    }
+
+    /**
+     * Determine whether at least one of the named node types is the same as or a subtype of the named candidate supertype.
+     * 
+     * @param nodeTypeNames the names of the node types; may be null or empty
+     * @param candidateSupertypeName the name of the potential supertype; may not be null
+     * @return true if at least one of the named node types is or subtypes the candidate supertype, or false otherwise
+     */
+    public boolean isTypeOrSubtype( Set<Name> nodeTypeNames,
+                                    Name candidateSupertypeName ) {
+        if (nodeTypeNames == null) return false;
+        for (Name nodeTypeName : nodeTypeNames) {
+            if (isTypeOrSubtype(nodeTypeName, candidateSupertypeName)) return true;
+        }
+        return false;
+    }
+
     /**
      * Determine whether the node type given by the supplied name is a mixin node type.
      * 
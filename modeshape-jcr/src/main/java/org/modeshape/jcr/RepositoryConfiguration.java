@@ -64,11 +64,13 @@ import org.modeshape.common.util.CheckArg;
 import org.modeshape.common.util.ObjectUtil;
 import org.modeshape.common.util.StringUtil;
 import org.modeshape.connector.filesystem.FileSystemConnector;
+import org.modeshape.jcr.index.local.LocalIndexProvider;
 import org.modeshape.jcr.security.AnonymousProvider;
 import org.modeshape.jcr.security.JaasProvider;
 import org.modeshape.jcr.value.binary.AbstractBinaryStore;
 import org.modeshape.jcr.value.binary.BinaryStore;
 import org.modeshape.jcr.value.binary.BinaryStoreException;
+import org.modeshape.jcr.value.binary.ChunkedFileSystemBinaryStore;
 import org.modeshape.jcr.value.binary.CompositeBinaryStore;
 import org.modeshape.jcr.value.binary.DatabaseBinaryStore;
 import org.modeshape.jcr.value.binary.FileSystemBinaryStore;
@@ -254,6 +256,33 @@ public class RepositoryConfiguration {
          */
         public static final String MONITORING_ENABLED = "enabled";
 
+        /**
+         * The name for the field whose value is a document containing the query-related information.
+         */
+        public static final String QUERY = "query";
+
+        /**
+         * The name for the optional field under "query" specifying whether queries that cannot use an index should scan the
+         * workspace content using multiple threads.
+         */
+        public static final String QUERY_PARALLEL_SCAN = "parallelScan";
+
+        /**
+         * The name for the optional field under "query" specifying the number of threads used for parallel scans.
+         */
+        public static final String QUERY_PARALLELISM = "parallelism";
+
+        /**
+         * The name for the optional field under "query" specifying the maximum number of optimized query plans that are cached.
+         */
+        public static final String QUERY_PLAN_CACHE_SIZE = "planCacheSize";
+
+        /**
+         * The name for the optional field under "query" specifying the number of megabytes of memory that the temporary buffers
+         * used by each query to sort, remove duplicates and join rows may use before they are moved to disk.
+         */
+        public static final String QUERY_BUFFER_MEMORY_BUDGET_IN_MEGABYTES = "bufferMemoryBudgetInMegabytes";
+
         /**
          * The name for the field whose value is a document containing the Infinispan storage information.
          */
@@ -355,6 +384,19 @@ public class RepositoryConfiguration {
          */
         public static final String WORKSPACE_CACHE_CONFIGURATION = "cacheConfiguration";
 
+        /**
+         * The name for the optional field specifying the maximum estimated size in megabytes of the nodes cached by each
+         * workspace. When set to a positive value, each workspace caches its nodes in memory and evicts the least-recently-used
+         * nodes based upon their estimated size, rather than using the Infinispan workspace cache.
+         */
+        public static final String WORKSPACE_NODE_CACHE_SIZE_IN_MEGABYTES = "nodeCacheSizeInMegabytes";
+
+        /**
+         * The name for the optional field specifying the maximum number of node objects kept by each read-only session. When the
+         * limit is reached, the least-recently-used node objects are dropped.
+         */
+        public static final String MAX_NODES_IN_READ_ONLY_SESSION = "maxNodesInReadOnlySession";
+
         /**
          * The name for the field whose value is a document containing binary storage information.
          */
@@ -429,6 +471,7 @@ public class RepositoryConfiguration {
         public static final String INDEXES = "indexes";
         public static final String METADATA_CACHE_NAME = "metadataCacheName";
         public static final String CHUNK_SIZE = "chunkSize";
+        public static final String CONTENT_DEFINED_CHUNKING = "contentDefinedChunking";
         public static final String TEXT_EXTRACTION = "textExtraction";
         public static final String EXTRACTORS = "extractors";
         public static final String SEQUENCING = "sequencing";
@@ -536,6 +579,11 @@ public class RepositoryConfiguration {
          */
         public static final String DEFAULT = "default";
 
+        /**
+         * The default value of the {@link FieldName#MAX_NODES_IN_READ_ONLY_SESSION} field is '{@value} '.
+         */
+        public static final int MAX_NODES_IN_READ_ONLY_SESSION = 1000;
+
         /**
          * The default value of the {@link FieldName#TRANSACTION_MODE} field is '{@value} '.
          */
@@ -569,6 +617,27 @@ public class RepositoryConfiguration {
 
         public static final boolean MONITORING_ENABLED = true;
 
+        /**
+         * The default value of the {@link FieldName#QUERY_PARALLEL_SCAN} field is '{@value} '.
+         */
+        public static final boolean QUERY_PARALLEL_SCAN = false;
+
+        /**
+         * The default value of the {@link FieldName#QUERY_PARALLELISM} field is '{@value} ', which means the number of available
+         * processors is used.
+         */
+        public static final int QUERY_PARALLELISM = 0;
+
+        /**
+         * The default value of the {@link FieldName#QUERY_PLAN_CACHE_SIZE} field is '{@value} '.
+         */
+        public static final int QUERY_PLAN_CACHE_SIZE = 500;
+
+        /**
+         * The default value of the {@link FieldName#QUERY_BUFFER_MEMORY_BUDGET_IN_MEGABYTES} field is '{@value} '.
+         */
+        public static final int QUERY_BUFFER_MEMORY_BUDGET_IN_MEGABYTES = 64;
+
         @Deprecated
         public static final boolean REMOVE_DERIVED_CONTENT_WITH_ORIGINAL = true;
 
@@ -680,10 +749,10 @@ public class RepositoryConfiguration {
 
         SEQUENCER_ALIASES = Collections.unmodifiableMap(aliases);
 
-        // String localIndexProvider = LocalIndexProvider.class.getName();
+        String localIndexProvider = LocalIndexProvider.class.getName();
         aliases = new HashMap<String, String>();
-        // aliases.put("local", localIndexProvider);
-        // aliases.put("files", localIndexProvider);
+        aliases.put("local", localIndexProvider);
+        aliases.put("localindexprovider", localIndexProvider);
 
         INDEX_PROVIDER_ALIASES = Collections.unmodifiableMap(aliases);
 
@@ -933,6 +1002,34 @@ public class RepositoryConfiguration {
         return Default.WORKSPACE_CACHE_CONFIGURATION;
     }
 
+    /**
+     * Get the maximum estimated size of the nodes cached by each workspace.
+     * 
+     * @return the size in bytes; 0 if the Infinispan workspace cache should be used
+     */
+    public long getWorkspaceNodeCacheSize() {
+        Document workspaces = doc.getDocument(FieldName.WORKSPACES);
+        if (workspaces != null) {
+            int megabytes = workspaces.getInteger(FieldName.WORKSPACE_NODE_CACHE_SIZE_IN_MEGABYTES, 0);
+            return megabytes > 0 ? megabytes * 1024L * 1024L : 0L;
+        }
+        return 0L;
+    }
+
+    /**
+     * Get the maximum number of node objects kept by each read-only session.
+     * 
+     * @return the maximum number of nodes; 0 if the number of nodes is not bounded
+     */
+    public int getMaxNodesInReadOnlySession() {
+        Document workspaces = doc.getDocument(FieldName.WORKSPACES);
+        int max = Default.MAX_NODES_IN_READ_ONLY_SESSION;
+        if (workspaces != null) {
+            max = workspaces.getInteger(FieldName.MAX_NODES_IN_READ_ONLY_SESSION, Default.MAX_NODES_IN_READ_ONLY_SESSION);
+        }
+        return max > 0 ? max : 0;
+    }
+
     CacheContainer getContentCacheContainer() throws IOException, NamingException {
         return getCacheContainer(null);
     }
@@ -1133,7 +1230,11 @@ public class RepositoryConfiguration {
                 String directory = binaryStorage.getString(FieldName.DIRECTORY);
                 assert directory != null;
                 File dir = new File(directory);
-                store = FileSystemBinaryStore.create(dir);
+                if (binaryStorage.getBoolean(FieldName.CONTENT_DEFINED_CHUNKING, false)) {
+                    store = ChunkedFileSystemBinaryStore.create(dir);
+                } else {
+                    store = FileSystemBinaryStore.create(dir);
+                }
             } else if (type.equalsIgnoreCase("database")) {
                 String driverClass = binaryStorage.getString(FieldName.JDBC_DRIVER_CLASS);
                 String connectionURL = binaryStorage.getString(FieldName.CONNECTION_URL);
@@ -1640,6 +1741,69 @@ public class RepositoryConfiguration {
         }
     }
 
+    /**
+     * Get the configuration for the query-related aspects of this repository.
+     * 
+     * @return the query configuration; never null
+     */
+    public QuerySystem getQuery() {
+        return new QuerySystem(doc.getDocument(FieldName.QUERY));
+    }
+
+    /**
+     * The query-related configuration information.
+     */
+    @Immutable
+    public class QuerySystem {
+        private final Document query;
+
+        protected QuerySystem( Document query ) {
+            this.query = query != null ? query : EMPTY;
+        }
+
+        /**
+         * Determine whether queries that cannot use any index should scan the workspace content using multiple threads. The
+         * default is to scan using only the thread executing the query.
+         * 
+         * @return true if full scans should be done in parallel, or false otherwise
+         */
+        public boolean parallelScanEnabled() {
+            return query.getBoolean(FieldName.QUERY_PARALLEL_SCAN, Default.QUERY_PARALLEL_SCAN);
+        }
+
+        /**
+         * Get the number of threads that should be used when scanning the workspace content in parallel.
+         * 
+         * @return the parallelism level; always positive
+         */
+        public int getParallelism() {
+            int parallelism = query.getInteger(FieldName.QUERY_PARALLELISM, Default.QUERY_PARALLELISM);
+            return parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        }
+
+        /**
+         * Get the maximum number of optimized query plans that should be cached and reused when the same query is executed again.
+         * 
+         * @return the maximum number of cached plans; 0 if plans should not be cached
+         */
+        public int getPlanCacheSize() {
+            int size = query.getInteger(FieldName.QUERY_PLAN_CACHE_SIZE, Default.QUERY_PLAN_CACHE_SIZE);
+            return size > 0 ? size : 0;
+        }
+
+        /**
+         * Get the number of bytes of memory that the temporary buffers used by each query may use before they are moved to disk.
+         * The budget applies to every query separately.
+         * 
+         * @return the memory budget in bytes; 0 if the buffers are always kept in memory
+         */
+        public long getBufferMemoryBudget() {
+            int megabytes = query.getInteger(FieldName.QUERY_BUFFER_MEMORY_BUDGET_IN_MEGABYTES,
+                                             Default.QUERY_BUFFER_MEMORY_BUDGET_IN_MEGABYTES);
+            return megabytes > 0 ? megabytes * 1024L * 1024L : 0L;
+        }
+    }
+
     /**
      * Possible options for rebuilding the indexes upon startup.
      */
@@ -1655,7 +1819,7 @@ public class RepositoryConfiguration {
      */
     public List<Component> getIndexProviders() {
         Problems problems = new SimpleProblems();
-        List<Component> components = readComponents(doc, FieldName.INDEX_PROVIDERS, FieldName.CLASSNAME, PROVIDER_ALIASES,
+        List<Component> components = readComponents(doc, FieldName.INDEX_PROVIDERS, FieldName.CLASSNAME, INDEX_PROVIDER_ALIASES,
                                                     problems);
         assert !problems.hasErrors();
         return components;
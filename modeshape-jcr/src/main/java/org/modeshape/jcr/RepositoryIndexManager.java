@@ -133,10 +133,34 @@ class RepositoryIndexManager implements ChangeSetListener, IndexManager {
                 providerIter.remove();
             }
         }
+
+        // Read the index definitions and tell each of the providers about the definitions they own ...
+        this.indexes = readIndexDefinitions();
+        for (IndexProvider provider : providers.values()) {
+            notifyOfAllDefinitions(provider);
+        }
         refreshIndexWriter();
         initialized.set(true);
     }
 
+    /**
+     * Notify the supplied provider of all of the (current) index definitions that it owns. This is done upon startup and when a
+     * provider is registered after startup, so that the provider understands the index definitions that are available.
+     * 
+     * @param provider the provider; may not be null
+     */
+    protected void notifyOfAllDefinitions( IndexProvider provider ) {
+        IndexChanges changes = new IndexChanges();
+        for (IndexDefinition defn : indexes.getIndexDefinitions().values()) {
+            if (provider.getName().equals(defn.getProviderName())) changes.change(defn);
+        }
+        try {
+            provider.notify(changes);
+        } catch (RuntimeException e) {
+            logger.error(e, JcrI18n.errorNotifyingProviderOfIndexChanges, provider.getName(), repository.name(), e.getMessage());
+        }
+    }
+
     protected void refreshIndexWriter() {
         indexWriter = CompositeIndexWriter.create(providers.values());
     }
@@ -208,6 +232,17 @@ class RepositoryIndexManager implements ChangeSetListener, IndexManager {
         // Set the logger instance
         ReflectionUtil.setValue(provider, "logger", ExtensionLogger.getLogger(provider.getClass()));
 
+        // Set the execution context instance ...
+        ReflectionUtil.setValue(provider, "context", context);
+
+        // Set the node types supplier, which is looked up lazily since the node type manager may not yet be available ...
+        ReflectionUtil.setValue(provider, "nodeTypesSupplier", new NodeTypes.Supplier() {
+            @Override
+            public NodeTypes getNodeTypes() {
+                return repository.nodeTypeManager().getNodeTypes();
+            }
+        });
+
         if (initialized.get()) {
             // This manager is already initialized, so we have to initialize the new provider ...
             doInitialize(provider);
@@ -219,8 +254,11 @@ class RepositoryIndexManager implements ChangeSetListener, IndexManager {
             throw new IndexProviderExistsException(JcrI18n.indexProviderAlreadyExists.text(provider.getName(), repository.name()));
         }
 
-        // Re-read the index definitions in case there were disabled index definitions that used the now-available provider ...
-        readIndexDefinitions();
+        if (initialized.get()) {
+            // Re-read the index definitions in case there were disabled index definitions that used the now-available provider ...
+            this.indexes = readIndexDefinitions();
+            notifyOfAllDefinitions(provider);
+        }
 
         // Refresh the index writer ...
         refreshIndexWriter();
@@ -234,10 +272,10 @@ class RepositoryIndexManager implements ChangeSetListener, IndexManager {
         }
         if (initialized.get()) {
             provider.shutdown();
-        }
 
-        // Re-read the index definitions in case there were disabled index definitions that used the now-available provider ...
-        readIndexDefinitions();
+            // Re-read the index definitions, since those that used the now-unavailable provider are no longer usable ...
+            this.indexes = readIndexDefinitions();
+        }
 
         // Refresh the index writer ...
         refreshIndexWriter();
@@ -305,6 +343,7 @@ class RepositoryIndexManager implements ChangeSetListener, IndexManager {
             // Write the definition to the system area ...
             system.store(defn, allowUpdate);
         }
+        system.save();
 
         // Refresh the immutable snapshot ...
         this.indexes = readIndexDefinitions();
@@ -321,6 +360,7 @@ class RepositoryIndexManager implements ChangeSetListener, IndexManager {
         SessionCache systemCache = repository.createSystemSession(context, false);
         SystemContent system = new SystemContent(systemCache);
         system.remove(defn);
+        system.save();
 
         // Refresh the immutable snapshot ...
         this.indexes = readIndexDefinitions();
@@ -552,7 +592,9 @@ class RepositoryIndexManager implements ChangeSetListener, IndexManager {
                     nodeTypeNames.clear();
                     Name nodeTypeName = defn.getNodeTypeName();
                     // Now find out all of the node types that are or subtype the named node types ...
-                    for (String typeAndSubtype : subtypesByName.get(nodeTypeName)) {
+                    Collection<String> typesAndSubtypes = subtypesByName.get(nodeTypeName);
+                    if (typesAndSubtypes == null) continue;
+                    for (String typeAndSubtype : typesAndSubtypes) {
                         Map<String, Collection<IndexDefinition>> byProvider = indexesByProviderByNodeTypeName.get(typeAndSubtype);
                         if (byProvider == null) {
                             byProvider = new HashMap<>();
@@ -561,7 +603,7 @@ class RepositoryIndexManager implements ChangeSetListener, IndexManager {
                         Collection<IndexDefinition> indexes = byProvider.get(defn.getProviderName());
                         if (indexes == null) {
                             indexes = new LinkedList<>();
-                            byProvider.put(typeAndSubtype, indexes);
+                            byProvider.put(defn.getProviderName(), indexes);
                         }
                         indexes.add(defn);
                     }
@@ -78,7 +78,7 @@ import org.modeshape.jcr.value.ValueFactory;
  * </p>
  */
 @ThreadSafe
-class RepositoryNodeTypeManager implements ChangeSetListener {
+class RepositoryNodeTypeManager implements ChangeSetListener, NodeTypes.Supplier {
 
     private final JcrRepository.RunningState repository;
     private final ExecutionContext context;
@@ -137,6 +137,7 @@ class RepositoryNodeTypeManager implements ChangeSetListener {
      * 
      * @return the immutable node types cache; never null
      */
+    @Override
     public NodeTypes getNodeTypes() {
         return nodeTypesCache;
     }
@@ -136,11 +136,26 @@ class RepositoryQueryManager {
                                    NodeTypes nodeTypes,
                                    PlanHints hints,
                                    Map<String, Object> variables ) {
+        BufferManager bufferMgr = new BufferManager(context, repoConfig.getQuery().getBufferMemoryBudget());
+        return query(context, repositoryCache, workspaceNames, overriddenNodeCachesByWorkspaceName, query, schemata, indexDefns,
+                     nodeTypes, hints, variables, bufferMgr);
+    }
+
+    public CancellableQuery query( ExecutionContext context,
+                                   RepositoryCache repositoryCache,
+                                   Set<String> workspaceNames,
+                                   Map<String, NodeCache> overriddenNodeCachesByWorkspaceName,
+                                   final QueryCommand query,
+                                   Schemata schemata,
+                                   RepositoryIndexes indexDefns,
+                                   NodeTypes nodeTypes,
+                                   PlanHints hints,
+                                   Map<String, Object> variables,
+                                   BufferManager bufferMgr ) {
         final QueryEngine queryEngine = queryEngine();
         final QueryContext queryContext = queryEngine.createQueryContext(context, repositoryCache, workspaceNames,
                                                                          overriddenNodeCachesByWorkspaceName, schemata,
-                                                                         indexDefns, nodeTypes, new BufferManager(context),
-                                                                         hints, variables);
+                                                                         indexDefns, nodeTypes, bufferMgr, hints, variables);
         final org.modeshape.jcr.query.model.QueryCommand command = (org.modeshape.jcr.query.model.QueryCommand)query;
         return new CancellableQuery() {
             private final Lock lock = new ReentrantLock();
@@ -107,6 +107,11 @@ public class RepositoryStatistics implements RepositoryMonitor {
      */
     public static final int MAXIMUM_LONG_RUNNING_SESSION_COUNT = 15;
 
+    /**
+     * The maximum number of longest waits for node locks to retain.
+     */
+    public static final int MAXIMUM_LONG_RUNNING_LOCK_WAIT_COUNT = 15;
+
     /**
      * The frequency at which the metric values are rolled into statistics.
      */
@@ -159,6 +164,8 @@ public class RepositoryStatistics implements RepositoryMonitor {
                                                                                    MAXIMUM_LONG_RUNNING_SEQUENCING_COUNT));
         durations.put(DurationMetric.SESSION_LIFETIME, new DurationHistory(TimeUnit.MILLISECONDS,
                                                                            MAXIMUM_LONG_RUNNING_SESSION_COUNT));
+        durations.put(DurationMetric.LOCK_WAIT_TIME, new DurationHistory(TimeUnit.MILLISECONDS,
+                                                                         MAXIMUM_LONG_RUNNING_LOCK_WAIT_COUNT));
 
         for (ValueMetric metric : EnumSet.allOf(ValueMetric.class)) {
             boolean resetUponRollup = !metric.isContinuous();
@@ -176,7 +183,6 @@ public class RepositoryStatistics implements RepositoryMonitor {
 
         // Then schedule the rollup to be done at a fixed rate ...
         this.rollupFuture.set(service.scheduleAtFixedRate(new Runnable() {
-            @SuppressWarnings( "synthetic-access" )
             @Override
             public void run() {
                 rollup();
@@ -196,12 +202,13 @@ public class RepositoryStatistics implements RepositoryMonitor {
     }
 
     /**
-     * Method called once every second by the scheduled job.
+     * Method called once every second by the scheduled job. It is synchronized so that tests can also call it to capture the
+     * statistics recorded so far.
      * 
      * @see #start(ScheduledExecutorService)
      */
     @SuppressWarnings( "fallthrough" )
-    private void rollup() {
+    synchronized void rollup() {
         DateTime now = timeFactory.create();
         Window largest = null;
         for (DurationHistory history : durations.values()) {
@@ -18,6 +18,7 @@ package org.modeshape.jcr;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import org.modeshape.common.annotation.Immutable;
@@ -43,6 +44,7 @@ public final class TextExtractors {
     private final List<TextExtractor> extractors;
     private final ExecutorService extractingQueue;
     private final ConcurrentHashMap<BinaryKey, CountDownLatch> workerLatches;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
 
     public TextExtractors( ExecutorService extractingQueue,
                            List<TextExtractor> extractors ) {
@@ -103,6 +105,35 @@ public final class TextExtractors {
         return latch;
     }
 
+    /**
+     * Register a listener that is to be notified each time the text of a binary value has been extracted and stored.
+     * 
+     * @param listener the listener; may not be null
+     */
+    public void addListener( Listener listener ) {
+        CheckArg.isNotNull(listener, "listener");
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregister a listener.
+     * 
+     * @param listener the listener; may be null
+     */
+    public void removeListener( Listener listener ) {
+        if (listener != null) listeners.remove(listener);
+    }
+
+    protected void notifyTextExtracted( BinaryValue binaryValue ) {
+        for (Listener listener : listeners) {
+            try {
+                listener.textExtracted(binaryValue);
+            } catch (RuntimeException e) {
+                LOGGER.error(e, JcrI18n.errorNotifyingTextExtractionListener, binaryValue.getHexHash(), e.getLocalizedMessage());
+            }
+        }
+    }
+
     public CountDownLatch getWorkerLatch( BinaryKey binaryKey,
                                           boolean createIfMissing ) {
         if (createIfMissing) {
@@ -131,6 +162,19 @@ public final class TextExtractors {
         return extractors;
     }
 
+    /**
+     * A listener that is notified when the text of a binary value has been extracted and stored, so that (for example) the text
+     * can be added to full-text indexes.
+     */
+    public static interface Listener {
+        /**
+         * The text of the supplied binary value has been extracted and stored, and can be obtained from the binary store.
+         * 
+         * @param binaryValue the binary value; never null
+         */
+        void textExtracted( BinaryValue binaryValue );
+    }
+
     /**
      * A unit of work which extracts text from a binary value, stores that text in a store and notifies a latch that the
      * extraction operation has finished.
@@ -175,6 +219,7 @@ public final class TextExtractors {
                 String extractedText = output.getText();
                 if (extractedText != null && !StringUtil.isBlank(extractedText)) {
                     store.storeExtractedText(binaryValue, extractedText);
+                    notifyTextExtracted(binaryValue);
                 }
             } catch (Exception e) {
                 LOGGER.error(e, JcrI18n.errorExtractingTextFromBinary, binaryValue.getHexHash(), e.getLocalizedMessage());
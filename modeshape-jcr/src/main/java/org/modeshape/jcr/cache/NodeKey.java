@@ -15,9 +15,16 @@
  */
 package org.modeshape.jcr.cache;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.Comparator;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.infinispan.schematic.SchematicDb;
 import org.modeshape.common.annotation.Immutable;
 import org.modeshape.common.util.ObjectUtil;
@@ -36,7 +43,10 @@ import org.modeshape.jcr.JcrRepository;
  * </ol>
  * </p>
  * <p>
- * This class contains methods for
+ * The source and workspace keys are shared by all keys in the same source and workspace, and an identifier that is a UUID is
+ * kept as two longs rather than as a string, so a node key uses much less memory than its string form. The hash code is computed
+ * once, and is the same as the hash code of the string form.
+ * </p>
  */
 @Immutable
 public final class NodeKey implements Serializable, Comparable<NodeKey> {
@@ -51,6 +61,10 @@ public final class NodeKey implements Serializable, Comparable<NodeKey> {
 
     private static final int UUID_LENGTH = UUID.randomUUID().toString().length();
     private static final long serialVersionUID = 1L;
+    private static final ObjectStreamField[] serialPersistentFields = {new ObjectStreamField("key", String.class)};
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final int MAXIMUM_SHARED_KEYS = 1024;
+    private static final ConcurrentMap<String, String> SHARED_KEYS = new ConcurrentHashMap<>();
 
     protected static final int SOURCE_LENGTH = 7;
     protected static final int WORKSPACE_LENGTH = 7;
@@ -93,10 +107,12 @@ public final class NodeKey implements Serializable, Comparable<NodeKey> {
         return false;
     }
 
-    private final String key;
     private transient String sourceKey;
     private transient String workspaceKey;
     private transient String identifier;
+    private transient long mostSignificantBits;
+    private transient long leastSignificantBits;
+    private transient int hc;
 
     /**
      * Reconstitute a node key from the supplied string.
@@ -106,7 +122,8 @@ public final class NodeKey implements Serializable, Comparable<NodeKey> {
     public NodeKey( String key ) {
         assert key != null;
         assert key.length() > IDENTIFIER_START_INDEX;
-        this.key = key;
+        init(key.substring(SOURCE_START_INDEX, SOURCE_END_INDEX), key.substring(WORKSPACE_START_INDEX, WORKSPACE_END_INDEX),
+             key.substring(IDENTIFIER_START_INDEX));
     }
 
     /**
@@ -125,7 +142,45 @@ public final class NodeKey implements Serializable, Comparable<NodeKey> {
         assert sourceKey.length() == SOURCE_LENGTH;
         assert workspaceKey.length() == WORKSPACE_LENGTH;
         assert workspaceKey.length() > 0;
-        this.key = sourceKey + workspaceKey + identifier;
+        init(sourceKey, workspaceKey, identifier);
+    }
+
+    /**
+     * Reconstitute a node key from the supplied source key, workspace key, and the bits of a UUID node identifier.
+     * 
+     * @param sourceKey the source key; may not be null and must be 7 characters
+     * @param workspaceKey the workspace key; may not be null and must be 7 characters
+     * @param mostSignificantBits the most significant bits of the UUID identifier
+     * @param leastSignificantBits the least significant bits of the UUID identifier
+     * @see #hasUuidIdentifier()
+     */
+    public NodeKey( String sourceKey,
+                    String workspaceKey,
+                    long mostSignificantBits,
+                    long leastSignificantBits ) {
+        assert sourceKey != null;
+        assert workspaceKey != null;
+        assert sourceKey.length() == SOURCE_LENGTH;
+        assert workspaceKey.length() == WORKSPACE_LENGTH;
+        this.sourceKey = intern(sourceKey);
+        this.workspaceKey = intern(workspaceKey);
+        this.mostSignificantBits = mostSignificantBits;
+        this.leastSignificantBits = leastSignificantBits;
+        this.hc = computeHashCode();
+    }
+
+    private void init( String sourceKey,
+                       String workspaceKey,
+                       String identifier ) {
+        this.sourceKey = intern(sourceKey);
+        this.workspaceKey = intern(workspaceKey);
+        // Most identifiers are UUIDs, which are kept as two longs rather than as a 36-character string ...
+        if (identifier.length() == UUID_LENGTH && parseUuid(identifier)) {
+            this.identifier = null;
+        } else {
+            this.identifier = identifier;
+        }
+        this.hc = computeHashCode();
     }
 
     /**
@@ -134,10 +189,6 @@ public final class NodeKey implements Serializable, Comparable<NodeKey> {
      * @return the source key; never null and always contains at least one character
      */
     public String getSourceKey() {
-        if (sourceKey == null) {
-            // Value is idempotent, so it's okay to do this without synchronizing ...
-            sourceKey = key.substring(SOURCE_START_INDEX, SOURCE_END_INDEX);
-        }
         return sourceKey;
     }
 
@@ -147,10 +198,6 @@ public final class NodeKey implements Serializable, Comparable<NodeKey> {
      * @return the workspace key; never null and always contains at least one character
      */
     public String getWorkspaceKey() {
-        if (workspaceKey == null) {
-            // Value is idempotent, so it's okay to do this without synchronizing ...
-            workspaceKey = key.substring(WORKSPACE_START_INDEX, WORKSPACE_END_INDEX);
-        }
         return workspaceKey;
     }
 
@@ -160,11 +207,41 @@ public final class NodeKey implements Serializable, Comparable<NodeKey> {
      * @return the JCR identifier for the node; never null and always contains at least one character
      */
     public String getIdentifier() {
-        if (identifier == null) {
-            // Value is idempotent, so it's okay to do this without synchronizing ...
-            identifier = key.substring(IDENTIFIER_START_INDEX);
-        }
-        return identifier;
+        if (identifier != null) return identifier;
+        char[] chars = new char[UUID_LENGTH];
+        writeUuid(chars, 0);
+        return new String(chars);
+    }
+
+    /**
+     * Determine whether the {@link #getIdentifier() identifier} is a UUID in its canonical (lowercase) string form, in which case
+     * it is stored as the {@link #getUuidMostSignificantBits() most} and {@link #getUuidLeastSignificantBits() least} significant
+     * bits of the UUID.
+     * 
+     * @return true if the identifier is a UUID, or false otherwise
+     */
+    public boolean hasUuidIdentifier() {
+        return identifier == null;
+    }
+
+    /**
+     * Get the most significant bits of the UUID identifier. This is only meaningful when {@link #hasUuidIdentifier()} returns
+     * true.
+     * 
+     * @return the most significant bits of the UUID
+     */
+    public long getUuidMostSignificantBits() {
+        return mostSignificantBits;
+    }
+
+    /**
+     * Get the least significant bits of the UUID identifier. This is only meaningful when {@link #hasUuidIdentifier()} returns
+     * true.
+     * 
+     * @return the least significant bits of the UUID
+     */
+    public long getUuidLeastSignificantBits() {
+        return leastSignificantBits;
     }
 
     /**
@@ -179,12 +256,22 @@ public final class NodeKey implements Serializable, Comparable<NodeKey> {
     @Override
     public int compareTo( NodeKey that ) {
         if (that == this) return 0;
-        return this.key.compareTo(that.key);
+        // The source and workspace keys have fixed lengths, so this is the same order as that of the string forms ...
+        int diff = this.sourceKey.compareTo(that.sourceKey);
+        if (diff != 0) return diff;
+        diff = this.workspaceKey.compareTo(that.workspaceKey);
+        if (diff != 0) return diff;
+        if (this.identifier == null && that.identifier == null) {
+            // The canonical string forms of UUIDs are ordered the same as their unsigned bits ...
+            diff = compareUnsigned(this.mostSignificantBits, that.mostSignificantBits);
+            return diff != 0 ? diff : compareUnsigned(this.leastSignificantBits, that.leastSignificantBits);
+        }
+        return this.getIdentifier().compareTo(that.getIdentifier());
     }
 
     @Override
     public int hashCode() {
-        return key.hashCode();
+        return hc;
     }
 
     @Override
@@ -192,22 +279,164 @@ public final class NodeKey implements Serializable, Comparable<NodeKey> {
         if (obj == this) return true;
         if (obj instanceof NodeKey) {
             NodeKey that = (NodeKey)obj;
-            return this.key.equals(that.key);
+            if (this.hc != that.hc) return false;
+            if (this.identifier == null) {
+                if (that.identifier != null || this.mostSignificantBits != that.mostSignificantBits
+                    || this.leastSignificantBits != that.leastSignificantBits) return false;
+            } else if (!this.identifier.equals(that.identifier)) {
+                return false;
+            }
+            return sameKey(this.sourceKey, that.sourceKey) && sameKey(this.workspaceKey, that.workspaceKey);
         }
         return false;
     }
 
     @Override
     public String toString() {
-        return key;
+        if (identifier != null) return sourceKey + workspaceKey + identifier;
+        char[] chars = new char[IDENTIFIER_START_INDEX + UUID_LENGTH];
+        sourceKey.getChars(0, SOURCE_LENGTH, chars, SOURCE_START_INDEX);
+        workspaceKey.getChars(0, WORKSPACE_LENGTH, chars, WORKSPACE_START_INDEX);
+        writeUuid(chars, IDENTIFIER_START_INDEX);
+        return new String(chars);
+    }
+
+    /**
+     * Compute the same hash code as that of the string form of this key (which was the hash code of previous versions), without
+     * creating the string form.
+     * 
+     * @return the hash code
+     */
+    private int computeHashCode() {
+        int hash = 0;
+        for (int i = 0; i != sourceKey.length(); ++i) {
+            hash = 31 * hash + sourceKey.charAt(i);
+        }
+        for (int i = 0; i != workspaceKey.length(); ++i) {
+            hash = 31 * hash + workspaceKey.charAt(i);
+        }
+        if (identifier != null) {
+            for (int i = 0; i != identifier.length(); ++i) {
+                hash = 31 * hash + identifier.charAt(i);
+            }
+        } else {
+            char[] chars = new char[UUID_LENGTH];
+            writeUuid(chars, 0);
+            for (char c : chars) {
+                hash = 31 * hash + c;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Parse the supplied canonical string form of a UUID into the bits of this key.
+     * 
+     * @param uuid the 36-character string
+     * @return true if the string was a UUID in its canonical lowercase form, or false otherwise
+     */
+    private boolean parseUuid( String uuid ) {
+        if (uuid.charAt(8) != '-' || uuid.charAt(13) != '-' || uuid.charAt(18) != '-' || uuid.charAt(23) != '-') return false;
+        long part1 = parseHex(uuid, 0, 8);
+        long part2 = parseHex(uuid, 9, 13);
+        long part3 = parseHex(uuid, 14, 18);
+        long part4 = parseHex(uuid, 19, 23);
+        long part5 = parseHex(uuid, 24, 36);
+        if (part1 == -1L || part2 == -1L || part3 == -1L || part4 == -1L || part5 == -1L) return false;
+        this.mostSignificantBits = part1 << 32 | part2 << 16 | part3;
+        this.leastSignificantBits = part4 << 48 | part5;
+        return true;
+    }
+
+    private void writeUuid( char[] chars,
+                            int start ) {
+        writeHex(chars, start, 8, mostSignificantBits >>> 32);
+        chars[start + 8] = '-';
+        writeHex(chars, start + 9, 4, mostSignificantBits >>> 16);
+        chars[start + 13] = '-';
+        writeHex(chars, start + 14, 4, mostSignificantBits);
+        chars[start + 18] = '-';
+        writeHex(chars, start + 19, 4, leastSignificantBits >>> 48);
+        chars[start + 23] = '-';
+        writeHex(chars, start + 24, 12, leastSignificantBits);
+    }
+
+    private static long parseHex( String str,
+                                  int start,
+                                  int end ) {
+        long result = 0L;
+        for (int i = start; i != end; ++i) {
+            char c = str.charAt(i);
+            int digit;
+            if (c >= '0' && c <= '9') digit = c - '0';
+            else if (c >= 'a' && c <= 'f') digit = c - 'a' + 10;
+            else return -1L;
+            result = result << 4 | digit;
+        }
+        return result;
+    }
+
+    private static void writeHex( char[] chars,
+                                  int start,
+                                  int digits,
+                                  long value ) {
+        for (int i = start + digits - 1; i >= start; --i) {
+            chars[i] = HEX_DIGITS[(int)(value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+    private static int compareUnsigned( long value1,
+                                        long value2 ) {
+        value1 += Long.MIN_VALUE;
+        value2 += Long.MIN_VALUE;
+        return value1 < value2 ? -1 : (value1 == value2 ? 0 : 1);
+    }
+
+    private static boolean sameKey( String key1,
+                                    String key2 ) {
+        // These are usually interned ...
+        return key1 == key2 || key1.equals(key2);
+    }
+
+    /**
+     * Get the shared instance of the supplied source or workspace key, so that the many keys in the same source and workspace
+     * share the same strings. Only a limited number of distinct values are shared.
+     * 
+     * @param key the source or workspace key
+     * @return the shared instance, or the supplied key if there are already too many shared instances
+     */
+    private static String intern( String key ) {
+        String existing = SHARED_KEYS.get(key);
+        if (existing != null) return existing;
+        if (SHARED_KEYS.size() >= MAXIMUM_SHARED_KEYS) return key;
+        existing = SHARED_KEYS.putIfAbsent(key, key);
+        return existing != null ? existing : key;
+    }
+
+    private void writeObject( ObjectOutputStream out ) throws IOException {
+        // Use the same serialized form as previous versions ...
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("key", toString());
+        out.writeFields();
+    }
+
+    private void readObject( ObjectInputStream in ) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        String key = (String)fields.get("key", null);
+        if (key == null || key.length() <= IDENTIFIER_START_INDEX) throw new InvalidObjectException("Invalid node key: " + key);
+        init(key.substring(SOURCE_START_INDEX, SOURCE_END_INDEX), key.substring(WORKSPACE_START_INDEX, WORKSPACE_END_INDEX),
+             key.substring(IDENTIFIER_START_INDEX));
     }
 
     public NodeKey withRandomId() {
-        return new NodeKey(getSourceKey(), getWorkspaceKey(), UUID.randomUUID().toString());
+        UUID uuid = UUID.randomUUID();
+        return new NodeKey(getSourceKey(), getWorkspaceKey(), uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
     }
 
     public NodeKey withRandomIdAndWorkspace( String workspaceKey ) {
-        return new NodeKey(getSourceKey(), workspaceKey, UUID.randomUUID().toString());
+        UUID uuid = UUID.randomUUID();
+        return new NodeKey(getSourceKey(), workspaceKey, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
     }
 
     public NodeKey withId( String identifier ) {
@@ -215,7 +444,8 @@ public final class NodeKey implements Serializable, Comparable<NodeKey> {
     }
 
     public NodeKey withWorkspaceKey( String workspaceKey ) {
-        return new NodeKey(getSourceKey(), workspaceKey, getIdentifier());
+        if (identifier == null) return new NodeKey(getSourceKey(), workspaceKey, mostSignificantBits, leastSignificantBits);
+        return new NodeKey(getSourceKey(), workspaceKey, identifier);
     }
 
     public NodeKey withWorkspaceKeyAndId( String workspaceKey,
@@ -21,6 +21,7 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -66,6 +67,7 @@ import org.modeshape.jcr.cache.document.LocalDocumentStore;
 import org.modeshape.jcr.cache.document.LocalDocumentStore.DocumentOperation;
 import org.modeshape.jcr.cache.document.LocalDocumentStore.DocumentOperationResults;
 import org.modeshape.jcr.cache.document.ReadOnlySessionCache;
+import org.modeshape.jcr.cache.document.WeightedNodeCache;
 import org.modeshape.jcr.cache.document.WorkspaceCache;
 import org.modeshape.jcr.cache.document.WritableSessionCache;
 import org.modeshape.jcr.clustering.ClusteringService;
@@ -117,6 +119,7 @@ public class RepositoryCache {
     private final SessionEnvironment sessionContext;
     private final String processKey;
     private final CacheContainer workspaceCacheManager;
+    private final WeightedNodeCache.Listener nodeCacheListener;
     protected final Upgrades upgrades;
     private volatile boolean initializingRepository = false;
     private volatile boolean upgradingRepository = false;
@@ -132,6 +135,7 @@ public class RepositoryCache {
                             SessionEnvironment sessionContext,
                             ChangeBus changeBus,
                             CacheContainer workspaceCacheContainer,
+                            WeightedNodeCache.Listener nodeCacheListener,
                             Upgrades upgradeFunctions ) {
         this.context = context;
         this.configuration = configuration;
@@ -139,9 +143,15 @@ public class RepositoryCache {
         this.clusteringService = clusteringService;
         this.minimumStringLengthForBinaryStorage.set(configuration.getBinaryStorage().getMinimumStringSize());
         this.translator = new DocumentTranslator(this.context, this.documentStore, this.minimumStringLengthForBinaryStorage.get());
+        RepositoryConfiguration.DocumentOptimization optimization = configuration.getDocumentOptimization();
+        if (optimization.isEnabled()) {
+            // Split blocks of children as soon as they get too large, rather than waiting for the next optimization pass ...
+            this.translator.setChildBlockSize(optimization.getChildCountTarget(), optimization.getChildCountTolerance());
+        }
         this.sessionContext = sessionContext;
         this.processKey = context.getProcessId();
         this.workspaceCacheManager = workspaceCacheContainer;
+        this.nodeCacheListener = nodeCacheListener;
         this.logger = Logger.getLogger(getClass());
         this.rootNodeId = RepositoryConfiguration.ROOT_NODE_ID;
         this.name = configuration.getName();
@@ -758,8 +768,14 @@ public class RepositoryCache {
                     public WorkspaceCache call() throws Exception {
                         // Create/get the Infinispan workspaceCache that we'll use within the WorkspaceCache, using the
                         // workspaceCache manager's
-                        // default configuration ...
-                        Cache<NodeKey, CachedNode> nodeCache = cacheForWorkspace(name);
+                        // default configuration, unless the workspace's nodes are to be cached by size ...
+                        long nodeCacheSize = configuration.getWorkspaceNodeCacheSize();
+                        ConcurrentMap<NodeKey, CachedNode> nodeCache = null;
+                        if (nodeCacheSize > 0L) {
+                            nodeCache = new WeightedNodeCache(nodeCacheSize, nodeCacheListener);
+                        } else {
+                            nodeCache = cacheForWorkspace(name);
+                        }
                         ExecutionContext context = context();
 
                         // Compute the root key for this workspace ...
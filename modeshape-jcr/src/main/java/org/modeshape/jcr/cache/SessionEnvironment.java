@@ -99,6 +99,18 @@ public interface SessionEnvironment {
          * @param changedNodesCount
          */
         void recordChanged( long changedNodesCount );
+
+        /**
+         * Record that a save had to wait to lock the stored node with the given key, because the node was locked by another
+         * session.
+         * 
+         * @param key the key of the node; may not be null
+         * @param waitTimeInNanos the time spent waiting for the lock on this node, in nanoseconds
+         * @param attempts the number of attempts made to lock this node
+         */
+        void recordLockWait( String key,
+                             long waitTimeInNanos,
+                             int attempts );
     }
 
     /**
@@ -58,6 +58,7 @@ public class RecordingChanges implements Changes, ChangeSet {
     private Map<String, String> userData = Collections.emptyMap();
     private String userId;
     private DateTime timestamp;
+    private final boolean recordNodeEvents;
 
     /**
      * Creates a new change set.
@@ -71,10 +72,30 @@ public class RecordingChanges implements Changes, ChangeSet {
                              String repositoryKey,
                              String workspaceName,
                              String journalId ) {
+        this(processKey, repositoryKey, workspaceName, journalId, true);
+    }
+
+    /**
+     * Creates a new change set that may ignore the events for the creation and modification of nodes and properties. Such a
+     * change set still records the changed nodes and all other events (including node removals).
+     *
+     * @param processKey the UUID of the process which created the change set; may not be null
+     * @param repositoryKey the key of the repository for which the changes set is created; may not be null.
+     * @param workspaceName the name of the workspace in which the changes occurred; may be null.
+     * @param journalId the ID of the journal where this change set will be saved; may be null
+     * @param recordNodeEvents true if the events for the creation and modification of nodes and properties are to be recorded,
+     *        or false if they are to be ignored
+     */
+    public RecordingChanges( String processKey,
+                             String repositoryKey,
+                             String workspaceName,
+                             String journalId,
+                             boolean recordNodeEvents ) {
         this.processKey = processKey;
         this.repositoryKey = repositoryKey;
         this.workspaceName = workspaceName;
         this.journalId = journalId;
+        this.recordNodeEvents = recordNodeEvents;
 
         assert this.processKey != null;
         assert this.repositoryKey != null;
@@ -102,6 +123,7 @@ public class RecordingChanges implements Changes, ChangeSet {
                              Name primaryType,
                              Set<Name> mixinTypes,
                              Map<Name, Property> properties ) {
+        if (!recordNodeEvents) return;
         events.add(new NodeAdded(key, parentKey, path, filterName(primaryType), filterNameSet(mixinTypes), properties));
     }
 
@@ -120,6 +142,7 @@ public class RecordingChanges implements Changes, ChangeSet {
                              Segment oldName,
                              Name primaryType,
                              Set<Name> mixinTypes ) {
+        if (!recordNodeEvents) return;
         events.add(new NodeRenamed(key, newPath, oldName, filterName(primaryType), filterNameSet(mixinTypes)));
     }
 
@@ -131,6 +154,7 @@ public class RecordingChanges implements Changes, ChangeSet {
                            NodeKey oldParent,
                            Path newPath,
                            Path oldPath ) {
+        if (!recordNodeEvents) return;
         events.add(new NodeMoved(key, filterName(primaryType), filterNameSet(mixinTypes), newParent, oldParent, newPath, oldPath));
     }
 
@@ -142,6 +166,7 @@ public class RecordingChanges implements Changes, ChangeSet {
                                Path newPath,
                                Path oldPath,
                                Path reorderedBeforePath ) {
+        if (!recordNodeEvents) return;
         events.add(new NodeReordered(key, filterName(primaryType), filterNameSet(mixinTypes), parent, newPath, oldPath, reorderedBeforePath));
     }
 
@@ -150,6 +175,7 @@ public class RecordingChanges implements Changes, ChangeSet {
                              Path path,
                              Name primaryType,
                              Set<Name> mixinTypes ) {
+        if (!recordNodeEvents) return;
         events.add(new NodeChanged(key, path, filterName(primaryType), filterNameSet(mixinTypes)));
     }
 
@@ -190,6 +216,7 @@ public class RecordingChanges implements Changes, ChangeSet {
                                Set<Name> nodeMixinTypes,
                                Path nodePath,
                                Property property ) {
+        if (!recordNodeEvents) return;
         events.add(new PropertyAdded(key, filterName(nodePrimaryType), filterNameSet(nodeMixinTypes), nodePath, property));
     }
 
@@ -199,6 +226,7 @@ public class RecordingChanges implements Changes, ChangeSet {
                                  Set<Name> nodeMixinTypes,
                                  Path nodePath,
                                  Property property ) {
+        if (!recordNodeEvents) return;
         events.add(new PropertyRemoved(key, filterName(nodePrimaryType), filterNameSet(nodeMixinTypes), nodePath, property));
     }
 
@@ -209,6 +237,7 @@ public class RecordingChanges implements Changes, ChangeSet {
                                  Path nodePath,
                                  Property newProperty,
                                  Property oldProperty ) {
+        if (!recordNodeEvents) return;
         events.add(new PropertyChanged(key, filterName(nodePrimaryType), filterNameSet(nodeMixinTypes), nodePath, newProperty, oldProperty));
     }
 
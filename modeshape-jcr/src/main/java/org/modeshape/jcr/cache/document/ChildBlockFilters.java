@@ -0,0 +1,250 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.cache.document;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.infinispan.schematic.Schematic;
+import org.infinispan.schematic.document.Binary;
+import org.infinispan.schematic.document.Document;
+import org.infinispan.schematic.document.EditableArray;
+import org.infinispan.schematic.document.EditableDocument;
+
+/**
+ * A summary of the blocks of children of a node whose children are segmented, stored in the node's document so that the blocks
+ * that cannot contain a child with a given name or key can be skipped without reading them. The summary has one Bloom filter for
+ * each block after the first, and each filter contains the names and keys of the children in that block. A filter never fails to
+ * find a name or key in its block, but may occasionally find one that is not there.
+ * <p>
+ * The {@link DocumentConstants#BLOCK_KEYS keys of the blocks} are stored in order, and the
+ * {@link DocumentConstants#BLOCK_FILTERS filters} are stored in a nested document keyed by the block keys. This way writing the
+ * summary changes only the filters of the blocks that changed, and reading it does not decode the filters until they are used.
+ * </p>
+ * <p>
+ * The summary is only used when it is consistent with the {@link DocumentConstants#NEXT_BLOCK next} and
+ * {@link DocumentConstants#LAST_BLOCK last} block references in the node's document, so code that changes the blocks without
+ * maintaining the summary must {@link #remove(EditableDocument) remove} it.
+ * </p>
+ */
+final class ChildBlockFilters implements DocumentConstants {
+
+    private static final int BITS_PER_VALUE = 8;
+    private static final int NUMBER_OF_HASHES = 5;
+
+    private final List<String> keys;
+    private final Document storedFilters;
+    private final Map<String, byte[]> changedFilters = new HashMap<>();
+    private boolean keysChanged;
+
+    ChildBlockFilters() {
+        this.keys = new ArrayList<>();
+        this.storedFilters = null;
+        this.keysChanged = true;
+    }
+
+    private ChildBlockFilters( List<String> keys,
+                               Document storedFilters ) {
+        this.keys = keys;
+        this.storedFilters = storedFilters;
+        this.keysChanged = false;
+    }
+
+    /**
+     * Read the summary of the blocks from the supplied node document. Only the keys of the blocks are read; each filter is read
+     * when it is first used.
+     *
+     * @param document the node's document, which is the first block of children; may not be null
+     * @return the summary, or null if the document has no summary or the summary is not consistent with the blocks
+     */
+    static ChildBlockFilters read( Document document ) {
+        Document info = document.getDocument(CHILDREN_INFO);
+        if (info == null) return null;
+        List<?> blockKeys = info.getArray(BLOCK_KEYS);
+        Document filters = info.getDocument(BLOCK_FILTERS);
+        String nextBlock = info.getString(NEXT_BLOCK);
+        if (blockKeys == null || blockKeys.isEmpty() || filters == null || nextBlock == null) return null;
+        List<String> keys = new ArrayList<>(blockKeys.size());
+        for (Object value : blockKeys) {
+            if (!(value instanceof String)) return null;
+            keys.add((String)value);
+        }
+        String lastBlock = info.getString(LAST_BLOCK, nextBlock);
+        if (!nextBlock.equals(keys.get(0)) || !lastBlock.equals(keys.get(keys.size() - 1))) {
+            // The blocks were changed without updating the summary ...
+            return null;
+        }
+        return new ChildBlockFilters(keys, filters);
+    }
+
+    /**
+     * Remove the summary of the blocks from the supplied node document.
+     *
+     * @param document the node's document; may not be null
+     */
+    static void remove( EditableDocument document ) {
+        EditableDocument info = document.getDocument(CHILDREN_INFO);
+        if (info == null) return;
+        if (info.containsField(BLOCK_KEYS)) info.remove(BLOCK_KEYS);
+        if (info.containsField(BLOCK_FILTERS)) info.remove(BLOCK_FILTERS);
+    }
+
+    /**
+     * Write the changes to this summary of the blocks into the supplied node document. Only the filters that were
+     * {@link #set(int, String, List) set} and differ from those in the document are written, and the keys of the blocks are
+     * written only if blocks were added.
+     *
+     * @param document the node's document; may not be null
+     */
+    void write( EditableDocument document ) {
+        if (keys.isEmpty()) {
+            remove(document);
+            return;
+        }
+        EditableDocument info = document.getDocument(CHILDREN_INFO);
+        if (info == null) info = document.setDocument(CHILDREN_INFO);
+        EditableDocument filters = info.getDocument(BLOCK_FILTERS);
+        if (filters == null) filters = info.setDocument(BLOCK_FILTERS);
+        if (keysChanged || !info.containsField(BLOCK_KEYS)) {
+            EditableArray blockKeys = Schematic.newArray(keys.size());
+            for (String key : keys) {
+                blockKeys.add(key);
+            }
+            info.setArray(BLOCK_KEYS, blockKeys);
+            // Remove the filters of blocks that no longer exist ...
+            Set<String> keySet = new HashSet<>(keys);
+            for (String key : new ArrayList<>(filters.keySet())) {
+                if (!keySet.contains(key)) filters.remove(key);
+            }
+        }
+        for (Map.Entry<String, byte[]> entry : changedFilters.entrySet()) {
+            byte[] existing = bytesOf(filters.get(entry.getKey()));
+            if (!Arrays.equals(existing, entry.getValue())) {
+                filters.set(entry.getKey(), new Binary(entry.getValue()));
+            }
+        }
+        changedFilters.clear();
+        keysChanged = false;
+    }
+
+    int size() {
+        return keys.size();
+    }
+
+    String key( int index ) {
+        return keys.get(index);
+    }
+
+    int indexOf( String key ) {
+        return keys.indexOf(key);
+    }
+
+    /**
+     * Determine whether the block at the given position might contain a child with the given name or key.
+     *
+     * @param index the position of the block, where 0 is the block after the node's document
+     * @param nameOrKey the string form of the child's name or key
+     * @return false if the block definitely does not contain the child, or true if it might
+     */
+    boolean mightContain( int index,
+                          String nameOrKey ) {
+        byte[] filter = filter(keys.get(index));
+        // Without a filter the block has to be read ...
+        if (filter == null || filter.length == 0) return true;
+        int numBits = filter.length * 8;
+        long hash = hash(nameOrKey);
+        int hash1 = (int)hash;
+        int hash2 = (int)(hash >>> 32);
+        for (int i = 1; i <= NUMBER_OF_HASHES; ++i) {
+            int bit = ((hash1 + i * hash2) & Integer.MAX_VALUE) % numBits;
+            if ((filter[bit >>> 3] & (1 << (bit & 7))) == 0) return false;
+        }
+        return true;
+    }
+
+    private byte[] filter( String key ) {
+        byte[] filter = changedFilters.get(key);
+        if (filter == null && storedFilters != null) filter = bytesOf(storedFilters.get(key));
+        return filter;
+    }
+
+    private static byte[] bytesOf( Object value ) {
+        return value instanceof Binary ? ((Binary)value).getBytes() : null;
+    }
+
+    /**
+     * Add a block at the given position, or replace the filter of the block if it is already in the summary.
+     *
+     * @param index the position of the block
+     * @param key the key of the block; may not be null
+     * @param children the child references in the block; may not be null
+     */
+    void set( int index,
+              String key,
+              List<?> children ) {
+        if (index >= keys.size() || !keys.get(index).equals(key)) {
+            keys.add(index, key);
+            keysChanged = true;
+        }
+        changedFilters.put(key, filterFor(children));
+    }
+
+    /**
+     * Create the Bloom filter for the names and keys of the supplied child references.
+     *
+     * @param children the child reference documents; may not be null
+     * @return the filter; never null
+     */
+    static byte[] filterFor( List<?> children ) {
+        int numBits = Math.max(64, children.size() * 2 * BITS_PER_VALUE);
+        byte[] filter = new byte[(numBits + 7) / 8];
+        numBits = filter.length * 8;
+        for (Object child : children) {
+            if (!(child instanceof Document)) continue;
+            Document ref = (Document)child;
+            add(filter, numBits, ref.getString(NAME));
+            add(filter, numBits, ref.getString(KEY));
+        }
+        return filter;
+    }
+
+    private static void add( byte[] filter,
+                             int numBits,
+                             String value ) {
+        if (value == null) return;
+        long hash = hash(value);
+        int hash1 = (int)hash;
+        int hash2 = (int)(hash >>> 32);
+        for (int i = 1; i <= NUMBER_OF_HASHES; ++i) {
+            int bit = ((hash1 + i * hash2) & Integer.MAX_VALUE) % numBits;
+            filter[bit >>> 3] |= 1 << (bit & 7);
+        }
+    }
+
+    private static long hash( String value ) {
+        // 64-bit FNV-1a over the characters ...
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i != value.length(); ++i) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
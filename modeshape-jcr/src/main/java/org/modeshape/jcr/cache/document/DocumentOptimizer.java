@@ -15,6 +15,7 @@
  */
 package org.modeshape.jcr.cache.document;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -140,9 +141,31 @@ public class DocumentOptimizer implements DocumentConstants {
                 }
             }
         }
+        if (changed) {
+            updateBlockFilters(document);
+        }
         return changed;
     }
 
+    /**
+     * Rebuild the summary of the blocks of children in the supplied node document, after the blocks have been changed.
+     * 
+     * @param document the node's document; may not be null
+     */
+    protected void updateBlockFilters( EditableDocument document ) {
+        ChildBlockFilters filters = new ChildBlockFilters();
+        EditableDocument info = document.getDocument(CHILDREN_INFO);
+        String blockKey = info != null ? info.getString(NEXT_BLOCK) : null;
+        while (blockKey != null) {
+            Document block = lookup(blockKey).getContentAsDocument();
+            List<?> children = block.getArray(CHILDREN);
+            filters.set(filters.size(), blockKey, children != null ? children : Collections.emptyList());
+            Document blockInfo = block.getDocument(CHILDREN_INFO);
+            blockKey = blockInfo != null ? blockInfo.getString(NEXT_BLOCK) : null;
+        }
+        filters.write(document);
+    }
+
     protected SchematicEntry lookup( String key ) {
         return documentStore != null ? documentStore.get(key) : store.get(key);
     }
@@ -169,9 +192,9 @@ public class DocumentOptimizer implements DocumentConstants {
      * @param isFirst true if the supplied document is the first node document, or false if it is a block document
      * @param nextBlock the key for the next block of children; may be null if the supplied document is the last document and
      *        there is no next block
-     * @return true if the children were split, or false if no changes were made
+     * @return the key of the last of the newly-created blocks, or null if no changes were made
      */
-    protected boolean splitChildren( NodeKey key,
+    protected String splitChildren( NodeKey key,
                                      EditableDocument document,
                                      EditableArray children,
                                      int targetCountPerBlock,
@@ -187,7 +210,7 @@ public class DocumentOptimizer implements DocumentConstants {
 
         if (numFullBlocks == 0) {
             // This block doesn't need to be split ...
-            return false;
+            return null;
         }
 
         int sizeOfLastBlock = total % targetCountPerBlock;
@@ -195,12 +218,14 @@ public class DocumentOptimizer implements DocumentConstants {
             // The last block would be too small to be on its own ...
             if (numFullBlocks == 1) {
                 // We would split into one full block and a second too-small block, so there's no point of splitting ...
-                return false;
+                return null;
             }
             // We'll split it into multiple blocks, so we'll just include the children in the last too-small block
             // in the previous block ...
             sizeOfLastBlock = 0;
         }
+        // A last block that is large enough to be on its own is in addition to the full blocks ...
+        int numBlocks = sizeOfLastBlock == 0 ? numFullBlocks : numFullBlocks + 1;
 
         // The order we do things is important here. The best thing is to create and persist blocks 2...n immediately,
         // and then we can change the first document to have the smaller number of children and to point to the newly-created
@@ -210,9 +235,9 @@ public class DocumentOptimizer implements DocumentConstants {
         int endIndex = 0;
         final String firstNewBlockKey = key.withRandomId().toString();
         String blockKey = firstNewBlockKey;
-        for (int n = 1; n != numFullBlocks; ++n) {
+        for (int n = 1; n != numBlocks; ++n) {
             // Create the sublist of children that should be written to a new block ...
-            boolean isLast = n == (numFullBlocks - 1);
+            boolean isLast = n == (numBlocks - 1);
             endIndex = isLast ? total : (startIndex + targetCountPerBlock);
             EditableArray blockChildren = Schematic.newArray(children.subList(startIndex, endIndex));
 
@@ -254,7 +279,7 @@ public class DocumentOptimizer implements DocumentConstants {
         }
 
         // Note we never changed the number of children, so we don't need to update 'count'.
-        return true;
+        return blockKey;
     }
 
     /**
@@ -17,6 +17,8 @@
 package org.modeshape.jcr.cache.document;
 
 import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
 import javax.transaction.TransactionManager;
 import javax.transaction.xa.XAResource;
 import org.infinispan.schematic.SchematicEntry;
@@ -41,6 +43,16 @@ public interface DocumentStore {
      */
     public SchematicEntry get( String key );
 
+    /**
+     * Get the entries with the supplied keys. This may be much faster than calling {@link #get(String)} for each key, since the
+     * lookups can be made concurrently.
+     *
+     * @param keys the keys or identifiers for the documents; may not be null
+     * @return the entries keyed by their key, excluding any keys for which there is no document; never null
+     * @throws DocumentStoreException if there is a problem retrieving the documents
+     */
+    public Map<String, SchematicEntry> getAll( Collection<String> keys );
+
     /**
      * Store the supplied document at the given key.
      *
@@ -96,6 +108,17 @@ public interface DocumentStore {
      */
     public boolean prepareDocumentsForUpdate( Collection<String> keys );
 
+    /**
+     * Prepare to update all of the documents with the given keys, but without waiting for any of those documents to be released
+     * by other transactions.
+     *
+     * @param keys the set of keys identifying the documents that are to be updated
+     * @return true if the documents were locked, or false if at least one of the documents is locked by another transaction
+     * @throws DocumentStoreException if there is an error or problem while obtaining the locks
+     * @see #prepareDocumentsForUpdate(Collection)
+     */
+    public boolean tryPrepareDocumentsForUpdate( Collection<String> keys );
+
     /**
      * Remove the existing document at the given key.
      *
@@ -105,6 +128,40 @@ public interface DocumentStore {
      */
     public boolean remove( String key );
 
+    /**
+     * Store the supplied documents, each of which is either new or is to replace the existing document with the same key. This
+     * is equivalent to but more efficient than storing each document individually, since the existing documents are not read
+     * and the documents may be written in a single operation. Because any existing documents are silently replaced, callers
+     * must ensure that no other transaction can concurrently create the new documents, for example by first
+     * {@link #prepareDocumentsForUpdate(Collection) locking} their keys.
+     *
+     * @param documents the documents that are to be stored, keyed by the key or identifier for each document; may not be null
+     * @throws DocumentStoreException if there is a problem storing the documents
+     */
+    public void storeDocuments( Map<String, Document> documents );
+
+    /**
+     * Store the supplied new documents, but only where there is no existing document with the same key. This is equivalent to
+     * but more efficient than calling {@link #storeDocument(String, Document)} for each document, since the existing documents
+     * are all looked up at once and the new documents may be written in a single operation. Callers must first
+     * {@link #prepareDocumentsForUpdate(Collection) lock} the keys, so that no other transaction can create the documents after
+     * they are looked up.
+     *
+     * @param documents the new documents that are to be stored, keyed by the key or identifier for each document; may not be null
+     * @return the keys of the documents that were not stored because a document with the same key already exists; never null
+     * @throws DocumentStoreException if there is a problem storing the documents
+     */
+    public Set<String> storeDocumentsIfAbsent( Map<String, Document> documents );
+
+    /**
+     * Remove the existing documents at the given keys. This is equivalent to but more efficient than removing each document
+     * individually, since the removed documents are not read.
+     *
+     * @param keys the keys or identifiers for the documents; may not be null
+     * @throws DocumentStoreException if there is a problem removing the documents
+     */
+    public void removeAll( Collection<String> keys );
+
     /**
      * Determine whether the database contains an entry with the supplied key.
      *
@@ -24,6 +24,7 @@ import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -100,6 +101,8 @@ public class DocumentTranslator implements DocumentConstants {
     private final ReferenceFactory simplerefs;
     private final TextEncoder encoder = NoOpEncoder.getInstance();
     private final TextDecoder decoder = NoOpEncoder.getInstance();
+    private volatile int childBlockTarget = Integer.MAX_VALUE;
+    private volatile int childBlockTolerance = 0;
 
     public DocumentTranslator( ExecutionContext context,
                                DocumentStore documentStore,
@@ -125,7 +128,9 @@ public class DocumentTranslator implements DocumentConstants {
     }
 
     public DocumentTranslator withLargeStringSize( long largeStringSize ) {
-        return new DocumentTranslator(context, documentStore, largeStringSize);
+        DocumentTranslator result = new DocumentTranslator(context, documentStore, largeStringSize);
+        result.setChildBlockSize(childBlockTarget, childBlockTolerance);
+        return result;
     }
 
     public final ValueFactory<String> getStringFactory() {
@@ -149,6 +154,27 @@ public class DocumentTranslator implements DocumentConstants {
         this.largeStringSize.set(largeValueSize);
     }
 
+    /**
+     * Set the target number of child references in each block of children. When children are changed, any block that ends up with
+     * more than the target plus the tolerance is immediately split into blocks of the target size (see
+     * {@link DocumentOptimizer#splitChildren}), so that appending children to a large node never rewrites an ever-growing document.
+     * 
+     * @param targetCountPerBlock the target number of children per block; {@link Integer#MAX_VALUE} disables splitting
+     * @param tolerance the allowed tolerance between the target and actual number of children per block; must be positive and
+     *        smaller than the target for blocks to be split
+     */
+    public void setChildBlockSize( int targetCountPerBlock,
+                                   int tolerance ) {
+        if (targetCountPerBlock == Integer.MAX_VALUE || tolerance <= 0 || tolerance >= targetCountPerBlock) {
+            // Splitting is disabled ...
+            this.childBlockTarget = Integer.MAX_VALUE;
+            this.childBlockTolerance = 0;
+        } else {
+            this.childBlockTarget = targetCountPerBlock;
+            this.childBlockTolerance = tolerance;
+        }
+    }
+
     /**
      * Obtain the preferred {@link NodeKey key} for the parent of this node. Because a node can be used in more than once place,
      * it may technically have more than one parent. Therefore, in such cases this method prefers the parent that is in the
@@ -697,7 +723,19 @@ public class DocumentTranslator implements DocumentConstants {
         EditableDocument doc = document;
         EditableDocument lastDoc = document;
         String lastDocKey = null;
+
+        // Find the blocks that become too large, so that they can be split once all of the changes are made ...
+        String documentKey = isFederatedDocument(document) ? null : getKey(document);
+        long maxBlockSize = documentKey != null && childBlockTarget != Integer.MAX_VALUE ? (long)childBlockTarget
+                                                                                             + childBlockTolerance : Long.MAX_VALUE;
+        Map<String, EditableDocument> oversizedBlocks = null;
+
+        // The summary of the blocks after the first has to be kept consistent with the blocks ...
+        boolean segmented = info != null && info.nextKey != null;
+        ChildBlockFilters blockFilters = documentKey != null && !segmented ? new ChildBlockFilters() : null;
         if (changedChildren != null && !changedChildren.isEmpty()) {
+            // Every block is rewritten, so the summary can be rebuilt from scratch ...
+            if (documentKey != null) blockFilters = new ChildBlockFilters();
             Map<NodeKey, Insertions> insertionsByBeforeKey = changedChildren.getInsertionsByBeforeKey();
 
             // Handle removals and renames ...
@@ -719,6 +757,13 @@ public class DocumentTranslator implements DocumentConstants {
                 // Change the existing children ...
                 long blockCount = insertChildren(doc, insertionsByBeforeKey, removals, newNames);
                 newTotalSize += blockCount;
+                if (blockCount > maxBlockSize) {
+                    if (oversizedBlocks == null) oversizedBlocks = new LinkedHashMap<String, EditableDocument>();
+                    oversizedBlocks.put(doc == document ? documentKey : lastDocKey, doc);
+                }
+                if (blockFilters != null && doc != document) {
+                    blockFilters.set(blockFilters.size(), lastDocKey, doc.getArray(CHILDREN));
+                }
 
                 // Look at the 'childrenInfo' document for info about the next block of children ...
                 SchematicEntry nextEntry = null;
@@ -753,13 +798,19 @@ public class DocumentTranslator implements DocumentConstants {
 
         if (appended != null && appended.size() != 0) {
             String lastKey = info != null ? info.lastKey : null;
+            String lastBlockKey = lastDoc == document ? documentKey : lastDocKey;
             if (lastKey != null && !lastKey.equals(lastDocKey)) {
                 // Find the last document ...
                 SchematicEntry lastBlockEntry = documentStore.get(lastKey);
                 lastDoc = lastBlockEntry.editDocumentContent();
+                lastBlockKey = lastKey;
             } else {
                 lastKey = null;
             }
+            if (blockFilters == null && documentKey != null && segmented) {
+                blockFilters = ChildBlockFilters.read(document);
+                if (blockFilters == null) ChildBlockFilters.remove(document);
+            }
             // Just append the new children to the end of the last document; we can use an asynchronous process
             // to adjust/optimize the number of children in each block ...
             EditableArray lastChildren = lastDoc.getOrCreateArray(CHILDREN);
@@ -771,6 +822,17 @@ public class DocumentTranslator implements DocumentConstants {
                 // We've written to at least one other document, so update the block size ...
                 EditableDocument lastDocInfo = lastDoc.getOrCreateDocument(CHILDREN_INFO);
                 lastDocInfo.setNumber(BLOCK_SIZE, lastChildren.size());
+
+                if (blockFilters != null) {
+                    // Update the filter of the last block, which must be the last in the summary ...
+                    int index = blockFilters.indexOf(lastBlockKey);
+                    if (index == blockFilters.size() - 1) {
+                        blockFilters.set(index, lastBlockKey, lastChildren);
+                    } else {
+                        blockFilters = null;
+                        ChildBlockFilters.remove(document);
+                    }
+                }
             }
 
             // And update the total size and last block on the starting document ...
@@ -782,7 +844,78 @@ public class DocumentTranslator implements DocumentConstants {
             if (lastKey != null) {
                 childInfo.setString(LAST_BLOCK, lastKey);
             }
+
+            if (lastChildren.size() > maxBlockSize) {
+                if (oversizedBlocks == null) oversizedBlocks = new LinkedHashMap<String, EditableDocument>();
+                oversizedBlocks.put(lastBlockKey, lastDoc);
+            }
+        }
+
+        if (oversizedBlocks != null) {
+            blockFilters = splitChildBlocks(document, newTotalSize, oversizedBlocks, blockFilters);
+        }
+        if (blockFilters != null) {
+            blockFilters.write(document);
+        }
+    }
+
+    /**
+     * Split each of the supplied blocks of children that are too large, using the {@link #setChildBlockSize configured} target
+     * number of children per block. Each split writes the new blocks to the store and changes the block in place, so (like the rest
+     * of {@link #changeChildren}) this must be called within the transaction that saves the changes.
+     * 
+     * @param document the node's document, which is the first block of children; may not be null
+     * @param totalCount the total number of children of the node
+     * @param blocksByKey the blocks that are too large, keyed by the key of each block; may not be null
+     * @param blockFilters the summary of the blocks, which is updated with the new blocks; may be null if there is no summary
+     * @return the updated summary of the blocks; null if there is no summary
+     */
+    private ChildBlockFilters splitChildBlocks( EditableDocument document,
+                                                long totalCount,
+                                                Map<String, EditableDocument> blocksByKey,
+                                                ChildBlockFilters blockFilters ) {
+        DocumentOptimizer optimizer = new DocumentOptimizer(documentStore);
+        int target = childBlockTarget;
+        int tolerance = childBlockTolerance;
+        for (Map.Entry<String, EditableDocument> entry : blocksByKey.entrySet()) {
+            EditableDocument block = entry.getValue();
+            boolean isFirst = block == document;
+            EditableDocument blockInfo = block.getDocument(CHILDREN_INFO);
+            String nextBlock = blockInfo != null ? blockInfo.getString(NEXT_BLOCK) : null;
+            String newLastBlock = optimizer.splitChildren(new NodeKey(entry.getKey()), block, block.getArray(CHILDREN), target,
+                                                          tolerance, isFirst, nextBlock);
+            if (newLastBlock == null) {
+                // The block could not be split into blocks of an acceptable size ...
+                continue;
+            }
+            EditableDocument childInfo = document.getDocument(CHILDREN_INFO);
+            if (!childInfo.containsField(COUNT)) {
+                // A self-contained document doesn't always record the count, but the first of several blocks must ...
+                childInfo.setNumber(COUNT, totalCount);
+            }
+            if (!isFirst && nextBlock == null) {
+                // We split the last block, so the first document has to refer to the new last block ...
+                childInfo.setString(LAST_BLOCK, newLastBlock);
+            }
+
+            if (blockFilters != null) {
+                // Update the summary with the split block (unless it's the first) and the new blocks that follow it ...
+                int index = isFirst ? -1 : blockFilters.indexOf(entry.getKey());
+                if (!isFirst && index < 0) {
+                    blockFilters = null;
+                    ChildBlockFilters.remove(document);
+                    continue;
+                }
+                if (!isFirst) blockFilters.set(index, entry.getKey(), block.getArray(CHILDREN));
+                String newBlockKey = block.getDocument(CHILDREN_INFO).getString(NEXT_BLOCK);
+                while (newBlockKey != null && !newBlockKey.equals(nextBlock)) {
+                    Document newBlock = documentStore.get(newBlockKey).getContentAsDocument();
+                    blockFilters.set(++index, newBlockKey, newBlock.getArray(CHILDREN));
+                    newBlockKey = newBlock.getDocument(CHILDREN_INFO).getString(NEXT_BLOCK);
+                }
+            }
         }
+        return blockFilters;
     }
 
     protected long insertChildren( EditableDocument document,
@@ -879,7 +1012,8 @@ public class DocumentTranslator implements DocumentConstants {
             ChildReferences internalChildRefs = ImmutableChildReferences.create(internalChildRefsList);
             ChildReferences externalChildRefs = ImmutableChildReferences.create(externalChildRefsList);
 
-            return ImmutableChildReferences.create(internalChildRefs, info, externalChildRefs, cache);
+            ChildBlockFilters blockFilters = ChildBlockFilters.read(document);
+            return ImmutableChildReferences.create(internalChildRefs, info, blockFilters, externalChildRefs, cache);
         }
         if (externalSegments != null) {
             // There is no segmenting, so just add the federated references at the end
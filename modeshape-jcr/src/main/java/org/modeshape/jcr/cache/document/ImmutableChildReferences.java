@@ -63,8 +63,16 @@ public class ImmutableChildReferences {
                                           ChildReferencesInfo segmentingInfo,
                                           ChildReferences externalReferences,
                                           WorkspaceCache cache ) {
+        return create(first, segmentingInfo, null, externalReferences, cache);
+    }
+
+    static ChildReferences create( ChildReferences first,
+                                   ChildReferencesInfo segmentingInfo,
+                                   ChildBlockFilters blockFilters,
+                                   ChildReferences externalReferences,
+                                   WorkspaceCache cache ) {
         if (segmentingInfo.nextKey == null && externalReferences.isEmpty()) return first;
-        Segmented segmentedReferences = new Segmented(cache, first, segmentingInfo);
+        Segmented segmentedReferences = new Segmented(cache, first, segmentingInfo, blockFilters);
         return !externalReferences.isEmpty() ? new FederatedReferences(segmentedReferences, externalReferences) : segmentedReferences;
     }
 
@@ -381,13 +389,55 @@ public class ImmutableChildReferences {
         protected final WorkspaceCache cache;
         protected final long totalSize;
         private Segment firstSegment;
+        private final ChildBlockFilters blockFilters;
+        private final ChildReferences[] filteredBlocks;
 
         public Segmented( WorkspaceCache cache,
                           ChildReferences firstSegment,
                           ChildReferencesInfo info ) {
+            this(cache, firstSegment, info, null);
+        }
+
+        Segmented( WorkspaceCache cache,
+                   ChildReferences firstSegment,
+                   ChildReferencesInfo info,
+                   ChildBlockFilters blockFilters ) {
             this.cache = cache;
             this.totalSize = info.totalSize;
             this.firstSegment = new Segment(firstSegment, info.nextKey);
+            this.blockFilters = blockFilters;
+            this.filteredBlocks = blockFilters != null ? new ChildReferences[blockFilters.size()] : null;
+        }
+
+        /**
+         * Determine whether lookups can use the summary of the blocks to skip the blocks that can't contain the child. Lookups
+         * with transient changes to the children are always done against every block.
+         * 
+         * @param context the context of the lookup; may be null
+         * @return true if the summary can be used, or false otherwise
+         */
+        private boolean useBlockFilters( Context context ) {
+            return blockFilters != null && (context == null || context.changes() == null);
+        }
+
+        /**
+         * Get the references in the block at the given position in the summary of the blocks, reading the block if needed.
+         * 
+         * @param index the position of the block in the summary
+         * @return the references in the block; never null
+         */
+        private ChildReferences filteredBlock( int index ) {
+            ChildReferences refs = filteredBlocks[index];
+            if (refs == null) {
+                String key = blockFilters.key(index);
+                Document blockDoc = cache.blockFor(key);
+                if (blockDoc == null) {
+                    throw new DocumentNotFoundException(key);
+                }
+                refs = cache.translator().getChildReferencesFromBlock(blockDoc);
+                filteredBlocks[index] = refs;
+            }
+            return refs;
         }
 
         @Override
@@ -402,6 +452,16 @@ public class ImmutableChildReferences {
 
         @Override
         public int getChildCount( Name name ) {
+            if (blockFilters != null) {
+                int result = firstSegment.getReferences().getChildCount(name);
+                String nameString = cache.translator().getStringFactory().create(name);
+                for (int i = 0; i != blockFilters.size(); ++i) {
+                    if (blockFilters.mightContain(i, nameString)) {
+                        result += filteredBlock(i).getChildCount(name);
+                    }
+                }
+                return result;
+            }
             int result = 0;
             Segment segment = this.firstSegment;
             while (segment != null) {
@@ -415,6 +475,17 @@ public class ImmutableChildReferences {
         public ChildReference getChild( Name name,
                                         int snsIndex,
                                         Context context ) {
+            if (useBlockFilters(context)) {
+                ChildReference result = firstSegment.getReferences().getChild(name, snsIndex, context);
+                if (result != null) return result;
+                String nameString = cache.translator().getStringFactory().create(name);
+                for (int i = 0; i != blockFilters.size(); ++i) {
+                    if (!blockFilters.mightContain(i, nameString)) continue;
+                    result = filteredBlock(i).getChild(name, snsIndex, context);
+                    if (result != null) return result;
+                }
+                return null;
+            }
             ChildReference result = null;
             Segment segment = this.firstSegment;
             while (segment != null) {
@@ -429,6 +500,14 @@ public class ImmutableChildReferences {
 
         @Override
         public boolean hasChild( NodeKey key ) {
+            if (blockFilters != null) {
+                if (firstSegment.getReferences().hasChild(key)) return true;
+                String keyString = key.toString();
+                for (int i = 0; i != blockFilters.size(); ++i) {
+                    if (blockFilters.mightContain(i, keyString) && filteredBlock(i).hasChild(key)) return true;
+                }
+                return false;
+            }
             Segment segment = this.firstSegment;
             while (segment != null) {
                 if (segment.getReferences().hasChild(key)) {
@@ -447,6 +526,17 @@ public class ImmutableChildReferences {
         @Override
         public ChildReference getChild( NodeKey key,
                                         Context context ) {
+            if (useBlockFilters(context)) {
+                ChildReference result = firstSegment.getReferences().getChild(key, context);
+                if (result != null) return result;
+                String keyString = key.toString();
+                for (int i = 0; i != blockFilters.size(); ++i) {
+                    if (!blockFilters.mightContain(i, keyString)) continue;
+                    result = filteredBlock(i).getChild(key, context);
+                    if (result != null) return result;
+                }
+                return null;
+            }
             ChildReference result = null;
             Segment segment = this.firstSegment;
             while (segment != null) {
@@ -442,6 +442,16 @@ public class LazyCachedNode implements CachedNode, Serializable {
         return wsCache.translator().isQueryable(document(wsCache));
     }
 
+    /**
+     * Estimate the amount of memory retained by this node. This includes the document and an allowance for the properties and
+     * child references that are lazily materialized from the document, so that the estimate does not change as the node is used.
+     *
+     * @return the estimated size in bytes
+     */
+    public long estimatedSize() {
+        return 2L * WeightedNodeCache.estimatedSizeOf(document);
+    }
+
     @Override
     public int hashCode() {
         return key.hashCode();
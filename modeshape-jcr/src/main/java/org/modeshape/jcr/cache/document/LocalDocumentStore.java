@@ -18,6 +18,7 @@ package org.modeshape.jcr.cache.document;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import javax.transaction.HeuristicMixedException;
@@ -70,6 +71,11 @@ public class LocalDocumentStore implements DocumentStore {
         return database.get(key);
     }
 
+    @Override
+    public Map<String, SchematicEntry> getAll( Collection<String> keys ) {
+        return database.getAll(keys);
+    }
+
     @Override
     public SchematicEntry storeDocument( String key,
                                          Document document ) {
@@ -143,11 +149,31 @@ public class LocalDocumentStore implements DocumentStore {
         return database.remove(key) != null;
     }
 
+    @Override
+    public void storeDocuments( Map<String, Document> documents ) {
+        database.putAll(documents);
+    }
+
+    @Override
+    public Set<String> storeDocumentsIfAbsent( Map<String, Document> documents ) {
+        return database.putAllIfAbsent(documents);
+    }
+
+    @Override
+    public void removeAll( Collection<String> keys ) {
+        database.removeAll(keys);
+    }
+
     @Override
     public boolean prepareDocumentsForUpdate( Collection<String> keys ) {
         return database.lock(keys);
     }
 
+    @Override
+    public boolean tryPrepareDocumentsForUpdate( Collection<String> keys ) {
+        return database.tryLock(keys);
+    }
+
     @Override
     public boolean updatesRequirePreparing() {
         return database.isExplicitLockingEnabled();
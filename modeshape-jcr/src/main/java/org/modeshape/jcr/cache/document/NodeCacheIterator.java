@@ -15,8 +15,10 @@
  */
 package org.modeshape.jcr.cache.document;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Queue;
 import org.modeshape.common.util.CheckArg;
@@ -29,11 +31,14 @@ import org.modeshape.jcr.cache.NodeKey;
  */
 public class NodeCacheIterator implements Iterator<NodeKey> {
 
+    private static final int PREFETCH_SIZE = 100;
+
     private final Queue<NodeKey> keys = new LinkedList<NodeKey>();
     private final NodeCache cache;
     private final NodeFilter filter;
     private final NodeKey startingNode;
     private NodeKey nextNode;
+    private int prefetched;
 
     /**
      * Create a new iterator over the nodes in the supplied node cache that are at or below the supplied starting node.
@@ -91,8 +96,10 @@ public class NodeCacheIterator implements Iterator<NodeKey> {
     protected final void nextNode() {
         if (this.nextNode != null) return;
         while (true) {
+            if (prefetched == 0) prefetch();
             // Pop the next key off the queue ...
             NodeKey nextKey = keys.poll();
+            if (prefetched > 0) --prefetched;
             if (nextKey == null) {
                 // We're finished ...
                 this.nextNode = null;
@@ -120,6 +127,23 @@ public class NodeCacheIterator implements Iterator<NodeKey> {
         }
     }
 
+    /**
+     * Load the nodes for the next batch of keys at the front of the queue, so that they can be found in the cache without a
+     * separate request to the document store for each node.
+     */
+    protected void prefetch() {
+        if (keys.size() < 2) return;
+        NodeCache cache = this.cache.unwrap();
+        if (!(cache instanceof DocumentCache)) return;
+        List<NodeKey> batch = new ArrayList<NodeKey>(Math.min(keys.size(), PREFETCH_SIZE));
+        for (NodeKey key : keys) {
+            batch.add(key);
+            if (batch.size() == PREFETCH_SIZE) break;
+        }
+        ((DocumentCache)cache).workspaceCache().prefetch(batch);
+        prefetched = batch.size();
+    }
+
     @Override
     public final void remove() {
         throw new UnsupportedOperationException();
@@ -0,0 +1,420 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.cache.document;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import org.infinispan.schematic.document.Array;
+import org.infinispan.schematic.document.Binary;
+import org.infinispan.schematic.document.Document;
+import org.modeshape.common.annotation.GuardedBy;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.common.util.CheckArg;
+import org.modeshape.jcr.cache.CachedNode;
+import org.modeshape.jcr.cache.NodeKey;
+
+/**
+ * A map of {@link CachedNode}s that is bounded by the estimated amount of memory used by the nodes rather than by the number of
+ * nodes. A node with tens of thousands of child references can use several megabytes, while a leaf node uses only a few hundred
+ * bytes, so the memory used by a cache bounded by the number of nodes depends upon the shape of the content.
+ * <p>
+ * The nodes are spread over several segments, and each segment evicts its least-recently-used nodes whenever the nodes in the
+ * segment exceed its share of the maximum size. A node that is larger than a segment's share is never cached.
+ * </p>
+ */
+@ThreadSafe
+public class WeightedNodeCache extends AbstractMap<NodeKey, CachedNode> implements ConcurrentMap<NodeKey, CachedNode> {
+
+    /**
+     * A listener that is notified of the activity within a {@link WeightedNodeCache}.
+     */
+    public static interface Listener {
+        /**
+         * Called when a requested node was found in the cache.
+         */
+        void hit();
+
+        /**
+         * Called when a requested node was not found in the cache.
+         */
+        void miss();
+
+        /**
+         * Called when nodes were evicted from the cache to make room for other nodes.
+         *
+         * @param count the number of evicted nodes; always positive
+         */
+        void evicted( int count );
+
+        /**
+         * Called when the estimated size of the cached nodes changes.
+         *
+         * @param delta the change in the estimated size, in bytes
+         */
+        void sizeChanged( long delta );
+    }
+
+    private static final int SEGMENT_COUNT = 16;
+
+    // Rough estimates of the memory used by the objects that hold the cached nodes and their documents ...
+    private static final long ENTRY_SIZE = 128L;
+    private static final long FIELD_SIZE = 48L;
+    private static final long STRING_SIZE = 40L;
+    private static final long VALUE_SIZE = 16L;
+
+    private final long maximumSize;
+    private final Listener listener;
+    private final Segment[] segments;
+
+    /**
+     * Create a new cache.
+     *
+     * @param maximumSize the maximum estimated size of the cached nodes, in bytes; must be positive
+     * @param listener the listener that should be notified of the cache activity; may be null
+     */
+    public WeightedNodeCache( long maximumSize,
+                              Listener listener ) {
+        CheckArg.isPositive(maximumSize, "maximumSize");
+        this.maximumSize = maximumSize;
+        this.listener = listener;
+        this.segments = new Segment[SEGMENT_COUNT];
+        long maximumSegmentSize = Math.max(1L, maximumSize / SEGMENT_COUNT);
+        for (int i = 0; i != SEGMENT_COUNT; ++i) {
+            segments[i] = new Segment(maximumSegmentSize);
+        }
+    }
+
+    /**
+     * Get the maximum estimated size of the cached nodes.
+     *
+     * @return the maximum size in bytes; always positive
+     */
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Get the estimated size of the nodes currently in this cache.
+     *
+     * @return the estimated size in bytes
+     */
+    public long getEstimatedSize() {
+        long size = 0L;
+        for (Segment segment : segments) {
+            size += segment.estimatedSize();
+        }
+        return size;
+    }
+
+    /**
+     * Estimate the amount of memory used by the supplied node.
+     *
+     * @param node the node; may not be null
+     * @return the estimated size in bytes; always positive
+     */
+    protected long weigh( CachedNode node ) {
+        if (node instanceof LazyCachedNode) {
+            return ENTRY_SIZE + ((LazyCachedNode)node).estimatedSize();
+        }
+        return ENTRY_SIZE;
+    }
+
+    /**
+     * Estimate the amount of memory used by the supplied document, including all of its nested documents and arrays.
+     *
+     * @param document the document; may not be null
+     * @return the estimated size in bytes
+     */
+    public static long estimatedSizeOf( Document document ) {
+        long size = VALUE_SIZE;
+        if (document instanceof Array) {
+            // Don't bother with the field names of an array ...
+            for (Object value : (Array)document) {
+                size += VALUE_SIZE + estimatedSizeOf(value);
+            }
+            return size;
+        }
+        for (Document.Field field : document.fields()) {
+            size += FIELD_SIZE + STRING_SIZE + 2L * field.getName().length() + estimatedSizeOf(field.getValue());
+        }
+        return size;
+    }
+
+    private static long estimatedSizeOf( Object value ) {
+        if (value instanceof String) return STRING_SIZE + 2L * ((String)value).length();
+        if (value instanceof Document) return estimatedSizeOf((Document)value);
+        if (value instanceof Binary) return VALUE_SIZE + ((Binary)value).length();
+        return VALUE_SIZE;
+    }
+
+    protected final Segment segmentFor( Object key ) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return segments[hash & (SEGMENT_COUNT - 1)];
+    }
+
+    @Override
+    public CachedNode get( Object key ) {
+        if (key == null) return null;
+        CachedNode node = segmentFor(key).get(key);
+        if (listener != null) {
+            if (node != null) listener.hit();
+            else listener.miss();
+        }
+        return node;
+    }
+
+    @Override
+    public boolean containsKey( Object key ) {
+        return key != null && segmentFor(key).containsKey(key);
+    }
+
+    @Override
+    public CachedNode put( NodeKey key,
+                           CachedNode node ) {
+        CheckArg.isNotNull(key, "key");
+        CheckArg.isNotNull(node, "node");
+        return segmentFor(key).put(key, node, weigh(node), false);
+    }
+
+    @Override
+    public CachedNode putIfAbsent( NodeKey key,
+                                   CachedNode node ) {
+        CheckArg.isNotNull(key, "key");
+        CheckArg.isNotNull(node, "node");
+        return segmentFor(key).put(key, node, weigh(node), true);
+    }
+
+    @Override
+    public CachedNode remove( Object key ) {
+        if (key == null) return null;
+        return segmentFor(key).remove(key, null);
+    }
+
+    @Override
+    public boolean remove( Object key,
+                           Object node ) {
+        if (key == null || node == null) return false;
+        return segmentFor(key).remove(key, node) != null;
+    }
+
+    @Override
+    public boolean replace( NodeKey key,
+                            CachedNode oldNode,
+                            CachedNode newNode ) {
+        CheckArg.isNotNull(newNode, "newNode");
+        if (key == null || oldNode == null) return false;
+        return segmentFor(key).replace(key, oldNode, newNode, weigh(newNode)) != null;
+    }
+
+    @Override
+    public CachedNode replace( NodeKey key,
+                               CachedNode node ) {
+        CheckArg.isNotNull(node, "node");
+        if (key == null) return null;
+        return segmentFor(key).replace(key, null, node, weigh(node));
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The returned set is an unmodifiable snapshot of the nodes in the cache.
+     * </p>
+     */
+    @Override
+    public Set<Map.Entry<NodeKey, CachedNode>> entrySet() {
+        Map<NodeKey, CachedNode> snapshot = new HashMap<>();
+        for (Segment segment : segments) {
+            segment.copyInto(snapshot);
+        }
+        return Collections.unmodifiableMap(snapshot).entrySet();
+    }
+
+    @Override
+    public String toString() {
+        return "WeightedNodeCache {size=" + size() + ", estimatedSize=" + getEstimatedSize() + ", maximumSize=" + maximumSize
+               + "}";
+    }
+
+    protected static final class Entry {
+        protected final CachedNode node;
+        protected final long weight;
+
+        protected Entry( CachedNode node,
+                         long weight ) {
+            this.node = node;
+            this.weight = weight;
+        }
+    }
+
+    protected final class Segment {
+        private final long maximumSize;
+        @GuardedBy( "this" )
+        private final LinkedHashMap<NodeKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        @GuardedBy( "this" )
+        private long size = 0L;
+
+        protected Segment( long maximumSize ) {
+            this.maximumSize = maximumSize;
+        }
+
+        protected synchronized long estimatedSize() {
+            return size;
+        }
+
+        protected synchronized int size() {
+            return entries.size();
+        }
+
+        protected synchronized CachedNode get( Object key ) {
+            Entry entry = entries.get(key);
+            return entry != null ? entry.node : null;
+        }
+
+        protected synchronized boolean containsKey( Object key ) {
+            return entries.containsKey(key);
+        }
+
+        protected synchronized void copyInto( Map<NodeKey, CachedNode> nodes ) {
+            for (Map.Entry<NodeKey, Entry> entry : entries.entrySet()) {
+                nodes.put(entry.getKey(), entry.getValue().node);
+            }
+        }
+
+        protected CachedNode put( NodeKey key,
+                                  CachedNode node,
+                                  long weight,
+                                  boolean onlyIfAbsent ) {
+            long delta = 0L;
+            int evicted = 0;
+            Entry existing = null;
+            synchronized (this) {
+                existing = entries.get(key);
+                if (existing != null && onlyIfAbsent) return existing.node;
+                long sizeBefore = size;
+                evicted = store(key, existing, node, weight);
+                delta = size - sizeBefore;
+            }
+            notifyListener(delta, evicted);
+            return existing != null ? existing.node : null;
+        }
+
+        protected CachedNode replace( NodeKey key,
+                                      CachedNode expected,
+                                      CachedNode node,
+                                      long weight ) {
+            long delta = 0L;
+            int evicted = 0;
+            Entry existing = null;
+            synchronized (this) {
+                existing = entries.get(key);
+                if (existing == null || (expected != null && !existing.node.equals(expected))) return null;
+                long sizeBefore = size;
+                evicted = store(key, existing, node, weight);
+                delta = size - sizeBefore;
+            }
+            notifyListener(delta, evicted);
+            return existing.node;
+        }
+
+        /**
+         * Replace the existing entry (if any) with the supplied node, and then evict the least-recently-used nodes until there is
+         * room. A node larger than the segment is not stored at all.
+         * 
+         * @param key the node key; may not be null
+         * @param existing the existing entry for the key; may be null
+         * @param node the node; may not be null
+         * @param weight the weight of the node
+         * @return the number of nodes that were evicted
+         */
+        @GuardedBy( "this" )
+        private int store( NodeKey key,
+                           Entry existing,
+                           CachedNode node,
+                           long weight ) {
+            if (existing != null) {
+                entries.remove(key);
+                size -= existing.weight;
+            }
+            int evicted = 0;
+            if (weight <= maximumSize) {
+                entries.put(key, new Entry(node, weight));
+                size += weight;
+                // Evict the least-recently-used nodes until there is room (the new node is always the most recently used) ...
+                Iterator<Entry> iter = entries.values().iterator();
+                while (size > maximumSize) {
+                    Entry eldest = iter.next();
+                    iter.remove();
+                    size -= eldest.weight;
+                    ++evicted;
+                }
+            }
+            return evicted;
+        }
+
+        protected CachedNode remove( Object key,
+                                     Object expected ) {
+            Entry existing = null;
+            synchronized (this) {
+                existing = entries.get(key);
+                if (existing == null || (expected != null && !existing.node.equals(expected))) return null;
+                entries.remove(key);
+                size -= existing.weight;
+            }
+            notifyListener(-existing.weight, 0);
+            return existing.node;
+        }
+
+        protected void clear() {
+            long delta = 0L;
+            synchronized (this) {
+                delta = -size;
+                entries.clear();
+                size = 0L;
+            }
+            notifyListener(delta, 0);
+        }
+
+        private void notifyListener( long delta,
+                                     int evicted ) {
+            if (listener == null) return;
+            if (delta != 0L) listener.sizeChanged(delta);
+            if (evicted != 0) listener.evicted(evicted);
+        }
+    }
+}
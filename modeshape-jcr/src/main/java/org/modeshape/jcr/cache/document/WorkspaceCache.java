@@ -15,7 +15,10 @@
  */
 package org.modeshape.jcr.cache.document;
 
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import org.infinispan.commons.api.BasicCache;
@@ -232,32 +235,64 @@ public class WorkspaceCache implements DocumentCache {
             }
             Document doc = documentFor(key);
             if (doc != null) {
-                if (LOGGER.isTraceEnabled()) {
-                    LOGGER.trace("Materialized document '{0}' in '{1}' workspace from store: {2}", key, workspaceName, doc);
-                }
-                // Create a new node and put into this cache ...
-                CachedNode newNode = new LazyCachedNode(key, doc);
-                try {
-                    Integer cacheTtlSeconds = translator().getCacheTtlSeconds(doc);
-                    if (cacheTtlSeconds != null && nodesByKey instanceof BasicCache) {
-                        node = ((BasicCache<NodeKey, CachedNode>)nodesByKey).putIfAbsent(key, newNode,
-                                                                                         cacheTtlSeconds.longValue(),
-                                                                                         TimeUnit.SECONDS);
-                    } else {
-                        node = nodesByKey.putIfAbsent(key, newNode);
-                    }
-                } catch (TimeoutException e) {
-                    node = null;
-                }
-                if (node == null) {
-                    // Either the put timed out or there was no previous entry, so just use our new CachedNode ...
-                    node = newNode;
-                }
+                node = cacheNode(key, doc);
             }
         }
         return node;
     }
 
+    /**
+     * Load into this cache the nodes with the supplied keys that are not already cached, using a single request to the document
+     * store. This should be called before a number of nodes are to be {@link #getNode(NodeKey) retrieved} one at a time, such as
+     * when iterating over the children of a node.
+     * 
+     * @param keys the keys of the nodes that will be used soon; may not be null
+     */
+    public void prefetch( Collection<NodeKey> keys ) {
+        checkNotClosed();
+        Map<String, NodeKey> missingKeys = new LinkedHashMap<>();
+        for (NodeKey key : keys) {
+            if (!nodesByKey.containsKey(key)) missingKeys.put(key.toString(), key);
+        }
+        if (missingKeys.isEmpty()) return;
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("Prefetching {0} nodes into the '{1}' workspace cache", missingKeys.size(), workspaceName);
+        }
+        for (Map.Entry<String, SchematicEntry> entry : documentStore.getAll(missingKeys.keySet()).entrySet()) {
+            Document doc = null;
+            try {
+                doc = entry.getValue().getContentAsDocument();
+            } catch (IllegalStateException e) {
+                // The document was concurrently removed ...
+                continue;
+            }
+            cacheNode(missingKeys.get(entry.getKey()), doc);
+        }
+    }
+
+    private CachedNode cacheNode( NodeKey key,
+                                  Document doc ) {
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("Materialized document '{0}' in '{1}' workspace from store: {2}", key, workspaceName, doc);
+        }
+        // Create a new node and put into this cache ...
+        CachedNode newNode = new LazyCachedNode(key, doc);
+        CachedNode node = null;
+        try {
+            Integer cacheTtlSeconds = translator().getCacheTtlSeconds(doc);
+            if (cacheTtlSeconds != null && nodesByKey instanceof BasicCache) {
+                node = ((BasicCache<NodeKey, CachedNode>)nodesByKey).putIfAbsent(key, newNode, cacheTtlSeconds.longValue(),
+                                                                                 TimeUnit.SECONDS);
+            } else {
+                node = nodesByKey.putIfAbsent(key, newNode);
+            }
+        } catch (TimeoutException e) {
+            node = null;
+        }
+        // Either the put timed out or there was no previous entry, so just use our new CachedNode ...
+        return node != null ? node : newNode;
+    }
+
     @Override
     public CachedNode getNode( ChildReference reference ) {
         checkNotClosed();
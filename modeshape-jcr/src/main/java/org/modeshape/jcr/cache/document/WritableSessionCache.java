@@ -17,15 +17,22 @@ package org.modeshape.jcr.cache.document;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -41,6 +48,7 @@ import org.infinispan.schematic.document.Document;
 import org.infinispan.schematic.document.EditableDocument;
 import org.modeshape.common.SystemFailureException;
 import org.modeshape.common.annotation.GuardedBy;
+import org.modeshape.common.annotation.NotThreadSafe;
 import org.modeshape.common.annotation.ThreadSafe;
 import org.modeshape.common.i18n.I18n;
 import org.modeshape.common.logging.Logger;
@@ -110,6 +118,17 @@ public class WritableSessionCache extends AbstractSessionCache {
     private static final SessionNode REMOVED = new SessionNode(REMOVED_KEY, false);
     private static final int MAX_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT = 4;
     private static final long PAUSE_TIME_BEFORE_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT = 50L;
+    /**
+     * The initial and maximum pause (in milliseconds) before trying again to lock nodes that are locked by another transaction.
+     * The pause doubles after each attempt, and a random amount is used so that concurrent saves do not retry in lockstep.
+     */
+    private static final long INITIAL_PAUSE_BEFORE_RETRYING_LOCK = 1L;
+    private static final long MAXIMUM_PAUSE_BEFORE_RETRYING_LOCK = 64L;
+    /**
+     * The total time (in milliseconds) that a save keeps releasing its locks and trying again before it waits in the store's lock
+     * queue.
+     */
+    private static final long MAXIMUM_TIME_RETRYING_LOCK = 1000L;
 
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
     private Map<NodeKey, SessionNode> changedNodes;
@@ -117,6 +136,7 @@ public class WritableSessionCache extends AbstractSessionCache {
     private LinkedHashSet<NodeKey> changedNodesInOrder;
     private Map<NodeKey, ReferrerChanges> referrerChangesForRemovedNodes;
     private final Transactions txns;
+    private volatile boolean bulkLoading = false;
 
     /**
      * Create a new SessionCache that can be used for making changes to the workspace.
@@ -200,6 +220,26 @@ public class WritableSessionCache extends AbstractSessionCache {
         return false;
     }
 
+    /**
+     * Set whether this session is loading content in bulk. While loading in bulk, saved nodes are not recorded for indexing and
+     * no events are recorded for the creation or modification of nodes and properties. The changed nodes are still evicted from
+     * all workspace caches, and removed nodes are still removed from the indexes.
+     * 
+     * @param bulkLoading true if this session is to load content in bulk, or false otherwise
+     */
+    public void setBulkLoading( boolean bulkLoading ) {
+        this.bulkLoading = bulkLoading;
+    }
+
+    /**
+     * Determine whether this session is {@link #setBulkLoading(boolean) loading content in bulk}.
+     * 
+     * @return true if this session is loading content in bulk, or false otherwise
+     */
+    public boolean isBulkLoading() {
+        return bulkLoading;
+    }
+
     @Override
     protected void doClear() {
         Lock lock = this.lock.writeLock();
@@ -422,6 +462,8 @@ public class WritableSessionCache extends AbstractSessionCache {
             final int numNodes = this.changedNodes.size();
 
             int repeat = txns.isCurrentlyInTransaction() ? 1 : MAX_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT;
+            // Only our own transactions can be rolled back to release their locks ...
+            final LockAttempts lockAttempts = new LockAttempts(repeat > 1);
             while (--repeat >= 0) {
                 try {
                     // Start a ModeShape transaction (which may be a part of a larger JTA transaction) ...
@@ -431,7 +473,7 @@ public class WritableSessionCache extends AbstractSessionCache {
                     final Monitor monitor = txn.createMonitor();
 
                     // Lock the nodes in Infinispan
-                    lockAndPurgeCache(changedNodesInOrder);
+                    lockAndPurgeCache(changedNodesInOrder, null, monitor, lockAttempts);
 
                     // process after locking
                     runPreSaveAfterLocking(preSaveOperation);
@@ -458,6 +500,13 @@ public class WritableSessionCache extends AbstractSessionCache {
 
                     clearState();
 
+                } catch (LockContentionException e) {
+                    // Release the locks held by this transaction before pausing, so that the other transaction can finish ...
+                    txn.rollback();
+                    Thread.sleep(lockAttempts.nextPause());
+                    // Waiting for another transaction is not a failed attempt ...
+                    ++repeat;
+                    continue;
                 } catch (org.infinispan.util.concurrent.TimeoutException e) {
                     if (txn != null) {
                         txn.rollback();
@@ -465,8 +514,7 @@ public class WritableSessionCache extends AbstractSessionCache {
                     if (repeat <= 0) {
                         throw new TimeoutException(e.getMessage(), e);
                     }
-                    --repeat;
-                    Thread.sleep(PAUSE_TIME_BEFORE_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT);
+                    Thread.sleep(randomPause(PAUSE_TIME_BEFORE_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT));
                     continue;
                 } catch (NotSupportedException err) {
                     // No nested transactions are supported ...
@@ -583,6 +631,8 @@ public class WritableSessionCache extends AbstractSessionCache {
             final int numNodes = this.changedNodes.size() + that.changedNodes.size();
 
             int repeat = txns.isCurrentlyInTransaction() ? 1 : MAX_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT;
+            // Only our own transactions can be rolled back to release their locks ...
+            final LockAttempts lockAttempts = new LockAttempts(repeat > 1);
             while (--repeat >= 0) {
                 try {
                     // Start a ModeShape transaction (which may be a part of a larger JTA transaction) ...
@@ -592,8 +642,7 @@ public class WritableSessionCache extends AbstractSessionCache {
                     final Monitor monitor = txn.createMonitor();
                     try {
                         // Lock the nodes in Infinispan
-                        lockAndPurgeCache(this.changedNodesInOrder);
-                        that.lockAndPurgeCache(that.changedNodesInOrder);
+                        lockAndPurgeCache(this.changedNodesInOrder, that, monitor, lockAttempts);
 
                         // process after locking
                         runPreSaveAfterLocking(preSaveOperation);
@@ -603,11 +652,17 @@ public class WritableSessionCache extends AbstractSessionCache {
                                              that.changedNodes);
                         events1 = persistChanges(this.changedNodesInOrder, monitor);
                         events2 = that.persistChanges(that.changedNodesInOrder, monitor);
+                    } catch (LockContentionException e) {
+                        // Release the locks held by this transaction before pausing, so that the other transaction can finish ...
+                        txn.rollback();
+                        Thread.sleep(lockAttempts.nextPause());
+                        // Waiting for another transaction is not a failed attempt ...
+                        ++repeat;
+                        continue;
                     } catch (org.infinispan.util.concurrent.TimeoutException e) {
                         txn.rollback();
                         if (repeat <= 0) throw new TimeoutException(e.getMessage(), e);
-                        --repeat;
-                        Thread.sleep(PAUSE_TIME_BEFORE_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT);
+                        Thread.sleep(randomPause(PAUSE_TIME_BEFORE_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT));
                         continue;
                     } catch (IllegalStateException err) {
                         // Not associated with a txn??
@@ -747,6 +802,8 @@ public class WritableSessionCache extends AbstractSessionCache {
             final int numNodes = savedNodesInOrder.size() + that.changedNodesInOrder.size();
 
             int repeat = txns.isCurrentlyInTransaction() ? 1 : MAX_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT;
+            // Only our own transactions can be rolled back to release their locks ...
+            final LockAttempts lockAttempts = new LockAttempts(repeat > 1);
             while (--repeat >= 0) {
                 try {
                     // Start a ModeShape transaction (which may be a part of a larger JTA transaction) ...
@@ -757,8 +814,7 @@ public class WritableSessionCache extends AbstractSessionCache {
 
                     try {
                         // Lock the nodes in Infinispan
-                        lockAndPurgeCache(savedNodesInOrder);
-                        that.lockAndPurgeCache(that.changedNodesInOrder);
+                        lockAndPurgeCache(savedNodesInOrder, that, monitor, lockAttempts);
 
                         // process after locking
                         // Before we start the transaction, apply the pre-save operations to the new and changed nodes ...
@@ -777,11 +833,17 @@ public class WritableSessionCache extends AbstractSessionCache {
                         events1 = persistChanges(savedNodesInOrder, monitor);
                         events2 = that.persistChanges(that.changedNodesInOrder, monitor);
 
+                    } catch (LockContentionException e) {
+                        // Release the locks held by this transaction before pausing, so that the other transaction can finish ...
+                        txn.rollback();
+                        Thread.sleep(lockAttempts.nextPause());
+                        // Waiting for another transaction is not a failed attempt ...
+                        ++repeat;
+                        continue;
                     } catch (org.infinispan.util.concurrent.TimeoutException e) {
                         txn.rollback();
                         if (repeat <= 0) throw new TimeoutException(e.getMessage(), e);
-                        --repeat;
-                        Thread.sleep(PAUSE_TIME_BEFORE_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT);
+                        Thread.sleep(randomPause(PAUSE_TIME_BEFORE_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT));
                         continue;
                     } catch (IllegalStateException err) {
                         // Not associated with a txn??
@@ -884,7 +946,10 @@ public class WritableSessionCache extends AbstractSessionCache {
         String workspaceName = workspaceCache().getWorkspaceName();
         String repositoryKey = workspaceCache().getRepositoryKey();
         String processKey = workspaceCache().getProcessKey();
-        RecordingChanges changes = new RecordingChanges(processKey, repositoryKey, workspaceName, sessionContext().journalId());
+        RecordingChanges changes = new RecordingChanges(processKey, repositoryKey, workspaceName, sessionContext().journalId(),
+                                                        !bulkLoading);
+        // When loading in bulk, new and changed nodes are indexed only after loading has completed ...
+        Monitor updateMonitor = bulkLoading ? null : monitor;
         WorkspaceCache workspaceCache = workspaceCache();
 
         // Get the documentStore ...
@@ -897,6 +962,12 @@ public class WritableSessionCache extends AbstractSessionCache {
         Set<NodeKey> removedNodes = null;
         Set<BinaryKey> unusedBinaryKeys = new HashSet<>();
         Set<NodeKey> renamedExternalNodes = new HashSet<>();
+        // The documents for the new (local) nodes are all written at once after the changes are processed: those that replace
+        // removed nodes are written over the existing documents, while the others must not already exist ...
+        Map<String, Document> newDocuments = new LinkedHashMap<>();
+        Map<String, Document> createdDocuments = new LinkedHashMap<>();
+        // New local nodes can only be written in a batch when their keys were locked before the changes are processed ...
+        final boolean newDocumentsAreLocked = documentStore.updatesRequirePreparing();
         for (NodeKey key : changedNodesInOrder) {
             SessionNode node = changedNodes.get(key);
             String keyStr = key.toString();
@@ -1204,7 +1275,24 @@ public class WritableSessionCache extends AbstractSessionCache {
 
                 if (node.isNew()) {
                     // We need to create the schematic entry for the new node ...
-                    if (documentStore.storeDocument(keyStr, doc) != null) {
+                    if (!isExternal) {
+                        if (replacedNodes != null && replacedNodes.contains(key)) {
+                            // Then a node is being removed and recreated with the same key ...
+                            newDocuments.put(keyStr, doc);
+                        } else if (removedNodes != null && removedNodes.remove(key)) {
+                            // Then a node is being removed and recreated with the same key ...
+                            newDocuments.put(keyStr, doc);
+                        } else if (!newDocumentsAreLocked) {
+                            // Nothing prevents another transaction from creating the entry, so do it now if it's absent ...
+                            if (documentStore.storeDocument(keyStr, doc) != null) {
+                                // We couldn't create the entry because one already existed ...
+                                throw new DocumentAlreadyExistsException(keyStr);
+                            }
+                        } else {
+                            // The key is locked by this transaction, so the entry can be created with the other new nodes ...
+                            createdDocuments.put(keyStr, doc);
+                        }
+                    } else if (documentStore.storeDocument(keyStr, doc) != null) {
                         if (replacedNodes != null && replacedNodes.contains(key)) {
                             // Then a node is being removed and recreated with the same key ...
                             documentStore.localStore().put(keyStr, doc);
@@ -1219,8 +1307,8 @@ public class WritableSessionCache extends AbstractSessionCache {
                     }
 
                     // And record the new node via the monitor ...
-                    if (monitor != null && queryable) {
-                        monitor.recordAdd(workspaceName, key, newPath, primaryType, mixinTypes, node.changedProperties().values()
+                    if (updateMonitor != null && queryable) {
+                        updateMonitor.recordAdd(workspaceName, key, newPath, primaryType, mixinTypes, node.changedProperties().values()
                                                                                                     .iterator());
                     }
                 } else {
@@ -1242,8 +1330,8 @@ public class WritableSessionCache extends AbstractSessionCache {
                     boolean pathChanged = !oldNodePath.equals(newNodePath);
                     boolean shouldUpdateIndexes = (isSameWorkspace && (hasPropertyChanges || node.hasIndexRelatedChanges() || pathChanged))
                                                   || externalNodeChanged;
-                    if (monitor != null && queryable && shouldUpdateIndexes) {
-                        monitor.recordUpdate(workspaceName, key, newNodePath, primaryType, mixinTypes, node.getProperties(this));
+                    if (updateMonitor != null && queryable && shouldUpdateIndexes) {
+                        updateMonitor.recordUpdate(workspaceName, key, newNodePath, primaryType, mixinTypes, node.getProperties(this));
 
                         if (pathChanged) {
                             // we're dealing with a path change, so in case there is a PERSISTED node at "new path" we need to
@@ -1257,12 +1345,12 @@ public class WritableSessionCache extends AbstractSessionCache {
                                                                                                  newNodePath.getLastSegment()
                                                                                                             .getIndex());
                                 if (persistedNodeAtNewPath != null) {
-                                    monitor.recordRemove(workspaceName, Arrays.asList(persistedNodeAtNewPath.getKey()));
+                                    updateMonitor.recordRemove(workspaceName, Arrays.asList(persistedNodeAtNewPath.getKey()));
                                 }
                             } // otherwise the parent was not PERSISTED and there's nothing to do
                               // for each of the children of the node which has the changed path, we need to update the path
                               // in the indexes
-                            updateIndexesForAllChildren(node, sessionPaths, workspaceName, monitor);
+                            updateIndexesForAllChildren(node, sessionPaths, workspaceName, updateMonitor);
                         }
                     }
 
@@ -1312,8 +1400,20 @@ public class WritableSessionCache extends AbstractSessionCache {
             }
         }
 
-        if (removedNodes != null) {
-            assert !removedNodes.isEmpty();
+        // Write all of the new documents in one operation ...
+        if (!newDocuments.isEmpty()) {
+            documentStore.storeDocuments(newDocuments);
+        }
+        if (!createdDocuments.isEmpty()) {
+            // Look up whether any of the documents exist all at once, rather than one round trip per new node ...
+            Set<String> existingKeys = documentStore.storeDocumentsIfAbsent(createdDocuments);
+            if (!existingKeys.isEmpty()) {
+                // We couldn't create the entry because one already existed ...
+                throw new DocumentAlreadyExistsException(existingKeys.iterator().next());
+            }
+        }
+
+        if (removedNodes != null && !removedNodes.isEmpty()) {
             // we need to collect the referrers at the end only, so that other potential changes in references have been computed
             Set<NodeKey> referrers = new HashSet<NodeKey>();
             for (NodeKey removedKey : removedNodes) {
@@ -1335,9 +1435,11 @@ public class WritableSessionCache extends AbstractSessionCache {
             // Now remove all of the nodes from the documentStore.
             // Note 2: we do this last because the children are removed from their parent before the removal is handled above
             // (see Node 1), meaning getting the path and other information for removed nodes never would work properly.
+            List<String> removedKeys = new ArrayList<>(removedNodes.size());
             for (NodeKey removedKey : removedNodes) {
-                documentStore.remove(removedKey.toString());
+                removedKeys.add(removedKey.toString());
             }
+            documentStore.removeAll(removedKeys);
 
             // And record the removals via the monitor ...
             if (monitor != null) {
@@ -1381,34 +1483,169 @@ public class WritableSessionCache extends AbstractSessionCache {
         }
     }
 
-    private void lockAndPurgeCache( Iterable<NodeKey> changedNodesInOrder ) {
+    /**
+     * Lock in the document store the existing nodes that are changed in this session and (optionally) another session, and then
+     * purge them from the workspace caches.
+     * <p>
+     * The nodes are locked without waiting. If another transaction has locked any of them, this method throws a
+     * {@link LockContentionException} so that the caller can roll back its transaction, which releases any locks it already
+     * holds, and pause before trying again; a save therefore never waits while holding locks that the other transaction may need.
+     * Only once the nodes have been contended for {@link #MAXIMUM_TIME_RETRYING_LOCK}, or when the save is part of a user
+     * transaction that cannot be rolled back, does this method wait in the store's lock queue, locking the nodes one at a time in
+     * the order of their keys so that concurrent saves wait for each other rather than deadlock.
+     * </p>
+     * <p>
+     * When the nodes cannot all be locked at once, they are locked one at a time to find the node that another transaction holds.
+     * Once this save holds the lock on such a node, the monitor records that node's key, the time since this save first found
+     * it locked, and the number of attempts made to lock it.
+     * </p>
+     *
+     * @param changedNodesInOrder the keys of the nodes in this session that are to be saved; may not be null
+     * @param that the other session whose changes are saved at the same time; may be null
+     * @param monitor the monitor that records the time spent waiting for locks; may be null
+     * @param attempts the attempts made so far by this save to lock the nodes; may not be null
+     * @throws LockContentionException if another transaction has locked one of the nodes and the caller should try again
+     * @throws org.infinispan.util.concurrent.TimeoutException if a node could not be locked
+     */
+    private void lockAndPurgeCache( Iterable<NodeKey> changedNodesInOrder,
+                                    WritableSessionCache that,
+                                    Monitor monitor,
+                                    LockAttempts attempts ) {
         DocumentStore documentStore = workspaceCache().documentStore();
 
         if (documentStore.updatesRequirePreparing()) {
             LOGGER.debug("Locking nodes in Infinispan");
-            // Try to acquire from the DocumentStore locks for all the nodes that we're going to change ...
-            Set<String> keysToLock = new HashSet<String>();
-
-            for (NodeKey key : changedNodesInOrder) {
-                SessionNode node = changedNodes.get(key);
-                if (node != REMOVED && !node.isNew()) {
-                    String keyStr = key.toString();
-                    keysToLock.add(keyStr);
-                }
-            }
-            if (!documentStore.prepareDocumentsForUpdate(keysToLock)) {
-                // try again ...
-                if (!documentStore.prepareDocumentsForUpdate(keysToLock)) {
-                    throw new org.infinispan.util.concurrent.TimeoutException("Unable to acquire storage locks: " + keysToLock);
+            // Find the keys of all the nodes that we're going to change, in the order they are to be locked ...
+            SortedSet<String> keysToLock = new TreeSet<String>();
+            addKeysToLock(changedNodesInOrder, keysToLock);
+            if (that != null) that.addKeysToLock(that.changedNodesInOrder, keysToLock);
+
+            if (!keysToLock.isEmpty()) {
+                // Most of the time none of the nodes are locked by other transactions, so try to lock them all at once ...
+                if (!documentStore.tryPrepareDocumentsForUpdate(keysToLock)) {
+                    // Lock the nodes one at a time in order, to find the node that is locked by another transaction ...
+                    for (String key : keysToLock) {
+                        Collection<String> keyToLock = Collections.singleton(key);
+                        if (!documentStore.tryPrepareDocumentsForUpdate(keyToLock)) {
+                            attempts.contended(key);
+                            if (attempts.canRetry()) {
+                                throw new LockContentionException(key);
+                            }
+                            // The node is still locked, so wait for it ...
+                            if (!documentStore.prepareDocumentsForUpdate(keyToLock)) {
+                                String msg = "Unable to acquire storage lock: " + key;
+                                throw new org.infinispan.util.concurrent.TimeoutException(msg);
+                            }
+                        }
+                        attempts.acquired(key, monitor);
+                    }
                 }
+                // Record the waits for any nodes that were contended by earlier attempts ...
+                attempts.acquiredAll(monitor);
             }
             // we need to purge those keys from the ws cache, otherwise we risk leaking changes, given that the WS cache is global
             workspaceCache().purge(changedNodesInOrder);
+            if (that != null) that.workspaceCache().purge(that.changedNodesInOrder);
         } else {
             LOGGER.debug("Infinispan is not configured with pessimistic locks, no nodes will be locked");
         }
     }
 
+    private void addKeysToLock( Iterable<NodeKey> changedNodesInOrder,
+                                Set<String> keysToLock ) {
+        String localSourceKey = workspaceCache().getRootKey().getSourceKey();
+        for (NodeKey key : changedNodesInOrder) {
+            SessionNode node = changedNodes.get(key);
+            if (node == REMOVED) continue;
+            if (!node.isNew() || localSourceKey.equalsIgnoreCase(key.getSourceKey())) {
+                // New local nodes are locked too, so that no other transaction can create them before they're written ...
+                keysToLock.add(key.toString());
+            }
+        }
+    }
+
+    /**
+     * Get a random pause of at least 1 millisecond and no more than the supplied maximum.
+     *
+     * @param maximumPause the maximum pause in milliseconds; must be positive
+     * @return the pause in milliseconds
+     */
+    private static long randomPause( long maximumPause ) {
+        return 1L + ThreadLocalRandom.current().nextLong(maximumPause);
+    }
+
+    /**
+     * The attempts made by a single save to lock its nodes, which determine how long to pause before the next attempt and when
+     * to stop pausing and instead wait in the store's lock queue. The attempts also track, for each node that was found to be
+     * locked by another transaction, when the save first had to wait for it and how many attempts found it locked.
+     */
+    @NotThreadSafe
+    private static final class LockAttempts {
+        private final long deadline;
+        private final Map<String, ContendedKey> contendedKeys = new HashMap<String, ContendedKey>();
+        private long pause = INITIAL_PAUSE_BEFORE_RETRYING_LOCK;
+
+        protected LockAttempts( boolean canRollback ) {
+            long start = System.nanoTime();
+            this.deadline = canRollback ? start + TimeUnit.MILLISECONDS.toNanos(MAXIMUM_TIME_RETRYING_LOCK) : start;
+        }
+
+        protected boolean canRetry() {
+            return System.nanoTime() < deadline;
+        }
+
+        protected void contended( String key ) {
+            ContendedKey contended = contendedKeys.get(key);
+            if (contended == null) {
+                contended = new ContendedKey();
+                contendedKeys.put(key, contended);
+            }
+            ++contended.attempts;
+        }
+
+        protected void acquired( String key,
+                                 Monitor monitor ) {
+            ContendedKey contended = contendedKeys.remove(key);
+            if (contended != null && monitor != null) {
+                // The attempt that acquired the lock is counted, too ...
+                monitor.recordLockWait(key, System.nanoTime() - contended.since, contended.attempts + 1);
+            }
+        }
+
+        protected void acquiredAll( Monitor monitor ) {
+            for (String key : new ArrayList<String>(contendedKeys.keySet())) {
+                acquired(key, monitor);
+            }
+        }
+
+        protected long nextPause() {
+            long result = randomPause(pause);
+            pause = Math.min(pause * 2, MAXIMUM_PAUSE_BEFORE_RETRYING_LOCK);
+            return result;
+        }
+    }
+
+    /**
+     * The wait of a single save for the lock on one node.
+     */
+    private static final class ContendedKey {
+        protected final long since = System.nanoTime();
+        protected int attempts;
+    }
+
+    /**
+     * Signals that another transaction has locked one of the nodes being saved, and that the save should release its locks and
+     * try again.
+     */
+    private static final class LockContentionException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        protected LockContentionException( String key ) {
+            // The stack trace is never used ...
+            super("Storage lock held by another transaction: " + key, null, false, false);
+        }
+    }
+
     protected SessionNode add( SessionNode newNode ) {
         assert newNode != REMOVED;
         Lock lock = this.lock.writeLock();
@@ -274,6 +274,23 @@ public class FederatedDocumentStore implements DocumentStore {
         return null;
     }
 
+    @Override
+    public Map<String, SchematicEntry> getAll( Collection<String> keys ) {
+        List<String> localKeys = new ArrayList<>(keys.size());
+        List<String> externalKeys = new ArrayList<>();
+        for (String key : keys) {
+            if (isLocalSource(key)) localKeys.add(key);
+            else externalKeys.add(key);
+        }
+        if (externalKeys.isEmpty()) return localStore().getAll(localKeys);
+        Map<String, SchematicEntry> entries = new HashMap<>(localStore().getAll(localKeys));
+        for (String key : externalKeys) {
+            SchematicEntry entry = get(key);
+            if (entry != null) entries.put(key, entry);
+        }
+        return entries;
+    }
+
     private EditableDocument updateCachingTtl( Connector connector,
                                                EditableDocument editableDocument ) {
         DocumentReader reader = new FederatedDocumentReader(translator(), editableDocument);
@@ -321,6 +338,52 @@ public class FederatedDocumentStore implements DocumentStore {
         return false;
     }
 
+    @Override
+    public void storeDocuments( Map<String, Document> documents ) {
+        Map<String, Document> localDocuments = new LinkedHashMap<String, Document>();
+        for (Map.Entry<String, Document> entry : documents.entrySet()) {
+            String key = entry.getKey();
+            if (isLocalSource(key)) {
+                localDocuments.put(key, entry.getValue());
+            } else {
+                storeDocument(key, entry.getValue());
+            }
+        }
+        localStore().storeDocuments(localDocuments);
+    }
+
+    @Override
+    public Set<String> storeDocumentsIfAbsent( Map<String, Document> documents ) {
+        Map<String, Document> localDocuments = new LinkedHashMap<String, Document>();
+        Set<String> existingKeys = new HashSet<String>();
+        for (Map.Entry<String, Document> entry : documents.entrySet()) {
+            String key = entry.getKey();
+            if (isLocalSource(key)) {
+                localDocuments.put(key, entry.getValue());
+            } else if (storeDocument(key, entry.getValue()) != null) {
+                existingKeys.add(key);
+            }
+        }
+        existingKeys.addAll(localStore().storeDocumentsIfAbsent(localDocuments));
+        return existingKeys;
+    }
+
+    @Override
+    public void removeAll( Collection<String> keys ) {
+        List<String> localKeys = new ArrayList<String>(keys.size());
+        for (String key : keys) {
+            if (isLocalSource(key)) {
+                localKeys.add(key);
+            } else {
+                remove(key);
+            }
+        }
+        localStore().removeAll(localKeys);
+        for (String key : localKeys) {
+            connectors.internalNodeRemoved(key);
+        }
+    }
+
     @Override
     public boolean updatesRequirePreparing() {
         return localDocumentStore.updatesRequirePreparing();
@@ -331,6 +394,11 @@ public class FederatedDocumentStore implements DocumentStore {
         return localDocumentStore.prepareDocumentsForUpdate(keys);
     }
 
+    @Override
+    public boolean tryPrepareDocumentsForUpdate( Collection<String> keys ) {
+        return localDocumentStore.tryPrepareDocumentsForUpdate(keys);
+    }
+
     @Override
     public TransactionManager transactionManager() {
         return localStore().transactionManager();
@@ -0,0 +1,809 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.index.local;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.mapdb.Atomic;
+import org.mapdb.DB;
+import org.mapdb.Fun;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.NodeTypes;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.query.model.FullTextSearch.CompoundTerm;
+import org.modeshape.jcr.query.model.FullTextSearch.Conjunction;
+import org.modeshape.jcr.query.model.FullTextSearch.Disjunction;
+import org.modeshape.jcr.query.model.FullTextSearch.NegationTerm;
+import org.modeshape.jcr.query.model.FullTextSearch.SimpleTerm;
+import org.modeshape.jcr.query.model.FullTextSearch.Term;
+import org.modeshape.jcr.spi.index.IndexColumnDefinition;
+import org.modeshape.jcr.spi.index.IndexDefinition;
+import org.modeshape.jcr.spi.index.provider.Index;
+import org.modeshape.jcr.spi.index.provider.IndexFilter;
+import org.modeshape.jcr.spi.index.provider.IndexStatistics;
+import org.modeshape.jcr.spi.index.provider.ResultWriter;
+import org.modeshape.jcr.value.BinaryValue;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.Property;
+import org.modeshape.jcr.value.StringFactory;
+import org.modeshape.jcr.value.ValueFormatException;
+import org.modeshape.jcr.value.binary.AbstractBinaryStore;
+import org.modeshape.jcr.value.binary.BinaryStore;
+import org.modeshape.jcr.value.binary.BinaryStoreException;
+import org.modeshape.jcr.value.binary.StoredBinaryValue;
+
+/**
+ * An {@link Index} owned by the {@link LocalIndexProvider} that answers full-text search constraints using an inverted index
+ * stored in MapDB B-trees. The text of the properties named by the definition's columns is split into lower-case terms, and the
+ * index stores a posting for each (term, node key, column) with the number of times the term appears in that column of the
+ * node. The index also stores the number of nodes that contain each term (the document frequency), the number of terms in each
+ * node, and the number of nodes in the index, so that the matching nodes can be scored using TF-IDF without loading any nodes.
+ * <p>
+ * The text of binary values is indexed once it has been extracted. When a node is indexed before the text of one of its binary
+ * values is available, the index records that the node is waiting for the binary value's text, and adds the terms when the
+ * {@link LocalIndexWriter} is {@link LocalIndexWriter#addBinaryToIndex told} that the text has been extracted.
+ * </p>
+ * <p>
+ * Phrases are matched as a conjunction of their terms, and the only supported wildcard is a trailing '*' (e.g., "jcr*"), which
+ * matches all terms with the given prefix. Phrases, wildcards and negations may match more nodes than the search does, so the
+ * results of such searches are only {@link #isExact(Term) exact} for searches of single words.
+ * </p>
+ */
+@ThreadSafe
+class LocalFullTextIndex implements Index {
+
+    /**
+     * The name of the {@link IndexFilter#getParameters() parameter} whose value is the {@link Search} that is to be answered by
+     * the index.
+     */
+    static final String SEARCH_PARAMETER = "search";
+
+    /**
+     * Terms longer than this are not indexed, since they are rarely words and would only bloat the index.
+     */
+    private static final int MAX_TERM_LENGTH = 64;
+
+    private final String name;
+    private final String providerName;
+    private final IndexDefinition defn;
+    private final List<Name> columns;
+    private final StringFactory strings;
+    private final ExecutionContext context;
+    private final ConcurrentNavigableMap<Fun.Tuple3<Object, Object, Object>, Integer> postings;
+    private final NavigableSet<Fun.Tuple3<Object, Object, Object>> termsByKey;
+    private final ConcurrentNavigableMap<String, Integer> documentFrequencies;
+    private final Map<String, Integer> documentLengths;
+    private final Atomic.Long documentCount;
+    private final NavigableSet<Fun.Tuple3<Object, Object, Object>> pendingByBinary;
+    private final NavigableSet<Fun.Tuple3<Object, Object, Object>> pendingByKey;
+    private final Statistics statistics = new Statistics();
+
+    LocalFullTextIndex( IndexDefinition defn,
+                        String providerName,
+                        DB db,
+                        ExecutionContext context ) {
+        this.name = defn.getName();
+        this.providerName = providerName;
+        this.defn = defn;
+        List<Name> columns = new ArrayList<>();
+        for (IndexColumnDefinition column : defn) {
+            columns.add(column.getPropertyName());
+        }
+        this.columns = Collections.unmodifiableList(columns);
+        this.strings = context.getValueFactories().getStringFactory();
+        this.context = context;
+        this.postings = db.getTreeMap(postingsName(name));
+        this.termsByKey = db.getTreeSet(termsByKeyName(name));
+        this.documentFrequencies = db.getTreeMap(documentFrequenciesName(name));
+        this.documentLengths = db.getTreeMap(documentLengthsName(name));
+        this.documentCount = db.getAtomicLong(documentCountName(name));
+        this.pendingByBinary = db.getTreeSet(pendingByBinaryName(name));
+        this.pendingByKey = db.getTreeSet(pendingByKeyName(name));
+    }
+
+    static String postingsName( String indexName ) {
+        return indexName + "/postings";
+    }
+
+    static String termsByKeyName( String indexName ) {
+        return indexName + "/termsByKey";
+    }
+
+    static String documentFrequenciesName( String indexName ) {
+        return indexName + "/documentFrequencies";
+    }
+
+    static String documentLengthsName( String indexName ) {
+        return indexName + "/documentLengths";
+    }
+
+    static String documentCountName( String indexName ) {
+        return indexName + "/documentCount";
+    }
+
+    static String pendingByBinaryName( String indexName ) {
+        return indexName + "/pendingByBinary";
+    }
+
+    static String pendingByKeyName( String indexName ) {
+        return indexName + "/pendingByKey";
+    }
+
+    @Override
+    public String getProviderName() {
+        return providerName;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean supportsFullTextConstraints() {
+        return true;
+    }
+
+    @Override
+    public IndexStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Get the definition of this index.
+     *
+     * @return the index definition; never null
+     */
+    IndexDefinition getDefinition() {
+        return defn;
+    }
+
+    /**
+     * Get the position of the column for the named property.
+     *
+     * @param name the property name; may not be null
+     * @return the column position, or -1 if the property is not indexed by this index
+     */
+    int columnOf( Name name ) {
+        return columns.indexOf(name);
+    }
+
+    /**
+     * Determine whether nodes with the given primary type and mixin types are to be included in this index.
+     *
+     * @param primaryType the name of the node's primary type; may not be null
+     * @param mixinTypes the names of the node's mixin types; may be null or empty
+     * @param nodeTypes the current node types; may not be null
+     * @return true if the node's types are or subtype the index definition's node type, or false otherwise
+     */
+    boolean appliesTo( Name primaryType,
+                       Set<Name> mixinTypes,
+                       NodeTypes nodeTypes ) {
+        Name indexedType = defn.getNodeTypeName();
+        return nodeTypes.isTypeOrSubtype(primaryType, indexedType) || nodeTypes.isTypeOrSubtype(mixinTypes, indexedType);
+    }
+
+    /**
+     * Estimate the number of nodes that satisfy the supplied search.
+     *
+     * @param search the search; may not be null
+     * @return the estimated number of nodes; never negative
+     */
+    long estimateCardinality( Search search ) {
+        return estimateCardinality(search.term);
+    }
+
+    private long estimateCardinality( Term term ) {
+        if (term instanceof SimpleTerm) {
+            long max = 0L;
+            for (String token : tokensOf(((SimpleTerm)term).getValue(), true)) {
+                if (token.endsWith("*")) return documentCount.get();
+                Integer df = documentFrequencies.get(token);
+                max = Math.max(max, df != null ? df : 0);
+            }
+            return max;
+        }
+        if (term instanceof NegationTerm) {
+            return documentCount.get();
+        }
+        if (term instanceof Disjunction) {
+            long sum = 0L;
+            for (Term disjunct : (Disjunction)term) {
+                sum += estimateCardinality(disjunct);
+            }
+            return Math.min(sum, documentCount.get());
+        }
+        if (term instanceof Conjunction) {
+            long min = documentCount.get();
+            for (Term conjunct : (Conjunction)term) {
+                if (conjunct instanceof NegationTerm) continue;
+                min = Math.min(min, estimateCardinality(conjunct));
+            }
+            return min;
+        }
+        return documentCount.get();
+    }
+
+    /**
+     * Determine whether this index can evaluate the supplied term. Only trailing wildcards are supported.
+     *
+     * @param term the term; may not be null
+     * @return true if the term can be answered by this index, or false otherwise
+     */
+    static boolean canEvaluate( Term term ) {
+        if (term instanceof SimpleTerm) {
+            SimpleTerm simple = (SimpleTerm)term;
+            if (!simple.containsWildcards()) return true;
+            String value = simple.getValue();
+            if (simple.isQuotingRequired() || !value.endsWith("*")) return false;
+            String prefix = value.substring(0, value.length() - 1);
+            return prefix.length() > 0 && !new SimpleTerm(prefix).containsWildcards();
+        }
+        if (term instanceof NegationTerm) {
+            return canEvaluate(((NegationTerm)term).getNegatedTerm());
+        }
+        if (term instanceof CompoundTerm) {
+            for (Term child : (CompoundTerm)term) {
+                if (!canEvaluate(child)) return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Determine whether the nodes found by this index for the supplied term are exactly those that satisfy the term. Phrases are
+     * matched without regard to the order of their terms, wildcards match terms rather than the text, and negations are
+     * evaluated against all of the nodes in the index, so the query must still check the nodes found for such terms.
+     *
+     * @param term the term; may not be null
+     * @return true if the nodes found by this index satisfy the term, or false if the index may find other nodes
+     */
+    static boolean isExact( Term term ) {
+        if (term instanceof SimpleTerm) {
+            SimpleTerm simple = (SimpleTerm)term;
+            if (simple.containsWildcards()) return false;
+            String value = simple.getValue();
+            List<String> tokens = tokensOf(value, false);
+            return tokens.size() == 1 && tokens.get(0).length() == value.length();
+        }
+        if (term instanceof CompoundTerm) {
+            for (Term child : (CompoundTerm)term) {
+                if (!isExact(child)) return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Update the entries for the supplied node. Any existing entries for the node are removed before the new entries are added.
+     *
+     * @param nodeKey the string form of the node's key; may not be null
+     * @param properties the node's properties keyed by name; may not be null
+     */
+    void update( String nodeKey,
+                 Map<Name, Property> properties ) {
+        // Compute the terms (and find the binary values) before obtaining the lock ...
+        List<Map<String, Integer>> termsByColumn = new ArrayList<>(columns.size());
+        List<Fun.Tuple2<BinaryValue, Integer>> binaries = new LinkedList<>();
+        for (int column = 0; column != columns.size(); ++column) {
+            Map<String, Integer> counts = new HashMap<>();
+            Property property = properties.get(columns.get(column));
+            if (property != null) {
+                for (Object value : property) {
+                    if (value instanceof BinaryValue) {
+                        binaries.add(Fun.t2((BinaryValue)value, column));
+                    } else if (value != null) {
+                        addTerms(textOf(value), counts);
+                    }
+                }
+            }
+            termsByColumn.add(counts);
+        }
+        List<Map<String, Integer>> binaryTerms = new ArrayList<>(binaries.size());
+        for (Fun.Tuple2<BinaryValue, Integer> binary : binaries) {
+            String text = extractedTextOf(binary.a);
+            binaryTerms.add(text != null ? termsOf(text) : null);
+        }
+        synchronized (this) {
+            removeEntries(nodeKey);
+            for (int column = 0; column != termsByColumn.size(); ++column) {
+                addEntries(nodeKey, column, termsByColumn.get(column));
+            }
+            Iterator<Map<String, Integer>> terms = binaryTerms.iterator();
+            for (Fun.Tuple2<BinaryValue, Integer> binary : binaries) {
+                Map<String, Integer> counts = terms.next();
+                if (counts != null) {
+                    addEntries(nodeKey, binary.b, counts);
+                } else {
+                    // The text has not yet been extracted, so add the terms when it is ...
+                    String sha1 = binary.a.getHexHash();
+                    pendingByBinary.add(t3(sha1, nodeKey, binary.b));
+                    pendingByKey.add(t3(nodeKey, sha1, binary.b));
+                }
+            }
+        }
+        // The text may have been extracted since we looked, in which case we may have missed the notification ...
+        for (Fun.Tuple2<BinaryValue, Integer> binary : binaries) {
+            String sha1 = binary.a.getHexHash();
+            if (hasPending(sha1)) {
+                String text = extractedTextOf(binary.a);
+                if (text != null) binaryTextAvailable(sha1, text);
+            }
+        }
+    }
+
+    /**
+     * Add the terms in the supplied text to all of the nodes that are waiting for the text of the binary value with the given
+     * SHA-1 hash.
+     *
+     * @param sha1 the hexadecimal SHA-1 hash of the binary value; may not be null
+     * @param text the text extracted from the binary value; may not be null
+     */
+    void binaryTextAvailable( String sha1,
+                              String text ) {
+        if (!hasPending(sha1)) return;
+        Map<String, Integer> counts = termsOf(text);
+        synchronized (this) {
+            NavigableSet<Fun.Tuple3<Object, Object, Object>> waiting = pendingFor(pendingByBinary, sha1);
+            for (Fun.Tuple3<Object, Object, Object> entry : new LinkedList<>(waiting)) {
+                addEntries((String)entry.b, (Integer)entry.c, counts);
+                pendingByBinary.remove(entry);
+                pendingByKey.remove(t3(entry.b, sha1, entry.c));
+            }
+        }
+    }
+
+    /**
+     * Determine whether any nodes are waiting for the text of the binary value with the given SHA-1 hash.
+     *
+     * @param sha1 the hexadecimal SHA-1 hash of the binary value; may not be null
+     * @return true if at least one node is waiting for the binary value's text, or false otherwise
+     */
+    boolean hasPending( String sha1 ) {
+        return !pendingFor(pendingByBinary, sha1).isEmpty();
+    }
+
+    /**
+     * Remove all entries for the supplied node.
+     *
+     * @param nodeKey the string form of the node's key; may not be null
+     */
+    synchronized void remove( String nodeKey ) {
+        removeEntries(nodeKey);
+    }
+
+    /**
+     * Remove all entries from this index.
+     */
+    synchronized void removeAll() {
+        postings.clear();
+        termsByKey.clear();
+        documentFrequencies.clear();
+        documentLengths.clear();
+        documentCount.set(0L);
+        pendingByBinary.clear();
+        pendingByKey.clear();
+        statistics.reset();
+    }
+
+    private void addEntries( String nodeKey,
+                             int column,
+                             Map<String, Integer> counts ) {
+        if (counts.isEmpty()) return;
+        int length = 0;
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            String term = entry.getKey();
+            int count = entry.getValue();
+            if (termsFor(nodeKey, term).isEmpty()) {
+                // This is the first time the term appears in the node ...
+                Integer df = documentFrequencies.get(term);
+                documentFrequencies.put(term, df != null ? df + 1 : 1);
+            }
+            Fun.Tuple3<Object, Object, Object> posting = t3(term, nodeKey, column);
+            Integer existing = postings.get(posting);
+            postings.put(posting, existing != null ? existing + count : count);
+            termsByKey.add(t3(nodeKey, term, column));
+            length += count;
+        }
+        Integer existingLength = documentLengths.get(nodeKey);
+        if (existingLength == null) documentCount.incrementAndGet();
+        documentLengths.put(nodeKey, existingLength != null ? existingLength + length : length);
+        statistics.changed();
+    }
+
+    private void removeEntries( String nodeKey ) {
+        NavigableSet<Fun.Tuple3<Object, Object, Object>> pending = pendingFor(pendingByKey, nodeKey);
+        if (!pending.isEmpty()) {
+            for (Fun.Tuple3<Object, Object, Object> entry : new LinkedList<>(pending)) {
+                pendingByBinary.remove(t3(entry.b, nodeKey, entry.c));
+                pendingByKey.remove(entry);
+            }
+        }
+        if (documentLengths.remove(nodeKey) == null) return;
+        documentCount.decrementAndGet();
+        String previousTerm = null;
+        // Copy the entries before removing them, since the set is a view of the B-tree ...
+        for (Fun.Tuple3<Object, Object, Object> entry : new LinkedList<>(termsFor(nodeKey, null))) {
+            String term = (String)entry.b;
+            postings.remove(t3(term, nodeKey, entry.c));
+            termsByKey.remove(entry);
+            if (!term.equals(previousTerm)) {
+                // The entries are ordered by term, so this is the first entry for the term ...
+                Integer df = documentFrequencies.get(term);
+                if (df == null || df <= 1) documentFrequencies.remove(term);
+                else documentFrequencies.put(term, df - 1);
+                previousTerm = term;
+            }
+        }
+        statistics.changed();
+    }
+
+    private NavigableSet<Fun.Tuple3<Object, Object, Object>> termsFor( String nodeKey,
+                                                                         String term ) {
+        if (term == null) {
+            return termsByKey.subSet(t3(nodeKey, null, null), true, t3(nodeKey, Fun.HI, Fun.HI), true);
+        }
+        return termsByKey.subSet(t3(nodeKey, term, null), true, t3(nodeKey, term, Fun.HI), true);
+    }
+
+    private static NavigableSet<Fun.Tuple3<Object, Object, Object>> pendingFor( NavigableSet<Fun.Tuple3<Object, Object, Object>> pending,
+                                                                                  String first ) {
+        return pending.subSet(t3(first, null, null), true, t3(first, Fun.HI, Fun.HI), true);
+    }
+
+    private static Fun.Tuple3<Object, Object, Object> t3( Object a,
+                                                          Object b,
+                                                          Object c ) {
+        return Fun.<Object, Object, Object>t3(a, b, c);
+    }
+
+    private String textOf( Object value ) {
+        try {
+            return strings.create(value);
+        } catch (ValueFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get the text of the supplied binary value, without waiting for the text to be extracted.
+     *
+     * @param binary the binary value; may not be null
+     * @return the text, or null if the text has not (yet) been extracted
+     */
+    String extractedTextOf( BinaryValue binary ) {
+        BinaryStore store = context.getBinaryStore();
+        if (store == null) return null;
+        try {
+            if (binary instanceof StoredBinaryValue && store instanceof AbstractBinaryStore) {
+                // Never wait for the text to be extracted ...
+                return ((AbstractBinaryStore)store).getExtractedText(binary);
+            }
+            return store.getText(binary);
+        } catch (BinaryStoreException e) {
+            // The text is not available ...
+            return null;
+        }
+    }
+
+    /**
+     * Split the supplied text into the lower-case terms that are stored in the index, and count the number of times each term
+     * appears.
+     *
+     * @param text the text; may be null
+     * @return the number of times each term appears in the text; never null
+     */
+    static Map<String, Integer> termsOf( String text ) {
+        Map<String, Integer> counts = new HashMap<>();
+        addTerms(text, counts);
+        return counts;
+    }
+
+    private static void addTerms( String text,
+                                  Map<String, Integer> counts ) {
+        for (String term : tokensOf(text, false)) {
+            Integer count = counts.get(term);
+            counts.put(term, count != null ? count + 1 : 1);
+        }
+    }
+
+    /**
+     * Split the supplied text into lower-case terms consisting of letters and digits.
+     *
+     * @param text the text; may be null
+     * @param allowTrailingWildcard true if a '*' at the end of the text is to be kept at the end of the last term
+     * @return the terms in the order they appear in the text; never null
+     */
+    static List<String> tokensOf( String text,
+                                  boolean allowTrailingWildcard ) {
+        if (text == null || text.isEmpty()) return Collections.emptyList();
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        int length = text.length();
+        for (int i = 0; i != length; ++i) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                token.append(Character.toLowerCase(c));
+            } else {
+                if (allowTrailingWildcard && c == '*' && i == length - 1 && token.length() != 0) token.append(c);
+                addToken(token, tokens);
+            }
+        }
+        addToken(token, tokens);
+        return tokens;
+    }
+
+    private static void addToken( StringBuilder token,
+                                  List<String> tokens ) {
+        if (token.length() != 0 && token.length() <= MAX_TERM_LENGTH) tokens.add(token.toString());
+        token.setLength(0);
+    }
+
+    /**
+     * Compute the scores of all of the nodes that satisfy the search.
+     *
+     * @param search the search; may not be null
+     * @return the scores keyed by the string form of the node keys; never null
+     */
+    Map<String, Float> evaluate( Search search ) {
+        return evaluate(search.term, search.column);
+    }
+
+    private Map<String, Float> evaluate( Term term,
+                                         int column ) {
+        if (term instanceof SimpleTerm) {
+            return evaluate((SimpleTerm)term, column);
+        }
+        if (term instanceof NegationTerm) {
+            // Every node that does not satisfy the negated term ...
+            Map<String, Float> excluded = evaluate(((NegationTerm)term).getNegatedTerm(), column);
+            Map<String, Float> result = new HashMap<>();
+            for (String nodeKey : documentLengths.keySet()) {
+                if (!excluded.containsKey(nodeKey)) result.put(nodeKey, 1.0f);
+            }
+            return result;
+        }
+        if (term instanceof Disjunction) {
+            Map<String, Float> result = new HashMap<>();
+            for (Term disjunct : (Disjunction)term) {
+                for (Map.Entry<String, Float> entry : evaluate(disjunct, column).entrySet()) {
+                    Float existing = result.get(entry.getKey());
+                    result.put(entry.getKey(), existing != null ? existing + entry.getValue() : entry.getValue());
+                }
+            }
+            return result;
+        }
+        if (term instanceof Conjunction) {
+            Map<String, Float> result = null;
+            List<Term> negated = new LinkedList<>();
+            for (Term conjunct : (Conjunction)term) {
+                if (conjunct instanceof NegationTerm) {
+                    negated.add(((NegationTerm)conjunct).getNegatedTerm());
+                    continue;
+                }
+                result = intersect(result, evaluate(conjunct, column));
+            }
+            if (result == null) {
+                // All of the terms are negated ...
+                result = evaluate(new NegationTerm(new Disjunction(negated)), column);
+            } else {
+                for (Term excluded : negated) {
+                    result.keySet().removeAll(evaluate(excluded, column).keySet());
+                }
+            }
+            return result;
+        }
+        return new HashMap<>();
+    }
+
+    private Map<String, Float> evaluate( SimpleTerm term,
+                                         int column ) {
+        // A phrase (or a term that the tokenizer splits) is matched as a conjunction of its terms ...
+        Map<String, Float> result = null;
+        for (String token : tokensOf(term.getValue(), true)) {
+            result = intersect(result, token.endsWith("*") ? scorePrefix(token.substring(0, token.length() - 1), column) : score(token,
+                                                                                                                                   column));
+        }
+        return result != null ? result : new HashMap<String, Float>();
+    }
+
+    private Map<String, Float> scorePrefix( String prefix,
+                                            int column ) {
+        Map<String, Float> result = new HashMap<>();
+        // The terms are sorted, so all of the terms with the prefix are together ...
+        for (String term : documentFrequencies.tailMap(prefix, true).keySet()) {
+            if (!term.startsWith(prefix)) break;
+            for (Map.Entry<String, Float> entry : score(term, column).entrySet()) {
+                Float existing = result.get(entry.getKey());
+                result.put(entry.getKey(), existing != null ? Math.max(existing, entry.getValue()) : entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    private Map<String, Float> score( String term,
+                                      int column ) {
+        Map<String, Float> result = new HashMap<>();
+        Integer df = documentFrequencies.get(term);
+        if (df == null) return result;
+        // Rare terms are more significant than common terms ...
+        double idf = 1.0d + Math.log((double)Math.max(documentCount.get(), 1L) / (df + 1));
+        if (idf <= 0.0d) idf = 0.01d;
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (Map.Entry<Fun.Tuple3<Object, Object, Object>, Integer> posting : postingsFor(term).entrySet()) {
+            Fun.Tuple3<Object, Object, Object> key = posting.getKey();
+            if (column >= 0 && (Integer)key.c != column) continue;
+            String nodeKey = (String)key.b;
+            Integer existing = frequencies.get(nodeKey);
+            frequencies.put(nodeKey, existing != null ? existing + posting.getValue() : posting.getValue());
+        }
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            Integer length = documentLengths.get(entry.getKey());
+            // Occurrences in shorter text are more significant than occurrences in longer text ...
+            double norm = Math.sqrt(length != null && length > 0 ? length : 1);
+            result.put(entry.getKey(), (float)(Math.sqrt(entry.getValue()) * idf / norm));
+        }
+        return result;
+    }
+
+    private ConcurrentNavigableMap<Fun.Tuple3<Object, Object, Object>, Integer> postingsFor( String term ) {
+        return postings.subMap(t3(term, null, null), true, t3(term, Fun.HI, Fun.HI), true);
+    }
+
+    private static Map<String, Float> intersect( Map<String, Float> previous,
+                                                 Map<String, Float> next ) {
+        if (previous == null) return next;
+        Map<String, Float> result = new HashMap<>();
+        for (Map.Entry<String, Float> entry : previous.entrySet()) {
+            Float score = next.get(entry.getKey());
+            if (score != null) result.put(entry.getKey(), entry.getValue() + score);
+        }
+        return result;
+    }
+
+    @Override
+    public Operation filter( IndexFilter filter ) {
+        final Search search = (Search)filter.getParameters().get(SEARCH_PARAMETER);
+        return new Operation() {
+            private Iterator<Map.Entry<String, Float>> results;
+
+            @Override
+            public boolean getNextBatch( ResultWriter writer,
+                                         int batchSize ) {
+                if (results == null) {
+                    // Evaluate the search only when the results are needed, and return the best matches first ...
+                    List<Map.Entry<String, Float>> matches = new ArrayList<>(evaluate(search).entrySet());
+                    Collections.sort(matches, BY_DESCENDING_SCORE);
+                    results = matches.iterator();
+                }
+                int count = 0;
+                while (count < batchSize && results.hasNext()) {
+                    Map.Entry<String, Float> match = results.next();
+                    writer.add(new NodeKey(match.getKey()), match.getValue());
+                    ++count;
+                }
+                return results.hasNext();
+            }
+
+            @Override
+            public void close() {
+                results = null;
+            }
+
+            @Override
+            public String toString() {
+                return "(" + name + " contains " + search + ")";
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "LocalFullTextIndex(" + name + ")";
+    }
+
+    private static final Comparator<Map.Entry<String, Float>> BY_DESCENDING_SCORE = new Comparator<Map.Entry<String, Float>>() {
+        @Override
+        public int compare( Map.Entry<String, Float> e1,
+                            Map.Entry<String, Float> e2 ) {
+            int diff = Float.compare(e2.getValue(), e1.getValue());
+            return diff != 0 ? diff : e1.getKey().compareTo(e2.getKey());
+        }
+    };
+
+    /**
+     * A full-text search term and the column to which it applies.
+     */
+    static final class Search {
+        protected final Term term;
+        protected final int column;
+
+        /**
+         * Create a search.
+         *
+         * @param term the term; may not be null
+         * @param column the position of the column to be searched, or -1 if all columns are to be searched
+         */
+        Search( Term term,
+                int column ) {
+            this.term = term;
+            this.column = column;
+        }
+
+        @Override
+        public String toString() {
+            return column >= 0 ? term + " in column " + column : term.toString();
+        }
+    }
+
+    /**
+     * The statistics for this index, where each entry is a posting and each distinct value is a term.
+     */
+    protected final class Statistics implements IndexStatistics {
+        private static final long MIN_CHANGES_BEFORE_NEW_VERSION = 100L;
+
+        private final AtomicLong version = new AtomicLong();
+        private volatile long changedDocuments = 0L;
+
+        /**
+         * Record that the terms of a document were changed. The caller must hold the index's lock.
+         */
+        void changed() {
+            if (++changedDocuments > Math.max(MIN_CHANGES_BEFORE_NEW_VERSION, documentCount.get() / 10L)) {
+                changedDocuments = 0L;
+                version.incrementAndGet();
+            }
+        }
+
+        void reset() {
+            changedDocuments = 0L;
+            version.incrementAndGet();
+        }
+
+        @Override
+        public long getVersion() {
+            return version.get();
+        }
+
+        @Override
+        public long getTotalEntries() {
+            return postings.size();
+        }
+
+        @Override
+        public long getDistinctValueCount() {
+            return documentFrequencies.size();
+        }
+
+        @Override
+        public List<Bucket> getHistogram() {
+            return Collections.emptyList();
+        }
+    }
+}
@@ -0,0 +1,423 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.index.local;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import org.mapdb.DB;
+import org.mapdb.Fun;
+import org.modeshape.common.annotation.Immutable;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.JcrLexicon;
+import org.modeshape.jcr.NodeTypes;
+import org.modeshape.jcr.api.value.DateTime;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.spi.index.IndexColumnDefinition;
+import org.modeshape.jcr.spi.index.IndexDefinition;
+import org.modeshape.jcr.spi.index.IndexDefinition.IndexKind;
+import org.modeshape.jcr.spi.index.provider.Index;
+import org.modeshape.jcr.spi.index.provider.IndexFilter;
+import org.modeshape.jcr.spi.index.provider.ResultWriter;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.Property;
+import org.modeshape.jcr.value.PropertyType;
+import org.modeshape.jcr.value.ValueFactories;
+import org.modeshape.jcr.value.ValueFormatException;
+
+/**
+ * An {@link Index} owned by the {@link LocalIndexProvider} that stores the indexed values in a pair of MapDB B-trees: one
+ * containing (value, node key) pairs ordered by value that is used to answer equality and range constraints, and the other
+ * containing (node key, value) pairs ordered by node key that is used to find the existing entries for a node when the node is
+ * updated or removed.
+ * <p>
+ * Value indexes (e.g., {@link IndexKind#DUPLICATES}, {@link IndexKind#UNIQUE} and {@link IndexKind#ENUMERATED}) index the values
+ * of the property named by the definition's first column, while {@link IndexKind#NODETYPE} indexes index the names of each
+ * node's primary type and mixin types. All values are converted to a comparable form dictated by the column's type, so that
+ * the B-tree ordering matches the JCR ordering of the values.
+ * </p>
+ * <p>
+ * When the index definition has more than one column, the index also stores the values of the properties named by all of the
+ * columns (and the node's primary type and mixin types) in a {@link LocalIndexCoverage}, and returns these values with each node
+ * key so that queries that use only these properties do not need to load the nodes.
+ * </p>
+ */
+@ThreadSafe
+class LocalIndex implements Index {
+
+    /**
+     * The name of the {@link IndexFilter#getParameters() parameter} whose value is the {@link Bounds} of the values that are
+     * to be returned by the index.
+     */
+    static final String BOUNDS_PARAMETER = "bounds";
+
+    private final String name;
+    private final String providerName;
+    private final IndexDefinition defn;
+    private final IndexKind kind;
+    private final Name propertyName;
+    private final PropertyType columnType;
+    private final ValueFactories factories;
+    private final NavigableSet<Fun.Tuple2<Object, Object>> keysByValue;
+    private final NavigableSet<Fun.Tuple2<Object, Object>> valuesByKey;
+    private final LocalIndexStatistics statistics;
+    private final LocalIndexCoverage coverage;
+
+    LocalIndex( IndexDefinition defn,
+                String providerName,
+                DB db,
+                ExecutionContext context,
+                Executor statisticsRefresher ) {
+        this.name = defn.getName();
+        this.providerName = providerName;
+        this.defn = defn;
+        this.kind = defn.getKind() != null ? defn.getKind() : IndexKind.DUPLICATES;
+        Iterator<IndexColumnDefinition> columns = defn.iterator();
+        IndexColumnDefinition firstColumn = columns.hasNext() ? columns.next() : null;
+        this.propertyName = firstColumn != null ? firstColumn.getPropertyName() : null;
+        this.columnType = firstColumn != null ? firstColumn.getColumnType() : PropertyType.STRING;
+        this.factories = context.getValueFactories();
+        this.keysByValue = db.getTreeSet(byValueName(name));
+        this.valuesByKey = db.getTreeSet(byKeyName(name));
+        this.statistics = new LocalIndexStatistics(name, db, statisticsRefresher);
+        this.coverage = columns.hasNext() ? new LocalIndexCoverage(name, defn, db, context) : null;
+    }
+
+    static String byValueName( String indexName ) {
+        return indexName + "/keysByValue";
+    }
+
+    static String byKeyName( String indexName ) {
+        return indexName + "/valuesByKey";
+    }
+
+    @Override
+    public String getProviderName() {
+        return providerName;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean supportsFullTextConstraints() {
+        return false;
+    }
+
+    @Override
+    public LocalIndexStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Estimate the number of nodes whose values are within the supplied bounds. Because a node with multiple values has multiple
+     * entries, this is an upper bound on the number of distinct nodes.
+     * 
+     * @param bounds the bounds; may be null if the number of all nodes in the index is to be estimated
+     * @return the estimated number of nodes; never negative
+     */
+    long estimateCardinality( Bounds bounds ) {
+        return statistics.estimateEntries(bounds);
+    }
+
+    /**
+     * Get the definition of this index.
+     * 
+     * @return the index definition; never null
+     */
+    IndexDefinition getDefinition() {
+        return defn;
+    }
+
+    /**
+     * Determine whether this index stores the values of the properties named by its columns.
+     * 
+     * @return true if the index covers the properties of its columns, or false otherwise
+     */
+    boolean isCovering() {
+        return coverage != null;
+    }
+
+    /**
+     * Get the kind of this index.
+     * 
+     * @return the kind; never null
+     */
+    IndexKind getKind() {
+        return kind;
+    }
+
+    /**
+     * Determine whether the property with the given name is indexed by this index.
+     * 
+     * @param name the property name; may not be null
+     * @return true if the constraints on the named property can be answered by this index, or false otherwise
+     */
+    boolean indexes( Name name ) {
+        if (kind == IndexKind.NODETYPE) {
+            return JcrLexicon.PRIMARY_TYPE.equals(name) || JcrLexicon.MIXIN_TYPES.equals(name);
+        }
+        return name.equals(propertyName);
+    }
+
+    /**
+     * Determine whether nodes with the given primary type and mixin types are to be included in this index.
+     * 
+     * @param primaryType the name of the node's primary type; may not be null
+     * @param mixinTypes the names of the node's mixin types; may be null or empty
+     * @param nodeTypes the current node types; may not be null
+     * @return true if the node's types are or subtype the index definition's node type, or false otherwise
+     */
+    boolean appliesTo( Name primaryType,
+                       Set<Name> mixinTypes,
+                       NodeTypes nodeTypes ) {
+        Name indexedType = defn.getNodeTypeName();
+        return nodeTypes.isTypeOrSubtype(primaryType, indexedType) || nodeTypes.isTypeOrSubtype(mixinTypes, indexedType);
+    }
+
+    /**
+     * Convert the supplied property value (or literal value in a query) into the comparable form stored in this index.
+     * 
+     * @param value the value; may be null
+     * @return the indexable value, or null if the value is null or cannot be converted to the column type
+     */
+    Object convert( Object value ) {
+        if (value == null) return null;
+        try {
+            switch (columnType) {
+                case LONG:
+                    return factories.getLongFactory().create(value);
+                case DOUBLE:
+                    return factories.getDoubleFactory().create(value);
+                case DECIMAL:
+                    return factories.getDecimalFactory().create(value);
+                case BOOLEAN:
+                    return factories.getBooleanFactory().create(value);
+                case DATE:
+                    DateTime date = factories.getDateFactory().create(value);
+                    return date != null ? date.getMillisecondsInUtc() : null;
+                case BINARY:
+                    // Binary values are not indexed by value ...
+                    return null;
+                default:
+                    return factories.getStringFactory().create(value);
+            }
+        } catch (ValueFormatException e) {
+            // The value cannot be converted to the column type, so it cannot be indexed ...
+            return null;
+        }
+    }
+
+    /**
+     * Update the entries for the supplied node. Any existing entries for the node are removed before the new entries are added.
+     * 
+     * @param nodeKey the string form of the node's key; may not be null
+     * @param primaryType the name of the node's primary type; may not be null
+     * @param mixinTypes the names of the node's mixin types; may be null or empty
+     * @param properties the node's properties keyed by name; may not be null
+     */
+    void update( String nodeKey,
+                 Name primaryType,
+                 Set<Name> mixinTypes,
+                 Map<Name, Property> properties ) {
+        // Use a set so that the same value is indexed only once for each node ...
+        Collection<Object> values = new LinkedHashSet<>();
+        if (kind == IndexKind.NODETYPE) {
+            addValue(primaryType, values);
+            if (mixinTypes != null) {
+                for (Name mixinType : mixinTypes) {
+                    addValue(mixinType, values);
+                }
+            }
+        } else if (propertyName != null) {
+            Property property = properties.get(propertyName);
+            if (property != null) {
+                for (Object value : property) {
+                    addValue(value, values);
+                }
+            }
+        }
+        synchronized (this) {
+            removeEntries(nodeKey);
+            for (Object value : values) {
+                keysByValue.add(Fun.<Object, Object>t2(value, nodeKey));
+                valuesByKey.add(Fun.<Object, Object>t2(nodeKey, value));
+                statistics.added(value);
+            }
+            if (coverage != null) {
+                if (values.isEmpty()) coverage.remove(nodeKey);
+                else coverage.put(nodeKey, primaryType, mixinTypes, properties);
+            }
+        }
+    }
+
+    private void addValue( Object value,
+                           Collection<Object> values ) {
+        Object converted = convert(value);
+        if (converted != null) values.add(converted);
+    }
+
+    /**
+     * Remove all entries for the supplied node.
+     * 
+     * @param nodeKey the string form of the node's key; may not be null
+     */
+    synchronized void remove( String nodeKey ) {
+        removeEntries(nodeKey);
+    }
+
+    private void removeEntries( String nodeKey ) {
+        if (coverage != null) coverage.remove(nodeKey);
+        NavigableSet<Fun.Tuple2<Object, Object>> existing = valuesByKey.subSet(Fun.<Object, Object>t2(nodeKey, null), true,
+                                                                               Fun.<Object, Object>t2(nodeKey, Fun.HI), true);
+        if (existing.isEmpty()) return;
+        // Copy the entries before removing them, since the set is a view of the B-tree ...
+        for (Fun.Tuple2<Object, Object> entry : new LinkedList<>(existing)) {
+            keysByValue.remove(Fun.<Object, Object>t2(entry.b, nodeKey));
+            valuesByKey.remove(entry);
+            statistics.removed(entry.b);
+        }
+    }
+
+    /**
+     * Remove all entries from this index.
+     */
+    synchronized void removeAll() {
+        keysByValue.clear();
+        valuesByKey.clear();
+        statistics.clear();
+        if (coverage != null) coverage.clear();
+    }
+
+    /**
+     * Get the entries whose values are within the supplied bounds, in ascending order of value.
+     * 
+     * @param bounds the bounds; may be null if all entries are to be returned
+     * @return the (value, node key) entries; never null
+     */
+    NavigableSet<Fun.Tuple2<Object, Object>> entriesWithin( Bounds bounds ) {
+        if (bounds == null) return keysByValue;
+        Fun.Tuple2<Object, Object> from = null;
+        if (bounds.lower == null) {
+            from = Fun.<Object, Object>t2(null, null);
+        } else {
+            from = bounds.lowerIncluded ? Fun.<Object, Object>t2(bounds.lower, null) : Fun.<Object, Object>t2(bounds.lower, Fun.HI);
+        }
+        Fun.Tuple2<Object, Object> to = null;
+        if (bounds.upper == null) {
+            to = Fun.<Object, Object>t2(Fun.HI, Fun.HI);
+        } else {
+            to = bounds.upperIncluded ? Fun.<Object, Object>t2(bounds.upper, Fun.HI) : Fun.<Object, Object>t2(bounds.upper, null);
+        }
+        return keysByValue.subSet(from, true, to, true);
+    }
+
+    @Override
+    public Operation filter( IndexFilter filter ) {
+        final Bounds bounds = (Bounds)filter.getParameters().get(BOUNDS_PARAMETER);
+        final Iterator<Fun.Tuple2<Object, Object>> entries = entriesWithin(bounds).iterator();
+        // Only a range over multiple values can contain the same node more than once (e.g., multi-valued properties) ...
+        final Set<Object> seen = bounds != null && bounds.isSingleValue() ? null : new HashSet<>();
+        return new Operation() {
+            @Override
+            public boolean getNextBatch( ResultWriter writer,
+                                         int batchSize ) {
+                int count = 0;
+                while (count < batchSize && entries.hasNext()) {
+                    Object nodeKey = entries.next().b;
+                    if (seen != null && !seen.add(nodeKey)) continue;
+                    Map<Name, Property> covered = coverage != null ? coverage.propertiesFor((String)nodeKey) : null;
+                    if (covered != null) {
+                        writer.add(new NodeKey((String)nodeKey), 1.0f, covered);
+                    } else {
+                        writer.add(new NodeKey((String)nodeKey), 1.0f);
+                    }
+                    ++count;
+                }
+                return entries.hasNext();
+            }
+
+            @Override
+            public void close() {
+                if (seen != null) seen.clear();
+            }
+
+            @Override
+            public String toString() {
+                return "(" + name + " within " + bounds + ")";
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "LocalIndex(" + name + ")";
+    }
+
+    /**
+     * The lower and upper (converted) values of a range of values.
+     */
+    @Immutable
+    static final class Bounds {
+        protected final Object lower;
+        protected final boolean lowerIncluded;
+        protected final Object upper;
+        protected final boolean upperIncluded;
+
+        Bounds( Object lower,
+                boolean lowerIncluded,
+                Object upper,
+                boolean upperIncluded ) {
+            this.lower = lower;
+            this.lowerIncluded = lowerIncluded;
+            this.upper = upper;
+            this.upperIncluded = upperIncluded;
+        }
+
+        static Bounds equalTo( Object value ) {
+            return new Bounds(value, true, value, true);
+        }
+
+        /**
+         * Determine whether these bounds include at most a single value.
+         * 
+         * @return true if the lower and upper bounds are the same value, or false otherwise
+         */
+        boolean isSingleValue() {
+            return lower != null && lower.equals(upper) && lowerIncluded && upperIncluded;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(lowerIncluded ? '[' : '(');
+            sb.append(lower != null ? lower : "*");
+            sb.append(',');
+            sb.append(upper != null ? upper : "*");
+            sb.append(upperIncluded ? ']' : ')');
+            return sb.toString();
+        }
+    }
+}
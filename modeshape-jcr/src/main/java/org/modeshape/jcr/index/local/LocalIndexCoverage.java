@@ -0,0 +1,172 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.index.local;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.mapdb.DB;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.JcrLexicon;
+import org.modeshape.jcr.spi.index.IndexColumnDefinition;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.NameFactory;
+import org.modeshape.jcr.value.Property;
+import org.modeshape.jcr.value.PropertyFactory;
+import org.modeshape.jcr.value.PropertyType;
+import org.modeshape.jcr.value.ValueFactory;
+
+/**
+ * The values of the properties covered by a {@link LocalIndex}, stored in a MapDB B-tree keyed by the node key so that the query
+ * engine can use the values instead of loading each node. The primary type and mixin types of each node are always covered, as
+ * are the properties named by all of the index definition's columns.
+ * <p>
+ * Each record is an array containing the primary type, an array of mixin types, and then for each column either null (if the
+ * node has no such property), an empty array (if the property's values are not covered, such as binary values), or an array
+ * containing the name of the property's type, whether the property is multi-valued, and the array of string values.
+ * </p>
+ */
+@ThreadSafe
+class LocalIndexCoverage {
+
+    private static final Object[] NOT_COVERED = new Object[0];
+
+    private final List<Name> columnNames;
+    private final Map<String, Object[]> recordsByKey;
+    private final ValueFactory<String> strings;
+    private final NameFactory names;
+    private final PropertyFactory propertyFactory;
+
+    LocalIndexCoverage( String indexName,
+                        Iterable<IndexColumnDefinition> columns,
+                        DB db,
+                        ExecutionContext context ) {
+        this.columnNames = new ArrayList<>();
+        for (IndexColumnDefinition column : columns) {
+            this.columnNames.add(column.getPropertyName());
+        }
+        this.recordsByKey = db.getTreeMap(recordsName(indexName));
+        this.strings = context.getValueFactories().getStringFactory();
+        this.names = context.getValueFactories().getNameFactory();
+        this.propertyFactory = context.getPropertyFactory();
+    }
+
+    static String recordsName( String indexName ) {
+        return indexName + "/coveredByKey";
+    }
+
+    /**
+     * Store the covered values of the supplied node, replacing any existing values.
+     * 
+     * @param nodeKey the string form of the node's key; may not be null
+     * @param primaryType the name of the node's primary type; may not be null
+     * @param mixinTypes the names of the node's mixin types; may be null or empty
+     * @param properties the node's properties keyed by name; may not be null
+     */
+    void put( String nodeKey,
+              Name primaryType,
+              Set<Name> mixinTypes,
+              Map<Name, Property> properties ) {
+        Object[] record = new Object[columnNames.size() + 2];
+        record[0] = primaryType.getString();
+        Object[] mixins = new Object[mixinTypes != null ? mixinTypes.size() : 0];
+        int i = 0;
+        if (mixinTypes != null) {
+            for (Name mixinType : mixinTypes) {
+                mixins[i++] = mixinType.getString();
+            }
+        }
+        record[1] = mixins;
+        i = 2;
+        for (Name columnName : columnNames) {
+            record[i++] = recordFor(properties.get(columnName));
+        }
+        recordsByKey.put(nodeKey, record);
+    }
+
+    private Object[] recordFor( Property property ) {
+        if (property == null) return null;
+        PropertyType type = property.isEmpty() ? PropertyType.STRING : PropertyType.discoverType(property.getFirstValue());
+        if (type == null || type == PropertyType.BINARY) return NOT_COVERED;
+        Object[] values = new Object[property.size()];
+        int i = 0;
+        for (Object value : property) {
+            values[i++] = strings.create(value);
+        }
+        return new Object[] {type.name(), Boolean.valueOf(property.isMultiple()), values};
+    }
+
+    /**
+     * Remove the covered values of the supplied node.
+     * 
+     * @param nodeKey the string form of the node's key; may not be null
+     */
+    void remove( String nodeKey ) {
+        recordsByKey.remove(nodeKey);
+    }
+
+    /**
+     * Remove all covered values.
+     */
+    void clear() {
+        recordsByKey.clear();
+    }
+
+    /**
+     * Get the covered properties of the supplied node.
+     * 
+     * @param nodeKey the string form of the node's key; may not be null
+     * @return the covered properties keyed by name with a null value for each covered property the node does not have, or null
+     *         if no values are stored for the node
+     */
+    Map<Name, Property> propertiesFor( String nodeKey ) {
+        Object[] record = recordsByKey.get(nodeKey);
+        if (record == null) return null;
+        Map<Name, Property> properties = new HashMap<>();
+        properties.put(JcrLexicon.PRIMARY_TYPE, propertyFactory.create(JcrLexicon.PRIMARY_TYPE, names.create(record[0])));
+        Object[] mixins = (Object[])record[1];
+        if (mixins.length == 0) {
+            properties.put(JcrLexicon.MIXIN_TYPES, null);
+        } else {
+            Object[] mixinNames = new Object[mixins.length];
+            for (int i = 0; i != mixins.length; ++i) {
+                mixinNames[i] = names.create(mixins[i]);
+            }
+            properties.put(JcrLexicon.MIXIN_TYPES, propertyFactory.create(JcrLexicon.MIXIN_TYPES, mixinNames));
+        }
+        int i = 2;
+        for (Name columnName : columnNames) {
+            Object[] column = (Object[])record[i++];
+            if (column == null) {
+                properties.put(columnName, null);
+            } else if (column.length != 0) {
+                PropertyType type = PropertyType.valueOf((String)column[0]);
+                boolean multiple = ((Boolean)column[1]).booleanValue();
+                Object[] values = (Object[])column[2];
+                if (multiple || values.length != 1) {
+                    properties.put(columnName, propertyFactory.create(columnName, type, values));
+                } else {
+                    properties.put(columnName, propertyFactory.create(columnName, type, values[0]));
+                }
+            }
+            // Otherwise the property is not covered, so the node will be loaded if the property is needed ...
+        }
+        return properties;
+    }
+}
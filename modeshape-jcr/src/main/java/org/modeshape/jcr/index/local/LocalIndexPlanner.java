@@ -0,0 +1,222 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.index.local;
+
+import static java.util.Collections.singletonList;
+import java.util.List;
+import javax.jcr.query.qom.Constraint;
+import org.modeshape.common.annotation.Immutable;
+import org.modeshape.common.text.ParsingException;
+import org.modeshape.jcr.api.query.qom.Operator;
+import org.modeshape.jcr.query.QueryContext;
+import org.modeshape.jcr.query.model.Between;
+import org.modeshape.jcr.query.model.BindVariableName;
+import org.modeshape.jcr.query.model.Comparison;
+import org.modeshape.jcr.query.model.DynamicOperand;
+import org.modeshape.jcr.query.model.FullTextSearch;
+import org.modeshape.jcr.query.model.FullTextSearch.Term;
+import org.modeshape.jcr.query.model.Literal;
+import org.modeshape.jcr.query.model.PropertyExistence;
+import org.modeshape.jcr.query.model.PropertyValue;
+import org.modeshape.jcr.query.model.SelectorName;
+import org.modeshape.jcr.query.model.StaticOperand;
+import org.modeshape.jcr.query.parse.FullTextSearchParser;
+import org.modeshape.jcr.spi.index.IndexCollector;
+import org.modeshape.jcr.spi.index.IndexDefinition;
+import org.modeshape.jcr.spi.index.IndexDefinition.IndexKind;
+import org.modeshape.jcr.spi.index.provider.IndexPlanner;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.NameFactory;
+import org.modeshape.jcr.value.ValueFormatException;
+
+/**
+ * The {@link IndexPlanner} for the {@link LocalIndexProvider}, which identifies the comparison, range and property existence
+ * constraints that can be answered by the provider's {@link LocalIndex indexes}, and the full-text search constraints that can be
+ * answered by the provider's {@link LocalFullTextIndex full-text indexes}.
+ */
+@Immutable
+class LocalIndexPlanner extends IndexPlanner {
+
+    private static final int UNIQUE_VALUE_COST = 1;
+    private static final int EQUALITY_COST = 10;
+    private static final int RANGE_COST = 100;
+    private static final int EXISTENCE_COST = 500;
+    private static final int FULL_TEXT_COST = 50;
+
+    private final LocalIndexProvider provider;
+
+    LocalIndexPlanner( LocalIndexProvider provider ) {
+        this.provider = provider;
+    }
+
+    @Override
+    public void applyIndexes( QueryContext context,
+                              SelectorName selector,
+                              List<Constraint> andedConstraints,
+                              Iterable<IndexDefinition> indexesOnSelector,
+                              IndexCollector indexes ) {
+        if (indexesOnSelector == null) return;
+        for (IndexDefinition defn : indexesOnSelector) {
+            if (!defn.isEnabled()) continue;
+            LocalIndex index = provider.index(defn.getName());
+            if (index != null) {
+                for (Constraint constraint : andedConstraints) {
+                    applyIndex(context, index, constraint, indexes);
+                }
+                continue;
+            }
+            LocalFullTextIndex fullTextIndex = provider.fullTextIndex(defn.getName());
+            if (fullTextIndex != null) {
+                for (Constraint constraint : andedConstraints) {
+                    if (constraint instanceof FullTextSearch) {
+                        applyIndex(context, fullTextIndex, (FullTextSearch)constraint, indexes);
+                    }
+                }
+            }
+        }
+    }
+
+    protected void applyIndex( QueryContext context,
+                               LocalIndex index,
+                               Constraint constraint,
+                               IndexCollector indexes ) {
+        if (constraint instanceof Comparison) {
+            Comparison comparison = (Comparison)constraint;
+            if (!isIndexed(context, index, comparison.getOperand1())) return;
+            Object value = index.convert(valueOf(context, comparison.getOperand2()));
+            if (value == null) return;
+            LocalIndex.Bounds bounds = null;
+            int cost = RANGE_COST;
+            switch (comparison.operator()) {
+                case EQUAL_TO:
+                    bounds = LocalIndex.Bounds.equalTo(value);
+                    cost = index.getKind() == IndexKind.UNIQUE ? UNIQUE_VALUE_COST : EQUALITY_COST;
+                    break;
+                case GREATER_THAN:
+                    bounds = new LocalIndex.Bounds(value, false, null, false);
+                    break;
+                case GREATER_THAN_OR_EQUAL_TO:
+                    bounds = new LocalIndex.Bounds(value, true, null, false);
+                    break;
+                case LESS_THAN:
+                    bounds = new LocalIndex.Bounds(null, false, value, false);
+                    break;
+                case LESS_THAN_OR_EQUAL_TO:
+                    bounds = new LocalIndex.Bounds(null, false, value, true);
+                    break;
+                default:
+                    // NOT_EQUAL_TO and LIKE cannot be answered with a single range of values ...
+                    return;
+            }
+            addIndex(index, constraint, cost, bounds, indexes);
+        } else if (constraint instanceof Between) {
+            Between between = (Between)constraint;
+            if (!isIndexed(context, index, between.getOperand())) return;
+            Object lower = index.convert(valueOf(context, between.getLowerBound()));
+            Object upper = index.convert(valueOf(context, between.getUpperBound()));
+            if (lower == null || upper == null) return;
+            LocalIndex.Bounds bounds = new LocalIndex.Bounds(lower, between.isLowerBoundIncluded(), upper,
+                                                             between.isUpperBoundIncluded());
+            addIndex(index, constraint, RANGE_COST, bounds, indexes);
+        } else if (constraint instanceof PropertyExistence) {
+            PropertyExistence existence = (PropertyExistence)constraint;
+            if (index.getKind() == IndexKind.NODETYPE) return;
+            Name propertyName = nameOf(context, existence.getPropertyName());
+            if (propertyName == null || !index.indexes(propertyName)) return;
+            // Every node with a value for the property is in the index ...
+            addIndex(index, constraint, EXISTENCE_COST, null, indexes);
+        }
+    }
+
+    protected void applyIndex( QueryContext context,
+                               LocalFullTextIndex index,
+                               FullTextSearch search,
+                               IndexCollector indexes ) {
+        int column = -1;
+        if (search.getPropertyName() != null) {
+            // Only the named property is to be searched, so it must be one of the columns ...
+            Name propertyName = nameOf(context, search.getPropertyName());
+            if (propertyName == null) return;
+            column = index.columnOf(propertyName);
+            if (column < 0) return;
+        }
+        Term term = termOf(context, search);
+        if (term == null || !LocalFullTextIndex.canEvaluate(term)) return;
+        LocalFullTextIndex.Search fullTextSearch = new LocalFullTextIndex.Search(term, column);
+        indexes.addIndex(index.getName(), index.getProviderName(), singletonList((Constraint)search), FULL_TEXT_COST,
+                         index.estimateCardinality(fullTextSearch), LocalFullTextIndex.SEARCH_PARAMETER, fullTextSearch,
+                         IndexCollector.EXACT_FULL_TEXT_PARAMETER, LocalFullTextIndex.isExact(term));
+    }
+
+    private Term termOf( QueryContext context,
+                         FullTextSearch search ) {
+        try {
+            if (search.getFullTextSearchExpression() instanceof BindVariableName) {
+                // The expression is only known when the query is executed ...
+                Object value = valueOf(context, search.getFullTextSearchExpression());
+                if (value == null) return null;
+                String expression = context.getExecutionContext().getValueFactories().getStringFactory().create(value);
+                return new FullTextSearchParser().parse(expression);
+            }
+            return search.getTerm();
+        } catch (ParsingException | ValueFormatException e) {
+            // The expression is not valid, so let the query engine report the problem ...
+            return null;
+        }
+    }
+
+    private void addIndex( LocalIndex index,
+                           Constraint constraint,
+                           int cost,
+                           LocalIndex.Bounds bounds,
+                           IndexCollector indexes ) {
+        // Use the index statistics to estimate how many nodes satisfy the constraint, so that the most selective index is used ...
+        long cardinality = index.estimateCardinality(bounds);
+        if (index.getKind() == IndexKind.UNIQUE && bounds != null && bounds.isSingleValue()) cardinality = Math.min(1L, cardinality);
+        indexes.addIndex(index.getName(), index.getProviderName(), singletonList(constraint), cost, cardinality,
+                         LocalIndex.BOUNDS_PARAMETER, bounds);
+    }
+
+    private boolean isIndexed( QueryContext context,
+                               LocalIndex index,
+                               DynamicOperand operand ) {
+        if (!(operand instanceof PropertyValue)) return false;
+        Name propertyName = nameOf(context, ((PropertyValue)operand).getPropertyName());
+        return propertyName != null && index.indexes(propertyName);
+    }
+
+    private Name nameOf( QueryContext context,
+                         String propertyName ) {
+        NameFactory names = context.getExecutionContext().getValueFactories().getNameFactory();
+        try {
+            return names.create(propertyName);
+        } catch (ValueFormatException e) {
+            // Not a valid name (e.g., the prefix is not registered), so no index applies ...
+            return null;
+        }
+    }
+
+    private Object valueOf( QueryContext context,
+                            StaticOperand operand ) {
+        if (operand instanceof Literal) {
+            return ((Literal)operand).value();
+        }
+        if (operand instanceof BindVariableName) {
+            return context.getVariables().get(((BindVariableName)operand).getBindVariableName());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.index.local;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import javax.jcr.RepositoryException;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.modeshape.jcr.JcrI18n;
+import org.modeshape.jcr.NodeTypes;
+import org.modeshape.jcr.spi.index.IndexColumnDefinition;
+import org.modeshape.jcr.spi.index.IndexDefinition;
+import org.modeshape.jcr.spi.index.IndexDefinition.IndexKind;
+import org.modeshape.jcr.spi.index.IndexDefinitionChanges;
+import org.modeshape.jcr.spi.index.provider.Index;
+import org.modeshape.jcr.spi.index.provider.IndexPlanner;
+import org.modeshape.jcr.spi.index.provider.IndexProvider;
+import org.modeshape.jcr.spi.index.provider.IndexWriter;
+
+/**
+ * An {@link IndexProvider} that stores each index as MapDB B-trees in a single file on the local file system. The provider is
+ * configured in the repository configuration with the path to the directory in which the file is to be stored:
+ * 
+ * <pre>
+ * "indexProviders" : {
+ *     "local" : {
+ *         "classname" : "local",
+ *         "directory" : "target/local_indexes"
+ *     }
+ * }
+ * </pre>
+ * <p>
+ * The provider supports the {@link IndexKind#DUPLICATES}, {@link IndexKind#UNIQUE}, {@link IndexKind#ENUMERATED} and
+ * {@link IndexKind#NODETYPE} kinds of indexes on the first column of each index definition, and can be used to answer equality,
+ * range, and property existence constraints. It also supports {@link IndexKind#FULLTEXTSEARCH} indexes, which store an inverted
+ * index of the text in all of the columns (including the text extracted from binary values) and are used to answer and score
+ * full-text search constraints. When an index definition has multiple columns, the values of all of the columns
+ * are stored in the index so that queries that use only these properties can be answered without loading the nodes. Because the
+ * indexes are persisted, the repository content needs to be reindexed only when the file is new or when an index definition
+ * changes.
+ * </p>
+ */
+public class LocalIndexProvider extends IndexProvider {
+
+    private static final String DB_FILENAME = "local-indexes.db";
+    private static final String SIGNATURES_MAP_NAME = "index-signatures";
+    private static final String STATISTICS_THREAD_POOL_NAME = "modeshape-local-index-statistics";
+
+    /**
+     * The path to the directory in which the indexes are stored, set via reflection
+     */
+    private String directory;
+
+    private final ConcurrentMap<String, LocalIndex> indexes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LocalFullTextIndex> fullTextIndexes = new ConcurrentHashMap<>();
+    private final LocalIndexWriter writer = new LocalIndexWriter(this);
+    private final LocalIndexPlanner planner = new LocalIndexPlanner(this);
+    private volatile DB db;
+    private volatile ExecutorService statisticsRefresher;
+    private Map<String, String> signatures;
+    private volatile boolean reindexingRequired = false;
+
+    public LocalIndexProvider() {
+    }
+
+    /**
+     * Get the path to the directory in which the indexes are stored.
+     * 
+     * @return the directory path; may be null if the provider has not been configured
+     */
+    public String getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public void initialize() throws RepositoryException {
+        if (directory == null || directory.trim().length() == 0) {
+            throw new RepositoryException(JcrI18n.localIndexProviderMustHaveDirectory.text(getName(), getRepositoryName()));
+        }
+        File dir = new File(directory);
+        if (!dir.exists()) dir.mkdirs();
+        if (!dir.isDirectory() || !dir.canWrite()) {
+            throw new RepositoryException(JcrI18n.localIndexProviderDirectoryMustBeWritable.text(getName(), getRepositoryName(),
+                                                                                                 directory));
+        }
+        File file = new File(dir, DB_FILENAME);
+        // A new file has no content, so the repository must be reindexed ...
+        this.reindexingRequired = !file.exists();
+        this.db = DBMaker.newFileDB(file).mmapFileEnableIfSupported().transactionDisable().closeOnJvmShutdown().make();
+        this.signatures = db.getTreeMap(SIGNATURES_MAP_NAME);
+        // The index statistics are refreshed in the background, so that planning a query never has to wait for them ...
+        this.statisticsRefresher = context().getCachedTreadPool(STATISTICS_THREAD_POOL_NAME);
+        getLogger().debug("Initialized the local index provider '{0}' in repository '{1}' using the file '{2}'", getName(),
+                          getRepositoryName(), file.getAbsolutePath());
+    }
+
+    @Override
+    public void shutdown() throws RepositoryException {
+        DB db = this.db;
+        this.db = null;
+        indexes.clear();
+        fullTextIndexes.clear();
+        // The repository terminates the thread pool used to refresh the statistics ...
+        this.statisticsRefresher = null;
+        if (db != null) {
+            db.commit();
+            db.close();
+        }
+    }
+
+    @Override
+    public boolean isReindexingRequired() {
+        return reindexingRequired;
+    }
+
+    @Override
+    public IndexWriter getIndexWriter() {
+        return writer;
+    }
+
+    @Override
+    public Index getIndex( String indexName ) {
+        Index index = indexes.get(indexName);
+        return index != null ? index : fullTextIndexes.get(indexName);
+    }
+
+    @Override
+    public IndexPlanner getIndexPlanner() {
+        return planner;
+    }
+
+    @Override
+    public synchronized void notify( IndexDefinitionChanges changes ) {
+        assert db != null : "The local index provider has not been initialized";
+        for (String removedName : changes.getRemovedIndexDefinitions()) {
+            indexes.remove(removedName);
+            fullTextIndexes.remove(removedName);
+            destroyIndex(removedName);
+        }
+        for (IndexDefinition defn : changes.getUpdatedIndexDefinitions().values()) {
+            String indexName = defn.getName();
+            if (!defn.isEnabled()) {
+                // Stop using the index, but keep its content in case it is re-enabled ...
+                indexes.remove(indexName);
+                fullTextIndexes.remove(indexName);
+                continue;
+            }
+            String signature = signatureOf(defn);
+            if (!signature.equals(signatures.get(indexName))) {
+                // The index is new or its definition has changed, so any existing content is no longer valid ...
+                indexes.remove(indexName);
+                fullTextIndexes.remove(indexName);
+                destroyIndex(indexName);
+                signatures.put(indexName, signature);
+                reindexingRequired = true;
+                getLogger().debug("The definition of the '{0}' index in repository '{1}' is new or changed and will be rebuilt",
+                                  indexName, getRepositoryName());
+            }
+            if (defn.getKind() == IndexKind.FULLTEXTSEARCH) {
+                indexes.remove(indexName);
+                fullTextIndexes.put(indexName, new LocalFullTextIndex(defn, getName(), db, context()));
+            } else {
+                fullTextIndexes.remove(indexName);
+                indexes.put(indexName, new LocalIndex(defn, getName(), db, context(), statisticsRefresher));
+            }
+        }
+        db.commit();
+    }
+
+    /**
+     * Get the indexes that are currently in use.
+     * 
+     * @return the indexes; never null but possibly empty
+     */
+    final Collection<LocalIndex> indexes() {
+        return indexes.values();
+    }
+
+    /**
+     * Get the index with the given name.
+     * 
+     * @param indexName the index name; may not be null
+     * @return the index, or null if there is no such index in use
+     */
+    final LocalIndex index( String indexName ) {
+        return indexes.get(indexName);
+    }
+
+    /**
+     * Get the full-text indexes that are currently in use.
+     * 
+     * @return the full-text indexes; never null but possibly empty
+     */
+    final Collection<LocalFullTextIndex> fullTextIndexes() {
+        return fullTextIndexes.values();
+    }
+
+    /**
+     * Get the full-text index with the given name.
+     * 
+     * @param indexName the index name; may not be null
+     * @return the full-text index, or null if there is no such index in use
+     */
+    final LocalFullTextIndex fullTextIndex( String indexName ) {
+        return fullTextIndexes.get(indexName);
+    }
+
+    /**
+     * Get the current node types of the repository.
+     * 
+     * @return the node types; never null
+     */
+    final NodeTypes nodeTypes() {
+        return getNodeTypesSupplier().getNodeTypes();
+    }
+
+    private void destroyIndex( String indexName ) {
+        signatures.remove(indexName);
+        db.delete(LocalIndex.byValueName(indexName));
+        db.delete(LocalIndex.byKeyName(indexName));
+        db.delete(LocalIndexStatistics.countsName(indexName));
+        db.delete(LocalIndexStatistics.totalEntriesName(indexName));
+        db.delete(LocalIndexStatistics.distinctValuesName(indexName));
+        db.delete(LocalIndexCoverage.recordsName(indexName));
+        db.delete(LocalFullTextIndex.postingsName(indexName));
+        db.delete(LocalFullTextIndex.termsByKeyName(indexName));
+        db.delete(LocalFullTextIndex.documentFrequenciesName(indexName));
+        db.delete(LocalFullTextIndex.documentLengthsName(indexName));
+        db.delete(LocalFullTextIndex.documentCountName(indexName));
+        db.delete(LocalFullTextIndex.pendingByBinaryName(indexName));
+        db.delete(LocalFullTextIndex.pendingByKeyName(indexName));
+    }
+
+    /**
+     * Compute a string that captures the parts of the index definition that determine the content of the index.
+     * 
+     * @param defn the index definition; may not be null
+     * @return the signature; never null
+     */
+    private static String signatureOf( IndexDefinition defn ) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(defn.getKind()).append('|');
+        sb.append(defn.getNodeTypeName() != null ? defn.getNodeTypeName().getString() : "").append('|');
+        for (IndexColumnDefinition column : defn) {
+            sb.append(column.getPropertyName().getString()).append('(').append(column.getColumnType()).append(')');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.index.local;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.mapdb.Atomic;
+import org.mapdb.DB;
+import org.modeshape.common.annotation.Immutable;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.jcr.spi.index.provider.IndexStatistics;
+
+/**
+ * The {@link IndexStatistics} of a {@link LocalIndex}. The number of entries for each distinct value is stored in a MapDB B-tree
+ * alongside the index and is maintained incrementally as entries are added and removed, so that the number of nodes with a given
+ * value can be obtained exactly. The equi-depth histogram used to estimate the number of entries within a range of values is
+ * computed from these counts, and is recomputed only after a significant fraction of the entries have changed. Computing the
+ * histogram requires reading all of the counts, so it is always done by the supplied executor rather than by the thread that is
+ * planning a query or updating the index; until the first histogram is available, ranges are estimated from the total number of
+ * entries.
+ */
+@ThreadSafe
+class LocalIndexStatistics implements IndexStatistics {
+
+    private static final int BUCKET_COUNT = 32;
+    private static final long MIN_CHANGES_BEFORE_REBUILDING_HISTOGRAM = 100L;
+    private static final long RANGE_SELECTIVITY_WITHOUT_HISTOGRAM = 3L;
+
+    private final ConcurrentNavigableMap<Object, Long> countsByValue;
+    private final Atomic.Long totalEntries;
+    private final Atomic.Long distinctValues;
+    private volatile List<Bucket> histogram;
+    private volatile long changesSinceHistogram = 0L;
+    private volatile long changesSinceVersion = 0L;
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicBoolean refreshingHistogram = new AtomicBoolean(false);
+    private final Executor refresher;
+
+    /**
+     * Create the statistics for the named index.
+     * 
+     * @param indexName the name of the index; may not be null
+     * @param db the database in which the statistics are stored; may not be null
+     * @param refresher the executor used to compute the histogram; may not be null
+     */
+    LocalIndexStatistics( String indexName,
+                          DB db,
+                          Executor refresher ) {
+        this.refresher = refresher;
+        this.countsByValue = db.getTreeMap(countsName(indexName));
+        this.totalEntries = db.getAtomicLong(totalEntriesName(indexName));
+        this.distinctValues = db.getAtomicLong(distinctValuesName(indexName));
+    }
+
+    static String countsName( String indexName ) {
+        return indexName + "/countsByValue";
+    }
+
+    static String totalEntriesName( String indexName ) {
+        return indexName + "/totalEntries";
+    }
+
+    static String distinctValuesName( String indexName ) {
+        return indexName + "/distinctValues";
+    }
+
+    /**
+     * Record that an entry with the given value was added. The caller must hold the index's lock.
+     * 
+     * @param value the converted value; may not be null
+     */
+    void added( Object value ) {
+        Long count = countsByValue.get(value);
+        if (count == null) {
+            countsByValue.put(value, 1L);
+            distinctValues.incrementAndGet();
+        } else {
+            countsByValue.put(value, count + 1L);
+        }
+        totalEntries.incrementAndGet();
+        changed();
+    }
+
+    /**
+     * Record that an entry with the given value was removed. The caller must hold the index's lock.
+     * 
+     * @param value the converted value; may not be null
+     */
+    void removed( Object value ) {
+        Long count = countsByValue.get(value);
+        if (count == null) return;
+        if (count.longValue() <= 1L) {
+            countsByValue.remove(value);
+            distinctValues.decrementAndGet();
+        } else {
+            countsByValue.put(value, count - 1L);
+        }
+        totalEntries.decrementAndGet();
+        changed();
+    }
+
+    private void changed() {
+        ++changesSinceHistogram;
+        if (++changesSinceVersion > changeThreshold()) {
+            // Enough entries have changed that estimates for single values may be different ...
+            changesSinceVersion = 0L;
+            version.incrementAndGet();
+        }
+        if (histogram != null && isHistogramStale()) refreshHistogram();
+    }
+
+    /**
+     * Remove all statistics. The caller must hold the index's lock.
+     */
+    void clear() {
+        countsByValue.clear();
+        totalEntries.set(0L);
+        distinctValues.set(0L);
+        histogram = null;
+        changesSinceHistogram = 0L;
+        changesSinceVersion = 0L;
+        version.incrementAndGet();
+    }
+
+    @Override
+    public long getTotalEntries() {
+        return Math.max(0L, totalEntries.get());
+    }
+
+    @Override
+    public long getDistinctValueCount() {
+        return Math.max(0L, distinctValues.get());
+    }
+
+    /**
+     * Get the exact number of entries that have the given value.
+     * 
+     * @param value the converted value; may not be null
+     * @return the number of entries; never negative
+     */
+    long getEntryCount( Object value ) {
+        Long count = countsByValue.get(value);
+        return count != null ? count.longValue() : 0L;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This never computes the histogram, but instead returns the most recently computed histogram (which may be slightly out of
+     * date) and, if there is none or it is out of date, asks the executor to compute a new one.
+     * </p>
+     */
+    @Override
+    public List<Bucket> getHistogram() {
+        if (histogram == null || isHistogramStale()) refreshHistogram();
+        List<Bucket> result = this.histogram;
+        return result != null ? result : Collections.<Bucket>emptyList();
+    }
+
+    @Override
+    public long getVersion() {
+        return version.get();
+    }
+
+    private boolean isHistogramStale() {
+        return changesSinceHistogram > changeThreshold();
+    }
+
+    private long changeThreshold() {
+        return Math.max(MIN_CHANGES_BEFORE_REBUILDING_HISTOGRAM, getTotalEntries() / 10L);
+    }
+
+    private void refreshHistogram() {
+        if (!refreshingHistogram.compareAndSet(false, true)) return;
+        try {
+            refresher.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        // Reset the number of changes before computing, since the index may continue to change ...
+                        changesSinceHistogram = 0L;
+                        histogram = computeHistogram();
+                        version.incrementAndGet();
+                    } finally {
+                        refreshingHistogram.set(false);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The provider is shutting down, so just continue to use the existing histogram ...
+            refreshingHistogram.set(false);
+        }
+    }
+
+    /**
+     * Estimate the number of entries whose values are within the given range, using the exact counts for a single value and the
+     * most recent {@link #getHistogram() histogram} for all other ranges.
+     * 
+     * @param bounds the range of values; may be null if the number of all entries is to be returned
+     * @return the estimated number of entries; never negative
+     */
+    long estimateEntries( LocalIndex.Bounds bounds ) {
+        if (bounds == null) return getTotalEntries();
+        if (bounds.isSingleValue()) return getEntryCount(bounds.lower);
+        List<Bucket> buckets = getHistogram();
+        if (buckets.isEmpty()) {
+            // There is no histogram yet, so assume the range contains a fixed fraction of the entries ...
+            long total = getTotalEntries();
+            return total == 0L ? 0L : Math.max(1L, total / RANGE_SELECTIVITY_WITHOUT_HISTOGRAM);
+        }
+        long estimate = 0L;
+        for (Bucket bucket : buckets) {
+            if (bounds.lower != null && compare(bucket.getUpperValue(), bounds.lower) < 0) continue;
+            if (bounds.upper != null && compare(bucket.getLowerValue(), bounds.upper) > 0) break;
+            boolean lowerInside = bounds.lower == null || compare(bucket.getLowerValue(), bounds.lower) >= 0;
+            boolean upperInside = bounds.upper == null || compare(bucket.getUpperValue(), bounds.upper) <= 0;
+            if (lowerInside && upperInside) {
+                estimate += bucket.getEntryCount();
+            } else {
+                // The range only partially overlaps this bucket, so assume half of the entries are in the range ...
+                estimate += Math.max(1L, bucket.getEntryCount() / 2L);
+            }
+        }
+        return estimate;
+    }
+
+    private List<Bucket> computeHistogram() {
+        long total = getTotalEntries();
+        if (total == 0L) return Collections.emptyList();
+        long depth = Math.max(1L, total / BUCKET_COUNT);
+        List<Bucket> buckets = new ArrayList<>(BUCKET_COUNT + 1);
+        Object lower = null;
+        Object upper = null;
+        long entries = 0L;
+        long distinct = 0L;
+        for (Map.Entry<Object, Long> entry : countsByValue.entrySet()) {
+            if (lower == null) lower = entry.getKey();
+            upper = entry.getKey();
+            entries += entry.getValue().longValue();
+            ++distinct;
+            if (entries >= depth) {
+                buckets.add(new HistogramBucket(lower, upper, entries, distinct));
+                lower = null;
+                entries = 0L;
+                distinct = 0L;
+            }
+        }
+        if (lower != null) buckets.add(new HistogramBucket(lower, upper, entries, distinct));
+        return Collections.unmodifiableList(buckets);
+    }
+
+    @SuppressWarnings( {"unchecked", "rawtypes"} )
+    private static int compare( Object value1,
+                                Object value2 ) {
+        return ((Comparable)value1).compareTo(value2);
+    }
+
+    @Override
+    public String toString() {
+        return "entries=" + getTotalEntries() + ", distinct values=" + getDistinctValueCount();
+    }
+
+    @Immutable
+    protected static final class HistogramBucket implements Bucket {
+        private final Object lower;
+        private final Object upper;
+        private final long entries;
+        private final long distinct;
+
+        protected HistogramBucket( Object lower,
+                                   Object upper,
+                                   long entries,
+                                   long distinct ) {
+            this.lower = lower;
+            this.upper = upper;
+            this.entries = entries;
+            this.distinct = distinct;
+        }
+
+        @Override
+        public Object getLowerValue() {
+            return lower;
+        }
+
+        @Override
+        public Object getUpperValue() {
+            return upper;
+        }
+
+        @Override
+        public long getEntryCount() {
+            return entries;
+        }
+
+        @Override
+        public long getDistinctValueCount() {
+            return distinct;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + lower + "," + upper + "] entries=" + entries + ", distinct values=" + distinct;
+        }
+    }
+}
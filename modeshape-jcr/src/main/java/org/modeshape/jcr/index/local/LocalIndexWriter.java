@@ -0,0 +1,165 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.index.local;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import javax.transaction.Transaction;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.jcr.NodeTypeSchemata;
+import org.modeshape.jcr.NodeTypes;
+import org.modeshape.jcr.api.Binary;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.spi.index.provider.IndexWriter;
+import org.modeshape.jcr.value.BinaryValue;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.Path;
+import org.modeshape.jcr.value.Property;
+
+/**
+ * The {@link IndexWriter} for the {@link LocalIndexProvider}, which updates all of the provider's {@link LocalIndex indexes} and
+ * {@link LocalFullTextIndex full-text indexes} that apply to each changed node. The text of binary values is added to the
+ * full-text indexes when the repository {@link #addBinaryToIndex(Binary, IndexingContext) reports} that it has been extracted.
+ */
+@ThreadSafe
+class LocalIndexWriter implements IndexWriter {
+
+    private final LocalIndexProvider provider;
+
+    LocalIndexWriter( LocalIndexProvider provider ) {
+        this.provider = provider;
+    }
+
+    @Override
+    public boolean canBeSkipped() {
+        // Indexes might be defined after this writer is obtained, so this writer can never be skipped ...
+        return false;
+    }
+
+    @Override
+    public IndexingContext createIndexingContext( final Transaction txn ) {
+        return new IndexingContext() {
+            @Override
+            public Transaction getTransaction() {
+                return txn;
+            }
+        };
+    }
+
+    @Override
+    public void clearAllIndexes() {
+        for (LocalIndex index : provider.indexes()) {
+            index.removeAll();
+        }
+        for (LocalFullTextIndex index : provider.fullTextIndexes()) {
+            index.removeAll();
+        }
+    }
+
+    @Override
+    public void addToIndex( String workspace,
+                            NodeKey key,
+                            Path path,
+                            Name primaryType,
+                            Set<Name> mixinTypes,
+                            Iterator<Property> propertiesIterator,
+                            NodeTypeSchemata schemata,
+                            IndexingContext txnCtx ) {
+        updateIndex(workspace, key, path, primaryType, mixinTypes, propertiesIterator, schemata, txnCtx);
+    }
+
+    @Override
+    public void updateIndex( String workspace,
+                             NodeKey key,
+                             Path path,
+                             Name primaryType,
+                             Set<Name> mixinTypes,
+                             Iterator<Property> properties,
+                             NodeTypeSchemata schemata,
+                             IndexingContext txnCtx ) {
+        Collection<LocalIndex> indexes = provider.indexes();
+        Collection<LocalFullTextIndex> fullTextIndexes = provider.fullTextIndexes();
+        if (indexes.isEmpty() && fullTextIndexes.isEmpty()) return;
+        // The iterator can only be consumed once, so collect the properties by name ...
+        Map<Name, Property> propertiesByName = new HashMap<>();
+        while (properties.hasNext()) {
+            Property property = properties.next();
+            propertiesByName.put(property.getName(), property);
+        }
+        NodeTypes nodeTypes = provider.nodeTypes();
+        String nodeKey = key.toString();
+        for (LocalIndex index : indexes) {
+            if (index.appliesTo(primaryType, mixinTypes, nodeTypes)) {
+                index.update(nodeKey, primaryType, mixinTypes, propertiesByName);
+            } else {
+                // The node's types may have changed so that it no longer applies ...
+                index.remove(nodeKey);
+            }
+        }
+        for (LocalFullTextIndex index : fullTextIndexes) {
+            if (index.appliesTo(primaryType, mixinTypes, nodeTypes)) {
+                index.update(nodeKey, propertiesByName);
+            } else {
+                index.remove(nodeKey);
+            }
+        }
+    }
+
+    @Override
+    public void removeFromIndex( String workspace,
+                                 Iterable<NodeKey> keys,
+                                 IndexingContext txnCtx ) {
+        Collection<LocalIndex> indexes = provider.indexes();
+        Collection<LocalFullTextIndex> fullTextIndexes = provider.fullTextIndexes();
+        if (indexes.isEmpty() && fullTextIndexes.isEmpty()) return;
+        for (NodeKey key : keys) {
+            String nodeKey = key.toString();
+            for (LocalIndex index : indexes) {
+                index.remove(nodeKey);
+            }
+            for (LocalFullTextIndex index : fullTextIndexes) {
+                index.remove(nodeKey);
+            }
+        }
+    }
+
+    @Override
+    public void addBinaryToIndex( Binary binary,
+                                  IndexingContext txnCtx ) {
+        Collection<LocalFullTextIndex> fullTextIndexes = provider.fullTextIndexes();
+        if (fullTextIndexes.isEmpty() || !(binary instanceof BinaryValue)) return;
+        String sha1 = binary.getHexHash();
+        String text = null;
+        for (LocalFullTextIndex index : fullTextIndexes) {
+            // Only nodes that were indexed before the text was extracted are waiting for the text ...
+            if (!index.hasPending(sha1)) continue;
+            if (text == null) {
+                text = index.extractedTextOf((BinaryValue)binary);
+                if (text == null) return;
+            }
+            index.binaryTextAvailable(sha1, text);
+        }
+    }
+
+    @Override
+    public void removeBinariesFromIndex( Iterable<String> sha1s,
+                                         IndexingContext txnCtx ) {
+        // The text of binary values is stored with the nodes that use them, and is removed when those nodes are ...
+    }
+}
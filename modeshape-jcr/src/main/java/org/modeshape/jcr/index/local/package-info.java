@@ -0,0 +1,22 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * This package contains an {@link org.modeshape.jcr.spi.index.provider.IndexProvider} implementation that stores indexes on the
+ * local file system using MapDB B-trees. See {@link org.modeshape.jcr.index.local.LocalIndexProvider} for how to configure the
+ * provider in a repository configuration.
+ */
+
+package org.modeshape.jcr.index.local;
@@ -17,7 +17,9 @@ package org.modeshape.jcr.query;
 
 import java.io.DataInput;
 import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.net.URI;
@@ -61,9 +63,15 @@ import org.modeshape.jcr.value.StringFactory;
 import org.modeshape.jcr.value.UriFactory;
 import org.modeshape.jcr.value.ValueFactories;
 import org.modeshape.jcr.value.ValueFactory;
+import org.modeshape.jcr.value.basic.JodaDateTime;
 
 /**
  * A manager of temporary buffers used in the query system.
+ * <p>
+ * Buffers are kept either on the heap or in direct (off-heap) memory. The manager estimates the amount of memory used by all of
+ * its open buffers, and once that exceeds the {@link #getMemoryBudget() memory budget} the buffer being added to is moved to a
+ * temporary file on disk. The memory used by a buffer is released when the buffer is closed.
+ * </p>
  * 
  * @author Randall Hauch (rhauch@redhat.com)
  */
@@ -346,6 +354,18 @@ public class BufferManager implements AutoCloseable {
         }
     };
 
+    private final static Supplier<DB> ON_DISK_DB_SUPPLIER = new Supplier<DB>() {
+        @Override
+        public DB get() {
+            return DBMaker.newTempFileDB().transactionDisable().deleteFilesAfterClose().make();
+        }
+    };
+
+    /**
+     * The default number of bytes that the buffers of a manager may use in memory before they are moved to disk.
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024L * 1024L;
+
     private final static Serializer<?> DEFAULT_SERIALIZER = Serializer.BASIC;
     private final static BTreeKeySerializer<?> DEFAULT_BTREE_KEY_SERIALIZER = BTreeKeySerializer.BASIC;
 
@@ -354,17 +374,45 @@ public class BufferManager implements AutoCloseable {
     private final Map<Class<?>, BTreeKeySerializer<?>> packedBTreeKeySerializersByClass;
     private final DbHolder offheap;
     private final DbHolder onheap;
-    private final AtomicLong dbCounter = new AtomicLong();
+    private final DbHolder ondisk;
+    private final AtomicLong dbCounter;
+    private final long memoryBudget;
+    private final AtomicLong memoryUsed = new AtomicLong();
+    private final boolean ownsDatabases;
 
     public BufferManager( ExecutionContext context ) {
-        this(context, OFF_HEAP_DB_SUPPLIER, ON_HEAP_DB_SUPPLIER);
+        this(context, DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * Create a buffer manager.
+     * 
+     * @param context the execution context; may not be null
+     * @param memoryBudget the number of bytes that the buffers may use in memory before they are moved to disk, or 0 if the
+     *        buffers should always be kept in memory
+     */
+    public BufferManager( ExecutionContext context,
+                          long memoryBudget ) {
+        this(context, OFF_HEAP_DB_SUPPLIER, ON_HEAP_DB_SUPPLIER, ON_DISK_DB_SUPPLIER, memoryBudget);
     }
 
     protected BufferManager( ExecutionContext context,
                              Supplier<DB> offheapDbSupplier,
                              Supplier<DB> onheapDbSupplier ) {
+        this(context, offheapDbSupplier, onheapDbSupplier, ON_DISK_DB_SUPPLIER, DEFAULT_MEMORY_BUDGET);
+    }
+
+    protected BufferManager( ExecutionContext context,
+                             Supplier<DB> offheapDbSupplier,
+                             Supplier<DB> onheapDbSupplier,
+                             Supplier<DB> ondiskDbSupplier,
+                             long memoryBudget ) {
         offheap = new DbHolder(offheapDbSupplier);
         onheap = new DbHolder(onheapDbSupplier);
+        ondisk = new DbHolder(ondiskDbSupplier);
+        dbCounter = new AtomicLong();
+        this.memoryBudget = memoryBudget > 0L ? memoryBudget : 0L;
+        this.ownsDatabases = true;
 
         // Create the serializers ...
         ValueFactories factories = context.getValueFactories();
@@ -382,29 +430,11 @@ public class BufferManager implements AutoCloseable {
         serializersByClass.put(Double.class, new DoubleSerializer());
         serializersByClass.put(BigDecimal.class, new ValueSerializer<BigDecimal>(stringFactory, decimalFactory));
         serializersByClass.put(URI.class, new ValueSerializer<URI>(stringFactory, uriFactory));
-        serializersByClass.put(DateTime.class, new ValueSerializer<DateTime>(stringFactory, dateFactory));
+        serializersByClass.put(DateTime.class, new DateTimeSerializer());
         serializersByClass.put(Path.class, new ValueSerializer<Path>(stringFactory, pathFactory));
         serializersByClass.put(Name.class, new ValueSerializer<Name>(stringFactory, nameFactory));
         serializersByClass.put(Reference.class, new ValueSerializer<Reference>(stringFactory, refFactory));
-        serializersByClass.put(NodeKey.class, new Serializer<NodeKey>() {
-            @Override
-            public void serialize( DataOutput out,
-                                   NodeKey value ) throws IOException {
-                out.writeUTF(value.toString());
-            }
-
-            @Override
-            public NodeKey deserialize( DataInput in,
-                                        int available ) throws IOException {
-                String keyStr = in.readUTF();
-                return new NodeKey(keyStr);
-            }
-
-            @Override
-            public int fixedSize() {
-                return -1; // not fixed size
-            }
-        });
+        serializersByClass.put(NodeKey.class, new NodeKeySerializer());
 
         bTreeKeySerializersByClass = new HashMap<Class<?>, BTreeKeySerializer<?>>();
         packedBTreeKeySerializersByClass = new HashMap<Class<?>, BTreeKeySerializer<?>>();
@@ -428,8 +458,50 @@ public class BufferManager implements AutoCloseable {
                                                                                                          decimalFactory));
     }
 
+    private BufferManager( BufferManager shared ) {
+        serializersByClass = shared.serializersByClass;
+        bTreeKeySerializersByClass = shared.bTreeKeySerializersByClass;
+        packedBTreeKeySerializersByClass = shared.packedBTreeKeySerializersByClass;
+        offheap = shared.offheap;
+        onheap = shared.onheap;
+        ondisk = shared.ondisk;
+        dbCounter = shared.dbCounter;
+        memoryBudget = shared.memoryBudget;
+        ownsDatabases = false;
+    }
+
+    /**
+     * Obtain a buffer manager for the buffers of a single query. The resulting manager stores its buffers in the same databases
+     * as this manager, but it applies the {@link #getMemoryBudget() memory budget} only to its own buffers. Closing the resulting
+     * manager does not close the databases; they are closed only when this manager is closed.
+     * 
+     * @return the buffer manager for one query; never null
+     */
+    public BufferManager forQuery() {
+        return new BufferManager(this);
+    }
+
+    /**
+     * Get the number of bytes that the buffers may use in memory before they are moved to disk.
+     * 
+     * @return the memory budget in bytes, or 0 if the buffers are always kept in memory
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Get the estimated number of bytes used in memory by the open buffers.
+     * 
+     * @return the estimated memory usage in bytes
+     */
+    public long getMemoryUsed() {
+        return memoryUsed.get();
+    }
+
     @Override
     public void close() {
+        if (!ownsDatabases) return;
         RuntimeException error = null;
         try {
             onheap.close();
@@ -441,6 +513,12 @@ public class BufferManager implements AutoCloseable {
             } catch (RuntimeException e) {
                 if (error == null) error = e;
             }
+            try {
+                ondisk.close();
+            } catch (RuntimeException e) {
+                if (error == null) error = e;
+            }
+            memoryUsed.set(0L);
             if (error != null) throw error;
         }
     }
@@ -525,40 +603,117 @@ public class BufferManager implements AutoCloseable {
         return serializer.withComparator(comparator);
     }
 
-    protected final DB db( boolean useHeap ) {
-        return useHeap ? onheap.get() : offheap.get();
-    }
-
-    protected final void delete( String name,
-                                 boolean onHeap ) {
-        db(onHeap).delete(name);
+    /**
+     * A component that creates the MapDB structure used by a buffer within a given database.
+     * 
+     * @param <S> the type of structure
+     */
+    protected static interface StructureFactory<S> {
+        /**
+         * Create the structure in the given database.
+         * 
+         * @param db the database; never null
+         * @return the new structure; never null
+         */
+        S create( DB db );
     }
 
     protected abstract class CloseableBuffer implements Buffer {
         protected final String name;
-        protected final boolean onHeap;
+        private final SizeEstimator estimator;
+        private DbHolder location;
+        private long memoryReserved = 0L;
+        private boolean closed = false;
 
         protected CloseableBuffer( String name,
-                                   boolean onHeap ) {
+                                   boolean onHeap,
+                                   SizeEstimator estimator ) {
             this.name = name;
-            this.onHeap = onHeap;
+            this.estimator = estimator;
+            this.location = onHeap ? onheap : offheap;
         }
 
+        protected final DB db() {
+            return location.get();
+        }
+
+        /**
+         * Determine whether this buffer's contents have been moved to disk.
+         * 
+         * @return true if the buffer is stored on disk, or false if it is stored in memory
+         */
+        public final boolean isOnDisk() {
+            return location == ondisk;
+        }
+
+        /**
+         * Record that a new entry was added to this buffer, and move the buffer to disk if the memory budget is exceeded.
+         * 
+         * @param key the key of the entry; may be null
+         * @param value the value of the entry; may be null
+         */
+        protected final void added( Object key,
+                                    Object value ) {
+            if (isOnDisk() || memoryBudget == 0L) return;
+            long bytes = estimator.estimate(key, value);
+            memoryReserved += bytes;
+            if (memoryUsed.addAndGet(bytes) > memoryBudget) {
+                spill();
+            }
+        }
+
+        private void spill() {
+            DB previous = db();
+            location = ondisk;
+            moveTo(db());
+            previous.delete(name);
+            release();
+        }
+
+        private void release() {
+            memoryUsed.addAndGet(-memoryReserved);
+            memoryReserved = 0L;
+        }
+
+        /**
+         * Create this buffer's structure in the supplied database, copy all of the entries into it, and use it in place of the
+         * current structure.
+         * 
+         * @param db the database to which this buffer is to be moved; never null
+         */
+        protected abstract void moveTo( DB db );
+
         @Override
         public void close() {
-            BufferManager.this.delete(name, onHeap);
+            if (closed) return;
+            closed = true;
+            try {
+                db().delete(name);
+            } finally {
+                release();
+            }
         }
     }
 
     protected final class CloseableQueueBuffer<T> extends CloseableBuffer implements QueueBuffer<T> {
-        protected final Map<Long, T> buffer;
+        private final StructureFactory<? extends Map<Long, T>> factory;
+        protected Map<Long, T> buffer;
         private final AtomicLong size = new AtomicLong();
 
         protected CloseableQueueBuffer( String name,
                                         boolean onHeap,
-                                        Map<Long, T> buffer ) {
-            super(name, onHeap);
-            this.buffer = buffer;
+                                        StructureFactory<? extends Map<Long, T>> factory,
+                                        SizeEstimator estimator ) {
+            super(name, onHeap, estimator);
+            this.factory = factory;
+            this.buffer = factory.create(db());
+        }
+
+        @Override
+        protected void moveTo( DB db ) {
+            Map<Long, T> moved = factory.create(db);
+            moved.putAll(buffer);
+            buffer = moved;
         }
 
         @Override
@@ -574,6 +729,7 @@ public class BufferManager implements AutoCloseable {
         @Override
         public void append( T value ) {
             buffer.put(size.getAndIncrement(), value);
+            added(null, value);
         }
 
         @Override
@@ -608,13 +764,23 @@ public class BufferManager implements AutoCloseable {
     }
 
     protected final class CloseableDistinctBuffer<T> extends CloseableBuffer implements DistinctBuffer<T> {
-        private final Set<T> buffer;
+        private final StructureFactory<? extends Set<T>> factory;
+        private Set<T> buffer;
 
         protected CloseableDistinctBuffer( String name,
                                            boolean onHeap,
-                                           Set<T> buffer ) {
-            super(name, onHeap);
-            this.buffer = buffer;
+                                           StructureFactory<? extends Set<T>> factory,
+                                           SizeEstimator estimator ) {
+            super(name, onHeap, estimator);
+            this.factory = factory;
+            this.buffer = factory.create(db());
+        }
+
+        @Override
+        protected void moveTo( DB db ) {
+            Set<T> moved = factory.create(db);
+            moved.addAll(buffer);
+            buffer = moved;
         }
 
         @Override
@@ -629,7 +795,11 @@ public class BufferManager implements AutoCloseable {
 
         @Override
         public boolean contains( T value ) {
-            return !buffer.add(value);
+            if (buffer.add(value)) {
+                added(null, value);
+                return false;
+            }
+            return true;
         }
 
         @Override
@@ -644,13 +814,23 @@ public class BufferManager implements AutoCloseable {
     }
 
     protected final class CloseableSortingBuffer<K, V> extends CloseableBuffer implements SortingBuffer<K, V> {
-        private final NavigableMap<K, V> buffer;
+        private final StructureFactory<? extends NavigableMap<K, V>> factory;
+        private NavigableMap<K, V> buffer;
 
         protected CloseableSortingBuffer( String name,
                                           boolean onHeap,
-                                          NavigableMap<K, V> buffer ) {
-            super(name, onHeap);
-            this.buffer = buffer;
+                                          StructureFactory<? extends NavigableMap<K, V>> factory,
+                                          SizeEstimator estimator ) {
+            super(name, onHeap, estimator);
+            this.factory = factory;
+            this.buffer = factory.create(db());
+        }
+
+        @Override
+        protected void moveTo( DB db ) {
+            NavigableMap<K, V> moved = factory.create(db);
+            moved.putAll(buffer);
+            buffer = moved;
         }
 
         @Override
@@ -666,7 +846,9 @@ public class BufferManager implements AutoCloseable {
         @Override
         public void put( K sortable,
                          V record ) {
-            buffer.put(sortable, record);
+            if (buffer.put(sortable, record) == null) {
+                added(sortable, record);
+            }
         }
 
         @Override
@@ -780,14 +962,24 @@ public class BufferManager implements AutoCloseable {
 
     protected final class CloseableSortingBufferWithDuplicates<K extends Comparable<K>, V> extends CloseableBuffer
         implements SortingBuffer<K, V> {
-        private final NavigableMap<UniqueKey<K>, V> buffer;
+        private final StructureFactory<? extends NavigableMap<UniqueKey<K>, V>> factory;
+        private NavigableMap<UniqueKey<K>, V> buffer;
         private final AtomicLong counter = new AtomicLong();
 
         protected CloseableSortingBufferWithDuplicates( String name,
                                                         boolean onHeap,
-                                                        NavigableMap<UniqueKey<K>, V> buffer ) {
-            super(name, onHeap);
-            this.buffer = buffer;
+                                                        StructureFactory<? extends NavigableMap<UniqueKey<K>, V>> factory,
+                                                        SizeEstimator estimator ) {
+            super(name, onHeap, estimator);
+            this.factory = factory;
+            this.buffer = factory.create(db());
+        }
+
+        @Override
+        protected void moveTo( DB db ) {
+            NavigableMap<UniqueKey<K>, V> moved = factory.create(db);
+            moved.putAll(buffer);
+            buffer = moved;
         }
 
         @Override
@@ -804,6 +996,7 @@ public class BufferManager implements AutoCloseable {
         public void put( K sortable,
                          V record ) {
             buffer.put(new UniqueKey<K>(sortable, counter.incrementAndGet()), record);
+            added(sortable, record);
         }
 
         @Override
@@ -898,7 +1091,7 @@ public class BufferManager implements AutoCloseable {
         }
     }
 
-    protected final class MakeOrderedBuffer<T> implements QueueBufferMaker<T> {
+    protected final class MakeOrderedBuffer<T> implements QueueBufferMaker<T>, StructureFactory<HTreeMap<Long, T>> {
         private final String name;
         private boolean useHeap = true;
         private final Serializer<T> serializer;
@@ -917,14 +1110,18 @@ public class BufferManager implements AutoCloseable {
             return this;
         }
 
+        @Override
+        public HTreeMap<Long, T> create( DB db ) {
+            return db.createHashMap(name).valueSerializer(serializer).counterEnable().make();
+        }
+
         @Override
         public QueueBuffer<T> make() {
-            HTreeMap<Long, T> values = db(useHeap).createHashMap(name).valueSerializer(serializer).counterEnable().make();
-            return new CloseableQueueBuffer<T>(name, useHeap, values);
+            return new CloseableQueueBuffer<T>(name, useHeap, this, SizeEstimator.forValues(serializer));
         }
     }
 
-    protected final class MakeDistinctBuffer<T> implements DistinctBufferMaker<T> {
+    protected final class MakeDistinctBuffer<T> implements DistinctBufferMaker<T>, StructureFactory<Set<T>> {
         private final String name;
         private boolean useHeap = true;
         private boolean keepsize = false;
@@ -951,15 +1148,19 @@ public class BufferManager implements AutoCloseable {
         }
 
         @Override
-        public DistinctBuffer<T> make() {
-            HTreeSetMaker maker = db(useHeap).createHashSet(name).serializer(serializer);
+        public Set<T> create( DB db ) {
+            HTreeSetMaker maker = db.createHashSet(name).serializer(serializer);
             if (keepsize) maker = maker.counterEnable();
-            Set<T> buffer = maker.make();
-            return new CloseableDistinctBuffer<T>(name, useHeap, buffer);
+            return maker.make();
+        }
+
+        @Override
+        public DistinctBuffer<T> make() {
+            return new CloseableDistinctBuffer<T>(name, useHeap, this, SizeEstimator.forValues(serializer));
         }
     }
 
-    protected final class MakeSortingBuffer<K, V> implements SortingBufferMaker<K, V> {
+    protected final class MakeSortingBuffer<K, V> implements SortingBufferMaker<K, V>, StructureFactory<NavigableMap<K, V>> {
         private final String name;
         private boolean useHeap = true;
         private boolean keepsize = false;
@@ -987,15 +1188,21 @@ public class BufferManager implements AutoCloseable {
         }
 
         @Override
-        public SortingBuffer<K, V> make() {
-            BTreeMapMaker maker = db(useHeap).createTreeMap(name).keySerializer(keySerializer).valueSerializer(valueSerializer);
+        public NavigableMap<K, V> create( DB db ) {
+            BTreeMapMaker maker = db.createTreeMap(name).keySerializer(keySerializer).valueSerializer(valueSerializer);
             if (keepsize) maker = maker.counterEnable();
-            NavigableMap<K, V> buffer = maker.make();
-            return new CloseableSortingBuffer<K, V>(name, useHeap, buffer);
+            return maker.make();
+        }
+
+        @Override
+        public SortingBuffer<K, V> make() {
+            return new CloseableSortingBuffer<K, V>(name, useHeap, this, SizeEstimator.forSortedEntries(keySerializer,
+                                                                                                       valueSerializer));
         }
     }
 
-    protected final class MakeSortingWithDuplicatesBuffer<K extends Comparable<K>, V> implements SortingBufferMaker<K, V> {
+    protected final class MakeSortingWithDuplicatesBuffer<K extends Comparable<K>, V>
+        implements SortingBufferMaker<K, V>, StructureFactory<NavigableMap<UniqueKey<K>, V>> {
         private final String name;
         private boolean useHeap = true;
         private boolean keepsize = false;
@@ -1027,14 +1234,18 @@ public class BufferManager implements AutoCloseable {
         }
 
         @Override
-        public SortingBuffer<K, V> make() {
+        public NavigableMap<UniqueKey<K>, V> create( DB db ) {
             Comparator<UniqueKey<K>> comparator = this.keyComparator != null ? new UniqueKeyComparator<K>(keyComparator) : new ComparableUniqueKeyComparator<K>();
             BTreeKeySerializer<UniqueKey<K>> uniqueKeySerializer = new UniqueKeySerializer<K>(keySerializer, comparator);
-            BTreeMapMaker maker = db(useHeap).createTreeMap(name).keySerializer(uniqueKeySerializer)
-                                             .valueSerializer(valueSerializer);
+            BTreeMapMaker maker = db.createTreeMap(name).keySerializer(uniqueKeySerializer).valueSerializer(valueSerializer);
             if (keepsize) maker = maker.counterEnable();
-            NavigableMap<UniqueKey<K>, V> buffer = maker.make();
-            return new CloseableSortingBufferWithDuplicates<K, V>(name, useHeap, buffer);
+            return maker.make();
+        }
+
+        @Override
+        public SortingBuffer<K, V> make() {
+            return new CloseableSortingBufferWithDuplicates<K, V>(name, useHeap, this,
+                                                                  SizeEstimator.forEntries(keySerializer, valueSerializer));
         }
     }
 
@@ -1281,6 +1492,251 @@ public class BufferManager implements AutoCloseable {
         }
     }
 
+    /**
+     * An object that estimates the number of bytes used by the entries in a buffer. Rather than serializing every entry, only
+     * the first entries and then every {@value #SAMPLE_INTERVAL}th entry are serialized, and the average size of these samples is
+     * used as the estimate for all entries.
+     */
+    protected static abstract class SizeEstimator {
+        private static final int SAMPLED_ENTRIES = 32;
+        private static final int SAMPLE_INTERVAL = 256;
+        /**
+         * The approximate number of bytes used by the MapDB structures to hold each entry, in addition to the serialized form.
+         */
+        private static final int ENTRY_OVERHEAD = 32;
+
+        private final CountingOutput output = new CountingOutput();
+        private long entries = 0L;
+        private long samples = 0L;
+        private long sampledBytes = 0L;
+
+        /**
+         * Estimate the number of bytes used by a new entry.
+         * 
+         * @param key the key of the entry; may be null
+         * @param value the value of the entry; may be null
+         * @return the estimated number of bytes
+         */
+        protected final long estimate( Object key,
+                                       Object value ) {
+            ++entries;
+            if (entries <= SAMPLED_ENTRIES || entries % SAMPLE_INTERVAL == 0L) {
+                try {
+                    write(output, key, value);
+                } catch (IOException | RuntimeException e) {
+                    // Just use what was written so far ...
+                }
+                ++samples;
+                sampledBytes += output.reset();
+            }
+            return sampledBytes / samples + ENTRY_OVERHEAD;
+        }
+
+        /**
+         * Write the serialized form of the entry.
+         * 
+         * @param out the output; never null
+         * @param key the key of the entry; may be null
+         * @param value the value of the entry; may be null
+         * @throws IOException if there is a problem serializing the entry
+         */
+        protected abstract void write( DataOutput out,
+                                       Object key,
+                                       Object value ) throws IOException;
+
+        protected static <T> SizeEstimator forValues( final Serializer<T> serializer ) {
+            return new SizeEstimator() {
+                @SuppressWarnings( "unchecked" )
+                @Override
+                protected void write( DataOutput out,
+                                      Object key,
+                                      Object value ) throws IOException {
+                    serializer.serialize(out, (T)value);
+                }
+            };
+        }
+
+        protected static <K, V> SizeEstimator forSortedEntries( final BTreeKeySerializer<K> keySerializer,
+                                                                final Serializer<V> valueSerializer ) {
+            return new SizeEstimator() {
+                @SuppressWarnings( "unchecked" )
+                @Override
+                protected void write( DataOutput out,
+                                      Object key,
+                                      Object value ) throws IOException {
+                    keySerializer.serialize(out, 0, 1, new Object[] {key});
+                    valueSerializer.serialize(out, (V)value);
+                }
+            };
+        }
+
+        protected static <K, V> SizeEstimator forEntries( final Serializer<K> keySerializer,
+                                                          final Serializer<V> valueSerializer ) {
+            return new SizeEstimator() {
+                @SuppressWarnings( "unchecked" )
+                @Override
+                protected void write( DataOutput out,
+                                      Object key,
+                                      Object value ) throws IOException {
+                    keySerializer.serialize(out, (K)key);
+                    out.writeLong(0L); // the unique identifier
+                    valueSerializer.serialize(out, (V)value);
+                }
+            };
+        }
+    }
+
+    /**
+     * A {@link DataOutput} that discards everything written to it, and only counts the number of bytes.
+     */
+    protected static final class CountingOutput extends DataOutputStream {
+        private static final OutputStream DISCARD = new OutputStream() {
+            @Override
+            public void write( int b ) {
+                // discard
+            }
+
+            @Override
+            public void write( byte[] b,
+                               int off,
+                               int len ) {
+                // discard
+            }
+        };
+
+        protected CountingOutput() {
+            super(DISCARD);
+        }
+
+        /**
+         * Get the number of bytes written since the last reset, and reset the count.
+         * 
+         * @return the number of bytes written
+         */
+        protected int reset() {
+            int result = written;
+            written = 0;
+            return result;
+        }
+    }
+
+    /**
+     * A serializer for {@link DateTime} values that writes the instant as a long and the time zone identifier, rather than
+     * formatting and parsing the ISO-8601 string representation.
+     */
+    public static class DateTimeSerializer implements Serializer<DateTime>, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void serialize( DataOutput out,
+                               DateTime value ) throws IOException {
+            out.writeLong(value.getMillisecondsInUtc());
+            out.writeUTF(value.getTimeZoneId());
+        }
+
+        @Override
+        public DateTime deserialize( DataInput in,
+                                     int available ) throws IOException {
+            long millis = in.readLong();
+            String timeZoneId = in.readUTF();
+            return new JodaDateTime(millis, timeZoneId);
+        }
+
+        @Override
+        public int fixedSize() {
+            return -1; // not fixed size
+        }
+
+        @Override
+        public String toString() {
+            return "DateTimeSerializer";
+        }
+    }
+
+    /**
+     * A serializer for {@link NodeKey}s. Most keys have hexadecimal source and workspace keys and a UUID identifier, and these
+     * are written in a compact binary form of 25 bytes (rather than the 52 bytes of the string form). All other keys are written
+     * as strings.
+     */
+    public static class NodeKeySerializer implements Serializer<NodeKey>, Serializable {
+        private static final long serialVersionUID = 1L;
+        private static final byte STRING_FORM = 0;
+        private static final byte BINARY_FORM = 1;
+        // These match the lengths of the source and workspace keys in NodeKey ...
+        private static final int SOURCE_LENGTH = 7;
+        private static final int WORKSPACE_LENGTH = 7;
+        private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+        @Override
+        public void serialize( DataOutput out,
+                               NodeKey value ) throws IOException {
+            if (value.hasUuidIdentifier()) {
+                long source = parseHex(value.getSourceKey());
+                long workspace = parseHex(value.getWorkspaceKey());
+                if (source != -1L && workspace != -1L) {
+                    out.writeByte(BINARY_FORM);
+                    out.writeInt((int)source);
+                    out.writeInt((int)workspace);
+                    out.writeLong(value.getUuidMostSignificantBits());
+                    out.writeLong(value.getUuidLeastSignificantBits());
+                    return;
+                }
+            }
+            out.writeByte(STRING_FORM);
+            out.writeUTF(value.toString());
+        }
+
+        @Override
+        public NodeKey deserialize( DataInput in,
+                                    int available ) throws IOException {
+            if (in.readByte() == STRING_FORM) {
+                return new NodeKey(in.readUTF());
+            }
+            String source = hex(in.readInt(), SOURCE_LENGTH);
+            String workspace = hex(in.readInt(), WORKSPACE_LENGTH);
+            return new NodeKey(source, workspace, in.readLong(), in.readLong());
+        }
+
+        /**
+         * Parse the lowercase hexadecimal digits of the source or workspace key.
+         * 
+         * @param str the 7-character key
+         * @return the value, or -1 if any character is not a lowercase hexadecimal digit
+         */
+        private static long parseHex( String str ) {
+            long result = 0L;
+            for (int i = 0; i != str.length(); ++i) {
+                char c = str.charAt(i);
+                int digit;
+                if (c >= '0' && c <= '9') digit = c - '0';
+                else if (c >= 'a' && c <= 'f') digit = c - 'a' + 10;
+                else return -1L;
+                result = result << 4 | digit;
+            }
+            return result;
+        }
+
+        private static String hex( long value,
+                                   int digits ) {
+            char[] chars = new char[digits];
+            for (int i = digits - 1; i >= 0; --i) {
+                chars[i] = HEX_DIGITS[(int)(value & 0xF)];
+                value >>>= 4;
+            }
+            return new String(chars);
+        }
+
+        @Override
+        public int fixedSize() {
+            return -1; // not fixed size
+        }
+
+        @Override
+        public String toString() {
+            return "NodeKeySerializer";
+        }
+    }
+
     public static class DoubleSerializer implements Serializer<Double>, Serializable {
         private static final long serialVersionUID = 1L;
 
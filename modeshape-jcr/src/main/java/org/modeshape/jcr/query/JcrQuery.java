@@ -79,6 +79,11 @@ public class JcrQuery extends JcrAbstractQuery {
         this.hints.includeSystemContent = includeSystemContent;
     }
 
+    @Override
+    public void streamResults( boolean streamResults ) {
+        this.hints.restartable = !streamResults;
+    }
+
     protected QueryCommand query() {
         return query;
     }
@@ -108,7 +113,9 @@ public class JcrQuery extends JcrAbstractQuery {
         context.checkValid();
         final long start = System.nanoTime();
         // Create an executable query and set it on this object ...
-        CancellableQuery newExecutable = context.createExecutableQuery(query, hints, variables);
+        // All of the buffers used by this query (including those of a restartable result) share one memory budget ...
+        BufferManager bufferMgr = context.getBufferManager().forQuery();
+        CancellableQuery newExecutable = context.createExecutableQuery(query, hints, variables, bufferMgr);
         CancellableQuery executable = executingQuery.getAndSet(newExecutable);
         if (executable == null) {
             // We are the first to call 'execute()', so use our newly-created one ...
@@ -122,12 +129,14 @@ public class JcrQuery extends JcrAbstractQuery {
 
         checkForProblems(result.getProblems());
         context.recordDuration(Math.abs(System.nanoTime() - start), TimeUnit.NANOSECONDS, statement, language);
+        boolean restartable = hints.restartable;
+        int rowsInMemory = hints.rowsKeptInMemory;
         if (Query.XPATH.equals(language)) {
-            return new XPathQueryResult(context, statement, result, hints.restartable, hints.rowsKeptInMemory);
+            return new XPathQueryResult(context, statement, result, restartable, rowsInMemory, bufferMgr);
         } else if (Query.SQL.equals(language)) {
-            return new JcrSqlQueryResult(context, statement, result, hints.restartable, hints.rowsKeptInMemory);
+            return new JcrSqlQueryResult(context, statement, result, restartable, rowsInMemory, bufferMgr);
         }
-        return new JcrQueryResult(context, statement, result, hints.restartable, hints.rowsKeptInMemory);
+        return new JcrQueryResult(context, statement, result, restartable, rowsInMemory, bufferMgr);
     }
 
     @SuppressWarnings( "deprecation" )
@@ -138,7 +147,8 @@ public class JcrQuery extends JcrAbstractQuery {
         // Set to only compute the plan and then create an executable query ...
         PlanHints hints = this.hints.clone();
         hints.planOnly = true;
-        CancellableQuery planOnlyExecutable = context.createExecutableQuery(query, hints, variables);
+        BufferManager bufferMgr = context.getBufferManager().forQuery();
+        CancellableQuery planOnlyExecutable = context.createExecutableQuery(query, hints, variables, bufferMgr);
 
         // otherwise, some other thread called execute, so we can use it and just wait for the results ...
         final QueryResults result = planOnlyExecutable.execute(); // may be cancelled
@@ -83,12 +83,14 @@ public interface JcrQueryContext {
      * @param query the abstract query command; may not be null
      * @param hints the hints
      * @param variables the map of variables and the corresonding values
+     * @param bufferMgr the buffer manager for this query's buffers; may not be null
      * @return the cancellable query
      * @throws RepositoryException if there is a problem accessing or using the repository
      */
     CancellableQuery createExecutableQuery( QueryCommand query,
                                             PlanHints hints,
-                                            Map<String, Object> variables ) throws RepositoryException;
+                                            Map<String, Object> variables,
+                                            BufferManager bufferMgr ) throws RepositoryException;
 
     /**
      * Obtain the JCR node given the supplied cached node.
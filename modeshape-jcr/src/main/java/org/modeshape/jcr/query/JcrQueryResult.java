@@ -16,9 +16,11 @@
 package org.modeshape.jcr.query;
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import javax.jcr.ItemNotFoundException;
@@ -38,10 +40,15 @@ import org.modeshape.common.collection.Problem.Status;
 import org.modeshape.jcr.JcrI18n;
 import org.modeshape.jcr.cache.CachedNode;
 import org.modeshape.jcr.cache.CachedNodeSupplier;
+import org.modeshape.jcr.cache.PropertyTypeUtil;
 import org.modeshape.jcr.query.NodeSequence.Batch;
 import org.modeshape.jcr.query.NodeSequence.Restartable;
 import org.modeshape.jcr.query.QueryResults.Columns;
+import org.modeshape.jcr.query.engine.CoveredCachedNode;
+import org.modeshape.jcr.query.engine.process.DelegatingSequence;
 import org.modeshape.jcr.query.engine.process.RestartableSequence;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.ValueFormatException;
 
 /**
  * The results of a query. This is not thread-safe because it relies upon JcrSession, which is not thread-safe. Also, although the
@@ -76,15 +83,26 @@ public class JcrQueryResult implements org.modeshape.jcr.api.query.QueryResult {
                               QueryResults results,
                               boolean restartable,
                               int numRowsInMemory ) {
+        this(context, query, results, restartable, numRowsInMemory, context.getBufferManager());
+    }
+
+    protected JcrQueryResult( JcrQueryContext context,
+                              String query,
+                              QueryResults results,
+                              boolean restartable,
+                              int numRowsInMemory,
+                              BufferManager bufferMgr ) {
         this.context = context;
         this.results = results;
         this.queryStatement = query;
         this.restartable = restartable;
-        if (!restartable || results.getRows().isEmpty()) {
+        if (results.getRows().isEmpty()) {
             this.sequence = results.getRows();
+        } else if (!restartable) {
+            // Stream the rows, releasing the underlying resources as soon as all of the rows have been read ...
+            this.sequence = new StreamingSequence(results.getRows());
         } else {
             String workspace = context.getWorkspaceName();
-            BufferManager bufferMgr = context.getBufferManager();
             CachedNodeSupplier nodeCache = results.getCachedNodes();
             this.sequence = new RestartableSequence(workspace, results.getRows(), bufferMgr, nodeCache, numRowsInMemory);
         }
@@ -309,6 +327,7 @@ public class JcrQueryResult implements org.modeshape.jcr.api.query.QueryResult {
         private final Set<String> selectorNames;
         protected final Columns columns;
         protected final String query;
+        private final Map<String, Name> propertyNames = new HashMap<>();
 
         protected QueryResultRowIterator( JcrQueryContext context,
                                           String query,
@@ -383,6 +402,31 @@ public class JcrQueryResult implements org.modeshape.jcr.api.query.QueryResult {
             return context.createValue(PropertyType.LONG, context.getDepth(node));
         }
 
+        /**
+         * Get the name of the property with the supplied string form.
+         * 
+         * @param propertyName the string form of the property name; may not be null
+         * @return the name, or null if the string is not a valid name
+         */
+        protected Name nameFor( String propertyName ) {
+            Name name = propertyNames.get(propertyName);
+            if (name == null && !propertyNames.containsKey(propertyName)) {
+                try {
+                    name = context.getExecutionContext().getValueFactories().getNameFactory().create(propertyName);
+                } catch (ValueFormatException e) {
+                    // Not a valid name (e.g., the prefix is not registered) ...
+                }
+                propertyNames.put(propertyName, name);
+            }
+            return name;
+        }
+
+        protected Value jcrValue( org.modeshape.jcr.value.Property property ) {
+            if (property == null || property.isEmpty()) return null;
+            // Use only the first value of a multi-valued property ...
+            return context.createValue(PropertyTypeUtil.jcrPropertyTypeFor(property), property.getFirstValue());
+        }
+
         protected Value jcrPath( String path ) {
             return context.createValue(PropertyType.PATH, path);
         }
@@ -436,17 +480,29 @@ public class JcrQueryResult implements org.modeshape.jcr.api.query.QueryResult {
         }
     }
 
+    /**
+     * The base class for the rows returned by the {@link QueryResultRowIterator}. Each row captures the nodes and scores of the
+     * current row in the batch, since the batch moves on to other rows (and may be discarded) as the iterator advances. The
+     * {@link Node} instances and the {@link #getValues() values} are obtained only when needed.
+     */
     protected static abstract class AbstractRow implements javax.jcr.query.Row {
         protected final QueryResultRowIterator iterator;
-        protected final Batch batchAtRow;
+        protected final CachedNode[] nodes;
+        protected final float[] scores;
         private Value[] values = null;
 
         protected AbstractRow( QueryResultRowIterator iterator,
                                Batch batchAtRow ) {
             this.iterator = iterator;
-            this.batchAtRow = batchAtRow;
             assert this.iterator != null;
-            assert this.batchAtRow != null;
+            assert batchAtRow != null;
+            int width = batchAtRow.width();
+            this.nodes = new CachedNode[width];
+            this.scores = new float[width];
+            for (int i = 0; i != width; ++i) {
+                this.nodes[i] = batchAtRow.getNode(i);
+                this.scores[i] = batchAtRow.getScore(i);
+            }
         }
 
         @Override
@@ -455,7 +511,7 @@ public class JcrQueryResult implements org.modeshape.jcr.api.query.QueryResult {
             if (nodeIndex < 0) {
                 throw new RepositoryException(JcrI18n.selectorNotUsedInQuery.text(selectorName, iterator.query));
             }
-            CachedNode cachedNode = batchAtRow.getNode(nodeIndex);
+            CachedNode cachedNode = nodes[nodeIndex];
             return cachedNode == null ? null : iterator.context.getNode(cachedNode);
         }
 
@@ -482,13 +538,21 @@ public class JcrQueryResult implements org.modeshape.jcr.api.query.QueryResult {
                     return iterator.jcrDepth(cachedNode);
                 }
                 if (JCR_SCORE_COLUMN_NAME.equals(propertyName)) {
-                    float score = batchAtRow.getScore(nodeIndex);
+                    float score = scores[nodeIndex];
                     return iterator.jcrDouble(score);
                 }
                 if (JCR_UUID_COLUMN_NAME.equals(propertyName)) {
                     return iterator.jcrUuid(cachedNode);
                 }
             }
+            if (cachedNode instanceof CoveredCachedNode) {
+                // The index supplied the values of some of the properties, so use them rather than loading the node ...
+                CoveredCachedNode coveredNode = (CoveredCachedNode)cachedNode;
+                Name name = iterator.nameFor(propertyName);
+                if (name != null && coveredNode.isCovered(name)) {
+                    return iterator.jcrValue(coveredNode.getCoveredProperty(name));
+                }
+            }
             // Get the property's value ...
             Node node = iterator.context.getNode(cachedNode);
             if (node == null || !node.hasProperty(propertyName)) return null;
@@ -550,23 +614,27 @@ public class JcrQueryResult implements org.modeshape.jcr.api.query.QueryResult {
                 throw new RepositoryException(JcrI18n.selectorNotUsedInQuery.text(selectorName, iterator.query));
             }
             int nodeIndex = iterator.columns.getSelectorNames().indexOf(selectorName);
-            return batchAtRow.getScore(nodeIndex);
+            return scores[nodeIndex];
         }
 
     }
 
     protected static class SingleSelectorQueryResultRow extends AbstractRow {
         protected final CachedNode cachedNode;
-        protected final Node node;
         protected final int selectorIndex;
+        private Node node;
 
         protected SingleSelectorQueryResultRow( QueryResultRowIterator iterator,
                                                 Batch batchAtRow,
                                                 int selectorIndex ) {
             super(iterator, batchAtRow);
             this.selectorIndex = selectorIndex;
-            this.cachedNode = batchAtRow.getNode(selectorIndex);
-            this.node = iterator.context.getNode(cachedNode);
+            this.cachedNode = nodes[selectorIndex];
+        }
+
+        protected final Node node() {
+            if (node == null) node = iterator.context.getNode(cachedNode);
+            return node;
         }
 
         @Override
@@ -574,7 +642,7 @@ public class JcrQueryResult implements org.modeshape.jcr.api.query.QueryResult {
             if (!iterator.hasSelector(selectorName)) {
                 throw new RepositoryException(JcrI18n.selectorNotUsedInQuery.text(selectorName, iterator.query));
             }
-            return node;
+            return node();
         }
 
         @Override
@@ -584,12 +652,12 @@ public class JcrQueryResult implements org.modeshape.jcr.api.query.QueryResult {
 
         @Override
         public Node getNode() {
-            return node;
+            return node();
         }
 
         @Override
         public String getPath() throws RepositoryException {
-            return node.getPath();
+            return node().getPath();
         }
 
         @Override
@@ -597,12 +665,12 @@ public class JcrQueryResult implements org.modeshape.jcr.api.query.QueryResult {
             if (!iterator.hasSelector(selectorName)) {
                 throw new RepositoryException(JcrI18n.selectorNotUsedInQuery.text(selectorName, iterator.query));
             }
-            return node.getPath();
+            return node().getPath();
         }
 
         @Override
         public double getScore() {
-            return batchAtRow.getScore(selectorIndex);
+            return scores[selectorIndex];
         }
 
         @Override
@@ -628,8 +696,42 @@ public class JcrQueryResult implements org.modeshape.jcr.api.query.QueryResult {
             if (nodeIndex == -1) {
                 throw new RepositoryException(JcrI18n.queryResultsDoNotIncludeColumn.text(columnName, iterator.query));
             }
-            CachedNode cachedNode = batchAtRow.getNode(nodeIndex);
+            CachedNode cachedNode = nodes[nodeIndex];
             return getValue(columnName, cachedNode, nodeIndex);
         }
     }
+
+    /**
+     * A {@link NodeSequence} used for results that are not restartable, which closes the underlying sequence (releasing any
+     * buffers it uses) as soon as all of its rows have been read, rather than when the {@link JcrQueryResult} is closed.
+     */
+    @NotThreadSafe
+    protected static final class StreamingSequence extends DelegatingSequence {
+        private boolean closed = false;
+
+        protected StreamingSequence( NodeSequence delegate ) {
+            super(delegate);
+        }
+
+        @Override
+        public Batch nextBatch() {
+            if (closed) return null;
+            Batch batch = super.nextBatch();
+            if (batch == null) close();
+            return batch;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                super.close();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "(streaming " + delegate + ")";
+        }
+    }
 }
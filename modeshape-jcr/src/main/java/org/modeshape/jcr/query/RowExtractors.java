@@ -18,6 +18,7 @@ package org.modeshape.jcr.query;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Iterator;
 import org.modeshape.common.util.CheckArg;
 import org.modeshape.jcr.api.Binary;
@@ -84,6 +85,41 @@ public class RowExtractors {
         };
     }
 
+    /**
+     * Obtain a new {@link ExtractFromRow} instance that uses the supplied row extractor but returns only the lowest non-null value
+     * when the supplied extractor returns multiple values. This is useful to sort rows before they are merge-joined.
+     * 
+     * @param extractor the extractor that obtains a value from the row; may not be null
+     * @return the row extractor instance; never null
+     */
+    public static ExtractFromRow extractLowest( final ExtractFromRow extractor ) {
+        @SuppressWarnings( "unchecked" )
+        final Comparator<Object> comparator = (Comparator<Object>)extractor.getType().getComparator();
+        return new ExtractFromRow() {
+            @Override
+            public TypeFactory<?> getType() {
+                return extractor.getType();
+            }
+
+            @Override
+            public Object getValueInRow( RowAccessor row ) {
+                Object value = extractor.getValueInRow(row);
+                if (!(value instanceof Object[])) return value;
+                Object lowest = null;
+                for (Object v : (Object[])value) {
+                    if (v == null) continue;
+                    if (lowest == null || comparator.compare(v, lowest) < 0) lowest = v;
+                }
+                return lowest;
+            }
+
+            @Override
+            public String toString() {
+                return "(lowest " + extractor.toString() + " )";
+            }
+        };
+    }
+
     /**
      * Obtain a new {@link ExtractFromRow} instance that will extract the full text for a node.
      * <p>
@@ -42,7 +42,16 @@ public class XPathQueryResult extends JcrQueryResult {
                              QueryResults results,
                              boolean restartable,
                              int numRowsInMemory ) {
-        super(context, query, results, restartable, numRowsInMemory);
+        this(context, query, results, restartable, numRowsInMemory, context.getBufferManager());
+    }
+
+    public XPathQueryResult( JcrQueryContext context,
+                             String query,
+                             QueryResults results,
+                             boolean restartable,
+                             int numRowsInMemory,
+                             BufferManager bufferMgr ) {
+        super(context, query, results, restartable, numRowsInMemory, bufferMgr);
         Columns resultColumns = results.getColumns();
         List<String> columnNames = new LinkedList<String>(resultColumns.getColumnNames());
         List<String> columnTypes = new LinkedList<String>(resultColumns.getColumnTypes());
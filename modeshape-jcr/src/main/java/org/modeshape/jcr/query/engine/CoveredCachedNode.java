@@ -0,0 +1,241 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.query.engine;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import org.modeshape.common.annotation.NotThreadSafe;
+import org.modeshape.jcr.JcrLexicon;
+import org.modeshape.jcr.cache.CachedNode;
+import org.modeshape.jcr.cache.ChildReferences;
+import org.modeshape.jcr.cache.NodeCache;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.cache.NodeNotFoundException;
+import org.modeshape.jcr.cache.PathCache;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.Path;
+import org.modeshape.jcr.value.Path.Segment;
+import org.modeshape.jcr.value.Property;
+
+/**
+ * A {@link CachedNode} returned in the results of an index that also stored the values of some of the node's properties. The
+ * covered properties (and the primary type and mixin types, if they were covered) are answered directly from those values, while
+ * all other information is obtained by loading the actual node from the workspace cache only when first needed. Queries whose
+ * constraints and columns use only the covered properties therefore never materialize the nodes, as long as the query results
+ * {@link #isCovered(Name) check} for covered properties before loading the node.
+ */
+@NotThreadSafe
+public final class CoveredCachedNode implements CachedNode {
+
+    private final NodeKey key;
+    private final Map<Name, Property> coveredProperties;
+    private final NodeCache cache;
+    private CachedNode node;
+
+    /**
+     * Create a new node.
+     * 
+     * @param key the node key; may not be null
+     * @param coveredProperties the properties covered by the index, with a null value for each covered property that the node
+     *        does not have; may not be null
+     * @param cache the workspace cache used to load the node if uncovered information is needed; may not be null
+     */
+    public CoveredCachedNode( NodeKey key,
+                              Map<Name, Property> coveredProperties,
+                              NodeCache cache ) {
+        this.key = key;
+        this.coveredProperties = coveredProperties;
+        this.cache = cache;
+    }
+
+    /**
+     * Determine whether the index supplied the value of the named property, in which case the property can be obtained with
+     * {@link #getCoveredProperty(Name)} without loading the node.
+     * 
+     * @param name the property name; may not be null
+     * @return true if the property is covered by the index, or false otherwise
+     */
+    public boolean isCovered( Name name ) {
+        return coveredProperties.containsKey(name);
+    }
+
+    /**
+     * Get the covered property with the given name.
+     * 
+     * @param name the property name; may not be null
+     * @return the property, or null if the property is not {@link #isCovered(Name) covered} or the node has no such property
+     */
+    public Property getCoveredProperty( Name name ) {
+        return coveredProperties.get(name);
+    }
+
+    protected final CachedNode node() {
+        if (node == null) {
+            node = cache.getNode(key);
+            if (node == null) throw new NodeNotFoundException(key);
+        }
+        return node;
+    }
+
+    @Override
+    public NodeKey getKey() {
+        return key;
+    }
+
+    @Override
+    public Name getName( NodeCache cache ) {
+        return node().getName(cache);
+    }
+
+    @Override
+    public Segment getSegment( NodeCache cache ) {
+        return node().getSegment(cache);
+    }
+
+    @Override
+    public Path getPath( NodeCache cache ) throws NodeNotFoundException {
+        return node().getPath(cache);
+    }
+
+    @Override
+    public Path getPath( PathCache pathCache ) throws NodeNotFoundException {
+        return node().getPath(pathCache);
+    }
+
+    @Override
+    public int getDepth( NodeCache cache ) throws NodeNotFoundException {
+        return node().getDepth(cache);
+    }
+
+    @Override
+    public NodeKey getParentKey( NodeCache cache ) {
+        return node().getParentKey(cache);
+    }
+
+    @Override
+    public NodeKey getParentKeyInAnyWorkspace( NodeCache cache ) {
+        return node().getParentKeyInAnyWorkspace(cache);
+    }
+
+    @Override
+    public Set<NodeKey> getAdditionalParentKeys( NodeCache cache ) {
+        return node().getAdditionalParentKeys(cache);
+    }
+
+    @Override
+    public Name getPrimaryType( NodeCache cache ) {
+        if (coveredProperties.containsKey(JcrLexicon.PRIMARY_TYPE)) {
+            Property primaryType = coveredProperties.get(JcrLexicon.PRIMARY_TYPE);
+            if (primaryType != null && primaryType.getFirstValue() instanceof Name) return (Name)primaryType.getFirstValue();
+        }
+        return node().getPrimaryType(cache);
+    }
+
+    @Override
+    public Set<Name> getMixinTypes( NodeCache cache ) {
+        if (coveredProperties.containsKey(JcrLexicon.MIXIN_TYPES)) {
+            Property mixinTypes = coveredProperties.get(JcrLexicon.MIXIN_TYPES);
+            if (mixinTypes == null || mixinTypes.isEmpty()) return Collections.emptySet();
+            Set<Name> names = new HashSet<>();
+            for (Object value : mixinTypes) {
+                if (!(value instanceof Name)) return node().getMixinTypes(cache);
+                names.add((Name)value);
+            }
+            return names;
+        }
+        return node().getMixinTypes(cache);
+    }
+
+    @Override
+    public int getPropertyCount( NodeCache cache ) {
+        return node().getPropertyCount(cache);
+    }
+
+    @Override
+    public boolean hasProperties( NodeCache cache ) {
+        return node().hasProperties(cache);
+    }
+
+    @Override
+    public boolean hasProperty( Name name,
+                                NodeCache cache ) {
+        if (coveredProperties.containsKey(name)) return coveredProperties.get(name) != null;
+        return node().hasProperty(name, cache);
+    }
+
+    @Override
+    public Property getProperty( Name name,
+                                 NodeCache cache ) {
+        if (coveredProperties.containsKey(name)) return coveredProperties.get(name);
+        return node().getProperty(name, cache);
+    }
+
+    @Override
+    public Iterator<Property> getProperties( NodeCache cache ) {
+        return node().getProperties(cache);
+    }
+
+    @Override
+    public Iterator<Property> getProperties( Collection<?> namePatterns,
+                                             NodeCache cache ) {
+        return node().getProperties(namePatterns, cache);
+    }
+
+    @Override
+    public ChildReferences getChildReferences( NodeCache cache ) {
+        return node().getChildReferences(cache);
+    }
+
+    @Override
+    public Set<NodeKey> getReferrers( NodeCache cache,
+                                      ReferenceType type ) {
+        return node().getReferrers(cache, type);
+    }
+
+    @Override
+    public boolean isAtOrBelow( NodeCache cache,
+                                Path path ) {
+        return node().isAtOrBelow(cache, path);
+    }
+
+    @Override
+    public boolean isQueryable( NodeCache cache ) {
+        return node().isQueryable(cache);
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+    @Override
+    public boolean equals( Object obj ) {
+        if (obj == this) return true;
+        if (obj instanceof CachedNode) {
+            return key.equals(((CachedNode)obj).getKey());
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "CoveredCachedNode(" + key + " covering " + coveredProperties.keySet() + ")";
+    }
+}
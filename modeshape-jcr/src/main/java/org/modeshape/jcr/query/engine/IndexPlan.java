@@ -154,6 +154,10 @@ public final class IndexPlan implements Comparable<IndexPlan> {
     public int compareTo( IndexPlan that ) {
         if (that == this) return 0;
         if (that == null) return 1;
+        // Favor the most selective index, and then the least expensive ...
+        if (this.getCardinalityEstimate() != that.cardinalityEstimate) {
+            return this.getCardinalityEstimate() < that.cardinalityEstimate ? -1 : 1;
+        }
         return this.getCostEstimate() - that.costEstimate;
     }
 
@@ -22,6 +22,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import javax.jcr.query.qom.Constraint;
 import org.modeshape.common.logging.Logger;
 import org.modeshape.jcr.ExecutionContext;
@@ -45,6 +46,7 @@ import org.modeshape.jcr.spi.index.IndexManager;
 import org.modeshape.jcr.spi.index.provider.Index;
 import org.modeshape.jcr.spi.index.provider.IndexPlanner;
 import org.modeshape.jcr.spi.index.provider.IndexProvider;
+import org.modeshape.jcr.spi.index.provider.IndexStatistics;
 
 /**
  * A {@link QueryEngine} implementation that uses available indexes to more quickly produce query results.
@@ -112,7 +114,8 @@ public class IndexQueryEngine extends ScanningQueryEngine {
                 };
             }
             // Finally create the query engine ...
-            return new IndexQueryEngine(context(), repositoryName(), planner(), optimizer, indexManager());
+            return new IndexQueryEngine(context(), repositoryName(), planner(), optimizer, indexManager(), scanPool(),
+                                        planCache());
         }
 
         @Override
@@ -203,11 +206,25 @@ public class IndexQueryEngine extends ScanningQueryEngine {
                                 String repositoryName,
                                 Planner planner,
                                 Optimizer optimizer,
-                                IndexManager indexManager ) {
-        super(context, repositoryName, planner, optimizer);
+                                IndexManager indexManager,
+                                ForkJoinPool scanPool,
+                                QueryPlanCache planCache ) {
+        super(context, repositoryName, planner, optimizer, scanPool, planCache);
         this.indexManager = indexManager;
     }
 
+    @Override
+    protected long indexStatisticsVersion( IndexPlan indexPlan ) {
+        String providerName = indexPlan.getProviderName();
+        if (providerName == null) return super.indexStatisticsVersion(indexPlan);
+        IndexProvider provider = indexManager.getProvider(providerName);
+        if (provider == null) return 0L;
+        Index index = provider.getIndex(indexPlan.getName());
+        if (index == null) return 0L;
+        IndexStatistics statistics = index.getStatistics();
+        return statistics != null ? statistics.getVersion() : 0L;
+    }
+
     @Override
     protected NodeSequence createNodeSequenceForSource( QueryCommand originalQuery,
                                                         QueryContext context,
@@ -221,6 +238,7 @@ public class IndexQueryEngine extends ScanningQueryEngine {
 
         // Look up the index by name ...
         String providerName = indexPlan.getProviderName();
+        if (providerName == null) return null;
         IndexProvider provider = indexManager.getProvider(providerName);
         if (provider != null) {
             // Use the index to get a NodeSequence ...
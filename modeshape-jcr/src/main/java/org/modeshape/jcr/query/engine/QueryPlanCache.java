@@ -0,0 +1,466 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.query.engine;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import org.modeshape.common.annotation.GuardedBy;
+import org.modeshape.common.annotation.Immutable;
+import org.modeshape.common.annotation.NotThreadSafe;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.common.util.CheckArg;
+import org.modeshape.jcr.NodeTypes;
+import org.modeshape.jcr.RepositoryIndexes;
+import org.modeshape.jcr.query.QueryContext;
+import org.modeshape.jcr.query.model.QueryCommand;
+import org.modeshape.jcr.query.model.Visitors;
+import org.modeshape.jcr.query.plan.PlanHints;
+import org.modeshape.jcr.query.plan.PlanNode;
+import org.modeshape.jcr.query.plan.PlanNode.Property;
+import org.modeshape.jcr.query.plan.PlanNode.Type;
+import org.modeshape.jcr.query.validate.Schemata;
+
+/**
+ * A bounded cache of optimized query plans, used by a query engine to avoid planning and optimizing the same query each time it
+ * is executed. Plans are keyed by the normalized form of the query, the names of the queried workspaces, the hints, the types of
+ * the bind variables, and the snapshots of the schemata, node types and index definitions used to plan the query. Whenever the
+ * node types or index definitions change, the repository creates new snapshots, so any plans created with the old snapshots are
+ * discarded.
+ * <p>
+ * Planning occasionally depends upon the value of a bind variable (for example, when a path criteria can use an index). The cache
+ * records which variables were read while planning each query, and reuses a plan only when those variables have the same values.
+ * </p>
+ * <p>
+ * Plans are copied when they are added to the cache and again each time they are returned, since executing a plan may annotate
+ * it.
+ * </p>
+ * <p>
+ * The indexes considered for a query are chosen using the statistics of each index, which change as content is added and
+ * removed. The cache records the {@link IndexStatisticsVersions version of the statistics} of each index in a plan when the plan
+ * is added, and discards the plan once any of those versions has changed.
+ * </p>
+ */
+@ThreadSafe
+public class QueryPlanCache {
+
+    /**
+     * Supplies the current version of the statistics of an index that was considered when planning a query.
+     */
+    public static interface IndexStatisticsVersions {
+        /**
+         * Get the current version of the statistics of the supplied index.
+         * 
+         * @param index the plan for the index; never null
+         * @return the version of the index's statistics, or 0 if the index has no statistics
+         */
+        long versionOf( IndexPlan index );
+    }
+
+    /**
+     * The {@link IndexStatisticsVersions} for engines whose indexes have no statistics.
+     */
+    public static final IndexStatisticsVersions NO_INDEX_STATISTICS = new IndexStatisticsVersions() {
+        @Override
+        public long versionOf( IndexPlan index ) {
+            return 0L;
+        }
+    };
+
+    private final int maximumSize;
+    @GuardedBy( "this" )
+    private final LinkedHashMap<Key, CachedPlan> plans;
+    @GuardedBy( "this" )
+    private NodeTypes nodeTypes;
+    @GuardedBy( "this" )
+    private RepositoryIndexes indexes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Create a new cache.
+     *
+     * @param maximumSize the maximum number of plans kept in the cache; must be positive
+     */
+    public QueryPlanCache( final int maximumSize ) {
+        CheckArg.isPositive(maximumSize, "maximumSize");
+        this.maximumSize = maximumSize;
+        this.plans = new LinkedHashMap<Key, CachedPlan>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<Key, CachedPlan> eldest ) {
+                return size() > maximumSize;
+            }
+        };
+    }
+
+    /**
+     * Get the maximum number of plans kept in this cache.
+     *
+     * @return the maximum size; always positive
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Get the number of plans currently in this cache.
+     *
+     * @return the number of cached plans
+     */
+    public synchronized int size() {
+        return plans.size();
+    }
+
+    /**
+     * Get the number of times a cached plan was reused.
+     *
+     * @return the number of cache hits
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of times a plan was not found in the cache.
+     *
+     * @return the number of cache misses
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Remove all of the plans from this cache.
+     */
+    public synchronized void clear() {
+        plans.clear();
+    }
+
+    /**
+     * Create the key for the supplied query executed in the supplied context. This must be called before the query is planned,
+     * since planning changes the hints.
+     *
+     * @param context the context in which the query is to be executed; may not be null
+     * @param query the query; may not be null
+     * @return the key; never null
+     */
+    public Key keyFor( QueryContext context,
+                       QueryCommand query ) {
+        invalidateIfChanged(context.getNodeTypes(), context.getIndexDefinitions());
+        Map<String, String> variableTypes = new TreeMap<>();
+        for (Map.Entry<String, Object> entry : context.getVariables().entrySet()) {
+            Object value = entry.getValue();
+            variableTypes.put(entry.getKey(), value != null ? value.getClass().getName() : null);
+        }
+        return new Key(Visitors.readable(query), new TreeSet<>(context.getWorkspaceNames()), context.getHints().toString(),
+                       variableTypes, context.getSchemata(), context.getNodeTypes(), context.getIndexDefinitions());
+    }
+
+    /**
+     * Find a copy of the cached plan for the supplied key, and if found update the context's hints to match those produced when
+     * the query was planned.
+     *
+     * @param key the key; may not be null
+     * @param context the context in which the query is to be executed; may not be null
+     * @return a copy of the optimized plan, or null if there is no usable plan in the cache
+     */
+    public PlanNode get( Key key,
+                         QueryContext context ) {
+        return get(key, context, NO_INDEX_STATISTICS);
+    }
+
+    /**
+     * Find a copy of the cached plan for the supplied key, and if found update the context's hints to match those produced when
+     * the query was planned. A plan is discarded if the statistics of any of its indexes have changed since it was cached.
+     * 
+     * @param key the key; may not be null
+     * @param context the context in which the query is to be executed; may not be null
+     * @param statistics the current versions of the index statistics; may not be null
+     * @return a copy of the optimized plan, or null if there is no usable plan in the cache
+     */
+    public PlanNode get( Key key,
+                         QueryContext context,
+                         IndexStatisticsVersions statistics ) {
+        CachedPlan cached = null;
+        synchronized (this) {
+            cached = plans.get(key);
+        }
+        if (cached != null && !cached.hasCurrentStatistics(statistics)) {
+            // The plan may no longer use the best indexes ...
+            synchronized (this) {
+                if (plans.get(key) == cached) plans.remove(key);
+            }
+            cached = null;
+        }
+        if (cached == null || !cached.isUsableWith(context.getVariables())) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        copyHints(cached.hints, context.getHints());
+        return cached.plan.clone();
+    }
+
+    /**
+     * Add to this cache the optimized plan for the query with the supplied key.
+     *
+     * @param key the key obtained {@link #keyFor(QueryContext, QueryCommand) before the query was planned}; may not be null
+     * @param optimizedPlan the optimized plan; may not be null
+     * @param hints the hints after the query was planned and optimized; may not be null
+     * @param variables the variables that were read while planning and optimizing the query; may not be null
+     */
+    public void put( Key key,
+                     PlanNode optimizedPlan,
+                     PlanHints hints,
+                     VariableReads variables ) {
+        put(key, optimizedPlan, hints, variables, NO_INDEX_STATISTICS);
+    }
+
+    /**
+     * Add to this cache the optimized plan for the query with the supplied key, recording the current versions of the
+     * statistics of the indexes in the plan.
+     * 
+     * @param key the key obtained {@link #keyFor(QueryContext, QueryCommand) before the query was planned}; may not be null
+     * @param optimizedPlan the optimized plan; may not be null
+     * @param hints the hints after the query was planned and optimized; may not be null
+     * @param variables the variables that were read while planning and optimizing the query; may not be null
+     * @param statistics the current versions of the index statistics; may not be null
+     */
+    public void put( Key key,
+                     PlanNode optimizedPlan,
+                     PlanHints hints,
+                     VariableReads variables,
+                     IndexStatisticsVersions statistics ) {
+        if (variables.readAll) return;
+        List<IndexPlan> indexes = new ArrayList<>();
+        for (PlanNode indexNode : optimizedPlan.findAllAtOrBelow(Type.INDEX)) {
+            IndexPlan index = indexNode.getProperty(Property.INDEX_SPECIFICATION, IndexPlan.class);
+            if (index != null) indexes.add(index);
+        }
+        long[] versions = new long[indexes.size()];
+        for (int i = 0; i != versions.length; ++i) {
+            versions[i] = statistics.versionOf(indexes.get(i));
+        }
+        CachedPlan cached = new CachedPlan(optimizedPlan.clone(), hints.clone(), new HashMap<>(variables.valuesRead), indexes,
+                                           versions);
+        synchronized (this) {
+            if (key.nodeTypes != nodeTypes || key.indexes != indexes) {
+                // The node types or index definitions have changed since the key was created ...
+                return;
+            }
+            plans.put(key, cached);
+        }
+    }
+
+    protected synchronized void invalidateIfChanged( NodeTypes nodeTypes,
+                                                     RepositoryIndexes indexes ) {
+        if (this.nodeTypes != nodeTypes || this.indexes != indexes) {
+            plans.clear();
+            this.nodeTypes = nodeTypes;
+            this.indexes = indexes;
+        }
+    }
+
+    protected static void copyHints( PlanHints from,
+                                     PlanHints to ) {
+        to.hasCriteria = from.hasCriteria;
+        to.hasView = from.hasView;
+        to.hasJoin = from.hasJoin;
+        to.hasSort = from.hasSort;
+        to.hasSetQuery = from.hasSetQuery;
+        to.hasLimit = from.hasLimit;
+        to.hasOptionalJoin = from.hasOptionalJoin;
+        to.hasFullTextSearch = from.hasFullTextSearch;
+        to.hasSubqueries = from.hasSubqueries;
+        to.isExistsQuery = from.isExistsQuery;
+        to.showPlan = from.showPlan;
+        to.planOnly = from.planOnly;
+        to.validateColumnExistance = from.validateColumnExistance;
+        to.includeSystemContent = from.includeSystemContent;
+        to.useSessionContent = from.useSessionContent;
+        to.qualifyExpandedColumnNames = from.qualifyExpandedColumnNames;
+        to.restartable = from.restartable;
+        to.rowsKeptInMemory = from.rowsKeptInMemory;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "QueryPlanCache {size=" + plans.size() + ", maximumSize=" + maximumSize + ", hits=" + hits + ", misses=" + misses
+               + "}";
+    }
+
+    /**
+     * The key for a cached plan. The schemata, node types and index definitions are compared by identity, since each is an
+     * immutable snapshot that is replaced whenever it changes.
+     */
+    @Immutable
+    public static final class Key {
+        private final String query;
+        private final Set<String> workspaceNames;
+        private final String hints;
+        private final Map<String, String> variableTypes;
+        private final Schemata schemata;
+        private final NodeTypes nodeTypes;
+        private final RepositoryIndexes indexes;
+        private final int hc;
+
+        protected Key( String query,
+                       Set<String> workspaceNames,
+                       String hints,
+                       Map<String, String> variableTypes,
+                       Schemata schemata,
+                       NodeTypes nodeTypes,
+                       RepositoryIndexes indexes ) {
+            this.query = query;
+            this.workspaceNames = workspaceNames;
+            this.hints = hints;
+            this.variableTypes = variableTypes;
+            this.schemata = schemata;
+            this.nodeTypes = nodeTypes;
+            this.indexes = indexes;
+            this.hc = Objects.hash(query, workspaceNames, hints, variableTypes, System.identityHashCode(schemata));
+        }
+
+        @Override
+        public int hashCode() {
+            return hc;
+        }
+
+        @Override
+        public boolean equals( Object obj ) {
+            if (obj == this) return true;
+            if (obj instanceof Key) {
+                Key that = (Key)obj;
+                return this.hc == that.hc && this.schemata == that.schemata && this.nodeTypes == that.nodeTypes
+                       && this.indexes == that.indexes && this.query.equals(that.query)
+                       && this.workspaceNames.equals(that.workspaceNames) && this.hints.equals(that.hints)
+                       && this.variableTypes.equals(that.variableTypes);
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return query;
+        }
+    }
+
+    @Immutable
+    protected static final class CachedPlan {
+        protected final PlanNode plan;
+        protected final PlanHints hints;
+        protected final Map<String, Object> variablesRead;
+        protected final List<IndexPlan> indexes;
+        protected final long[] statisticsVersions;
+
+        protected CachedPlan( PlanNode plan,
+                              PlanHints hints,
+                              Map<String, Object> variablesRead,
+                              List<IndexPlan> indexes,
+                              long[] statisticsVersions ) {
+            this.plan = plan;
+            this.hints = hints;
+            this.variablesRead = variablesRead;
+            this.indexes = indexes;
+            this.statisticsVersions = statisticsVersions;
+        }
+
+        protected boolean hasCurrentStatistics( IndexStatisticsVersions statistics ) {
+            for (int i = 0; i != statisticsVersions.length; ++i) {
+                if (statistics.versionOf(indexes.get(i)) != statisticsVersions[i]) return false;
+            }
+            return true;
+        }
+
+        protected boolean isUsableWith( Map<String, Object> variables ) {
+            for (Map.Entry<String, Object> entry : variablesRead.entrySet()) {
+                if (!Objects.equals(entry.getValue(), variables.get(entry.getKey()))) return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A view of the variables of a query that records which variables are read, and is used while planning a query. All changes
+     * are made to the underlying variables.
+     */
+    @NotThreadSafe
+    public static final class VariableReads extends AbstractMap<String, Object> {
+        private final Map<String, Object> variables;
+        protected final Map<String, Object> valuesRead = new HashMap<>();
+        protected boolean readAll = false;
+
+        public VariableReads( Map<String, Object> variables ) {
+            this.variables = variables;
+        }
+
+        private void read( Object key ) {
+            if (key instanceof String && !valuesRead.containsKey(key)) {
+                valuesRead.put((String)key, variables.get(key));
+            }
+        }
+
+        @Override
+        public Object get( Object key ) {
+            read(key);
+            return variables.get(key);
+        }
+
+        @Override
+        public boolean containsKey( Object key ) {
+            read(key);
+            return variables.containsKey(key);
+        }
+
+        @Override
+        public Object put( String key,
+                           Object value ) {
+            return variables.put(key, value);
+        }
+
+        @Override
+        public Object remove( Object key ) {
+            return variables.remove(key);
+        }
+
+        @Override
+        public Set<String> keySet() {
+            return Collections.unmodifiableSet(variables.keySet());
+        }
+
+        @Override
+        public int size() {
+            return variables.size();
+        }
+
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+            readAll = true;
+            return variables.entrySet();
+        }
+    }
+}
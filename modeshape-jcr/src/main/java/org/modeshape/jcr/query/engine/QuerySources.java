@@ -18,10 +18,19 @@ package org.modeshape.jcr.query.engine;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import javax.jcr.query.qom.Constraint;
 import org.modeshape.jcr.JcrLexicon;
 import org.modeshape.jcr.cache.CachedNode;
@@ -34,11 +43,14 @@ import org.modeshape.jcr.cache.document.NodeCacheIterator;
 import org.modeshape.jcr.cache.document.NodeCacheIterator.NodeFilter;
 import org.modeshape.jcr.query.NodeSequence;
 import org.modeshape.jcr.query.NodeSequence.Batch;
+import org.modeshape.jcr.query.NodeSequence.RowFilter;
 import org.modeshape.jcr.spi.index.provider.IndexFilter;
 import org.modeshape.jcr.spi.index.provider.Index;
 import org.modeshape.jcr.spi.index.provider.ResultWriter;
+import org.modeshape.jcr.value.Name;
 import org.modeshape.jcr.value.Path;
 import org.modeshape.jcr.value.Path.Segment;
+import org.modeshape.jcr.value.Property;
 
 /**
  * A factory for creating {@link NodeSequence} instances.
@@ -47,6 +59,22 @@ import org.modeshape.jcr.value.Path.Segment;
  */
 public class QuerySources {
 
+    /**
+     * The number of partitions created for each thread in the pool used for a parallel scan. Using more partitions than threads
+     * helps balance the work when some subgraphs are much larger than others.
+     */
+    protected static final int PARTITIONS_PER_THREAD = 4;
+
+    /**
+     * The maximum number of levels of the hierarchy that are walked when looking for subgraphs to scan in parallel.
+     */
+    protected static final int MAX_PARTITION_DEPTH = 3;
+
+    /**
+     * The maximum number of matching nodes that a partition of a parallel scan finds before handing them to the consumer.
+     */
+    protected static final int SCAN_BATCH_SIZE = 1000;
+
     protected final RepositoryCache repo;
     protected final String workspaceName;
     protected final String systemWorkspaceName;
@@ -128,6 +156,111 @@ public class QuerySources {
         return NodeSequence.withBatch(mainBatch);
     }
 
+    /**
+     * Obtain a {@link NodeSequence} that returns all (queryable) nodes in the workspace that satisfy a filter, where each node is
+     * assigned the given score. The workspace content is split into partitions (groups of subgraphs below the top levels of the
+     * hierarchy) that are scanned and filtered concurrently using the supplied pool. The scan starts only when the first batch
+     * is requested, and each partition is scanned a {@link #SCAN_BATCH_SIZE batch} at a time so that only a bounded number of
+     * matching nodes are ever held in memory. Closing the sequence stops the scan.
+     * 
+     * @param score the score for each node
+     * @param pool the fork/join pool used to scan the partitions; may not be null
+     * @param filters the factory for the filter used in each partition; may be null if all nodes are to be returned
+     * @return the sequence of nodes; never null
+     */
+    public NodeSequence allNodes( final float score,
+                                  final ForkJoinPool pool,
+                                  final RowFilterFactory filters ) {
+        assert pool != null;
+        final NodeFilter nodeFilter = nodeFilterForWorkspace(workspaceName);
+        if (nodeFilter == null) return NodeSequence.emptySequence(1);
+        final NodeCache cache = repo.getWorkspaceCache(workspaceName);
+        return new NodeSequence() {
+            private ParallelScan scan;
+            private boolean closed;
+
+            @Override
+            public int width() {
+                return 1;
+            }
+
+            @Override
+            public long getRowCount() {
+                return -1L;
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return false;
+            }
+
+            @Override
+            public Batch nextBatch() {
+                if (closed) return null;
+                if (scan == null) {
+                    // Start scanning the partitions the first time ...
+                    scan = new ParallelScan(cache, nodeFilter, score, pool, filters);
+                }
+                return scan.nextBatch();
+            }
+
+            @Override
+            public void close() {
+                closed = true;
+                if (scan != null) scan.close();
+            }
+
+            @Override
+            public String toString() {
+                StringBuilder sb = new StringBuilder("(parallel-scan ").append(workspaceName);
+                sb.append(" with parallelism ").append(pool.getParallelism());
+                if (filters != null) sb.append(" satisfying ").append(filters);
+                return sb.append(")").toString();
+            }
+        };
+    }
+
+    /**
+     * Split the content of the workspace into partitions that can be scanned independently. The top levels of the hierarchy are
+     * walked breadth-first until there are at least the desired number of subgraphs (or the {@link #MAX_PARTITION_DEPTH maximum
+     * depth} is reached); the nodes above these subgraphs form one partition, and the subgraphs are grouped into the remaining
+     * partitions.
+     * 
+     * @param cache the workspace cache; may not be null
+     * @param nodeFilter the filter that determines which nodes (and their descendants) are included; may not be null
+     * @param targetCount the desired number of partitions
+     * @return the partitions; never null but possibly empty
+     */
+    protected List<ScanPartition> partition( NodeCache cache,
+                                             NodeFilter nodeFilter,
+                                             int targetCount ) {
+        List<NodeKey> upperKeys = new ArrayList<>();
+        List<NodeKey> frontier = Collections.singletonList(cache.getRootKey());
+        for (int depth = 0; depth != MAX_PARTITION_DEPTH && !frontier.isEmpty() && frontier.size() < targetCount; ++depth) {
+            List<NodeKey> nextFrontier = new ArrayList<>();
+            for (NodeKey key : frontier) {
+                CachedNode node = cache.getNode(key);
+                if (node == null || !nodeFilter.includeNode(node, cache)) continue;
+                upperKeys.add(key);
+                Iterator<NodeKey> children = node.getChildReferences(cache).getAllKeys();
+                while (children.hasNext()) {
+                    nextFrontier.add(children.next());
+                }
+            }
+            frontier = nextFrontier;
+        }
+        List<ScanPartition> partitions = new ArrayList<>();
+        if (!upperKeys.isEmpty()) {
+            partitions.add(new ScanPartition(cache, nodeFilter, upperKeys, false));
+        }
+        int subgraphsPerPartition = Math.max(1, (frontier.size() + targetCount - 1) / targetCount);
+        for (int i = 0; i < frontier.size(); i += subgraphsPerPartition) {
+            List<NodeKey> startingKeys = frontier.subList(i, Math.min(frontier.size(), i + subgraphsPerPartition));
+            partitions.add(new ScanPartition(cache, nodeFilter, startingKeys, true));
+        }
+        return partitions;
+    }
+
     /**
      * Obtain a {@link NodeSequence} that returns the (queryable) node at the given path in the workspace, where the node is
      * assigned the given score.
@@ -293,7 +426,7 @@ public class QuerySources {
 
             protected final void readBatch() {
                 if (writer == null) {
-                    writer = new BatchWriter(batchSize, workspaceName, repo);
+                    writer = new BatchWriter(batchSize, workspaceName, systemWorkspaceName, repo);
                 }
                 more = writer.consumeOperation(operation);
                 rowCount += writer.rowCount();
@@ -306,26 +439,220 @@ public class QuerySources {
         };
     }
 
+    /**
+     * A factory for {@link RowFilter} instances. Each partition of a parallel scan uses its own filter, since filters are not
+     * required to be thread-safe.
+     */
+    public static interface RowFilterFactory {
+        /**
+         * Create a new filter.
+         * 
+         * @return the new filter; may be null if all rows are to be included
+         */
+        RowFilter createFilter();
+    }
+
+    /**
+     * The scan of all partitions of a workspace. At most one task per thread in the pool is running at any time, and each task
+     * scans one partition until it finds a {@link #SCAN_BATCH_SIZE batch} of matching nodes (or the partition is exhausted). The
+     * completed tasks are handed to the consumer through a bounded queue, and a partition is scanned further only after its
+     * previous batch has been consumed. Thus the scan never gets more than a few batches ahead of the consumer, and nothing is
+     * left running once the consumer {@link #close() closes} the scan (or stops asking for batches).
+     */
+    protected final class ParallelScan {
+        private final float score;
+        private final int maxRunning;
+        private final CompletionService<ScanPartition> completions;
+        private final Map<Future<ScanPartition>, ScanPartition> running = new HashMap<>();
+        private final LinkedList<ScanPartition> waiting = new LinkedList<>();
+        private boolean closed;
+
+        protected ParallelScan( NodeCache cache,
+                                NodeFilter nodeFilter,
+                                float score,
+                                ForkJoinPool pool,
+                                RowFilterFactory filters ) {
+            this.score = score;
+            this.maxRunning = pool.getParallelism();
+            BlockingQueue<Future<ScanPartition>> completed = new ArrayBlockingQueue<>(maxRunning);
+            this.completions = new ExecutorCompletionService<>(pool, completed);
+            this.waiting.addAll(partition(cache, nodeFilter, maxRunning * PARTITIONS_PER_THREAD));
+            // Create the filters on this thread, since creating them may not be thread-safe ...
+            for (ScanPartition partition : waiting) {
+                partition.score = score;
+                if (filters != null) partition.filter = filters.createFilter();
+            }
+            submitWaiting();
+        }
+
+        private void submitWaiting() {
+            while (!closed && !waiting.isEmpty() && running.size() < maxRunning) {
+                ScanPartition partition = waiting.removeFirst();
+                running.put(completions.submit(partition), partition);
+            }
+        }
+
+        /**
+         * Wait for the next batch of matching nodes.
+         * 
+         * @return the next batch; or null if all partitions have been scanned or the scan was closed
+         */
+        protected Batch nextBatch() {
+            while (!closed && !running.isEmpty()) {
+                ScanPartition partition = null;
+                try {
+                    Future<ScanPartition> future = completions.take();
+                    running.remove(future);
+                    partition = future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    close();
+                    return null;
+                } catch (ExecutionException e) {
+                    close();
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+                    if (cause instanceof Error) throw (Error)cause;
+                    throw new IllegalStateException(cause);
+                }
+                List<CachedNode> matches = partition.takeMatches();
+                if (!partition.isExhausted()) waiting.addLast(partition);
+                // Keep the threads busy while the consumer processes this batch ...
+                submitWaiting();
+                if (!matches.isEmpty()) return NodeSequence.batchOf(matches, score, workspaceName);
+            }
+            return null;
+        }
+
+        /**
+         * Stop the scan. Running tasks finish after the row they are currently evaluating, and no further tasks are submitted.
+         */
+        protected void close() {
+            if (closed) return;
+            closed = true;
+            for (Map.Entry<Future<ScanPartition>, ScanPartition> entry : running.entrySet()) {
+                entry.getValue().cancel();
+                entry.getKey().cancel(false);
+            }
+            running.clear();
+            waiting.clear();
+        }
+    }
+
+    /**
+     * A group of nodes (or of subgraphs) that is scanned and filtered by a single thread at a time. Each call scans until the
+     * partition finds another {@link #SCAN_BATCH_SIZE batch} of matching nodes, and the next call resumes where the previous
+     * one stopped.
+     */
+    protected final class ScanPartition implements Callable<ScanPartition> {
+        private final NodeCache cache;
+        private final NodeFilter nodeFilter;
+        private final Iterator<NodeKey> startingKeys;
+        private final int startingKeyCount;
+        private final boolean includeDescendants;
+        private volatile boolean cancelled;
+        private Batch current;
+        private boolean exhausted;
+        private List<CachedNode> matches = Collections.emptyList();
+        protected RowFilter filter;
+        protected float score = 1.0f;
+
+        protected ScanPartition( NodeCache cache,
+                                 NodeFilter nodeFilter,
+                                 List<NodeKey> startingKeys,
+                                 boolean includeDescendants ) {
+            this.cache = cache;
+            this.nodeFilter = nodeFilter;
+            this.startingKeys = startingKeys.iterator();
+            this.startingKeyCount = startingKeys.size();
+            this.includeDescendants = includeDescendants;
+        }
+
+        @Override
+        public ScanPartition call() {
+            List<CachedNode> matches = new ArrayList<>();
+            while (matches.size() < SCAN_BATCH_SIZE && !cancelled) {
+                if (current == null || !current.hasNext()) {
+                    current = nextSource();
+                    if (current == null) {
+                        exhausted = true;
+                        break;
+                    }
+                    continue;
+                }
+                current.nextRow();
+                if (filter == null || filter.isCurrentRowValid(current)) {
+                    matches.add(current.getNode());
+                }
+            }
+            this.matches = matches;
+            return this;
+        }
+
+        private Batch nextSource() {
+            if (!startingKeys.hasNext()) return null;
+            if (!includeDescendants) {
+                // The nodes have already been filtered by the node filter ...
+                return NodeSequence.batchOfKeys(startingKeys, startingKeyCount, score, workspaceName, cache);
+            }
+            NodeCacheIterator iter = new NodeCacheIterator(cache, startingKeys.next(), nodeFilter);
+            return NodeSequence.batchOfKeys(iter, -1L, score, workspaceName, cache);
+        }
+
+        protected List<CachedNode> takeMatches() {
+            List<CachedNode> result = matches;
+            matches = Collections.emptyList();
+            return result;
+        }
+
+        protected boolean isExhausted() {
+            return exhausted;
+        }
+
+        protected void cancel() {
+            cancelled = true;
+        }
+    }
+
     protected static class BatchWriter implements ResultWriter {
         private List<NodeKey> keys;
         private List<Float> scores;
+        private List<Map<Name, Property>> coveredProperties;
         private Float lastScore;
         private LinkedList<Batch> preloadedBatches;
         private final RepositoryCache repo;
         private final String workspaceName;
+        private final String workspaceKey;
+        private final String systemWorkspaceKey;
         private final int batchSize;
 
         protected BatchWriter( int batchSize,
                                String workspaceName,
+                               String systemWorkspaceName,
                                RepositoryCache repository ) {
             this.batchSize = batchSize;
             this.repo = repository;
             this.workspaceName = workspaceName;
+            this.workspaceKey = NodeKey.keyForWorkspaceName(workspaceName);
+            this.systemWorkspaceKey = systemWorkspaceName != null ? NodeKey.keyForWorkspaceName(systemWorkspaceName) : null;
+        }
+
+        /**
+         * Determine whether the node with the supplied key is in the workspace being queried (or in the system workspace when
+         * system content is included). Some indexes contain the nodes in all workspaces, so their results must be filtered.
+         * 
+         * @param nodeKey the node key; may not be null
+         * @return true if the node is to be included in the results, or false otherwise
+         */
+        protected final boolean isInQueriedWorkspace( NodeKey nodeKey ) {
+            String key = nodeKey.getWorkspaceKey();
+            return workspaceKey.equals(key) || (systemWorkspaceKey != null && systemWorkspaceKey.equals(key));
         }
 
         @Override
         public void add( NodeKey nodeKey,
                          float score ) {
+            if (!isInQueriedWorkspace(nodeKey)) return;
             keys.add(nodeKey);
             if (lastScore == null || lastScore.floatValue() != score) {
                 lastScore = Float.valueOf(score);
@@ -333,6 +660,20 @@ public class QuerySources {
             scores.add(lastScore);
         }
 
+        @Override
+        public void add( NodeKey nodeKey,
+                         float score,
+                         Map<Name, Property> coveredProperties ) {
+            if (!isInQueriedWorkspace(nodeKey)) return;
+            if (this.coveredProperties == null) this.coveredProperties = new ArrayList<>(batchSize);
+            // Keys added without covered properties will be loaded from the cache ...
+            while (this.coveredProperties.size() < keys.size()) {
+                this.coveredProperties.add(null);
+            }
+            add(nodeKey, score);
+            this.coveredProperties.add(coveredProperties);
+        }
+
         @Override
         public void add( Iterable<NodeKey> nodeKeys,
                          float score ) {
@@ -344,7 +685,9 @@ public class QuerySources {
                          float score ) {
             final Float s = Float.valueOf(score);
             while (nodeKeys.hasNext()) {
-                keys.add(nodeKeys.next());
+                NodeKey nodeKey = nodeKeys.next();
+                if (!isInQueriedWorkspace(nodeKey)) continue;
+                keys.add(nodeKey);
                 scores.add(s);
             }
         }
@@ -359,12 +702,14 @@ public class QuerySources {
         }
 
         protected boolean consumeOperation( Index.Operation operation ) {
-            if (!keys.isEmpty()) {
+            if (keys != null && !keys.isEmpty()) {
                 // We've already read some, but have to get ready to read more ...
+                if (preloadedBatches == null) preloadedBatches = new LinkedList<Batch>();
                 preloadedBatches.add(convertToBatch(false));
             }
             keys = new ArrayList<NodeKey>(batchSize);
             scores = new ArrayList<Float>(batchSize);
+            coveredProperties = null;
             return operation.getNextBatch(this, batchSize);
         }
 
@@ -373,12 +718,41 @@ public class QuerySources {
                 return isLast ? null : NodeSequence.emptyBatch(workspaceName, batchSize);
             }
             try {
-                return NodeSequence.batchOfKeys(keys.iterator(), scores.iterator(), keys.size(), workspaceName, repo);
+                if (coveredProperties == null) {
+                    return NodeSequence.batchOfKeys(keys.iterator(), scores.iterator(), keys.size(), workspaceName, repo);
+                }
+                // At least some of the nodes have covered properties, so only load the nodes when necessary ...
+                return NodeSequence.batchOf(coveredNodes(), scores.iterator(), keys.size(), workspaceName);
             } finally {
                 keys = null;
                 scores = null;
+                coveredProperties = null;
             }
         }
+
+        private Iterator<CachedNode> coveredNodes() {
+            final NodeCache cache = repo.getWorkspaceCache(workspaceName);
+            final Iterator<NodeKey> keyIter = keys.iterator();
+            final Iterator<Map<Name, Property>> coveredIter = coveredProperties.iterator();
+            return new Iterator<CachedNode>() {
+                @Override
+                public boolean hasNext() {
+                    return keyIter.hasNext();
+                }
+
+                @Override
+                public CachedNode next() {
+                    NodeKey key = keyIter.next();
+                    Map<Name, Property> covered = coveredIter.hasNext() ? coveredIter.next() : null;
+                    return covered != null ? new CoveredCachedNode(key, covered, cache) : cache.getNode(key);
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
     }
 
     /**
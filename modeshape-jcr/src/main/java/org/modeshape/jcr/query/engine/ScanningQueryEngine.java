@@ -27,6 +27,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Pattern;
 import javax.jcr.RepositoryException;
 import javax.jcr.Value;
@@ -45,6 +46,7 @@ import org.modeshape.jcr.GraphI18n;
 import org.modeshape.jcr.JcrLexicon;
 import org.modeshape.jcr.ModeShapeLexicon;
 import org.modeshape.jcr.NodeTypes;
+import org.modeshape.jcr.RepositoryConfiguration;
 import org.modeshape.jcr.RepositoryIndexes;
 import org.modeshape.jcr.api.query.QueryCancelledException;
 import org.modeshape.jcr.api.query.qom.Operator;
@@ -72,7 +74,9 @@ import org.modeshape.jcr.query.engine.process.DistinctSequence;
 import org.modeshape.jcr.query.engine.process.HashJoinSequence;
 import org.modeshape.jcr.query.engine.process.JoinSequence.Range;
 import org.modeshape.jcr.query.engine.process.JoinSequence.RangeProducer;
+import org.modeshape.jcr.query.engine.process.MergeJoinSequence;
 import org.modeshape.jcr.query.engine.process.SortingSequence;
+import org.modeshape.jcr.query.engine.process.TopNSortingSequence;
 import org.modeshape.jcr.query.model.And;
 import org.modeshape.jcr.query.model.ArithmeticOperand;
 import org.modeshape.jcr.query.model.Between;
@@ -127,6 +131,7 @@ import org.modeshape.jcr.query.plan.PlanNode.Traversal;
 import org.modeshape.jcr.query.plan.PlanNode.Type;
 import org.modeshape.jcr.query.plan.Planner;
 import org.modeshape.jcr.query.validate.Schemata;
+import org.modeshape.jcr.spi.index.IndexCollector;
 import org.modeshape.jcr.value.Name;
 import org.modeshape.jcr.value.NameFactory;
 import org.modeshape.jcr.value.Path;
@@ -155,6 +160,12 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
 
     protected static final Set<Name> PSEUDO_COLUMN_NAMES;
 
+    /**
+     * The largest number of sorted rows that will be kept in memory when a LIMIT is applied to sorted results; larger limits sort
+     * all of the rows using the {@link BufferManager}.
+     */
+    protected static final int MAX_TOP_N_ROWS = 10000;
+
     static {
         Set<Name> names = new HashSet<>();
         names.add(JcrLexicon.NAME);
@@ -170,7 +181,30 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
 
         @Override
         public QueryEngine build() {
-            return new ScanningQueryEngine(context(), repositoryName(), planner(), optimizer());
+            return new ScanningQueryEngine(context(), repositoryName(), planner(), optimizer(), scanPool(), planCache());
+        }
+
+        /**
+         * Create the fork/join pool that should be used to scan the workspace content in parallel, if enabled in the
+         * configuration.
+         * 
+         * @return the new pool, or null if scans are to be done only using the thread executing the query
+         */
+        protected final ForkJoinPool scanPool() {
+            if (config() == null) return null;
+            RepositoryConfiguration.QuerySystem query = config().getQuery();
+            return query.parallelScanEnabled() ? new ForkJoinPool(query.getParallelism()) : null;
+        }
+
+        /**
+         * Create the cache of optimized query plans, if enabled in the configuration.
+         * 
+         * @return the new cache, or null if each query is to be planned every time it is executed
+         */
+        protected final QueryPlanCache planCache() {
+            int size = config() != null ? config().getQuery().getPlanCacheSize()
+                                        : RepositoryConfiguration.Default.QUERY_PLAN_CACHE_SIZE;
+            return size > 0 ? new QueryPlanCache(size) : null;
         }
 
         @Override
@@ -186,16 +220,46 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
     protected final String repositoryName;
     protected final Planner planner;
     protected final Optimizer optimizer;
+    protected final ForkJoinPool scanPool;
+    protected final QueryPlanCache planCache;
+    private final QueryPlanCache.IndexStatisticsVersions indexStatistics = new QueryPlanCache.IndexStatisticsVersions() {
+        @Override
+        public long versionOf( IndexPlan index ) {
+            return indexStatisticsVersion(index);
+        }
+    };
 
     public ScanningQueryEngine( ExecutionContext context,
                                 String repositoryName,
                                 Planner planner,
                                 Optimizer optimizer ) {
+        this(context, repositoryName, planner, optimizer, null, null);
+    }
+
+    /**
+     * Create a query engine that optionally scans the workspace content in parallel when no index can be used.
+     * 
+     * @param context the execution context; may not be null
+     * @param repositoryName the name of the repository; may not be null
+     * @param planner the planner; may not be null
+     * @param optimizer the optimizer; may not be null
+     * @param scanPool the fork/join pool used to scan the workspace content in parallel; may be null if scans should only use
+     *        the thread executing the query
+     * @param planCache the cache of optimized query plans; may be null if each query is to be planned every time it is executed
+     */
+    public ScanningQueryEngine( ExecutionContext context,
+                                String repositoryName,
+                                Planner planner,
+                                Optimizer optimizer,
+                                ForkJoinPool scanPool,
+                                QueryPlanCache planCache ) {
         assert planner != null;
         assert optimizer != null;
         this.repositoryName = repositoryName;
         this.planner = planner;
         this.optimizer = optimizer;
+        this.scanPool = scanPool;
+        this.planCache = planCache;
     }
 
     /**
@@ -234,28 +298,57 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
                          context.getWorkspaceNames(), repositoryName, query, context.id());
         }
 
-        // Create the canonical plan ...
+        // Look for a cached plan ...
         long start = System.nanoTime();
-        PlanNode plan = planner.createPlan(context, query);
+        QueryPlanCache.Key planKey = null;
+        PlanNode cachedPlan = null;
+        if (planCache != null && !context.getProblems().hasErrors()) {
+            planKey = planCache.keyFor(context, query);
+            cachedPlan = planCache.get(planKey, context, indexStatistics);
+        }
+
+        // Otherwise create the canonical plan, recording the variables that were used to plan the query ...
+        PlanNode plan = null;
+        ScanQueryContext planningContext = context;
+        QueryPlanCache.VariableReads variablesRead = null;
+        int problemCount = context.getProblems().size();
+        if (cachedPlan == null) {
+            if (planKey != null) {
+                variablesRead = new QueryPlanCache.VariableReads(context.getVariables());
+                planningContext = new PlanningQueryContext(context, variablesRead);
+            }
+            plan = planner.createPlan(planningContext, query);
+        }
         long duration = Math.abs(System.nanoTime() - start);
         Statistics stats = new Statistics(duration);
         final String workspaceName = context.getWorkspaceNames().iterator().next();
 
         if (trace) {
-            LOGGER.trace("Computed canonical query plan for query {0}: {1}", context.id(), plan);
+            if (cachedPlan != null) {
+                LOGGER.trace("Found cached query plan for query {0}: {1}", context.id(), cachedPlan);
+            } else {
+                LOGGER.trace("Computed canonical query plan for query {0}: {1}", context.id(), plan);
+            }
         }
 
         checkCancelled(context);
         Columns resultColumns = null;
         if (!context.getProblems().hasErrors()) {
-            // Optimize the plan ...
-            start = System.nanoTime();
-            PlanNode optimizedPlan = optimizer.optimize(context, plan);
-            duration = Math.abs(System.nanoTime() - start);
-            stats = stats.withOptimizationTime(duration);
+            PlanNode optimizedPlan = cachedPlan;
+            if (optimizedPlan == null) {
+                // Optimize the plan ...
+                start = System.nanoTime();
+                optimizedPlan = optimizer.optimize(planningContext, plan);
+                duration = Math.abs(System.nanoTime() - start);
+                stats = stats.withOptimizationTime(duration);
 
-            if (trace) {
-                LOGGER.trace("Computed optimized query plan for query {0}:\n{1}", context.id(), optimizedPlan);
+                if (trace) {
+                    LOGGER.trace("Computed optimized query plan for query {0}:\n{1}", context.id(), optimizedPlan);
+                }
+                if (planKey != null && context.getProblems().size() == problemCount) {
+                    // The plan was created without any problems, so it can be reused ...
+                    planCache.put(planKey, optimizedPlan, context.getHints(), variablesRead, indexStatistics);
+                }
             }
 
             // Find the query result columns ...
@@ -404,7 +497,7 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
 
     @Override
     public void shutdown() {
-        // nothing to do
+        if (scanPool != null) scanPool.shutdown();
     }
 
     @Override
@@ -564,13 +657,16 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
                     joinQueryContext = context.with(joinPlanHints);
                 }
 
-                NodeSequence left = createNodeSequence(originalQuery, joinQueryContext, leftPlan, leftColumns, sources);
-                NodeSequence right = createNodeSequence(originalQuery, joinQueryContext, rightPlan, rightColumns, sources);
-
                 // Figure out the join algorithm ...
                 JoinAlgorithm algorithm = plan.getProperty(Property.JOIN_ALGORITHM, JoinAlgorithm.class);
                 JoinType joinType = plan.getProperty(Property.JOIN_TYPE, JoinType.class);
                 JoinCondition joinCondition = plan.getProperty(Property.JOIN_CONDITION, JoinCondition.class);
+                boolean merge = algorithm == JoinAlgorithm.MERGE && joinType != JoinType.CROSS
+                                && !(joinCondition instanceof DescendantNodeJoinCondition);
+
+                // The optimizer only chooses the merge algorithm when both sides are already sorted by the join values ...
+                NodeSequence left = createNodeSequence(originalQuery, joinQueryContext, leftPlan, leftColumns, sources);
+                NodeSequence right = createNodeSequence(originalQuery, joinQueryContext, rightPlan, rightColumns, sources);
                 boolean pack = false;
                 boolean useHeap = false;
                 if (0 >= right.getRowCount() && right.getRowCount() < 100) useHeap = true;
@@ -680,14 +776,24 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
                 TypeFactory<?> leftType = leftExtractor.getType();
                 TypeFactory<?> rightType = rightExtractor.getType();
                 if (!leftType.equals(rightType)) {
+                    // The converted values may not be in the order of the sorted values, so the merge join can't be used ...
+                    merge = false;
                     // wrap the right extractor with a converting extractor ...
                     final TypeFactory<?> commonType = context.getTypeSystem().getCompatibleType(leftType, rightType);
                     if (!leftType.equals(commonType)) leftExtractor = RowExtractors.convert(leftExtractor, commonType);
                     if (!rightType.equals(commonType)) rightExtractor = RowExtractors.convert(rightExtractor, commonType);
                 }
 
-                rows = new HashJoinSequence(workspaceName, left, right, leftExtractor, rightExtractor, joinType,
-                                            context.getBufferManager(), cache, rangeProducer, pack, useHeap);
+                if (merge) {
+                    // Stream through both sorted sides at the same time ...
+                    @SuppressWarnings( "unchecked" )
+                    Comparator<Object> comparator = (Comparator<Object>)leftExtractor.getType().getComparator();
+                    rows = new MergeJoinSequence(workspaceName, left, right, leftExtractor, rightExtractor, comparator, joinType,
+                                                 cache, 100);
+                } else {
+                    rows = new HashJoinSequence(workspaceName, left, right, leftExtractor, rightExtractor, joinType,
+                                                context.getBufferManager(), cache, rangeProducer, pack, useHeap);
+                }
                 // For each Constraint object applied to the JOIN, simply create a SelectComponent on top ...
                 RowFilter filter = null;
                 List<Constraint> constraints = plan.getPropertyAsList(Property.JOIN_CONSTRAINTS, Constraint.class);
@@ -726,10 +832,19 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
                 rows = createNodeSequence(originalQuery, context, child, columns, sources);
                 break;
             case SELECT:
+                if (scanPool != null) {
+                    // See if the criteria can be evaluated while scanning the workspace in parallel ...
+                    rows = createParallelScanSequence(context, plan, columns, sources);
+                    if (rows != null) break;
+                }
                 // Create the sequence for the plan node under the SELECT ...
                 assert plan.getChildCount() == 1;
                 rows = createNodeSequence(originalQuery, context, plan.getFirstChild(), columns, sources);
                 Constraint constraint = plan.getProperty(Property.SELECT_CRITERIA, Constraint.class);
+                if (constraint instanceof FullTextSearch && isAnsweredByUsedIndex(plan, constraint)) {
+                    // The index has already found (and scored) the nodes that satisfy the full-text search ...
+                    break;
+                }
                 filter = createRowFilter(constraint, context, columns, sources);
                 rows = NodeSequence.filter(rows, filter);
                 break;
@@ -798,10 +913,15 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
                                 nullOrder = orderings.get(0).nullOrder();
                             }
                             // Now create the single sorting extractor ...
-                            sortExtractor = createSortingExtractor(orderings, sourceNamesByAlias, context, columns, sources);
+                            if (orderings.size() == 1 && isInputOfMergeJoin(plan)) {
+                                sortExtractor = createMergeJoinSortingExtractor(orderings.get(0), context, columns, sources);
+                            } else {
+                                sortExtractor = createSortingExtractor(orderings, sourceNamesByAlias, context, columns, sources);
+                            }
                         } else {
-                            // Order by the location(s) because it's before a merge-join ...
-                            final TypeFactory<?> keyType = context.getTypeSystem().getReferenceFactory();
+                            // Order by the location(s) because it's before a merge-join, using the same string form of the
+                            // node keys that the merge-join compares ...
+                            final TypeFactory<?> keyType = context.getTypeSystem().getStringFactory();
                             List<ExtractFromRow> extractors = new ArrayList<>();
                             for (Object ordering : orderBys) {
                                 SelectorName selectorName = (SelectorName)ordering;
@@ -815,7 +935,7 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
                                     @Override
                                     public Object getValueInRow( RowAccessor row ) {
                                         CachedNode node = row.getNode(index);
-                                        return node != null ? node.getKey() : null;
+                                        return node != null ? node.getKey().toString() : null;
                                     }
                                 });
                             }
@@ -829,8 +949,14 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
                         if (sortExtractor != null) {
                             workspaceName = sources.getWorkspaceName();
                             cache = context.getNodeCache(workspaceName);
-                            rows = new SortingSequence(workspaceName, rows, sortExtractor, context.getBufferManager(), cache,
-                                                       pack, useHeap, allowDuplicates, nullOrder);
+                            int topN = allowDuplicates ? maximumRowsForTopN(plan) : 0;
+                            if (topN > 0) {
+                                // Only the first rows will be used, so keep just those in memory rather than sorting them all ...
+                                rows = new TopNSortingSequence(workspaceName, rows, sortExtractor, cache, topN, nullOrder);
+                            } else {
+                                rows = new SortingSequence(workspaceName, rows, sortExtractor, context.getBufferManager(),
+                                                           cache, pack, useHeap, allowDuplicates, nullOrder);
+                            }
                         }
                     }
                 }
@@ -845,6 +971,87 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
         return rows;
     }
 
+    /**
+     * Determine the maximum number of rows that will be used from the supplied SORT node. This is the sum of the offset and row
+     * limit of a LIMIT node directly above the SORT node, if that sum is no larger than {@link #MAX_TOP_N_ROWS}.
+     * 
+     * @param sortNode the SORT plan node; may not be null
+     * @return the number of rows that the {@link TopNSortingSequence} should keep, or 0 if all of the rows are to be sorted
+     */
+    protected int maximumRowsForTopN( PlanNode sortNode ) {
+        PlanNode parent = sortNode.getParent();
+        if (parent == null || parent.getType() != Type.LIMIT) return 0;
+        Integer rowLimit = parent.getProperty(Property.LIMIT_COUNT, Integer.class);
+        if (rowLimit == null || rowLimit.intValue() <= 0 || rowLimit.intValue() == Integer.MAX_VALUE) return 0;
+        Integer offset = parent.getProperty(Property.LIMIT_OFFSET, Integer.class);
+        long maxRows = rowLimit.longValue() + (offset != null ? Math.max(offset.longValue(), 0L) : 0L);
+        return maxRows <= MAX_TOP_N_ROWS ? (int)maxRows : 0;
+    }
+
+    /**
+     * Determine whether the supplied SORT node orders one side of a JOIN that uses the {@link JoinAlgorithm#MERGE merge}
+     * algorithm, either directly or below a DUP_REMOVE node.
+     * 
+     * @param sortNode the SORT plan node; may not be null
+     * @return true if the rows of the SORT node are one input of a merge join, or false otherwise
+     */
+    protected boolean isInputOfMergeJoin( PlanNode sortNode ) {
+        PlanNode parent = sortNode.getParent();
+        if (parent != null && parent.getType() == Type.DUP_REMOVE) parent = parent.getParent();
+        return parent != null && parent.getType() == Type.JOIN
+               && parent.getProperty(Property.JOIN_ALGORITHM, JoinAlgorithm.class) == JoinAlgorithm.MERGE;
+    }
+
+    /**
+     * Create an {@link ExtractFromRow} instance that orders one side of a merge join by the
+     * {@link RowExtractors#extractLowest(ExtractFromRow) lowest} of the values used in the join condition, as required by the
+     * {@link MergeJoinSequence}. Unlike {@link #createSortingExtractor(Ordering, Map, QueryContext, Columns, QuerySources)}, all
+     * of the values of a multi-valued property are considered.
+     * 
+     * @param ordering the specification of the sort order; may not be null
+     * @param context the context in which the query is to be executed; may not be null
+     * @param columns the result column definition; may not be null
+     * @param sources the query sources for the repository; may not be null
+     * @return the extractor; never null
+     */
+    protected ExtractFromRow createMergeJoinSortingExtractor( Ordering ordering,
+                                                              QueryContext context,
+                                                              Columns columns,
+                                                              QuerySources sources ) {
+        ExtractFromRow extractor = createExtractFromRow(ordering.getOperand(), context, columns, sources, null, true, false);
+        return RowExtractors.extractorWith(RowExtractors.extractLowest(extractor), ordering.order(), ordering.nullOrder());
+    }
+
+    /**
+     * Determine whether the supplied constraint of a SELECT node was already applied by an index used to find the nodes of the
+     * SOURCE node below the SELECT node. This must be called after the node sequence for the SELECT node's child is created. A
+     * full-text search is only answered by an index that states that it returns exactly the nodes that satisfy the search.
+     * 
+     * @param selectNode the {@link Type#SELECT} plan node; may not be null
+     * @param constraint the SELECT node's constraint; may not be null
+     * @return true if the constraint was applied by an index, or false otherwise
+     */
+    protected boolean isAnsweredByUsedIndex( PlanNode selectNode,
+                                             Constraint constraint ) {
+        PlanNode node = selectNode.getFirstChild();
+        while (node != null && node.getType() == Type.SELECT) {
+            node = node.getFirstChild();
+        }
+        if (node == null || node.getType() != Type.SOURCE) return false;
+        for (PlanNode indexNode : node.getChildren()) {
+            if (indexNode.getType() != Type.INDEX || !indexNode.hasProperty(Property.INDEX_USED)) continue;
+            IndexPlan index = indexNode.getProperty(Property.INDEX_SPECIFICATION, IndexPlan.class);
+            if (index == null || !index.getConstraints().contains(constraint)) return false;
+            if (constraint instanceof FullTextSearch) {
+                // Full-text indexes may return nodes that don't satisfy the search (e.g., for phrases or negations) ...
+                Map<String, Object> parameters = index.getParameters();
+                return parameters != null && Boolean.TRUE.equals(parameters.get(IndexCollector.EXACT_FULL_TEXT_PARAMETER));
+            }
+            return true;
+        }
+        return false;
+    }
+
     /**
      * Create a node sequence for the given source.
      * 
@@ -876,6 +1083,61 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
         return sources.allNodes(1.0f, -1);
     }
 
+    /**
+     * Create a node sequence for one or more SELECT nodes directly above a SOURCE node that has no indexes, where the workspace
+     * content is scanned in parallel and the criteria are evaluated within each partition of the scan.
+     * 
+     * @param context the context in which the query is to be executed; may not be null
+     * @param plan the topmost {@link Type#SELECT} plan node; may not be null
+     * @param columns the result column definition; may not be null
+     * @param sources the query sources for the repository; may not be null
+     * @return the sequence of results, or null if the plan cannot be evaluated using a parallel scan
+     */
+    protected NodeSequence createParallelScanSequence( final QueryContext context,
+                                                       PlanNode plan,
+                                                       final Columns columns,
+                                                       final QuerySources sources ) {
+        assert scanPool != null;
+        final List<Constraint> constraints = new ArrayList<>();
+        PlanNode node = plan;
+        while (node.getType() == Type.SELECT) {
+            if (node.getChildCount() != 1) return null;
+            constraints.add(node.getProperty(Property.SELECT_CRITERIA, Constraint.class));
+            node = node.getFirstChild();
+        }
+        if (node.getType() != Type.SOURCE) return null;
+        for (PlanNode child : node.getChildren()) {
+            // Indexes are almost always better than scanning ...
+            if (child.getType() == Type.INDEX) return null;
+        }
+        return sources.allNodes(1.0f, scanPool, new QuerySources.RowFilterFactory() {
+            @Override
+            public RowFilter createFilter() {
+                RowFilter filter = null;
+                for (Constraint constraint : constraints) {
+                    filter = NodeSequence.requireBoth(filter, createRowFilter(constraint, context, columns, sources));
+                }
+                return filter;
+            }
+
+            @Override
+            public String toString() {
+                return constraints.toString();
+            }
+        });
+    }
+
+    /**
+     * Get the current version of the statistics of the supplied index, used to discard cached plans once the statistics that
+     * they were planned with have changed. The native indexes used by this engine have no statistics.
+     * 
+     * @param index the {@link IndexPlan} specification; may not be null
+     * @return the version of the index's statistics, or 0 if the index has no statistics
+     */
+    protected long indexStatisticsVersion( IndexPlan index ) {
+        return 0L;
+    }
+
     /**
      * Create a node sequence for the given index
      * 
@@ -893,7 +1155,7 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
                                                         IndexPlan index,
                                                         Columns columns,
                                                         QuerySources sources ) {
-        if (index.getProviderName() != null) {
+        if (index.getProviderName() == null) {
             String name = index.getName();
             String pathStr = (String)index.getParameters().get(IndexPlan.PATH_PARAMETER);
             if (pathStr != null) {
@@ -2745,6 +3007,11 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
             this.columnsByPlanNode = columnsByPlanNode;
         }
 
+        protected ScanQueryContext( ScanQueryContext original ) {
+            super(original);
+            this.columnsByPlanNode = original.columnsByPlanNode;
+        }
+
         /**
          * Add a {@link Columns} object for the given plan node.
          * 
@@ -2790,4 +3057,24 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
                                         indexDefns, nodeTypes, bufferManager, hints, problems, variables, columnsByPlanNode);
         }
     }
+
+    /**
+     * The context used to plan and optimize a query whose plan may be cached. It shares all of the state of the original context,
+     * but records which of the variables are read.
+     */
+    static class PlanningQueryContext extends ScanQueryContext {
+
+        private final QueryPlanCache.VariableReads variablesRead;
+
+        protected PlanningQueryContext( ScanQueryContext original,
+                                        QueryPlanCache.VariableReads variablesRead ) {
+            super(original);
+            this.variablesRead = variablesRead;
+        }
+
+        @Override
+        public Map<String, Object> getVariables() {
+            return variablesRead;
+        }
+    }
 }
@@ -0,0 +1,448 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.query.engine.process;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import org.modeshape.common.annotation.NotThreadSafe;
+import org.modeshape.jcr.cache.CachedNode;
+import org.modeshape.jcr.cache.CachedNodeSupplier;
+import org.modeshape.jcr.query.NodeSequence;
+import org.modeshape.jcr.query.RowExtractors;
+import org.modeshape.jcr.query.RowExtractors.ExtractFromRow;
+import org.modeshape.jcr.query.engine.process.BufferedRows.BufferedRow;
+import org.modeshape.jcr.query.engine.process.BufferedRows.BufferedRowFactory;
+import org.modeshape.jcr.query.model.JoinType;
+
+/**
+ * A {@link NodeSequence} implementation that performs an equijoin of two delegate sequences that are each already sorted by
+ * their join condition value. The merge-join algorithm streams through both sides at the same time, and only keeps in memory the
+ * rows on the right that share the join condition value currently being processed. Neither side is loaded into a buffer.
+ * <p>
+ * Each side must be ordered by the {@link RowExtractors#extractLowest(ExtractFromRow) lowest} value returned by its extractor,
+ * in ascending order using the supplied comparator and with rows that have no value at the end. This is the order produced by a
+ * {@link SortingSequence} using that extractor. Rows with multiple values (e.g., multi-valued properties) are joined on each of
+ * their distinct values, just as with the {@link HashJoinSequence}.
+ * </p>
+ * <p>
+ * Cross joins are not supported, since they have no join condition.
+ * </p>
+ *
+ * @see HashJoinSequence
+ */
+@NotThreadSafe
+public class MergeJoinSequence extends NodeSequence {
+
+    protected final String workspaceName;
+    protected final NodeSequence left;
+    protected final NodeSequence right;
+    protected final ExtractFromRow leftExtractor;
+    protected final ExtractFromRow rightExtractor;
+    protected final Comparator<Object> comparator;
+    protected final JoinType joinType;
+    protected final int leftWidth;
+    protected final int totalWidth;
+    protected final int batchSize;
+    private final Cursor leftCursor;
+    private final Cursor rightCursor;
+
+    // The state of the merge ...
+    private Entry currentLeft;
+    private Entry currentRight;
+    private List<Entry> rightGroup;
+    private Object groupValue;
+    private Entry groupLeft;
+    private int groupIndex;
+    private boolean started;
+    private boolean done;
+
+    // The rows that make up the current result ...
+    protected BufferedRow leftRow;
+    protected BufferedRow rightRow;
+
+    public MergeJoinSequence( String workspaceName,
+                              NodeSequence left,
+                              NodeSequence right,
+                              ExtractFromRow leftExtractor,
+                              ExtractFromRow rightExtractor,
+                              Comparator<Object> comparator,
+                              JoinType joinType,
+                              CachedNodeSupplier nodeCache,
+                              int batchSize ) {
+        assert joinType != JoinType.CROSS;
+        assert batchSize > 0;
+        this.workspaceName = workspaceName;
+        this.left = left;
+        this.right = right;
+        this.leftExtractor = leftExtractor;
+        this.rightExtractor = rightExtractor;
+        this.comparator = comparator;
+        this.joinType = joinType;
+        this.leftWidth = left.width();
+        this.totalWidth = left.width() + right.width();
+        this.batchSize = batchSize;
+        this.leftCursor = new Cursor(left, leftExtractor, BufferedRows.serializer(nodeCache, left.width()));
+        this.rightCursor = new Cursor(right, rightExtractor, BufferedRows.serializer(nodeCache, right.width()));
+    }
+
+    @Override
+    public int width() {
+        return totalWidth;
+    }
+
+    @Override
+    public long getRowCount() {
+        return -1L;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        if (left.isEmpty()) {
+            return useNonMatchingRightRows() ? right.isEmpty() : true;
+        }
+        if (right.isEmpty()) {
+            return !useNonMatchingLeftRows();
+        }
+        return false;
+    }
+
+    @Override
+    public Batch nextBatch() {
+        if (done) return null;
+        if (!advance()) {
+            done = true;
+            return null;
+        }
+        return new MergeJoinBatch();
+    }
+
+    @Override
+    public void close() {
+        try {
+            left.close();
+        } finally {
+            right.close();
+        }
+    }
+
+    protected boolean useNonMatchingLeftRows() {
+        return joinType == JoinType.FULL_OUTER || joinType == JoinType.LEFT_OUTER;
+    }
+
+    protected boolean useNonMatchingRightRows() {
+        return joinType == JoinType.FULL_OUTER || joinType == JoinType.RIGHT_OUTER;
+    }
+
+    /**
+     * Move to the next row of the join result, setting the {@link #leftRow} and {@link #rightRow} fields.
+     *
+     * @return true if there is another row, or false if there are no more rows
+     */
+    protected boolean advance() {
+        if (!started) {
+            currentLeft = leftCursor.next();
+            currentRight = rightCursor.next();
+            started = true;
+        }
+        while (true) {
+            if (groupLeft != null) {
+                // Return the next row for the current left row and the group of matching right rows ...
+                if (groupIndex < rightGroup.size()) {
+                    Entry match = rightGroup.get(groupIndex++);
+                    match.row.matched = true;
+                    groupLeft.row.matched = true;
+                    return setResult(groupLeft.row.row, match.row.row);
+                }
+                groupLeft = null;
+                currentLeft = leftCursor.next();
+            }
+            if (rightGroup != null) {
+                if (currentLeft != null && currentLeft.value != null && comparator.compare(currentLeft.value, groupValue) == 0) {
+                    // The next left row also matches the group of right rows ...
+                    groupLeft = currentLeft;
+                    groupIndex = 0;
+                    continue;
+                }
+                // We're done with this group ...
+                rightGroup = null;
+                groupValue = null;
+            }
+            if (currentLeft == null && currentRight == null) return false;
+            int diff = compare(currentLeft, currentRight);
+            if (diff < 0) {
+                // The left row has no matching right rows at this value ...
+                Entry entry = currentLeft;
+                currentLeft = leftCursor.next();
+                if (useNonMatchingLeftRows() && entry.isLast() && !entry.row.matched) {
+                    return setResult(entry.row.row, null);
+                }
+                continue;
+            }
+            if (diff > 0 || currentRight.value == null) {
+                // The right row has no matching left rows at this value (and NULL never matches) ...
+                Entry entry = currentRight;
+                currentRight = rightCursor.next();
+                if (useNonMatchingRightRows() && entry.isLast() && !entry.row.matched) {
+                    return setResult(null, entry.row.row);
+                }
+                continue;
+            }
+            // The values match, so collect all of the right rows with the same value ...
+            groupValue = currentRight.value;
+            rightGroup = new ArrayList<>();
+            while (currentRight != null && currentRight.value != null
+                   && comparator.compare(currentRight.value, groupValue) == 0) {
+                rightGroup.add(currentRight);
+                currentRight = rightCursor.next();
+            }
+            groupLeft = currentLeft;
+            groupIndex = 0;
+        }
+    }
+
+    private boolean setResult( BufferedRow left,
+                               BufferedRow right ) {
+        this.leftRow = left;
+        this.rightRow = right;
+        return true;
+    }
+
+    /**
+     * Compare the two entries, where a null entry (no more rows) or an entry with no value always sorts last.
+     *
+     * @param left the left entry; may be null
+     * @param right the right entry; may be null
+     * @return negative if the left entry is to be processed first, positive if the right entry is to be processed first, or 0 if
+     *         they have the same value
+     */
+    private int compare( Entry left,
+                         Entry right ) {
+        if (left == null) return 1;
+        if (right == null) return -1;
+        return compareValues(left.value, right.value);
+    }
+
+    protected final int compareValues( Object value1,
+                                       Object value2 ) {
+        if (value1 == null) return value2 == null ? 0 : 1;
+        if (value2 == null) return -1;
+        return comparator.compare(value1, value2);
+    }
+
+    @Override
+    public String toString() {
+        return "(merge-join " + joinType + " left=" + left + ", right=" + right + ", on " + leftExtractor + "=" + rightExtractor
+               + " )";
+    }
+
+    /**
+     * The state of one row read from one side of the join, shared by all of the entries for that row's values.
+     */
+    protected static final class RowState {
+        protected final BufferedRow row;
+        protected final Object[] values;
+        protected boolean matched;
+
+        protected RowState( BufferedRow row,
+                            Object[] values ) {
+            this.row = row;
+            this.values = values;
+        }
+    }
+
+    /**
+     * One value of one row read from one side of the join.
+     */
+    protected static final class Entry {
+        protected final RowState row;
+        protected final Object value;
+        protected final int index;
+
+        protected Entry( RowState row,
+                         int index ) {
+            this.row = row;
+            this.index = index;
+            this.value = row.values.length == 0 ? null : row.values[index];
+        }
+
+        protected boolean isLast() {
+            return index >= row.values.length - 1;
+        }
+
+        protected Entry next() {
+            return new Entry(row, index + 1);
+        }
+    }
+
+    /**
+     * Reads the rows from one side of the join and returns an {@link Entry} for each value of each row, in ascending order of
+     * the values. Since each row is sorted by its lowest value, the entries for a row's other values are kept only until they are
+     * to be returned.
+     */
+    protected final class Cursor {
+        private final NodeSequence sequence;
+        private final ExtractFromRow extractor;
+        private final BufferedRowFactory<? extends BufferedRow> rowFactory;
+        private final PriorityQueue<Entry> pending;
+        private Batch batch;
+        private Entry lookahead;
+        private boolean exhausted;
+
+        protected Cursor( NodeSequence sequence,
+                          ExtractFromRow extractor,
+                          BufferedRowFactory<? extends BufferedRow> rowFactory ) {
+            this.sequence = sequence;
+            this.extractor = extractor;
+            this.rowFactory = rowFactory;
+            this.pending = new PriorityQueue<>(11, new Comparator<Entry>() {
+                @Override
+                public int compare( Entry entry1,
+                                    Entry entry2 ) {
+                    return compareValues(entry1.value, entry2.value);
+                }
+            });
+        }
+
+        protected Entry next() {
+            if (lookahead == null) lookahead = read();
+            Entry result = null;
+            Entry head = pending.peek();
+            if (head != null && (lookahead == null || compareValues(head.value, lookahead.value) <= 0)) {
+                result = pending.poll();
+            } else {
+                result = lookahead;
+                lookahead = null;
+            }
+            if (result != null && !result.isLast()) {
+                // Remember the entry for the row's next value ...
+                pending.add(result.next());
+            }
+            return result;
+        }
+
+        private Entry read() {
+            if (exhausted) return null;
+            while (batch == null || !batch.hasNext()) {
+                batch = sequence.nextBatch();
+                if (batch == null) {
+                    exhausted = true;
+                    return null;
+                }
+            }
+            batch.nextRow();
+            BufferedRow row = rowFactory.createRow(batch);
+            return new Entry(new RowState(row, valuesOf(extractor.getValueInRow(row))), 0);
+        }
+
+        private Object[] valuesOf( Object value ) {
+            if (value == null) return new Object[] {null};
+            if (!(value instanceof Object[])) return new Object[] {value};
+            // Sort the non-null values ...
+            Object[] values = (Object[])value;
+            List<Object> nonNull = new ArrayList<>(values.length);
+            for (Object v : values) {
+                if (v != null) nonNull.add(v);
+            }
+            if (nonNull.isEmpty()) return new Object[] {null};
+            Object[] sorted = nonNull.toArray();
+            Arrays.sort(sorted, comparator);
+            // Remove the repeated values, or the row would be joined more than once with each matching row ...
+            List<Object> distinct = new ArrayList<>(sorted.length);
+            for (Object v : sorted) {
+                if (distinct.isEmpty() || comparator.compare(distinct.get(distinct.size() - 1), v) != 0) distinct.add(v);
+            }
+            return distinct.toArray();
+        }
+    }
+
+    protected final class MergeJoinBatch implements Batch {
+        private int count = 0;
+        private boolean hasCurrent = true; // 'advance()' was already called for the first row
+
+        @Override
+        public int width() {
+            return totalWidth;
+        }
+
+        @Override
+        public String getWorkspaceName() {
+            return workspaceName;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return false;
+        }
+
+        @Override
+        public long rowCount() {
+            return -1L; // don't really know how many ...
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (hasCurrent) return true;
+            if (done || count >= batchSize) return false;
+            if (!advance()) {
+                done = true;
+                return false;
+            }
+            hasCurrent = true;
+            return true;
+        }
+
+        @Override
+        public void nextRow() {
+            // The 'leftRow' and 'rightRow' were already set in 'hasNext()' ...
+            hasCurrent = false;
+            ++count;
+        }
+
+        @Override
+        public CachedNode getNode() {
+            return leftRow != null ? leftRow.getNode() : null;
+        }
+
+        @Override
+        public CachedNode getNode( int index ) {
+            if (index < leftWidth) {
+                return leftRow != null ? leftRow.getNode(index) : null;
+            }
+            return rightRow != null ? rightRow.getNode(index - leftWidth) : null;
+        }
+
+        @Override
+        public float getScore() {
+            return leftRow != null ? leftRow.getScore() : 0.0f;
+        }
+
+        @Override
+        public float getScore( int index ) {
+            if (index < leftWidth) {
+                return leftRow != null ? leftRow.getScore(index) : 0.0f;
+            }
+            return rightRow != null ? rightRow.getScore(index - leftWidth) : 0.0f;
+        }
+
+        @Override
+        public String toString() {
+            return "(merge-join-batch size=" + batchSize + " )";
+        }
+    }
+}
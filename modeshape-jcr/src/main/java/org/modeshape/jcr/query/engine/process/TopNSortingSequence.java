@@ -0,0 +1,238 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.query.engine.process;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import org.modeshape.common.annotation.NotThreadSafe;
+import org.modeshape.jcr.cache.CachedNode;
+import org.modeshape.jcr.cache.CachedNodeSupplier;
+import org.modeshape.jcr.query.NodeSequence;
+import org.modeshape.jcr.query.RowExtractors.ExtractFromRow;
+import org.modeshape.jcr.query.engine.process.BufferedRows.BufferedRow;
+import org.modeshape.jcr.query.engine.process.BufferedRows.BufferedRowFactory;
+import org.modeshape.jcr.query.model.NullOrder;
+
+/**
+ * A {@link NodeSequence} that returns only the first rows of the delegate sequence when sorted by the extracted value. This is
+ * used in place of a {@link SortingSequence} when the sorted rows are limited (e.g., "ORDER BY ... LIMIT 20"). Rather than
+ * sorting all of the rows in a buffer, this sequence keeps in memory a bounded priority queue holding the best rows seen so far,
+ * so sorting <i>n</i> rows takes O(<i>n</i> log <i>k</i>) time and O(<i>k</i>) space, where <i>k</i> is the maximum number of
+ * rows to be returned.
+ * <p>
+ * Rows are ordered exactly as with the {@link SortingSequence}: rows with multiple values appear once for each value, rows with
+ * the same value are returned in the order they appear in the delegate sequence, and rows without a value are placed according
+ * to the {@link NullOrder}.
+ * </p>
+ */
+@NotThreadSafe
+public class TopNSortingSequence extends DelegatingSequence {
+
+    protected final String workspaceName;
+    protected final ExtractFromRow extractor;
+    protected final BufferedRowFactory<? extends BufferedRow> rowFactory;
+    protected final int maxRows;
+    protected final int width;
+    private final Comparator<Candidate> order;
+    private Candidate[] sortedRows;
+    private boolean done = false;
+
+    @SuppressWarnings( "unchecked" )
+    public TopNSortingSequence( String workspaceName,
+                                NodeSequence delegate,
+                                ExtractFromRow extractor,
+                                CachedNodeSupplier nodeCache,
+                                int maxRows,
+                                NullOrder nullOrder ) {
+        super(delegate);
+        assert !delegate.isEmpty();
+        assert extractor != null;
+        assert maxRows > 0;
+        this.workspaceName = workspaceName;
+        this.extractor = extractor;
+        this.maxRows = maxRows;
+        this.width = delegate.width();
+        this.rowFactory = BufferedRows.serializer(nodeCache, width);
+        final Comparator<Object> valueComparator = (Comparator<Object>)extractor.getType().getComparator();
+        final boolean nullsFirst = nullOrder == NullOrder.NULLS_FIRST;
+        this.order = new Comparator<Candidate>() {
+            @Override
+            public int compare( Candidate c1,
+                                Candidate c2 ) {
+                if (c1.value == null) {
+                    if (c2.value != null) return nullsFirst ? -1 : 1;
+                } else if (c2.value == null) {
+                    return nullsFirst ? 1 : -1;
+                } else {
+                    int diff = valueComparator.compare(c1.value, c2.value);
+                    if (diff != 0) return diff;
+                }
+                // Otherwise, keep the original order ...
+                return c1.sequence < c2.sequence ? -1 : (c1.sequence > c2.sequence ? 1 : 0);
+            }
+        };
+    }
+
+    @Override
+    public long getRowCount() {
+        if (sortedRows == null) sortedRows = initialize();
+        return sortedRows.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return false;
+    }
+
+    @Override
+    public Batch nextBatch() {
+        if (sortedRows == null) sortedRows = initialize();
+        if (done) return null;
+        done = true;
+        if (sortedRows.length == 0) return null;
+        return batchFrom(sortedRows);
+    }
+
+    /**
+     * Read all of the rows from the delegate, keeping only the {@link #maxRows} best rows.
+     *
+     * @return the best rows in ascending order; never null
+     */
+    protected Candidate[] initialize() {
+        // The head of the queue is always the worst of the rows kept so far ...
+        PriorityQueue<Candidate> best = new PriorityQueue<>(Math.min(maxRows, 1024), Collections.reverseOrder(order));
+        Candidate probe = new Candidate();
+        long sequence = 0L;
+        Batch batch = delegate.nextBatch();
+        while (batch != null) {
+            while (batch.hasNext()) {
+                batch.nextRow();
+                Object value = extractor.getValueInRow(batch);
+                if (value instanceof Object[]) {
+                    // Consider the row for each of its values ...
+                    BufferedRow row = null;
+                    for (Object v : (Object[])value) {
+                        row = offer(best, probe, v, sequence++, batch, row);
+                    }
+                } else {
+                    offer(best, probe, value, sequence++, batch, null);
+                }
+            }
+            batch = delegate.nextBatch();
+        }
+        Candidate[] result = best.toArray(new Candidate[best.size()]);
+        Arrays.sort(result, order);
+        return result;
+    }
+
+    private BufferedRow offer( PriorityQueue<Candidate> best,
+                               Candidate probe,
+                               Object value,
+                               long sequence,
+                               Batch batch,
+                               BufferedRow row ) {
+        if (best.size() >= maxRows) {
+            // Only keep the row if it is better than the worst row we have ...
+            probe.value = value;
+            probe.sequence = sequence;
+            if (order.compare(probe, best.peek()) >= 0) return row;
+            best.poll();
+        }
+        // Copy the row only once, even if it is kept for several values ...
+        if (row == null) row = rowFactory.createRow(batch);
+        Candidate candidate = new Candidate();
+        candidate.value = value;
+        candidate.sequence = sequence;
+        candidate.row = row;
+        best.add(candidate);
+        return row;
+    }
+
+    protected Batch batchFrom( final Candidate[] rows ) {
+        return new Batch() {
+            private int index = -1;
+            private BufferedRow current;
+
+            @Override
+            public int width() {
+                return width;
+            }
+
+            @Override
+            public long rowCount() {
+                return rows.length;
+            }
+
+            @Override
+            public String getWorkspaceName() {
+                return workspaceName;
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return rows.length == 0;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return index + 1 < rows.length;
+            }
+
+            @Override
+            public void nextRow() {
+                current = rows[++index].row;
+            }
+
+            @Override
+            public CachedNode getNode() {
+                return current.getNode();
+            }
+
+            @Override
+            public CachedNode getNode( int index ) {
+                return current.getNode(index);
+            }
+
+            @Override
+            public float getScore() {
+                return current.getScore();
+            }
+
+            @Override
+            public float getScore( int index ) {
+                return current.getScore(index);
+            }
+
+            @Override
+            public String toString() {
+                return "(top-n-batch size=" + rows.length + " )";
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "(top-n-sorting-sequence width=" + width() + " max=" + maxRows + " order=" + extractor + " " + delegate + ")";
+    }
+
+    protected static final class Candidate {
+        protected Object value;
+        protected long sequence;
+        protected BufferedRow row;
+    }
+}
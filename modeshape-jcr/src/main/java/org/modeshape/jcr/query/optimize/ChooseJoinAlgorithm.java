@@ -99,17 +99,31 @@ import org.modeshape.jcr.query.plan.PlanNode.Type;
  * </li>
  * </ol>
  * </p>
+ * <p>
+ * Finally, the {@link #USE_MERGE_JOIN_ALGORITHM_WHEN_SORTED} instance never changes the structure of the plan. It uses the
+ * {@link JoinAlgorithm#MERGE merge} algorithm only when the condition is not a {@link DescendantNodeJoinCondition} and both
+ * children of the JOIN are already SORT nodes (optionally below a DUP_REMOVE) that order by the values used in the join
+ * condition; otherwise it uses the {@link JoinAlgorithm#NESTED_LOOP nested-loop} algorithm.
+ * </p>
  */
 @Immutable
 public class ChooseJoinAlgorithm implements OptimizerRule {
 
     public static final ChooseJoinAlgorithm USE_ONLY_NESTED_JOIN_ALGORITHM = new ChooseJoinAlgorithm(true);
     public static final ChooseJoinAlgorithm USE_BEST_JOIN_ALGORITHM = new ChooseJoinAlgorithm(false);
+    public static final ChooseJoinAlgorithm USE_MERGE_JOIN_ALGORITHM_WHEN_SORTED = new ChooseJoinAlgorithm(false, true);
 
     private final boolean useOnlyNested;
+    private final boolean mergeOnlyWhenSorted;
 
     protected ChooseJoinAlgorithm( boolean useOnlyNested ) {
+        this(useOnlyNested, false);
+    }
+
+    protected ChooseJoinAlgorithm( boolean useOnlyNested,
+                                   boolean mergeOnlyWhenSorted ) {
         this.useOnlyNested = useOnlyNested;
+        this.mergeOnlyWhenSorted = mergeOnlyWhenSorted;
     }
 
     @Override
@@ -124,6 +138,13 @@ public class ChooseJoinAlgorithm implements OptimizerRule {
                 break;
             }
 
+            if (mergeOnlyWhenSorted) {
+                // Use the merge join only when both sides are already sorted by the join condition values ...
+                boolean sorted = !(condition instanceof DescendantNodeJoinCondition) && isSortedForJoin(joinNode, condition);
+                joinNode.setProperty(Property.JOIN_ALGORITHM, sorted ? JoinAlgorithm.MERGE : JoinAlgorithm.NESTED_LOOP);
+                continue;
+            }
+
             if (condition instanceof DescendantNodeJoinCondition) {
                 // It has to be a nest-loop join ...
                 joinNode.setProperty(Property.JOIN_ALGORITHM, JoinAlgorithm.NESTED_LOOP);
@@ -162,6 +183,40 @@ public class ChooseJoinAlgorithm implements OptimizerRule {
         return plan;
     }
 
+    /**
+     * Determine whether both children of the supplied JOIN node are SORT nodes (optionally below a DUP_REMOVE node) that are
+     * ordered by the values used in the supplied join condition. A {@link ChildNodeJoinCondition} or a
+     * {@link SameNodeJoinCondition} with a relative path never qualifies, since the SORT nodes order each side by the node keys
+     * while these joins compare parent keys or paths.
+     * 
+     * @param joinNode the JOIN node; may not be null
+     * @param condition the join condition; may not be null
+     * @return true if both sides of the join are already sorted for a merge join, or false otherwise
+     */
+    protected boolean isSortedForJoin( PlanNode joinNode,
+                                       JoinCondition condition ) {
+        assert joinNode.getChildCount() == 2;
+        if (condition instanceof ChildNodeJoinCondition) return false;
+        if (condition instanceof SameNodeJoinCondition && ((SameNodeJoinCondition)condition).getSelector2Path() != null) {
+            return false;
+        }
+        PlanNode leftSort = sortAtTopOf(joinNode.getFirstChild());
+        PlanNode rightSort = sortAtTopOf(joinNode.getLastChild());
+        if (leftSort == null || rightSort == null) return false;
+        List<Object> leftSortBy = new LinkedList<Object>();
+        List<Object> rightSortBy = new LinkedList<Object>();
+        Set<SelectorName> leftSelectors = joinNode.getFirstChild().getSelectors();
+        Set<SelectorName> rightSelectors = joinNode.getLastChild().getSelectors();
+        createOrderBysForJoinCondition(condition, leftSelectors, leftSortBy, rightSelectors, rightSortBy);
+        return leftSortBy.equals(leftSort.getPropertyAsList(Property.SORT_ORDER_BY, Object.class))
+               && rightSortBy.equals(rightSort.getPropertyAsList(Property.SORT_ORDER_BY, Object.class));
+    }
+
+    private PlanNode sortAtTopOf( PlanNode node ) {
+        if (node.getType() == Type.DUP_REMOVE && node.getChildCount() == 1) node = node.getFirstChild();
+        return node.getType() == Type.SORT ? node : null;
+    }
+
     protected void createOrderBysForJoinCondition( JoinCondition condition,
                                                    Set<SelectorName> leftSelectors,
                                                    List<Object> leftSortBy,
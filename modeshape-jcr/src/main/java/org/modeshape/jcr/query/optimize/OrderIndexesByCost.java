@@ -25,6 +25,10 @@ import org.modeshape.jcr.query.plan.PlanNode.Property;
 import org.modeshape.jcr.query.plan.PlanNode.Type;
 
 /**
+ * An {@link OptimizerRule} that orders the {@link Type#INDEX} children of each {@link Type#SOURCE} node so that the index with
+ * the lowest {@link IndexPlan#getCardinalityEstimate() cardinality} (and then the lowest {@link IndexPlan#getCostEstimate() cost})
+ * is first. The query engine uses the first index that it can, and the remaining constraints are applied to its results.
+ * 
  * @author Randall Hauch (rhauch@redhat.com)
  */
 public class OrderIndexesByCost implements OptimizerRule {
@@ -65,7 +65,7 @@ public class RuleBasedOptimizer implements Optimizer {
         ruleStack.addFirst(RewriteAsRangeCriteria.INSTANCE);
         if (hints.hasJoin) {
             ruleStack.addFirst(AddJoinConditionColumnsToSources.INSTANCE);
-            ruleStack.addFirst(ChooseJoinAlgorithm.USE_ONLY_NESTED_JOIN_ALGORITHM);
+            ruleStack.addFirst(ChooseJoinAlgorithm.USE_MERGE_JOIN_ALGORITHM_WHEN_SORTED);
             ruleStack.addFirst(RewriteIdentityJoins.INSTANCE);
         }
         ruleStack.addFirst(AddOrderingColumnsToSources.INSTANCE);
@@ -127,6 +127,7 @@ public final class PlanHints implements Serializable, Cloneable {
         sb.append(", validateColumnExistance=").append(validateColumnExistance);
         sb.append(", includeSystemContent=").append(includeSystemContent);
         sb.append(", useSessionContent=").append(useSessionContent);
+        sb.append(", qualifyExpandedColumnNames=").append(qualifyExpandedColumnNames);
         sb.append(", restartable=").append(restartable);
         sb.append(", rowsKeptInMemory=").append(rowsKeptInMemory);
         sb.append('}');
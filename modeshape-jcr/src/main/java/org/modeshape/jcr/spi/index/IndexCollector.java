@@ -46,6 +46,14 @@ import org.modeshape.jcr.spi.index.provider.IndexProvider;
  */
 @NotThreadSafe
 public interface IndexCollector {
+
+    /**
+     * The name of an optional parameter whose {@link Boolean} value states whether the nodes returned by the index are exactly
+     * those that satisfy the index's full-text search constraints. Unless the value is true, the query engine also checks each of
+     * the nodes returned by the index against the full-text search constraints.
+     */
+    public static final String EXACT_FULL_TEXT_PARAMETER = "exactFullText";
+
     /**
      * Add to the query plan the information necessary to signal that the supplied index can be used to answer the query.
      * 
@@ -54,6 +54,14 @@ public interface Index {
      */
     boolean supportsFullTextConstraints();
 
+    /**
+     * Get the statistics that describe the content of this index. An {@link IndexPlanner} can use these statistics to estimate
+     * the cardinality of each constraint that this index can answer.
+     * 
+     * @return the statistics; may be null if this index does not maintain statistics
+     */
+    IndexStatistics getStatistics();
+
     /**
      * Return a {@link Operation} instance that ModeShape can when it actually wants the results. Note that this method should
      * return quickly, since ideally no work is really done other than instantiating and populating the {@link Operation}
@@ -16,6 +16,8 @@
 package org.modeshape.jcr.spi.index.provider;
 
 import javax.jcr.RepositoryException;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.NodeTypes;
 import org.modeshape.jcr.api.Logger;
 import org.modeshape.jcr.spi.index.IndexDefinitionChanges;
 
@@ -41,12 +43,41 @@ public abstract class IndexProvider {
      */
     private String repositoryName;
 
+    /**
+     * The execution context of the repository that owns this provider, set via reflection
+     */
+    private ExecutionContext context;
+
+    /**
+     * The supplier of the repository's current node types, set via reflection
+     */
+    private NodeTypes.Supplier nodeTypesSupplier;
+
     private boolean initialized = false;
 
     protected final Logger getLogger() {
         return logger;
     }
 
+    /**
+     * Get the execution context of the repository, which can be used to obtain the value factories needed to convert values.
+     * 
+     * @return the repository's execution context; never null once the provider has been registered
+     */
+    protected final ExecutionContext context() {
+        return context;
+    }
+
+    /**
+     * Get the supplier of the repository's node types, which can be used to determine whether a node's types are or subtype the
+     * node type of an index definition.
+     * 
+     * @return the node types supplier; never null once the provider has been registered
+     */
+    protected final NodeTypes.Supplier getNodeTypesSupplier() {
+        return nodeTypesSupplier;
+    }
+
     /**
      * Get the name for this provider.
      * 
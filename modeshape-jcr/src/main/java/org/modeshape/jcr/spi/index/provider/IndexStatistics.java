@@ -0,0 +1,95 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.spi.index.provider;
+
+import java.util.List;
+
+/**
+ * Statistics that describe the content of an {@link Index}, which index planners can use to estimate the number of nodes that
+ * satisfy a constraint so that the query optimizer can choose the most selective of several candidate indexes.
+ * <p>
+ * Implementations are expected to maintain these values incrementally as the index is updated by its {@link IndexWriter}, and
+ * may compute the {@link #getHistogram() histogram} lazily. All values are estimates and may be slightly out of date.
+ * </p>
+ * 
+ * @see Index#getStatistics()
+ */
+public interface IndexStatistics {
+
+    /**
+     * Get the total number of entries in the index. A node with multiple values for an indexed property will have multiple entries.
+     * 
+     * @return the number of entries; never negative
+     */
+    long getTotalEntries();
+
+    /**
+     * Get the number of distinct values in the index.
+     * 
+     * @return the number of distinct values; never negative
+     */
+    long getDistinctValueCount();
+
+    /**
+     * Get the histogram that describes how the entries are distributed over the ordered range of values in the index.
+     * 
+     * @return the buckets in ascending order of values; never null but possibly empty if the index does not support histograms or
+     *         contains no entries
+     */
+    List<Bucket> getHistogram();
+
+    /**
+     * Get a number that changes whenever these statistics have changed enough that the estimates made with them may be
+     * different, such as after a new {@link #getHistogram() histogram} is computed or after many entries were added or removed.
+     * Query plans that were chosen using these statistics are no longer reused once the version changes.
+     * 
+     * @return the version of these statistics
+     */
+    long getVersion();
+
+    /**
+     * A range of values in a {@link IndexStatistics#getHistogram() histogram}.
+     */
+    interface Bucket {
+        /**
+         * Get the smallest value in this bucket.
+         * 
+         * @return the (inclusive) lower value; never null
+         */
+        Object getLowerValue();
+
+        /**
+         * Get the largest value in this bucket.
+         * 
+         * @return the (inclusive) upper value; never null
+         */
+        Object getUpperValue();
+
+        /**
+         * Get the number of entries whose values are within this bucket.
+         * 
+         * @return the number of entries; never negative
+         */
+        long getEntryCount();
+
+        /**
+         * Get the number of distinct values within this bucket.
+         * 
+         * @return the number of distinct values; never negative
+         */
+        long getDistinctValueCount();
+    }
+}
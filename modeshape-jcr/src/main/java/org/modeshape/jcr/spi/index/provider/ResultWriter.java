@@ -17,9 +17,12 @@
 package org.modeshape.jcr.spi.index.provider;
 
 import java.util.Iterator;
+import java.util.Map;
 import org.modeshape.common.annotation.NotThreadSafe;
 import org.modeshape.jcr.cache.NodeKey;
 import org.modeshape.jcr.spi.index.provider.Index.Operation;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.Property;
 
 /**
  * A writer passed by ModeShape to a {@link Operation} instance when the query engine needs additional results for the query.
@@ -42,6 +45,22 @@ interface ResultWriter {
     void add( NodeKey nodeKey,
               float score );
 
+    /**
+     * Add to the current batch a single node key with a score and the values of the node's properties that are stored in (or
+     * covered by) the index. ModeShape will use these property values rather than loading the node whenever the query needs only
+     * the covered properties. Indexes may cover the node's primary type and mixin types by including the
+     * {@link org.modeshape.jcr.JcrLexicon#PRIMARY_TYPE jcr:primaryType} and {@link org.modeshape.jcr.JcrLexicon#MIXIN_TYPES
+     * jcr:mixinTypes} properties.
+     * 
+     * @param nodeKey the node key; may not be null
+     * @param score the score; must be positive
+     * @param coveredProperties the covered properties keyed by name, with a null value for each covered property that the node
+     *        does not have; may not be null
+     */
+    void add( NodeKey nodeKey,
+              float score,
+              Map<Name, Property> coveredProperties );
+
     /**
      * Add to the current batch a series of node keys with the same score for each node key.
      * 
@@ -279,6 +279,13 @@ public final class SynchronizedTransactions extends Transactions {
             changesCount.getAndAdd(changedNodesCount);
         }
 
+        @Override
+        public void recordLockWait( String key,
+                                    long waitTimeInNanos,
+                                    int attempts ) {
+            delegate.recordLockWait(key, waitTimeInNanos, attempts);
+        }
+
         protected void dispatchRecordedChanges() {
             delegate.recordChanged(changesCount.get());
         }
@@ -64,14 +64,7 @@ public abstract class AbstractBinary implements BinaryValue {
         InputStream stream = null;
         Exception error = null;
         try {
-            stream = getStream();
-            // Read/skip the next 'position' bytes ...
-            long skip = position;
-            while (skip > 0) {
-                long skipped = stream.skip(skip);
-                if (skipped <= 0) return -1;
-                skip -= skipped;
-            }
+            stream = getStream(position);
             return stream.read(b);
         } catch (RepositoryException e) {
             error = e;
@@ -94,6 +87,31 @@ public abstract class AbstractBinary implements BinaryValue {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation reads and skips the bytes before the position, so subclasses that can start reading at a position
+     * directly should override it.
+     * </p>
+     */
+    @Override
+    public InputStream getStream( long position ) throws IOException, RepositoryException {
+        InputStream stream = getStream();
+        try {
+            // Read/skip the next 'position' bytes ...
+            long skip = position;
+            while (skip > 0) {
+                long skipped = stream.skip(skip);
+                if (skipped <= 0) break;
+                skip -= skipped;
+            }
+            return stream;
+        } catch (IOException e) {
+            stream.close();
+            throw e;
+        }
+    }
+
     @Override
     public BinaryKey getKey() {
         return key;
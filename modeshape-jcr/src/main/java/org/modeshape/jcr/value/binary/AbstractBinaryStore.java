@@ -169,6 +169,35 @@ public abstract class AbstractBinaryStore implements BinaryStore {
         return detectedMimeType;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation skips the bytes before the position in the stream returned by {@link #getInputStream(BinaryKey)}, so
+     * stores that can position their content directly should override it.
+     * </p>
+     */
+    @Override
+    public InputStream getInputStream( BinaryKey key,
+                                       long position ) throws BinaryStoreException {
+        InputStream stream = getInputStream(key);
+        try {
+            long skip = position;
+            while (skip > 0) {
+                long skipped = stream.skip(skip);
+                if (skipped <= 0) break;
+                skip -= skipped;
+            }
+            return stream;
+        } catch (IOException e) {
+            try {
+                stream.close();
+            } catch (IOException closeError) {
+                logger.debug(closeError, "Error while closing stream for binary {0}", key);
+            }
+            throw new BinaryStoreException(e);
+        }
+    }
+
     @Override
     public boolean hasBinary( BinaryKey key ) {
         try {
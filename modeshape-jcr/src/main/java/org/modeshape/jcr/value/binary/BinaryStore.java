@@ -102,6 +102,21 @@ public interface BinaryStore {
      */
     InputStream getInputStream( BinaryKey key ) throws BinaryStoreException;
 
+    /**
+     * Get an {@link InputStream} to the binary content with the supplied key, starting at the given position within the content.
+     * Stores should position the stream without reading the content before the position, so that reading a range of a large
+     * binary value costs only as much as the bytes in the range.
+     * 
+     * @param key the key to the binary content; never null
+     * @param position the position of the first byte to be read; must not be negative
+     * @return the input stream through which the content can be read, {@code never null}; the stream is at its end if the
+     *         position is at or beyond the end of the content
+     * @throws BinaryStoreException if there is a problem reading the content from the store or if a valid, non-null
+     *         {@link InputStream} cannot be returned for the given key.
+     */
+    InputStream getInputStream( BinaryKey key,
+                                long position ) throws BinaryStoreException;
+
     /**
      * Searches for a binary which has the given key in this store.
      * 
@@ -0,0 +1,529 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.value.binary;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.modeshape.common.SystemFailureException;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.common.util.IoUtil;
+import org.modeshape.common.util.SecureHash;
+import org.modeshape.common.util.SecureHash.Algorithm;
+import org.modeshape.common.util.SecureHash.HashingInputStream;
+import org.modeshape.jcr.JcrI18n;
+import org.modeshape.jcr.text.TextExtractorContext;
+import org.modeshape.jcr.value.BinaryKey;
+import org.modeshape.jcr.value.BinaryValue;
+
+/**
+ * A {@link FileSystemBinaryStore} that splits each binary value into chunks whose boundaries are determined by the content (using
+ * a rolling hash), and that stores each unique chunk only once. Values that share most of their content, such as successive
+ * versions of the same document, therefore share most of their chunks, even when bytes have been inserted or removed (which would
+ * shift the boundaries of fixed-size chunks).
+ * <p>
+ * The persisted file for each binary value is a small manifest that lists the SHA-1 hashes and sizes of the value's chunks, and
+ * the chunks are stored in the "chunks" directory keyed by their SHA-1 hashes. Values are marked as unused and moved to the trash
+ * just like in the {@link FileSystemBinaryStore}; when unused values are removed, the chunks that are no longer referenced by any
+ * manifest (in the store or in the trash) are removed as well. Persisted files that are not manifests (such as those written by a
+ * {@link FileSystemBinaryStore} using the same directory) are read as they are.
+ * </p>
+ */
+@ThreadSafe
+public class ChunkedFileSystemBinaryStore extends FileSystemBinaryStore {
+
+    private static final ConcurrentHashMap<String, ChunkedFileSystemBinaryStore> INSTANCES = new ConcurrentHashMap<String, ChunkedFileSystemBinaryStore>();
+
+    public static ChunkedFileSystemBinaryStore create( File directory ) {
+        String key = directory.getAbsolutePath();
+        ChunkedFileSystemBinaryStore store = INSTANCES.get(key);
+        if (store == null) {
+            store = new ChunkedFileSystemBinaryStore(directory);
+            ChunkedFileSystemBinaryStore existing = INSTANCES.putIfAbsent(key, store);
+            if (existing != null) {
+                store = existing;
+            }
+        }
+        return store;
+    }
+
+    protected static final String CHUNKS_DIRECTORY_NAME = "chunks";
+
+    /**
+     * No chunk (other than the last chunk of a value) is smaller than this size.
+     */
+    protected static final int MIN_CHUNK_SIZE = 16 * 1024;
+
+    /**
+     * No chunk is larger than this size.
+     */
+    protected static final int MAX_CHUNK_SIZE = 256 * 1024;
+
+    /**
+     * A chunk ends where the top 16 bits of the rolling hash are all zero, so chunks are 64KB long on average (plus the minimum
+     * size). The top bits of the hash depend on the last 64 bytes of content.
+     */
+    private static final long BOUNDARY_MASK = 0xFFFFL << 48;
+
+    private static final long MANIFEST_MAGIC = 0x4D53434844415441L; // "MSCHDATA"
+    private static final String CHUNK_TEMP_FILE_SUFFIX = "chunk";
+    private static final String MANIFEST_TEMP_FILE_SUFFIX = "manifest";
+
+    /**
+     * The random values added to the rolling hash for each byte value. The seed is fixed, since the boundaries of the chunks (and
+     * therefore which chunks are shared) depend on these values.
+     */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(0x5EED0FC4C4L);
+        for (int i = 0; i != GEAR.length; ++i) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final File chunks;
+
+    /**
+     * Values being stored hold a read lock while they write chunks, and the removal of unreferenced chunks holds the write lock
+     * (only while it re-checks and deletes the chunks), so that a chunk that is reused by a value being stored is never removed
+     * before the value's manifest is written.
+     */
+    private final ReadWriteLock chunkRemovalLock = new ReentrantReadWriteLock();
+
+    protected ChunkedFileSystemBinaryStore( File directory ) {
+        super(directory);
+        this.chunks = new File(directory, CHUNKS_DIRECTORY_NAME);
+    }
+
+    @Override
+    public BinaryValue storeValue( InputStream stream ) throws BinaryStoreException {
+        chunkRemovalLock.readLock().lock();
+        try {
+            // Split the content into chunks, and while we do grab the SHA-1 hash of the whole content ...
+            HashingInputStream hashingStream = SecureHash.createHashingStream(Algorithm.SHA_1, stream);
+            Manifest manifest = new Manifest(this, getMinimumBinarySizeInBytes());
+            byte[] chunk = new byte[MAX_CHUNK_SIZE];
+            byte[] buffer = new byte[AbstractBinaryStore.MEDIUM_BUFFER_SIZE];
+            int chunkLength = 0;
+            long hash = 0L;
+            int numRead = 0;
+            try {
+                while ((numRead = hashingStream.read(buffer)) != -1) {
+                    for (int i = 0; i != numRead; ++i) {
+                        chunk[chunkLength++] = buffer[i];
+                        hash = (hash << 1) + GEAR[buffer[i] & 0xFF];
+                        if ((chunkLength >= MIN_CHUNK_SIZE && (hash & BOUNDARY_MASK) == 0) || chunkLength == MAX_CHUNK_SIZE) {
+                            manifest.add(chunk, chunkLength);
+                            chunkLength = 0;
+                            hash = 0L;
+                        }
+                    }
+                }
+                if (chunkLength > 0) {
+                    manifest.add(chunk, chunkLength);
+                }
+            } finally {
+                hashingStream.close();
+            }
+            BinaryKey key = new BinaryKey(hashingStream.getHash());
+
+            BinaryValue value;
+            if (manifest.isInMemory()) {
+                // The content is small enough to just store in-memory ...
+                value = new InMemoryBinaryValue(this, key, manifest.content());
+            } else {
+                value = saveManifestToStore(manifest, key);
+            }
+
+            if (extractors() != null && !(value instanceof InMemoryBinaryValue)) {
+                // We never store the text for in-memory values ...
+                extractors().extract(this, value, new TextExtractorContext(detector()));
+            }
+            return value;
+        } catch (IOException e) {
+            throw new BinaryStoreException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new SystemFailureException(e);
+        } finally {
+            chunkRemovalLock.readLock().unlock();
+        }
+    }
+
+    private BinaryValue saveManifestToStore( Manifest manifest,
+                                             BinaryKey key ) throws BinaryStoreException, IOException {
+        File tmpFile = createTempFile(MANIFEST_TEMP_FILE_SUFFIX);
+        try {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            try {
+                manifest.writeTo(output);
+            } finally {
+                output.close();
+            }
+            return saveTempFileToStore(tmpFile, key, manifest.size());
+        } finally {
+            tmpFile.delete();
+        }
+    }
+
+    /**
+     * Store the supplied chunk, unless it is already stored.
+     *
+     * @param chunk the content of the chunk; may not be null
+     * @return the key of the chunk; never null
+     * @throws BinaryStoreException if the chunk cannot be moved into the store
+     * @throws IOException if the chunk cannot be written
+     */
+    protected BinaryKey storeChunk( byte[] chunk ) throws BinaryStoreException, IOException {
+        BinaryKey chunkKey = BinaryKey.keyFor(chunk);
+        File chunkFile = findFile(chunks, chunkKey, true);
+        if (chunkFile.exists() && chunkFile.setLastModified(System.currentTimeMillis())) {
+            // Reuse the existing chunk, which now looks recently used and thus is not removed by a concurrent cleanup ...
+            return chunkKey;
+        }
+        File tmpFile = createTempFile(CHUNK_TEMP_FILE_SUFFIX);
+        try {
+            FileOutputStream output = new FileOutputStream(tmpFile);
+            try {
+                output.write(chunk);
+            } finally {
+                output.close();
+            }
+            moveFileExclusively(tmpFile, chunkFile);
+        } finally {
+            tmpFile.delete();
+        }
+        return chunkKey;
+    }
+
+    @Override
+    public InputStream getInputStream( BinaryKey key,
+                                       long position ) throws BinaryStoreException {
+        // Read the persisted file (which also restores it from the trash) to see whether it is a manifest ...
+        Manifest manifest = null;
+        try {
+            manifest = Manifest.readFrom(super.getInputStream(key, 0L));
+        } catch (IOException e) {
+            throw new BinaryStoreException(e);
+        }
+        if (manifest == null) {
+            return super.getInputStream(key, position);
+        }
+        return new ChunkSequenceInputStream(key, manifest, position);
+    }
+
+    @Override
+    public void removeValuesUnusedLongerThan( long minimumAge,
+                                              TimeUnit unit ) throws BinaryStoreException {
+        // Remove the unused manifests from the trash ...
+        super.removeValuesUnusedLongerThan(minimumAge, unit);
+
+        long oldestTimestamp = System.currentTimeMillis() - TimeUnit.MILLISECONDS.convert(minimumAge, unit);
+        // Find the old chunks that aren't referenced by the remaining manifests (including those in the trash, which may still be
+        // used). This reads every manifest, so it is done without blocking the values being stored ...
+        Map<File, Long> unreferencedChunks = new HashMap<File, Long>();
+        try {
+            Set<BinaryKey> referencedChunks = new HashSet<BinaryKey>();
+            addReferencedChunks(getDirectory(), referencedChunks);
+            addUnreferencedChunks(chunks, referencedChunks, oldestTimestamp, unreferencedChunks);
+        } catch (IOException e) {
+            throw new BinaryStoreException(e);
+        }
+        if (unreferencedChunks.isEmpty()) return;
+
+        // Values stored since the manifests were read may have reused some of these chunks, which marks them as recently used.
+        // So remove only those that are unchanged, while no values are being stored ...
+        chunkRemovalLock.writeLock().lock();
+        try {
+            Set<File> parentDirectories = new HashSet<File>();
+            for (Map.Entry<File, Long> entry : unreferencedChunks.entrySet()) {
+                File chunkFile = entry.getKey();
+                if (chunkFile.lastModified() == entry.getValue().longValue() && chunkFile.delete()) {
+                    parentDirectories.add(chunkFile.getParentFile());
+                }
+            }
+            for (File parentDirectory : parentDirectories) {
+                pruneEmptyDirectories(chunks, parentDirectory);
+            }
+        } finally {
+            chunkRemovalLock.writeLock().unlock();
+        }
+    }
+
+    private void addReferencedChunks( File parentDirectory,
+                                      Set<BinaryKey> referencedChunks ) throws IOException {
+        File[] children = parentDirectory.listFiles();
+        if (children == null) return;
+        for (File fileOrDir : children) {
+            if (fileOrDir.isDirectory()) {
+                if (fileOrDir.equals(chunks) || fileOrDir.getName().equals(TEMP_DIRECTORY_NAME)) continue;
+                addReferencedChunks(fileOrDir, referencedChunks);
+            } else if (fileOrDir.isFile() && fileOrDir.getName().length() == 40) {
+                Manifest manifest = null;
+                try {
+                    manifest = Manifest.readFrom(new FileInputStream(fileOrDir));
+                } catch (FileNotFoundException e) {
+                    // The file was removed after we listed it ...
+                    continue;
+                }
+                if (manifest != null) {
+                    referencedChunks.addAll(manifest.chunkKeys);
+                }
+            }
+        }
+    }
+
+    private void addUnreferencedChunks( File parentDirectory,
+                                        Set<BinaryKey> referencedChunks,
+                                        long oldestTimestamp,
+                                        Map<File, Long> unreferencedChunks ) {
+        File[] children = parentDirectory.listFiles();
+        if (children == null) return;
+        for (File fileOrDir : children) {
+            if (fileOrDir.isDirectory()) {
+                addUnreferencedChunks(fileOrDir, referencedChunks, oldestTimestamp, unreferencedChunks);
+            } else if (fileOrDir.isFile()) {
+                long lastModified = fileOrDir.lastModified();
+                if (lastModified != 0L && lastModified < oldestTimestamp
+                    && !referencedChunks.contains(new BinaryKey(fileOrDir.getName()))) {
+                    unreferencedChunks.put(fileOrDir, lastModified);
+                }
+            }
+        }
+    }
+
+    /**
+     * The chunks of a binary value. While a value is being stored, its chunks are kept in memory until the value reaches the
+     * minimum binary size (since smaller values are never written to disk), after which each chunk is stored as it is added.
+     */
+    private static final class Manifest {
+        protected final List<BinaryKey> chunkKeys = new ArrayList<BinaryKey>();
+        protected final List<Integer> chunkLengths = new ArrayList<Integer>();
+        private final ChunkedFileSystemBinaryStore store;
+        private final long minimumSize;
+        private List<byte[]> pendingChunks = new ArrayList<byte[]>();
+        private long size;
+
+        protected Manifest( ChunkedFileSystemBinaryStore store,
+                            long minimumSize ) {
+            this.store = store;
+            this.minimumSize = minimumSize;
+        }
+
+        protected Manifest( List<BinaryKey> chunkKeys,
+                            List<Integer> chunkLengths,
+                            long size ) {
+            this.store = null;
+            this.minimumSize = 0L;
+            this.pendingChunks = null;
+            this.chunkKeys.addAll(chunkKeys);
+            this.chunkLengths.addAll(chunkLengths);
+            this.size = size;
+        }
+
+        protected long size() {
+            return size;
+        }
+
+        protected boolean isInMemory() {
+            return pendingChunks != null;
+        }
+
+        protected void add( byte[] chunk,
+                            int length ) throws BinaryStoreException, IOException {
+            byte[] content = Arrays.copyOf(chunk, length);
+            size += length;
+            if (pendingChunks != null) {
+                pendingChunks.add(content);
+                if (size < minimumSize) return;
+                // The value is too large to be kept in-memory, so store the chunks we've kept ...
+                List<byte[]> pending = pendingChunks;
+                pendingChunks = null;
+                for (byte[] pendingChunk : pending) {
+                    store(pendingChunk);
+                }
+            } else {
+                store(content);
+            }
+        }
+
+        private void store( byte[] chunk ) throws BinaryStoreException, IOException {
+            chunkKeys.add(store.storeChunk(chunk));
+            chunkLengths.add(chunk.length);
+        }
+
+        protected byte[] content() {
+            assert pendingChunks != null;
+            ByteArrayOutputStream content = new ByteArrayOutputStream((int)size);
+            for (byte[] chunk : pendingChunks) {
+                content.write(chunk, 0, chunk.length);
+            }
+            return content.toByteArray();
+        }
+
+        protected void writeTo( DataOutputStream output ) throws IOException {
+            output.writeLong(MANIFEST_MAGIC);
+            output.writeLong(size);
+            output.writeInt(chunkKeys.size());
+            for (int i = 0; i != chunkKeys.size(); ++i) {
+                output.write(chunkKeys.get(i).toBytes());
+                output.writeInt(chunkLengths.get(i));
+            }
+        }
+
+        /**
+         * Read the manifest from the supplied stream, which is always closed.
+         *
+         * @param stream the stream with the content of a persisted file; may not be null
+         * @return the manifest, or null if the content is not a manifest
+         * @throws IOException if the content cannot be read
+         */
+        protected static Manifest readFrom( InputStream stream ) throws IOException {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(stream));
+            try {
+                if (input.readLong() != MANIFEST_MAGIC) return null;
+                long size = input.readLong();
+                int count = input.readInt();
+                if (size < 0L || count < 0) return null;
+                List<BinaryKey> chunkKeys = new ArrayList<BinaryKey>(Math.min(count, 1024));
+                List<Integer> chunkLengths = new ArrayList<Integer>(Math.min(count, 1024));
+                long total = 0L;
+                byte[] sha1 = new byte[20];
+                for (int i = 0; i != count; ++i) {
+                    input.readFully(sha1);
+                    int length = input.readInt();
+                    if (length <= 0 || length > MAX_CHUNK_SIZE) return null;
+                    chunkKeys.add(new BinaryKey(sha1));
+                    chunkLengths.add(length);
+                    total += length;
+                }
+                if (total != size || input.read() != -1) return null;
+                return new Manifest(chunkKeys, chunkLengths, size);
+            } catch (EOFException e) {
+                // The content is shorter than a manifest ...
+                return null;
+            } finally {
+                IoUtil.closeQuietly(input);
+            }
+        }
+    }
+
+    /**
+     * An input stream that reads the chunks of a binary value in order.
+     */
+    private final class ChunkSequenceInputStream extends InputStream {
+        private final BinaryKey key;
+        private final Manifest manifest;
+        private int nextChunk;
+        private long positionInNextChunk;
+        private InputStream current;
+        private boolean closed;
+
+        protected ChunkSequenceInputStream( BinaryKey key,
+                                            Manifest manifest,
+                                            long position ) {
+            this.key = key;
+            this.manifest = manifest;
+            // Find the chunk that contains the position, without reading the chunks before it ...
+            while (nextChunk < manifest.chunkLengths.size() && position >= manifest.chunkLengths.get(nextChunk)) {
+                position -= manifest.chunkLengths.get(nextChunk);
+                ++nextChunk;
+            }
+            this.positionInNextChunk = position;
+        }
+
+        private boolean openNextChunk() throws IOException {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+            if (closed || nextChunk >= manifest.chunkKeys.size()) return false;
+            BinaryKey chunkKey = manifest.chunkKeys.get(nextChunk++);
+            File chunkFile;
+            try {
+                chunkFile = findFile(chunks, chunkKey, false);
+            } catch (BinaryStoreException e) {
+                throw new IOException(e);
+            }
+            FileInputStream chunkStream;
+            try {
+                chunkStream = new FileInputStream(chunkFile);
+            } catch (FileNotFoundException e) {
+                throw new IOException(JcrI18n.unableToFindChunkOfBinaryValue.text(chunkKey, key, getDirectory().getPath()), e);
+            }
+            if (positionInNextChunk > 0L) {
+                chunkStream.getChannel().position(positionInNextChunk);
+                positionInNextChunk = 0L;
+            }
+            current = chunkStream;
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (current == null && !openNextChunk()) return -1;
+            while (true) {
+                int b = current.read();
+                if (b != -1) return b;
+                if (!openNextChunk()) return -1;
+            }
+        }
+
+        @Override
+        public int read( byte[] b,
+                         int off,
+                         int len ) throws IOException {
+            if (len == 0) return 0;
+            if (current == null && !openNextChunk()) return -1;
+            while (true) {
+                int numRead = current.read(b, off, len);
+                if (numRead != -1) return numRead;
+                if (!openNextChunk()) return -1;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+        }
+    }
+}
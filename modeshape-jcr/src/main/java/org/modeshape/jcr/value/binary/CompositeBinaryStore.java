@@ -205,6 +205,12 @@ public class CompositeBinaryStore implements BinaryStore {
 
     @Override
     public InputStream getInputStream( BinaryKey key ) throws BinaryStoreException {
+        return getInputStream(key, 0L);
+    }
+
+    @Override
+    public InputStream getInputStream( BinaryKey key,
+                                       long position ) throws BinaryStoreException {
         Iterator<Map.Entry<String, BinaryStore>> it = getNamedStoreIterator();
 
         while (it.hasNext()) {
@@ -215,7 +221,7 @@ public class CompositeBinaryStore implements BinaryStore {
             BinaryStore binaryStore = entry.getValue();
             logger.trace("Checking binary store " + binaryStoreKey + " for key " + key);
             try {
-                return binaryStore.getInputStream(key);
+                return binaryStore.getInputStream(key, position);
             } catch (BinaryStoreException e) {
                 // this exception is "normal", and is thrown
                 logger.trace(e, "The named store " + binaryStoreKey + " raised exception");
@@ -15,15 +15,14 @@
  */
 package org.modeshape.jcr.value.binary;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
-import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.security.NoSuchAlgorithmException;
 import java.util.HashSet;
@@ -80,15 +79,18 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
     private static final String TEMP_FILE_PREFIX = "ms-fs-binstore";
     private static final String TEMP_FILE_SUFFIX = "hashing";
     protected static final String TRASH_DIRECTORY_NAME = "trash";
+    protected static final String TEMP_DIRECTORY_NAME = "temp";
 
     private final File directory;
     private final File trash;
+    private final File temp;
     private final NamedLocks locks = new NamedLocks();
     private volatile boolean initialized = false;
 
     protected FileSystemBinaryStore( File directory ) {
         this.directory = directory;
         this.trash = new File(this.directory, TRASH_DIRECTORY_NAME);
+        this.temp = new File(this.directory, TEMP_DIRECTORY_NAME);
     }
 
     public File getDirectory() {
@@ -100,24 +102,45 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
         File tmpFile = null;
         BinaryValue value = null;
         try {
-            // Write the contents to a temporary file, and while we do grab the SHA-1 hash and the length ...
+            // Read the contents, and while we do grab the SHA-1 hash ...
             HashingInputStream hashingStream = SecureHash.createHashingStream(Algorithm.SHA_1, stream);
-            tmpFile = File.createTempFile(TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX);
-            IoUtil.write(hashingStream,
-                         new BufferedOutputStream(new FileOutputStream(tmpFile)),
-                         AbstractBinaryStore.MEDIUM_BUFFER_SIZE);
-            hashingStream.close();
-            byte[] sha1 = hashingStream.getHash();
-            BinaryKey key = new BinaryKey(sha1);
-
-            final long numberOfBytes = tmpFile.length();
-            if (numberOfBytes < getMinimumBinarySizeInBytes()) {
+            byte[] buffer = new byte[AbstractBinaryStore.MEDIUM_BUFFER_SIZE];
+
+            // Values smaller than the minimum size are kept in-memory, so read that much before writing anything to disk ...
+            final long minimumSize = getMinimumBinarySizeInBytes();
+            ByteArrayOutputStream content = new ByteArrayOutputStream((int)Math.min(minimumSize, buffer.length));
+            boolean endOfStream = false;
+            while (content.size() < minimumSize) {
+                int numRead = hashingStream.read(buffer);
+                if (numRead == -1) {
+                    endOfStream = true;
+                    break;
+                }
+                content.write(buffer, 0, numRead);
+            }
+
+            if (endOfStream) {
                 // The content is small enough to just store in-memory ...
-                byte[] content = IoUtil.readBytes(tmpFile);
-                tmpFile.delete();
-                value = new InMemoryBinaryValue(this, key, content);
+                hashingStream.close();
+                BinaryKey key = new BinaryKey(hashingStream.getHash());
+                value = new InMemoryBinaryValue(this, key, content.toByteArray());
             } else {
-                value = saveTempFileToStore(tmpFile, key, numberOfBytes);
+                // Write the contents to a temporary file within the store's directory, so that it can simply be renamed ...
+                tmpFile = createTempFile(TEMP_FILE_SUFFIX);
+                OutputStream output = new BufferedOutputStream(new FileOutputStream(tmpFile), buffer.length);
+                try {
+                    content.writeTo(output);
+                    content = null;
+                    int numRead = 0;
+                    while ((numRead = hashingStream.read(buffer)) != -1) {
+                        output.write(buffer, 0, numRead);
+                    }
+                } finally {
+                    output.close();
+                }
+                hashingStream.close();
+                BinaryKey key = new BinaryKey(hashingStream.getHash());
+                value = saveTempFileToStore(tmpFile, key, tmpFile.length());
             }
 
             if (extractors() != null && !(value instanceof InMemoryBinaryValue)) {
@@ -143,9 +166,34 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
         }
     }
 
-    private BinaryValue saveTempFileToStore( File tmpFile,
-                                             BinaryKey key,
-                                             long numberOfBytes ) throws BinaryStoreException {
+    /**
+     * Create a new temporary file in this store's directory for temporary files. Since that directory is on the same file system
+     * as the stored files, the temporary file can be moved into the store by renaming it rather than copying it.
+     * 
+     * @param suffix the suffix of the file name; may not be null
+     * @return the new, empty temporary file; never null
+     * @throws BinaryStoreException if the store's directory cannot be initialized
+     * @throws IOException if the file cannot be created
+     */
+    protected File createTempFile( String suffix ) throws BinaryStoreException, IOException {
+        initialize();
+        temp.mkdirs();
+        return File.createTempFile(TEMP_FILE_PREFIX, suffix, temp);
+    }
+
+    /**
+     * Move the supplied temporary file into this store as the persisted file for the given key, unless there already is such a
+     * persisted file.
+     * 
+     * @param tmpFile the temporary file; may not be null
+     * @param key the key of the binary value; may not be null
+     * @param numberOfBytes the size of the binary value
+     * @return the stored binary value; never null
+     * @throws BinaryStoreException if the file cannot be moved into the store
+     */
+    protected final BinaryValue saveTempFileToStore( File tmpFile,
+                                                     BinaryKey key,
+                                                     long numberOfBytes ) throws BinaryStoreException {
         // Now that we know the SHA-1, find the File object that corresponds to the existing persisted file ...
         File persistedFile = findFile(directory, key, true);
 
@@ -164,7 +212,7 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
         } finally {
             lock.unlock();
         }
-        return new StoredBinaryValue(this, key, persistedFile.length());
+        return new StoredBinaryValue(this, key, numberOfBytes);
     }
 
     protected final void moveFileExclusively( File original,
@@ -188,27 +236,22 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
             // The move/rename didn't work, so we have to copy from the original ...
 
             // Create the new file and obtain an exclusive lock on it ...
-            final int bufferSize = AbstractBinaryStore.bestBufferSize(original.length());
             fileLock = FileLocks.get().writeLock(destination);
             try {
-                // Create a buffered output stream to the destination file ...
-                // (Note that the Channels.newOutputStream does not create a buffered stream)
                 FileChannel destinationChannel = fileLock.lockedFileChannel();
-                OutputStream output = Channels.newOutputStream(destinationChannel);
-                output = new BufferedOutputStream(output, bufferSize);
-
-                // Create an input stream to the original file ...
-                // (Note that the Channels.newInputStream does not create a buffered stream)
                 RandomAccessFile originalRaf = new RandomAccessFile(original, "r");
-                FileChannel originalChannel = originalRaf.getChannel();
-                InputStream input = Channels.newInputStream(originalChannel);
-                input = new BufferedInputStream(input, bufferSize);
-
-                // Copy the content ...
-                IoUtil.write(input, output, bufferSize);
-
-                // Close the file ...
-                originalRaf.close();
+                try {
+                    // Copy the content from channel to channel, which lets the OS avoid copying it through our buffers ...
+                    FileChannel originalChannel = originalRaf.getChannel();
+                    long size = originalChannel.size();
+                    long position = 0L;
+                    while (position < size) {
+                        position += originalChannel.transferTo(position, size - position, destinationChannel);
+                    }
+                } finally {
+                    // Close the file ...
+                    originalRaf.close();
+                }
             } finally {
                 try {
                     fileLock.unlock();
@@ -224,10 +267,7 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
     protected final File findFile( File directory,
                                    BinaryKey key,
                                    boolean createParentDirsIfMissing ) throws BinaryStoreException {
-        if (!initialized) {
-            initializeStorage(directory);
-            initialized = true;
-        }
+        initialize();
         String sha1 = key.toString();
         File first = new File(directory, sha1.substring(0, 2));
         File second = new File(first, sha1.substring(2, 4));
@@ -241,6 +281,12 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
 
     @Override
     public InputStream getInputStream( BinaryKey key ) throws BinaryStoreException {
+        return getInputStream(key, 0L);
+    }
+
+    @Override
+    public InputStream getInputStream( BinaryKey key,
+                                       long position ) throws BinaryStoreException {
         // Now that we know the SHA-1, find the File object that corresponds to the existing persisted file ...
         File persistedFile = findFile(directory, key, false);
         if (!persistedFile.exists() || !persistedFile.canRead()) {
@@ -259,7 +305,14 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
         // We now know that the file (which does exist) is not being written by this process, but another
         // process might be actively writing to it. So use an InputStream that lazily obtains a shared lock
         // when the stream is used, and always releases the lock (even in the case of exceptions).
-        return new SharedLockingInputStream(key, persistedFile, locks);
+        return new SharedLockingInputStream(key, persistedFile, locks, position);
+    }
+
+    private void initialize() throws BinaryStoreException {
+        if (!initialized) {
+            initializeStorage(directory);
+            initialized = true;
+        }
     }
 
     @SuppressWarnings( "unused" )
@@ -446,7 +499,7 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
                                    BinaryKey key ) throws BinaryStoreException {
         File tmpFile = null;
         try {
-            tmpFile = File.createTempFile(TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX + EXTRACTED_TEXT_SUFFIX);
+            tmpFile = createTempFile(TEMP_FILE_SUFFIX + EXTRACTED_TEXT_SUFFIX);
             IoUtil.write(string, new BufferedOutputStream(new FileOutputStream(tmpFile)));
             saveTempFileToStore(tmpFile, key, tmpFile.length());
         } catch (IOException e) {
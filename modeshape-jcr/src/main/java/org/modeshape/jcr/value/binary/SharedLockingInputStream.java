@@ -36,6 +36,7 @@ public final class SharedLockingInputStream extends InputStream {
     protected final BinaryKey key;
     protected final File file;
     protected final NamedLocks lockManager;
+    protected final long position;
     protected InputStream stream;
     protected Lock processLock;
     protected FileLocks.WrappedLock fileLock;
@@ -52,11 +53,31 @@ public final class SharedLockingInputStream extends InputStream {
     public SharedLockingInputStream( BinaryKey key,
                                      File file,
                                      NamedLocks lockManager ) {
+        this(key, file, lockManager, 0L);
+    }
+
+    /**
+     * Create a self-closing, (shared) locking {@link InputStream} to read the content of the supplied {@link File file}, starting
+     * at the given position in the file. The position is set directly on the file's channel, so no bytes before the position are
+     * read.
+     * 
+     * @param key the binary key; may not be null
+     * @param file the file that is to be read; may not be null
+     * @param lockManager the manager of the locks, from which a read lock is to be obtained; may be null if no read lock is
+     *        needed
+     * @param position the position in the file of the first byte to be read; must not be negative
+     */
+    public SharedLockingInputStream( BinaryKey key,
+                                     File file,
+                                     NamedLocks lockManager,
+                                     long position ) {
         assert key != null;
         assert file != null;
+        assert position >= 0L;
         this.key = key;
         this.file = file;
         this.lockManager = lockManager;
+        this.position = position;
     }
 
     protected void open() throws IOException {
@@ -72,9 +93,18 @@ public final class SharedLockingInputStream extends InputStream {
                     // Also get a shared file lock to prevent other processes from modifying the file ...
                     SharedLockingInputStream.this.fileLock = FileLocks.get().readLock(file);
 
-                    // Now create a buffered stream ...
+                    // Now create a buffered stream that starts at the position ...
+                    FileInputStream fileStream = new FileInputStream(file);
+                    if (position > 0L) {
+                        try {
+                            fileStream.getChannel().position(position);
+                        } catch (IOException e) {
+                            fileStream.close();
+                            throw e;
+                        }
+                    }
                     SharedLockingInputStream.this.stream = new BufferedInputStream(
-                                                                                   new FileInputStream(file),
+                                                                                   fileStream,
                                                                                    AbstractBinaryStore.bestBufferSize(file.length()));
                     SharedLockingInputStream.this.eofReached = false;
                 }
@@ -55,6 +55,12 @@ public class StoredBinaryValue extends AbstractBinary {
         return store.getInputStream(getKey());
     }
 
+    @Override
+    public InputStream getStream( long position ) throws BinaryStoreException {
+        // Let the store position the stream, rather than reading all of the content before the position ...
+        return store.getInputStream(getKey(), position);
+    }
+
     @Override
     public String getMimeType() throws IOException, RepositoryException {
         if (mimeType == null) {
@@ -17,12 +17,21 @@ package org.modeshape.jcr.value.binary.infinispan;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import org.infinispan.Cache;
 import org.modeshape.common.logging.Logger;
 
 /**
- * This stream writes data as chunks into separate cache entries.
+ * This stream writes data as chunks into separate cache entries. If the stream is given an executor, the chunks are written to
+ * the cache concurrently by the executor's threads while the next chunks are filled, with at most a fixed number of chunks
+ * waiting to be written at any time; otherwise each chunk is written on the calling thread as soon as it is full.
  */
 class ChunkOutputStream extends OutputStream {
 
@@ -35,6 +44,9 @@ class ChunkOutputStream extends OutputStream {
 
     private final ByteArrayOutputStream chunkBuffer;
     private final int chunkSize;
+    private final ExecutorService chunkWriters;
+    private final int maxPendingChunks;
+    private final Deque<Future<Void>> pendingChunks = new ArrayDeque<Future<Void>>();
     private boolean closed;
 
     protected ChunkOutputStream( Cache<String, byte[]> blobCache,
@@ -45,11 +57,32 @@ class ChunkOutputStream extends OutputStream {
     protected ChunkOutputStream( Cache<String, byte[]> blobCache,
                                  String keyPrefix,
                                  int chunkSize ) {
+        this(blobCache, keyPrefix, chunkSize, null, 0);
+    }
+
+    /**
+     * Create a stream that writes the chunks concurrently.
+     * 
+     * @param blobCache the cache into which the chunks are written; may not be null
+     * @param keyPrefix the prefix of the keys of the chunks; may not be null
+     * @param chunkSize the size of the chunks
+     * @param chunkWriters the executor that writes the chunks into the cache, or null if the chunks are to be written on the
+     *        thread that writes to this stream
+     * @param maxPendingChunks the maximum number of full chunks that may wait to be written, which bounds the memory used by
+     *        this stream
+     */
+    protected ChunkOutputStream( Cache<String, byte[]> blobCache,
+                                 String keyPrefix,
+                                 int chunkSize,
+                                 ExecutorService chunkWriters,
+                                 int maxPendingChunks ) {
         this.blobCache = blobCache;
         this.keyPrefix = keyPrefix;
         this.chunkIndex = 0;
         this.chunkBuffer = new ByteArrayOutputStream(BUFFER_SIZE);
         this.chunkSize = chunkSize;
+        this.chunkWriters = chunkWriters;
+        this.maxPendingChunks = Math.max(1, maxPendingChunks);
     }
 
     protected int chunksCount() {
@@ -86,19 +119,67 @@ class ChunkOutputStream extends OutputStream {
             return;
         }
         closed = true;
-        // store last chunk
-        if (chunkBuffer.size() > 0) {
-            storeBufferInBLOBCache();
+        try {
+            // store last chunk
+            if (chunkBuffer.size() > 0) {
+                storeBufferInBLOBCache();
+            }
+            // and wait until all of the chunks are written ...
+            while (!pendingChunks.isEmpty()) {
+                waitForOldestChunk();
+            }
+        } finally {
+            // Don't write any more chunks if one of them failed ...
+            for (Future<Void> pendingChunk : pendingChunks) {
+                pendingChunk.cancel(true);
+            }
+            pendingChunks.clear();
         }
     }
 
     private void storeBufferInBLOBCache() throws IOException {
         final byte[] chunk = chunkBuffer.toByteArray();
+        final String chunkKey = keyPrefix + "-" + chunkIndex;
+        if (chunkWriters == null) {
+            storeChunk(chunkKey, chunk);
+        } else {
+            if (pendingChunks.size() >= maxPendingChunks) {
+                waitForOldestChunk();
+            }
+            pendingChunks.addLast(chunkWriters.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    storeChunk(chunkKey, chunk);
+                    return null;
+                }
+            }));
+        }
+        chunkIndex++;
+        chunkBuffer.reset();
+    }
+
+    private void waitForOldestChunk() throws IOException {
+        Future<Void> oldest = pendingChunks.removeFirst();
+        try {
+            oldest.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    protected void storeChunk( final String chunkKey,
+                               final byte[] chunk ) throws IOException {
         try {
             new RetryOperation() {
                 @Override
                 protected boolean call() {
-                    String chunkKey = keyPrefix + "-" + chunkIndex;
                     LOGGER.debug("Store chunk {0}", chunkKey);
                     blobCache.put(chunkKey, chunk);
                     return true;
@@ -109,7 +190,5 @@ class ChunkOutputStream extends OutputStream {
         } catch (Exception e) {
             throw new IOException(e);
         }
-        chunkIndex++;
-        chunkBuffer.reset();
     }
 }
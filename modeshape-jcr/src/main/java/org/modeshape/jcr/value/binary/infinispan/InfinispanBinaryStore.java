@@ -32,6 +32,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import org.infinispan.Cache;
 import org.infinispan.configuration.cache.StoreConfiguration;
@@ -50,6 +53,7 @@ import org.infinispan.transaction.TransactionMode;
 import org.modeshape.common.SystemFailureException;
 import org.modeshape.common.annotation.ThreadSafe;
 import org.modeshape.common.util.IoUtil;
+import org.modeshape.common.util.NamedThreadFactory;
 import org.modeshape.common.util.SecureHash;
 import org.modeshape.jcr.InfinispanUtil;
 import org.modeshape.jcr.JcrI18n;
@@ -79,9 +83,16 @@ public final class InfinispanBinaryStore extends AbstractBinaryStore {
 
     private static final int RETRY_COUNT = 5;
 
+    /**
+     * The number of threads that concurrently write the chunks of the values being stored, which is also the maximum number of
+     * full chunks of each value that may wait to be written.
+     */
+    private static final int CHUNK_WRITER_COUNT = 4;
+
     protected Cache<String, Metadata> metadataCache;
     protected LockFactory lockFactory;
     protected Cache<String, byte[]> blobCache;
+    private ExecutorService chunkWriters;
     private CacheContainer cacheContainer;
     private boolean dedicatedCacheContainer;
     private int chunkSize;
@@ -182,15 +193,25 @@ public final class InfinispanBinaryStore extends AbstractBinaryStore {
         metadataCache = cacheContainer.getCache(metadataCacheName);
         blobCache = cacheContainer.getCache(blobCacheName);
         lockFactory = new LockFactory(metadataCache);
+        // the writer threads are only kept while values are being stored
+        ThreadPoolExecutor writers = new ThreadPoolExecutor(CHUNK_WRITER_COUNT, CHUNK_WRITER_COUNT, 60L, TimeUnit.SECONDS,
+                                                            new LinkedBlockingQueue<Runnable>(),
+                                                            new NamedThreadFactory("modeshape-ispn-binary-chunks"));
+        writers.allowCoreThreadTimeOut(true);
+        chunkWriters = writers;
     }
 
     @Override
     public void shutdown() {
         try {
+            if (chunkWriters != null) {
+                chunkWriters.shutdown();
+            }
             if (dedicatedCacheContainer) {
                 cacheContainer.stop();
             }
         } finally {
+            chunkWriters = null;
             cacheContainer = null;
             metadataCache = null;
             blobCache = null;
@@ -253,7 +274,9 @@ public final class InfinispanBinaryStore extends AbstractBinaryStore {
             final long lastModified = tmpFile.lastModified();
             final long fileLength = tmpFile.length();
             int bufferSize = bestBufferSize(fileLength);
-            ChunkOutputStream chunkOutputStream = new ChunkOutputStream(blobCache, dataKey, chunkSize);
+            // the chunks are written concurrently while the following chunks are read from the file
+            ChunkOutputStream chunkOutputStream = new ChunkOutputStream(blobCache, dataKey, chunkSize, chunkWriters,
+                                                                        CHUNK_WRITER_COUNT);
             IoUtil.write(new FileInputStream(tmpFile), chunkOutputStream, bufferSize);
 
             Lock lock = lockFactory.writeLock(lockKeyFrom(binaryKey));
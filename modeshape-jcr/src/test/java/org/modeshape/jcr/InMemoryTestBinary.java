@@ -95,6 +95,12 @@ public final class InMemoryTestBinary implements Binary {
         }
     }
 
+    @Override
+    public InputStream getStream( long position ) {
+        int start = (int)Math.min(position, bytes.length);
+        return new ByteArrayInputStream(bytes, start, bytes.length - start);
+    }
+
     @Override
     public long getSize() {
         return bytes.length;
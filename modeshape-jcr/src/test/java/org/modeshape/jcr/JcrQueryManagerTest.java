@@ -841,6 +841,32 @@ public class JcrQueryManagerTest extends MultiUseAbstractTest {
         validateQuery().rowCount(totalNodeCount).noWarnings().hasColumns(columnNames).validate(query, result);
     }
 
+    @Test
+    public void shouldBeAbleToStreamResultsOfJcrSql2QueryToFindAllNodes() throws RepositoryException {
+        String sql = "SELECT [jcr:path] FROM [nt:base] ORDER BY [jcr:path]";
+        org.modeshape.jcr.api.query.Query query = (org.modeshape.jcr.api.query.Query)session.getWorkspace().getQueryManager()
+                                                                                          .createQuery(sql, Query.JCR_SQL2);
+        query.streamResults(true);
+        QueryResult result = query.execute();
+        // Keep the rows, and verify that each still refers to its own node after the iterator has moved on ...
+        List<Row> rows = new ArrayList<Row>();
+        RowIterator iter = result.getRows();
+        while (iter.hasNext()) {
+            rows.add(iter.nextRow());
+        }
+        assertThat(rows.size(), is(totalNodeCount));
+        for (Row row : rows) {
+            assertThat(row.getValue("jcr:path").getString(), is(row.getNode().getPath()));
+        }
+        // The streamed rows can be read only once ...
+        try {
+            result.getRows();
+            fail("Should not be able to iterate over streamed results more than once");
+        } catch (RepositoryException e) {
+            // expected
+        }
+    }
+
     @FixFor( "MODE-1095" )
     @Test
     public void shouldBeAbleToCreateAndExecuteJcrSql2QueryWithOrderByUsingPseudoColumnWithSelectStar() throws RepositoryException {
@@ -2260,6 +2286,46 @@ public class JcrQueryManagerTest extends MultiUseAbstractTest {
         validateQuery().rowCount(13).hasColumns("base.jcr:primaryType", "base.jcr:path", "car.car:year").validate(query, result);
     }
 
+    @Test
+    public void shouldNotSortInputsToMergeJoinForEquiJoinOnPropertyValues() throws RepositoryException {
+        // Compute the expected pairs by comparing every car with every other car ...
+        List<Node> cars = new ArrayList<>();
+        NodeIterator iter = session.getWorkspace().getQueryManager()
+                                   .createQuery("SELECT * FROM [car:Car]", Query.JCR_SQL2).execute().getNodes();
+        while (iter.hasNext()) {
+            cars.add(iter.nextNode());
+        }
+        List<String> expected = new ArrayList<>();
+        for (Node car1 : cars) {
+            if (!car1.hasProperty("car:maker")) continue;
+            for (Node car2 : cars) {
+                if (!car2.hasProperty("car:maker")) continue;
+                if (car1.getProperty("car:maker").getString().equals(car2.getProperty("car:maker").getString())) {
+                    expected.add(car1.getPath() + " -> " + car2.getPath());
+                }
+            }
+        }
+        Collections.sort(expected);
+
+        String sql = "SELECT car1.[jcr:path], car2.[jcr:path] FROM [car:Car] AS car1 "
+                     + "JOIN [car:Car] AS car2 ON car1.[car:maker] = car2.[car:maker]";
+        Query query = session.getWorkspace().getQueryManager().createQuery(sql, Query.JCR_SQL2);
+        QueryResult result = query.execute();
+        List<String> actual = new ArrayList<>();
+        RowIterator rows = result.getRows();
+        while (rows.hasNext()) {
+            Row row = rows.nextRow();
+            actual.add(row.getNode("car1").getPath() + " -> " + row.getNode("car2").getPath());
+        }
+        Collections.sort(actual);
+        assertThat(actual, is(expected));
+        assertTrue(expected.size() > cars.size());
+        // Neither side is already sorted by the join values, so the join must not use (or sort for) the merge algorithm ...
+        String plan = ((org.modeshape.jcr.api.query.QueryResult)result).getPlan();
+        assertThat(plan.contains("JOIN_ALGORITHM=NESTED_LOOP"), is(true));
+        assertThat(plan.contains("JOIN_ALGORITHM=MERGE"), is(false));
+    }
+
     @FixFor( "MODE-934" )
     @Test
     public void shouldNotIncludePseudoColumnsInSelectStarOfJcrSql2Query() throws RepositoryException {
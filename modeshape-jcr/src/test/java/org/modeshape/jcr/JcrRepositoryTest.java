@@ -34,6 +34,7 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -817,6 +818,61 @@ public class JcrRepositoryTest {
         assertThat(future.get(), is(true)); // get() blocks until done
     }
 
+    @Test
+    public void shouldReleaseLocksWhileWaitingForNodesLockedByAnotherSession() throws Exception {
+        session = createSession();
+        session.getRootNode().addNode("nodeA");
+        String nodeBKey = ((AbstractJcrNode)session.getRootNode().addNode("nodeB")).key().toString();
+        session.save();
+
+        // Lock 'nodeB' in a transaction that stays open while the other session tries to save ...
+        TransactionManager txnMgr = getTransactionManager();
+        txnMgr.begin();
+        session.getNode("/nodeB").setProperty("owner", "session1");
+        session.save();
+
+        final JcrSession other = createSession();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Void> otherSave = executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    other.getNode("/nodeA").setProperty("owner", "session2");
+                    other.getNode("/nodeB").setProperty("owner", "session2");
+                    other.save();
+                    return null;
+                }
+            });
+            Thread.sleep(100L);
+            assertThat(otherSave.isDone(), is(false));
+
+            // The other session must not hold 'nodeA' while it waits for 'nodeB', or this would wait for the other session ...
+            session.getNode("/nodeA").setProperty("owner", "session1");
+            session.save();
+            txnMgr.commit();
+
+            otherSave.get(10, TimeUnit.SECONDS);
+        } finally {
+            other.logout();
+            executor.shutdownNow();
+        }
+
+        // The other session's wait and retries are recorded for 'nodeB', which is the node it waited for ...
+        repository.statistics().rollup();
+        DurationActivity[] waits = repository.getRepositoryStatistics().getLongestRunning(DurationMetric.LOCK_WAIT_TIME);
+        assertThat(waits.length, is(not(0)));
+        for (DurationActivity wait : waits) {
+            assertThat(wait.getPayload().get("key"), is(nodeBKey));
+        }
+        long retries = 0L;
+        History history = repository.getRepositoryStatistics().getHistory(ValueMetric.LOCK_ACQUISITION_RETRIES,
+                                                                          Window.PREVIOUS_60_SECONDS);
+        for (Statistics stats : history.getStats()) {
+            if (stats != null) retries = Math.max(retries, stats.getMaximum());
+        }
+        assertThat(retries > 0L, is(true));
+    }
+
     @FixFor( {"MODE-1498", "MODE-2202"} )
     @Test
     public void shouldWorkWithUserDefinedTransactionsInSeparateThreads() throws Exception {
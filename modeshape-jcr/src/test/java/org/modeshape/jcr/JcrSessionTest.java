@@ -35,6 +35,7 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import javax.jcr.Binary;
 import javax.jcr.Item;
@@ -68,6 +69,7 @@ import org.modeshape.jcr.api.AnonymousCredentials;
 import org.modeshape.jcr.api.JcrTools;
 import org.modeshape.jcr.api.Namespaced;
 import org.modeshape.jcr.api.observation.Event;
+import org.modeshape.jcr.cache.NodeKey;
 import org.modeshape.jcr.value.Path;
 
 public class JcrSessionTest extends SingleUseAbstractTest {
@@ -1159,6 +1161,31 @@ public class JcrSessionTest extends SingleUseAbstractTest {
         assertThat(listener.changes, is(0));
     }
 
+    @Test
+    public void shouldNotGenerateEventsForContentLoadedInBulk() throws Exception {
+        LatchingPropertyListener listener = new LatchingPropertyListener();
+        session.getWorkspace().getObservationManager()
+               .addEventListener(listener, Event.PROPERTY_ADDED | Event.PROPERTY_CHANGED | Event.PROPERTY_REMOVED, null, true,
+                                 null, null, false);
+
+        session.beginBulkLoad();
+        assertTrue(session.isBulkLoading());
+        Node parent = session.getRootNode().addNode("bulk");
+        for (int i = 0; i != 10; ++i) {
+            parent.addNode("child" + i).setProperty("prop", "value" + i);
+        }
+        session.save();
+        session.endBulkLoad();
+        assertFalse(session.isBulkLoading());
+        assertThat(session.getNode("/bulk/child9").getProperty("prop").getString(), is("value9"));
+
+        // Changes saved after loading generate events as usual, and these are delivered after any for the bulk-loaded content ...
+        session.getNode("/bulk/child0").setProperty("other", "value");
+        session.save();
+        assertTrue(listener.latch.await(10, TimeUnit.SECONDS));
+        assertThat(listener.adds, is(1));
+    }
+
     @Test
     @FixFor( "MODE-1894" )
     public void shouldReplaceOldPropertyValuesInIndexesWhenUpdating() throws Exception {
@@ -1327,6 +1354,16 @@ public class JcrSessionTest extends SingleUseAbstractTest {
         }
     }
 
+    protected static class LatchingPropertyListener extends PropertyListener {
+        protected final CountDownLatch latch = new CountDownLatch(1);
+
+        @Override
+        public void onEvent( EventIterator events ) {
+            super.onEvent(events);
+            latch.countDown();
+        }
+    }
+
     protected void assertLocalNameAndNamespace( Item item,
                                                 String expectedLocalName,
                                                 String namespacePrefix ) throws RepositoryException {
@@ -1410,6 +1447,42 @@ public class JcrSessionTest extends SingleUseAbstractTest {
         }
     }
 
+    @Test
+    public void shouldKeepBoundedNumberOfNodesInReadOnlySession() throws Exception {
+        JcrSession.BoundedNodeMap nodes = new JcrSession.BoundedNodeMap(100);
+        AbstractJcrNode root = session.getRootNode();
+        NodeKey firstKey = root.key().withId("node0");
+        NodeKey lastKey = null;
+        for (int i = 0; i != 1000; ++i) {
+            lastKey = root.key().withId("node" + i);
+            nodes.putIfAbsent(lastKey, root);
+            assertTrue(nodes.size() <= 100);
+            // Keep using the first node, so that it is never the least-recently-used ...
+            assertThat(nodes.get(firstKey), is(root));
+        }
+        assertThat(nodes.size(), is(100));
+        assertThat(nodes.get(lastKey), is(root));
+        assertThat(nodes.get(root.key().withId("node901")), is(root));
+        assertThat(nodes.get(root.key().withId("node900")), is(nullValue()));
+        assertThat(nodes.get(root.key().withId("node1")), is(nullValue()));
+
+        Node folder = session.getRootNode().addNode("folder");
+        for (int i = 0; i != 10; ++i) {
+            folder.addNode("node" + i);
+        }
+        session.save();
+        JcrSession readOnlySession = session.spawnSession(true);
+        try {
+            assertThat(readOnlySession.isReadOnly(), is(true));
+            for (int i = 0; i != 10; ++i) {
+                String path = "/folder/node" + i;
+                assertThat(readOnlySession.getNode(path).isSame(session.getNode(path)), is(true));
+            }
+        } finally {
+            readOnlySession.logout();
+        }
+    }
+
     @SuppressWarnings( "deprecation" )
     protected String identifierPathFor( String pathToNode ) throws Exception {
         AbstractJcrNode node = session.getNode(pathToNode);
@@ -154,6 +154,11 @@ public class RepositoryConfigurationTest {
         assertValid("config/custom-binary-storage.json");
     }
 
+    @Test
+    public void shouldSuccessfullyValidateParallelScanQueryConfiguration() {
+        assertValid("config/repo-config-parallel-scan.json");
+    }
+
     @Test
     public void shouldNotSuccessfullyValidateSampleRepositoryConfigurationWithIndexStorageOnFilesystemAndExtraProperties() {
         assertNotValid(1, "config/invalid-index-storage-config-filesystem.json");
@@ -0,0 +1,93 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.cache;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import org.junit.Test;
+
+public class NodeKeyTest {
+
+    private static final String SOURCE = "source1";
+    private static final String WORKSPACE = "works1-";
+
+    @Test
+    public void shouldStoreUuidIdentifiersAsBits() {
+        UUID uuid = UUID.randomUUID();
+        NodeKey key = new NodeKey(SOURCE, WORKSPACE, uuid.toString());
+        assertThat(key.hasUuidIdentifier(), is(true));
+        assertThat(key.getUuidMostSignificantBits(), is(uuid.getMostSignificantBits()));
+        assertThat(key.getUuidLeastSignificantBits(), is(uuid.getLeastSignificantBits()));
+        assertThat(key.getIdentifier(), is(uuid.toString()));
+        assertThat(key.toString(), is(SOURCE + WORKSPACE + uuid));
+        assertThat(new NodeKey(SOURCE, WORKSPACE, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()), is(key));
+    }
+
+    @Test
+    public void shouldStoreOtherIdentifiersAsStrings() {
+        String uppercaseUuid = UUID.randomUUID().toString().toUpperCase();
+        for (String id : new String[] {"childA", "jcr:system", uppercaseUuid}) {
+            NodeKey key = new NodeKey(SOURCE + WORKSPACE + id);
+            assertThat(key.hasUuidIdentifier(), is(false));
+            assertThat(key.getIdentifier(), is(id));
+            assertThat(key.getSourceKey(), is(SOURCE));
+            assertThat(key.getWorkspaceKey(), is(WORKSPACE));
+            assertThat(key.toString(), is(SOURCE + WORKSPACE + id));
+        }
+    }
+
+    @Test
+    public void shouldHaveSameHashCodeAndOrderAsStringForm() {
+        List<NodeKey> keys = new ArrayList<>();
+        List<String> strings = new ArrayList<>();
+        for (int i = 0; i != 100; ++i) {
+            String id = i % 3 == 0 ? "node" + i : UUID.randomUUID().toString();
+            NodeKey key = new NodeKey(SOURCE, WORKSPACE, id);
+            assertThat(key.hashCode(), is(key.toString().hashCode()));
+            assertThat(new NodeKey(key.toString()), is(key));
+            keys.add(key);
+            strings.add(key.toString());
+        }
+        Collections.sort(keys);
+        Collections.sort(strings);
+        for (int i = 0; i != keys.size(); ++i) {
+            assertThat(keys.get(i).toString(), is(strings.get(i)));
+        }
+    }
+
+    @Test
+    public void shouldSerializeAndDeserialize() throws Exception {
+        NodeKey key = new NodeKey(SOURCE, WORKSPACE, UUID.randomUUID().toString());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(key);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            NodeKey copy = (NodeKey)in.readObject();
+            assertThat(copy, is(key));
+            assertThat(copy.hashCode(), is(key.hashCode()));
+            assertThat(copy.hasUuidIdentifier(), is(true));
+        }
+    }
+}
@@ -16,6 +16,8 @@
 package org.modeshape.jcr.cache.document;
 
 import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 import java.util.Arrays;
@@ -29,6 +31,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.modeshape.jcr.ExecutionContext;
 import org.modeshape.jcr.cache.ChildReference;
+import org.modeshape.jcr.cache.ChildReferences;
 import org.modeshape.jcr.cache.MutableCachedNode;
 import org.modeshape.jcr.cache.NodeKey;
 import org.modeshape.jcr.cache.SessionCache;
@@ -61,8 +64,8 @@ public class DocumentOptimizerTest extends AbstractSessionCacheTest {
         EditableDocument doc = entry.editDocumentContent();
         EditableArray children = doc.getArray(DocumentTranslator.CHILDREN);
         String nextBlock = doc.getDocument(DocumentTranslator.CHILDREN_INFO).getString(DocumentTranslator.NEXT_BLOCK);
-        boolean changed = optimizer.splitChildren(key, doc, children, 100, 50, true, nextBlock);
-        assertThat(changed, is(false));
+        String newLastBlock = optimizer.splitChildren(key, doc, children, 100, 50, true, nextBlock);
+        assertThat(newLastBlock, is(nullValue()));
     }
 
     @Test
@@ -167,6 +170,96 @@ public class DocumentOptimizerTest extends AbstractSessionCacheTest {
         print(document(key), true);
     }
 
+    @Test
+    public void shouldSplitChildReferenceBlocksWhenAppendingChildren() throws Exception {
+        workspaceCache.translator().setChildBlockSize(5, 2);
+        MutableCachedNode nodeA = check(session1).mutableNode("/childA");
+        NodeKey key = nodeA.getKey();
+        int count = 0;
+        for (int j = 0; j != 4; ++j) {
+            for (int i = 0; i != 5; ++i) {
+                NodeKey newKey = key.withId("child" + (++count));
+                nodeA.createChild(session(), newKey, name("newChild"), property("p1a", 344));
+            }
+            session1.save();
+            nodeA = check(session1).mutableNode("/childA");
+        }
+
+        // Each block should be no larger than the target plus the tolerance, and together they should have all the children ...
+        Document doc = document(key);
+        Document info = doc.getDocument(DocumentTranslator.CHILDREN_INFO);
+        assertThat(info.getLong(DocumentTranslator.COUNT), is((long)count));
+        long total = 0L;
+        String lastBlock = null;
+        String blockKey = key.toString();
+        while (blockKey != null) {
+            Document block = document(new NodeKey(blockKey));
+            int size = block.getArray(DocumentTranslator.CHILDREN).size();
+            assertThat("Block " + blockKey + " has " + size + " children", size <= 7, is(true));
+            total += size;
+            lastBlock = blockKey;
+            Document blockInfo = block.getDocument(DocumentTranslator.CHILDREN_INFO);
+            blockKey = blockInfo != null ? blockInfo.getString(DocumentTranslator.NEXT_BLOCK) : null;
+        }
+        assertThat(total, is((long)count));
+        assertThat(lastBlock.equals(key.toString()), is(false));
+        assertThat(info.getString(DocumentTranslator.LAST_BLOCK), is(lastBlock));
+        assertThat(check(session1).node("/childA").getChildReferences(session1).size(), is((long)count));
+    }
+
+    @Test
+    public void shouldMaintainSummaryOfBlocksUsedToFindChildren() throws Exception {
+        workspaceCache.translator().setChildBlockSize(5, 2);
+        MutableCachedNode nodeA = check(session1).mutableNode("/childA");
+        NodeKey key = nodeA.getKey();
+        for (int i = 1; i <= 20; ++i) {
+            nodeA.createChild(session(), key.withId("child" + i), name("child" + i), property("p1a", 344));
+            if (i % 5 == 0) {
+                session1.save();
+                nodeA = check(session1).mutableNode("/childA");
+            }
+        }
+
+        // There are 4 blocks of 5 children, and the summary has a filter for each block after the first ...
+        ChildBlockFilters filters = ChildBlockFilters.read(document(key));
+        assertThat(filters, is(notNullValue()));
+        assertThat(filters.size(), is(3));
+        ChildReferences refs = check(session1).node("/childA").getChildReferences(session1);
+        for (int i = 1; i <= 20; ++i) {
+            Name childName = name("child" + i);
+            NodeKey childKey = key.withId("child" + i);
+            if (i > 5) {
+                String nameString = workspaceCache.translator().getStringFactory().create(childName);
+                assertThat(filters.mightContain((i - 1) / 5 - 1, nameString), is(true));
+                assertThat(filters.mightContain((i - 1) / 5 - 1, childKey.toString()), is(true));
+            }
+            assertThat(refs.getChild(childName).getKey(), is(childKey));
+            assertThat(refs.getChild(childKey).getName(), is(childName));
+            assertThat(refs.hasChild(childKey), is(true));
+            assertThat(refs.getChildCount(childName), is(1));
+        }
+        assertThat(refs.getChild(name("child21")), is(nullValue()));
+        assertThat(refs.hasChild(key.withId("child21")), is(false));
+
+        // Optimizing the blocks should rebuild the summary ...
+        optimizer.optimizeChildrenBlocks(key, null, 10, 3);
+        session1.save();
+        Document doc = document(key);
+        filters = ChildBlockFilters.read(doc);
+        assertThat(filters, is(notNullValue()));
+        int index = 0;
+        String blockKey = doc.getDocument(DocumentTranslator.CHILDREN_INFO).getString(DocumentTranslator.NEXT_BLOCK);
+        while (blockKey != null) {
+            assertThat(filters.key(index++), is(blockKey));
+            Document blockInfo = document(new NodeKey(blockKey)).getDocument(DocumentTranslator.CHILDREN_INFO);
+            blockKey = blockInfo.getString(DocumentTranslator.NEXT_BLOCK);
+        }
+        assertThat(filters.size(), is(index));
+        // and the filters of the blocks that no longer exist should have been removed ...
+        assertThat(doc.getDocument(DocumentTranslator.CHILDREN_INFO).getDocument(DocumentTranslator.BLOCK_FILTERS).size(),
+                   is(index));
+    }
+
     protected Document document( NodeKey key ) {
         SchematicEntry entry = workspaceCache.documentStore().get(key.toString());
         return entry.getContentAsDocument();
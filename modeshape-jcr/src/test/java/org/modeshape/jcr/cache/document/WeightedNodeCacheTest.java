@@ -0,0 +1,137 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.cache.document;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import java.util.concurrent.atomic.AtomicLong;
+import org.infinispan.schematic.Schematic;
+import org.infinispan.schematic.document.EditableDocument;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.jcr.cache.CachedNode;
+import org.modeshape.jcr.cache.NodeKey;
+
+public class WeightedNodeCacheTest {
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong size = new AtomicLong();
+    private WeightedNodeCache.Listener listener;
+
+    @Before
+    public void beforeEach() {
+        listener = new WeightedNodeCache.Listener() {
+            @Override
+            public void hit() {
+                hits.incrementAndGet();
+            }
+
+            @Override
+            public void miss() {
+                misses.incrementAndGet();
+            }
+
+            @Override
+            public void evicted( int count ) {
+                evictions.addAndGet(count);
+            }
+
+            @Override
+            public void sizeChanged( long delta ) {
+                size.addAndGet(delta);
+            }
+        };
+    }
+
+    protected CachedNode node( String id,
+                               int numberOfProperties ) {
+        EditableDocument doc = Schematic.newDocument();
+        for (int i = 0; i != numberOfProperties; ++i) {
+            doc.setString("property" + i, "value of property " + i);
+        }
+        return new LazyCachedNode(new NodeKey("source1works1-" + id), doc);
+    }
+
+    @Test
+    public void shouldRecordHitsAndMisses() {
+        WeightedNodeCache cache = new WeightedNodeCache(1024L * 1024L, listener);
+        CachedNode node = node("node1", 3);
+        assertThat(cache.get(node.getKey()), is(nullValue()));
+        assertThat(cache.putIfAbsent(node.getKey(), node), is(nullValue()));
+        assertThat(cache.get(node.getKey()), is(node));
+        assertThat(hits.get(), is(1L));
+        assertThat(misses.get(), is(1L));
+        assertThat(size.get(), is(cache.getEstimatedSize()));
+        assertThat(cache.remove(node.getKey()), is(node));
+        assertThat(cache.size(), is(0));
+        assertThat(size.get(), is(0L));
+    }
+
+    @Test
+    public void shouldWeighNodesByTheirDocuments() {
+        WeightedNodeCache cache = new WeightedNodeCache(1024L * 1024L, listener);
+        CachedNode small = node("small", 1);
+        CachedNode large = node("large", 100);
+        assertTrue(cache.weigh(large) > 10 * cache.weigh(small));
+    }
+
+    @Test
+    public void shouldEvictNodesToStayWithinMaximumSize() {
+        long maximumSize = 64L * 1024L;
+        WeightedNodeCache cache = new WeightedNodeCache(maximumSize, listener);
+        for (int i = 0; i != 1000; ++i) {
+            CachedNode node = node("node" + i, 10);
+            cache.put(node.getKey(), node);
+            assertTrue(cache.getEstimatedSize() <= maximumSize);
+        }
+        assertTrue(evictions.get() > 0L);
+        assertThat(cache.size() + evictions.get(), is(1000L));
+        assertThat(size.get(), is(cache.getEstimatedSize()));
+        // The most recently added node should still be cached ...
+        assertThat(cache.get(new NodeKey("source1works1-node999")), is(notNullValue()));
+    }
+
+    @Test
+    public void shouldReplaceOnlyExistingNodesAndReturnPreviousNode() {
+        WeightedNodeCache cache = new WeightedNodeCache(1024L * 1024L, listener);
+        CachedNode original = node("node1", 3);
+        CachedNode changed = node("node1", 5);
+        assertThat(cache.replace(original.getKey(), changed), is(nullValue()));
+        assertThat(cache.size(), is(0));
+
+        cache.put(original.getKey(), original);
+        assertThat(cache.replace(original.getKey(), changed), is(sameInstance(original)));
+        assertThat(cache.get(original.getKey()), is(sameInstance(changed)));
+        assertThat(size.get(), is(cache.getEstimatedSize()));
+        assertThat(cache.getEstimatedSize(), is(cache.weigh(changed)));
+    }
+
+    @Test
+    public void shouldNotCacheNodeLargerThanSegment() {
+        WeightedNodeCache cache = new WeightedNodeCache(16L * 1024L, listener);
+        CachedNode node = node("huge", 1000);
+        cache.put(node.getKey(), node);
+        assertThat(cache.get(node.getKey()), is(nullValue()));
+        assertThat(cache.size(), is(0));
+        assertThat(size.get(), is(0L));
+    }
+}
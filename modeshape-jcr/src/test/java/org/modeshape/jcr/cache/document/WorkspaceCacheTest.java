@@ -15,10 +15,15 @@
  */
 package org.modeshape.jcr.cache.document;
 
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+import java.util.Arrays;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import org.junit.Test;
 import org.modeshape.jcr.bus.RepositoryChangeBus;
 import org.modeshape.jcr.cache.CachedNode;
 import org.modeshape.jcr.cache.NodeCache;
@@ -28,12 +33,13 @@ public class WorkspaceCacheTest extends AbstractNodeCacheTest {
 
     private ExecutorService executor;
     private RepositoryChangeBus changeBus;
+    private ConcurrentMap<NodeKey, CachedNode> nodeCache;
 
     @Override
     protected NodeCache createCache() {
         executor = Executors.newCachedThreadPool();
         changeBus = new RepositoryChangeBus("repo", executor);
-        ConcurrentMap<NodeKey, CachedNode> nodeCache = new ConcurrentHashMap<NodeKey, CachedNode>();
+        nodeCache = new ConcurrentHashMap<NodeKey, CachedNode>();
         DocumentStore documentStore = new LocalDocumentStore(schematicDb);
         DocumentTranslator translator = new DocumentTranslator(context, documentStore, 100L);
         WorkspaceCache workspaceCache = new WorkspaceCache(context, "repo", "ws", null, documentStore, translator, ROOT_KEY_WS1,
@@ -47,4 +53,19 @@ public class WorkspaceCacheTest extends AbstractNodeCacheTest {
         super.shutdownCache(cache);
         executor.shutdown();
     }
+
+    @Test
+    public void shouldPrefetchNodesThatAreNotAlreadyCached() {
+        NodeKey childA = new NodeKey("source1works1-childA");
+        NodeKey childB = new NodeKey("source1works1-childB");
+        NodeKey missing = new NodeKey("source1works1-missing");
+        CachedNode cachedChildA = cache.getNode(childA);
+        assertThat(nodeCache.containsKey(childB), is(false));
+
+        ((WorkspaceCache)cache).prefetch(Arrays.asList(childA, childB, missing));
+        assertThat(nodeCache.get(childA), is(sameInstance(cachedChildA)));
+        assertThat(nodeCache.containsKey(childB), is(true));
+        assertThat(nodeCache.containsKey(missing), is(false));
+        assertThat(cache.getNode(childB), is(sameInstance(nodeCache.get(childB))));
+    }
 }
@@ -0,0 +1,248 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.index.local;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import java.util.ArrayList;
+import java.util.List;
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryResult;
+import javax.jcr.query.Row;
+import javax.jcr.query.RowIterator;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.common.util.FileUtil;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.SingleUseAbstractTest;
+import org.modeshape.jcr.spi.index.IndexColumnDefinition;
+import org.modeshape.jcr.spi.index.IndexDefinition.IndexKind;
+import org.modeshape.jcr.spi.index.IndexManager;
+import org.modeshape.jcr.value.NameFactory;
+import org.modeshape.jcr.value.PropertyType;
+
+public class LocalIndexProviderTest extends SingleUseAbstractTest {
+
+    private static final String STORAGE_DIRECTORY = "target/local_index_provider";
+
+    @Override
+    @Before
+    public void beforeEach() throws Exception {
+        FileUtil.delete(STORAGE_DIRECTORY);
+        super.beforeEach();
+        startRepositoryWithConfiguration(resourceStream("config/repo-config-local-index-provider.json"));
+        registerIndex("titles", "title", PropertyType.STRING, "rating", PropertyType.LONG);
+        registerIndex("ratings", "rating", PropertyType.LONG);
+    }
+
+    @Override
+    protected boolean startRepositoryAutomatically() {
+        return false;
+    }
+
+    @Test
+    public void shouldUseIndexForEqualityConstraint() throws Exception {
+        addNodes();
+        assertQueryUsesIndex("SELECT * FROM [nt:unstructured] WHERE [title] = 'beta'", 2, "titles");
+        assertQueryUsesIndex("SELECT * FROM [nt:unstructured] WHERE [title] = 'gamma'", 1, "titles");
+        assertQueryUsesIndex("SELECT * FROM [nt:unstructured] WHERE [title] = 'missing'", 0, "titles");
+    }
+
+    @Test
+    public void shouldUseIndexForRangeConstraints() throws Exception {
+        addNodes();
+        assertQueryUsesIndex("SELECT * FROM [nt:unstructured] WHERE [rating] > 2", 2, "ratings");
+        assertQueryUsesIndex("SELECT * FROM [nt:unstructured] WHERE [rating] >= 2", 3, "ratings");
+        assertQueryUsesIndex("SELECT * FROM [nt:unstructured] WHERE [rating] < 10", 3, "ratings");
+        assertQueryUsesIndex("SELECT * FROM [nt:unstructured] WHERE [rating] <= 10", 4, "ratings");
+    }
+
+    @Test
+    public void shouldUseMostSelectiveIndexWhenSeveralApply() throws Exception {
+        registerIndex("colors", "color", PropertyType.STRING);
+        registerIndex("sizes", "size", PropertyType.STRING);
+        Node parent = session.getRootNode().addNode("selective");
+        for (int i = 0; i != 50; ++i) {
+            Node node = parent.addNode("node" + i, "nt:unstructured");
+            node.setProperty("color", i == 0 ? "red" : "blue");
+            node.setProperty("size", i < 49 ? "large" : "small");
+        }
+        session.save();
+        // Only one node is red, but nearly all are large ...
+        assertQueryUsesIndex("SELECT * FROM [nt:unstructured] WHERE [color] = 'red' AND [size] = 'large'", 1, "colors");
+        // and only one node is small, but nearly all are blue ...
+        assertQueryUsesIndex("SELECT * FROM [nt:unstructured] WHERE [color] = 'blue' AND [size] = 'small'", 1, "sizes");
+    }
+
+    @Test
+    public void shouldUseIndexForPropertyExistenceConstraint() throws Exception {
+        addNodes();
+        assertQueryUsesIndex("SELECT * FROM [nt:unstructured] WHERE [title] IS NOT NULL", 4, "titles");
+    }
+
+    @Test
+    public void shouldUpdateIndexWhenPropertiesChangeOrNodesAreRemoved() throws Exception {
+        addNodes();
+        Node node = session.getNode("/indexed/a");
+        node.setProperty("title", "delta");
+        session.getNode("/indexed/b").remove();
+        session.save();
+        assertQueryUsesIndex("SELECT * FROM [nt:unstructured] WHERE [title] = 'alpha'", 0, "titles");
+        assertQueryUsesIndex("SELECT * FROM [nt:unstructured] WHERE [title] = 'delta'", 1, "titles");
+        assertQueryUsesIndex("SELECT * FROM [nt:unstructured] WHERE [title] = 'beta'", 1, "titles");
+    }
+
+    @Test
+    public void shouldReturnCoveredPropertyValuesFromMultiColumnIndex() throws Exception {
+        addNodes();
+        String sql = "SELECT [title], [rating] FROM [nt:unstructured] WHERE [title] = 'beta' ORDER BY [rating]";
+        Query query = session.getWorkspace().getQueryManager().createQuery(sql, Query.JCR_SQL2);
+        QueryResult result = query.execute();
+        assertIndexUsed(result, "titles");
+        RowIterator rows = result.getRows();
+        List<Long> ratings = new ArrayList<>();
+        while (rows.hasNext()) {
+            Row row = rows.nextRow();
+            assertThat(row.getValue("title").getString(), is("beta"));
+            ratings.add(row.getValue("rating").getLong());
+            // Anything not covered by the index must still be available ...
+            assertThat(row.getNode().getParent().getPath(), is("/indexed"));
+        }
+        assertThat(ratings.size(), is(2));
+        assertThat(ratings.get(0), is(2L));
+        assertThat(ratings.get(1), is(5L));
+    }
+
+    @Test
+    public void shouldUseFullTextIndexForFullTextSearch() throws Exception {
+        registerIndex("text", IndexKind.FULLTEXTSEARCH, "body", PropertyType.STRING, "title", PropertyType.STRING);
+        addNodes();
+        Node parent = session.getNode("/indexed");
+        parent.getNode("a").setProperty("body", "The quick brown fox jumps over the lazy dog");
+        parent.getNode("b").setProperty("body", "A quick brown dog, and another brown dog");
+        parent.getNode("c").setProperty("body", "Nothing of interest");
+        session.save();
+        assertQueryUsesIndex("SELECT * FROM [nt:unstructured] WHERE CONTAINS([body], 'quick')", 2, "text");
+        assertQueryUsesIndex("SELECT * FROM [nt:unstructured] WHERE CONTAINS([body], 'quick -fox')", 1, "text");
+        assertQueryUsesIndex("SELECT * FROM [nt:unstructured] WHERE CONTAINS([body], 'fox OR interest')", 2, "text");
+        assertQueryUsesIndex("SELECT * FROM [nt:unstructured] WHERE CONTAINS([body], 'qui*')", 2, "text");
+        assertQueryUsesIndex("SELECT * FROM [nt:unstructured] WHERE CONTAINS([body], 'beta')", 0, "text");
+        assertQueryUsesIndex("SELECT * FROM [nt:unstructured] WHERE CONTAINS([nt:unstructured].*, 'beta')", 2, "text");
+
+        // The index matches phrases regardless of the order of their terms, so the phrase must still be checked ...
+        assertQueryUsesIndex("SELECT * FROM [nt:unstructured] WHERE CONTAINS([body], '\"brown dog\"')", 2, "text");
+        assertQueryUsesIndex("SELECT * FROM [nt:unstructured] WHERE CONTAINS([body], '\"dog brown\"')", 0, "text");
+        assertQueryUsesIndex("SELECT * FROM [nt:unstructured] WHERE CONTAINS([body], 'quick -\"lazy dog\"')", 1, "text");
+
+        // The node with more occurrences of the term in less text is the better match ...
+        String sql = "SELECT [jcr:name] FROM [nt:unstructured] WHERE CONTAINS([body], 'brown dog') ORDER BY SCORE() DESC";
+        Query query = session.getWorkspace().getQueryManager().createQuery(sql, Query.JCR_SQL2);
+        RowIterator rows = query.execute().getRows();
+        assertThat(rows.nextRow().getNode().getName(), is("b"));
+        assertThat(rows.nextRow().getNode().getName(), is("a"));
+        assertThat(rows.hasNext(), is(false));
+
+        // Changes and removals must be reflected in the index ...
+        parent.getNode("a").setProperty("body", "A slow red fox");
+        parent.getNode("b").remove();
+        session.save();
+        assertQueryUsesIndex("SELECT * FROM [nt:unstructured] WHERE CONTAINS([body], 'quick')", 0, "text");
+        assertQueryUsesIndex("SELECT * FROM [nt:unstructured] WHERE CONTAINS([body], 'slow')", 1, "text");
+    }
+
+    @Test
+    public void shouldIndexContentLoadedInBulkWhenLoadingEnds() throws Exception {
+        session.beginBulkLoad();
+        addNodes();
+        // The content saved while loading is not yet in the index ...
+        assertQueryUsesIndex("SELECT * FROM [nt:unstructured] WHERE [title] = 'beta'", 0, "titles");
+        session.endBulkLoad();
+        assertQueryUsesIndex("SELECT * FROM [nt:unstructured] WHERE [title] = 'beta'", 2, "titles");
+    }
+
+    @Test
+    public void shouldIndexContentLoadedInBulkWhenSessionLogsOutWhileLoading() throws Exception {
+        session.beginBulkLoad();
+        addNodes();
+        session.logout();
+        session = repository().login();
+        assertQueryUsesIndex("SELECT * FROM [nt:unstructured] WHERE [title] = 'beta'", 2, "titles");
+    }
+
+    protected void registerIndex( String indexName,
+                                  Object... propertyNamesAndTypes ) throws RepositoryException {
+        registerIndex(indexName, IndexKind.DUPLICATES, propertyNamesAndTypes);
+    }
+
+    protected void registerIndex( String indexName,
+                                  IndexKind kind,
+                                  Object... propertyNamesAndTypes ) throws RepositoryException {
+        IndexManager indexManager = repository().getIndexManager();
+        NameFactory names = new ExecutionContext().getValueFactories().getNameFactory();
+        List<IndexColumnDefinition> columns = new ArrayList<>();
+        for (int i = 0; i < propertyNamesAndTypes.length; i += 2) {
+            columns.add(indexManager.createIndexColumnDefinitionTemplate()
+                                    .setPropertyTypeName(names.create((String)propertyNamesAndTypes[i]))
+                                    .getColumnType((PropertyType)propertyNamesAndTypes[i + 1]));
+        }
+        indexManager.registerIndex(indexManager.createIndexDefinitionTemplate()
+                                               .setName(indexName)
+                                               .setProviderName("local")
+                                               .setKind(kind)
+                                               .setNodeTypeName(names.create("nt:unstructured"))
+                                               .setColumnDefinitions(columns), false);
+    }
+
+    protected void addNodes() throws RepositoryException {
+        Node parent = session.getRootNode().addNode("indexed");
+        addNode(parent, "a", "alpha", 1L);
+        addNode(parent, "b", "beta", 2L);
+        addNode(parent, "c", "beta", 5L);
+        addNode(parent, "d", "gamma", 10L);
+        session.save();
+    }
+
+    protected void addNode( Node parent,
+                            String name,
+                            String title,
+                            long rating ) throws RepositoryException {
+        Node node = parent.addNode(name, "nt:unstructured");
+        node.setProperty("title", title);
+        node.setProperty("rating", rating);
+    }
+
+    protected void assertQueryUsesIndex( String sql,
+                                         long expected,
+                                         String indexName ) throws RepositoryException {
+        Query query = session.getWorkspace().getQueryManager().createQuery(sql, Query.JCR_SQL2);
+        QueryResult result = query.execute();
+        assertThat(result.getNodes().getSize(), is(expected));
+        assertIndexUsed(result, indexName);
+    }
+
+    protected void assertIndexUsed( QueryResult result,
+                                    String indexName ) {
+        // A full scan would find the same nodes, so check that the plan actually used the index ...
+        String plan = ((org.modeshape.jcr.api.query.QueryResult)result).getPlan();
+        for (String line : plan.split("\n")) {
+            if (line.contains("INDEX_SPECIFICATION=" + indexName + " ") && line.contains("INDEX_USED=true")) return;
+        }
+        fail("Expected the '" + indexName + "' index to be used by the query plan:\n" + plan);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.index.local;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.modeshape.jcr.spi.index.provider.IndexStatistics.Bucket;
+
+public class LocalIndexStatisticsTest {
+
+    private DB db;
+    private LocalIndexStatistics stats;
+    private Queue<Runnable> refreshes;
+
+    @Before
+    public void beforeEach() {
+        db = DBMaker.newMemoryDB().make();
+        refreshes = new LinkedList<>();
+        stats = new LocalIndexStatistics("test", db, new Executor() {
+            @Override
+            public void execute( Runnable command ) {
+                refreshes.add(command);
+            }
+        });
+    }
+
+    protected void runRefreshes() {
+        while (!refreshes.isEmpty()) {
+            refreshes.remove().run();
+        }
+    }
+
+    @After
+    public void afterEach() {
+        db.close();
+    }
+
+    @Test
+    public void shouldMaintainCountsAsEntriesAreAddedAndRemoved() {
+        assertThat(stats.getTotalEntries(), is(0L));
+        assertThat(stats.getDistinctValueCount(), is(0L));
+        stats.added(1L);
+        stats.added(1L);
+        stats.added(2L);
+        assertThat(stats.getTotalEntries(), is(3L));
+        assertThat(stats.getDistinctValueCount(), is(2L));
+        assertThat(stats.getEntryCount(1L), is(2L));
+        assertThat(stats.getEntryCount(3L), is(0L));
+        stats.removed(1L);
+        stats.removed(2L);
+        assertThat(stats.getTotalEntries(), is(1L));
+        assertThat(stats.getDistinctValueCount(), is(1L));
+        assertThat(stats.getEntryCount(2L), is(0L));
+        stats.clear();
+        assertThat(stats.getTotalEntries(), is(0L));
+        assertThat(stats.getHistogram().isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldEstimateEntriesUsingHistogram() {
+        for (long value = 0L; value != 1000L; ++value) {
+            stats.added(value);
+        }
+        stats.getHistogram();
+        runRefreshes();
+        List<Bucket> histogram = stats.getHistogram();
+        assertThat(histogram.isEmpty(), is(false));
+        long total = 0L;
+        for (Bucket bucket : histogram) {
+            total += bucket.getEntryCount();
+        }
+        assertThat(total, is(1000L));
+        assertThat(stats.estimateEntries(null), is(1000L));
+        assertThat(stats.estimateEntries(LocalIndex.Bounds.equalTo(10L)), is(1L));
+        long estimate = stats.estimateEntries(new LocalIndex.Bounds(900L, true, null, false));
+        assertThat(estimate > 50L && estimate < 200L, is(true));
+    }
+
+    @Test
+    public void shouldComputeHistogramOnlyWithExecutor() {
+        for (long value = 0L; value != 1000L; ++value) {
+            stats.added(value);
+        }
+        // Estimating a range must not compute the histogram, but instead asks the executor to do so ...
+        assertThat(stats.getHistogram().isEmpty(), is(true));
+        assertThat(stats.estimateEntries(new LocalIndex.Bounds(900L, true, null, false)) > 0L, is(true));
+        assertThat(refreshes.size(), is(1));
+        stats.getHistogram();
+        assertThat(refreshes.size(), is(1));
+        runRefreshes();
+        assertThat(stats.getHistogram().isEmpty(), is(false));
+        assertThat(refreshes.isEmpty(), is(true));
+
+        // Changing a significant fraction of the entries schedules a new histogram, but the old one is used until then ...
+        List<Bucket> histogram = stats.getHistogram();
+        for (long value = 1000L; value != 1200L; ++value) {
+            stats.added(value);
+        }
+        assertThat(refreshes.size(), is(1));
+        assertThat(stats.getHistogram(), is(sameInstance(histogram)));
+        runRefreshes();
+        assertThat(stats.getHistogram(), is(not(sameInstance(histogram))));
+    }
+
+    @Test
+    public void shouldChangeVersionWhenManyEntriesChange() {
+        long version = stats.getVersion();
+        stats.added(1L);
+        assertThat(stats.getVersion(), is(version));
+        for (long value = 0L; value != 200L; ++value) {
+            stats.added(value);
+        }
+        assertThat(stats.getVersion(), is(not(version)));
+        version = stats.getVersion();
+        stats.clear();
+        assertThat(stats.getVersion(), is(not(version)));
+    }
+}
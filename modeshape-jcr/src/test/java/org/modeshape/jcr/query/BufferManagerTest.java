@@ -19,6 +19,11 @@ package org.modeshape.jcr.query;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Comparator;
 import java.util.Iterator;
 import org.junit.After;
@@ -27,7 +32,12 @@ import org.junit.Test;
 import org.mapdb.BTreeKeySerializer;
 import org.mapdb.Serializer;
 import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.api.value.DateTime;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.query.BufferManager.CloseableBuffer;
+import org.modeshape.jcr.query.BufferManager.DateTimeSerializer;
 import org.modeshape.jcr.query.BufferManager.DistinctBuffer;
+import org.modeshape.jcr.query.BufferManager.NodeKeySerializer;
 import org.modeshape.jcr.query.BufferManager.SortingBuffer;
 import org.modeshape.jcr.query.model.TypeSystem;
 import org.modeshape.jcr.query.model.TypeSystem.TypeFactory;
@@ -193,4 +203,103 @@ public class BufferManagerTest {
             assertThat(iter.hasNext(), is(false));
         }
     }
+
+    @SuppressWarnings( "unchecked" )
+    @Test
+    public void shouldMoveSortBufferToDiskWhenMemoryBudgetIsExceeded() {
+        mgr.close();
+        mgr = new BufferManager(context, 4096L);
+        TypeFactory<String> stringType = types.getStringFactory();
+        BTreeKeySerializer<String> strKeySerializer = (BTreeKeySerializer<String>)mgr.bTreeKeySerializerFor(stringType, false);
+        Serializer<String> strSerializer = (Serializer<String>)mgr.serializerFor(stringType);
+        try (SortingBuffer<String, String> buffer = mgr.createSortingBuffer(strKeySerializer, strSerializer).useHeap(false)
+                                                       .keepSize(true).make()) {
+            for (int i = 999; i >= 0; --i) {
+                buffer.put(String.format("value%04d", i), "record" + i);
+            }
+            assertThat(((CloseableBuffer)buffer).isOnDisk(), is(true));
+            assertThat(mgr.getMemoryUsed(), is(0L));
+            assertThat(buffer.size(), is(1000L));
+            Iterator<String> iter = buffer.ascending();
+            for (int i = 0; i != 1000; ++i) {
+                assertThat(iter.next(), is("record" + i));
+            }
+            assertThat(iter.hasNext(), is(false));
+        }
+    }
+
+    @Test
+    public void shouldReleaseMemoryUsedByBufferWhenClosed() {
+        try (DistinctBuffer<String> buffer = mgr.createDistinctBuffer(Serializer.STRING).useHeap(false).keepSize(true).make()) {
+            assertTrue(!buffer.contains("first"));
+            assertTrue(!buffer.contains("second"));
+            assertTrue(mgr.getMemoryUsed() > 0L);
+            assertThat(((CloseableBuffer)buffer).isOnDisk(), is(false));
+        }
+        assertThat(mgr.getMemoryUsed(), is(0L));
+    }
+
+    @Test
+    public void shouldApplyMemoryBudgetToBuffersOfEachQuerySeparately() {
+        BufferManager query1 = mgr.forQuery();
+        BufferManager query2 = mgr.forQuery();
+        assertThat(query1.getMemoryBudget(), is(mgr.getMemoryBudget()));
+        try (DistinctBuffer<String> buffer1 = query1.createDistinctBuffer(Serializer.STRING).useHeap(false).make();
+             DistinctBuffer<String> buffer2 = query2.createDistinctBuffer(Serializer.STRING).useHeap(false).make()) {
+            assertTrue(!buffer1.contains("first"));
+            long used = query1.getMemoryUsed();
+            assertTrue(used > 0L);
+            assertThat(query2.getMemoryUsed(), is(0L));
+            assertThat(mgr.getMemoryUsed(), is(0L));
+            assertTrue(!buffer2.contains("first"));
+            assertThat(query1.getMemoryUsed(), is(used));
+            assertTrue(query2.getMemoryUsed() > 0L);
+
+            // Closing one query's manager must not close the databases shared with the other queries ...
+            query1.close();
+            assertTrue(!buffer2.contains("second"));
+            assertTrue(buffer2.contains("second"));
+        }
+        assertThat(query1.getMemoryUsed(), is(0L));
+        assertThat(query2.getMemoryUsed(), is(0L));
+    }
+
+    @Test
+    public void shouldSerializeNodeKeysInBinaryForm() throws IOException {
+        NodeKeySerializer serializer = new NodeKeySerializer();
+        NodeKey key = new NodeKey("a1b2c3de4f5a6b7c6e7a3b-0f2c-4d4e-9a1b-22c3d4e5f607");
+        byte[] bytes = serialize(serializer, key);
+        assertThat(bytes.length, is(25));
+        assertThat(serializer.deserialize(new DataInputStream(new ByteArrayInputStream(bytes)), bytes.length), is(key));
+    }
+
+    @Test
+    public void shouldSerializeNodeKeysWithNonUuidIdentifiers() throws IOException {
+        NodeKeySerializer serializer = new NodeKeySerializer();
+        NodeKey[] keys = {new NodeKey("a1b2c3de4f5a6bjcr:system"), new NodeKey("a1b2c3de4f5a6b7C6E7A3B-0F2C-4D4E-9A1B-22C3D4E5F607"),
+            new NodeKey("source1workspcx")};
+        for (NodeKey key : keys) {
+            byte[] bytes = serialize(serializer, key);
+            assertThat(serializer.deserialize(new DataInputStream(new ByteArrayInputStream(bytes)), bytes.length), is(key));
+        }
+    }
+
+    @Test
+    public void shouldSerializeDateTimesWithTimeZone() throws IOException {
+        DateTimeSerializer serializer = new DateTimeSerializer();
+        DateTime date = context.getValueFactories().getDateFactory().create(2014, 3, 12, 10, 22, 33, 444, "America/Chicago");
+        byte[] bytes = serialize(serializer, date);
+        DateTime result = serializer.deserialize(new DataInputStream(new ByteArrayInputStream(bytes)), bytes.length);
+        assertThat(result, is(date));
+        assertThat(result.getTimeZoneId(), is(date.getTimeZoneId()));
+    }
+
+    protected <T> byte[] serialize( Serializer<T> serializer,
+                                    T value ) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            serializer.serialize(out, value);
+        }
+        return bytes.toByteArray();
+    }
 }
@@ -0,0 +1,98 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.query;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.jcr.PropertyType;
+import javax.jcr.Value;
+import javax.jcr.query.Row;
+import javax.jcr.query.RowIterator;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.cache.CachedNode;
+import org.modeshape.jcr.cache.NodeCache;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.query.QueryResults.Columns;
+import org.modeshape.jcr.query.engine.CoveredCachedNode;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.Property;
+
+public class JcrQueryResultTest {
+
+    private static final String WORKSPACE_NAME = "default";
+
+    private ExecutionContext executionContext;
+    private JcrQueryContext context;
+    private QueryResults results;
+    private Columns columns;
+    private NodeCache cache;
+
+    @Before
+    public void beforeEach() {
+        executionContext = new ExecutionContext();
+        context = mock(JcrQueryContext.class);
+        when(context.getExecutionContext()).thenReturn(executionContext);
+        when(context.getWorkspaceName()).thenReturn(WORKSPACE_NAME);
+        columns = mock(Columns.class);
+        when(columns.getColumnNames()).thenReturn(Arrays.asList("title", "missing"));
+        when(columns.getSelectorNames()).thenReturn(Collections.singletonList("t"));
+        when(columns.getSelectorIndex("t")).thenReturn(0);
+        when(columns.getPropertyNameForColumnName("title")).thenReturn("title");
+        when(columns.getPropertyNameForColumnName("missing")).thenReturn("missing");
+        results = mock(QueryResults.class);
+        when(results.getColumns()).thenReturn(columns);
+        cache = mock(NodeCache.class);
+    }
+
+    @Test
+    public void shouldReturnCoveredValuesWithoutLoadingNodes() throws Exception {
+        Name title = executionContext.getValueFactories().getNameFactory().create("title");
+        Name missing = executionContext.getValueFactories().getNameFactory().create("missing");
+        Map<Name, Property> covered = new HashMap<>();
+        covered.put(title, executionContext.getPropertyFactory().create(title, "beta"));
+        // The index covers a property that the node does not have ...
+        covered.put(missing, null);
+        NodeKey key = new NodeKey(NodeKey.keyForSourceName("source"), NodeKey.keyForWorkspaceName(WORKSPACE_NAME), "node1");
+        CachedNode node = new CoveredCachedNode(key, covered, cache);
+        when(results.getRows()).thenReturn(NodeSequence.withNodes(Collections.singletonList(node), 1.0f, WORKSPACE_NAME));
+        Value value = mock(Value.class);
+        when(context.createValue(PropertyType.STRING, "beta")).thenReturn(value);
+
+        JcrQueryResult result = new JcrQueryResult(context, "query", results, false, 0);
+        RowIterator rows = result.getRows();
+        Row row = rows.nextRow();
+        assertThat(row.getValue("title"), is(sameInstance(value)));
+        assertThat(row.getValue("missing"), is(nullValue()));
+        assertThat(rows.hasNext(), is(false));
+
+        // Neither the session nor the workspace cache were asked for the node ...
+        verify(context, never()).getNode(any(CachedNode.class));
+        verify(cache, never()).getNode(any(NodeKey.class));
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.query;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryResult;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.jcr.SingleUseAbstractTest;
+
+public class ParallelScanQueryTest extends SingleUseAbstractTest {
+
+    @Override
+    @Before
+    public void beforeEach() throws Exception {
+        super.beforeEach();
+        startRepositoryWithConfiguration(resourceStream("config/repo-config-parallel-scan.json"));
+    }
+
+    @Override
+    protected boolean startRepositoryAutomatically() {
+        return false;
+    }
+
+    @Test
+    public void shouldFindAllMatchingNodesWhenScanningInParallel() throws Exception {
+        addNodes(10, 20);
+        assertQueryResultCount("SELECT * FROM [nt:unstructured] WHERE [even] = true", 100);
+        assertQueryResultCount("SELECT * FROM [nt:unstructured] WHERE [even] = true AND [index] < 10", 50);
+        assertQueryResultCount("SELECT * FROM [nt:unstructured] WHERE [index] IS NOT NULL", 200);
+        assertQueryResultCount("SELECT * FROM [nt:unstructured] WHERE [index] = 99", 0);
+    }
+
+    @Test
+    public void shouldFindNodesInUpperLevelsWhenScanningInParallel() throws Exception {
+        addNodes(2, 1);
+        assertQueryResultCount("SELECT * FROM [nt:unstructured] WHERE [parent] = true", 2);
+        assertQueryResultCount("SELECT * FROM [nt:unstructured] WHERE [index] = 0", 2);
+    }
+
+    protected void addNodes( int parents,
+                             int childrenPerParent ) throws RepositoryException {
+        for (int i = 0; i != parents; ++i) {
+            Node parent = session.getRootNode().addNode("parent" + i, "nt:unstructured");
+            parent.setProperty("parent", true);
+            for (int j = 0; j != childrenPerParent; ++j) {
+                Node child = parent.addNode("child" + j, "nt:unstructured");
+                child.setProperty("index", j);
+                child.setProperty("even", j % 2 == 0);
+            }
+        }
+        session.save();
+    }
+
+    protected void assertQueryResultCount( String sql,
+                                           long expected ) throws RepositoryException {
+        Query query = session.getWorkspace().getQueryManager().createQuery(sql, Query.JCR_SQL2);
+        QueryResult result = query.execute();
+        assertThat(result.getNodes().getSize(), is(expected));
+    }
+}
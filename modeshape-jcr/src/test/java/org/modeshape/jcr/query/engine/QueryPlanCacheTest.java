@@ -0,0 +1,166 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.query.engine;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.jcr.query.qom.Constraint;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.NodeTypes;
+import org.modeshape.jcr.RepositoryIndexes;
+import org.modeshape.jcr.cache.RepositoryCache;
+import org.modeshape.jcr.query.BufferManager;
+import org.modeshape.jcr.query.QueryBuilder;
+import org.modeshape.jcr.query.QueryContext;
+import org.modeshape.jcr.query.model.QueryCommand;
+import org.modeshape.jcr.query.plan.PlanNode;
+import org.modeshape.jcr.query.plan.PlanNode.Property;
+import org.modeshape.jcr.query.plan.PlanNode.Type;
+import org.modeshape.jcr.query.validate.Schemata;
+
+public class QueryPlanCacheTest {
+
+    private ExecutionContext executionContext;
+    private QueryPlanCache cache;
+    private QueryContext context;
+    private QueryCommand query;
+    private PlanNode plan;
+
+    @Before
+    public void beforeEach() {
+        executionContext = new ExecutionContext();
+        cache = new QueryPlanCache(2);
+        context = newContext(mock(NodeTypes.class), mock(RepositoryIndexes.class));
+        query = new QueryBuilder(executionContext.getValueFactories().getTypeSystem()).selectStar().fromAllNodes().query();
+        plan = new PlanNode(Type.PROJECT);
+        new PlanNode(Type.SOURCE, plan);
+    }
+
+    protected QueryContext newContext( NodeTypes nodeTypes,
+                                       RepositoryIndexes indexes ) {
+        return new QueryContext(executionContext, mock(RepositoryCache.class), Collections.singleton("workspace"),
+                                mock(Schemata.class), indexes, nodeTypes, mock(BufferManager.class));
+    }
+
+    protected QueryPlanCache.VariableReads noVariablesRead( QueryContext context ) {
+        return new QueryPlanCache.VariableReads(context.getVariables());
+    }
+
+    @Test
+    public void shouldReturnCopyOfCachedPlanForSameQuery() {
+        QueryPlanCache.Key key = cache.keyFor(context, query);
+        assertThat(cache.get(key, context), is(nullValue()));
+        cache.put(key, plan, context.getHints(), noVariablesRead(context));
+
+        PlanNode cached = cache.get(cache.keyFor(context, query), context);
+        assertThat(cached, is(notNullValue()));
+        assertThat(cached, is(not(sameInstance(plan))));
+        assertThat(cached.isSameAs(plan), is(true));
+        assertThat(cache.getHitCount(), is(1L));
+        assertThat(cache.getMissCount(), is(1L));
+    }
+
+    @Test
+    public void shouldCopyHintsFromPlanningWhenReturningCachedPlan() {
+        QueryPlanCache.Key key = cache.keyFor(context, query);
+        context.getHints().hasCriteria = true;
+        cache.put(key, plan, context.getHints(), noVariablesRead(context));
+
+        QueryContext other = newContext(context.getNodeTypes(), context.getIndexDefinitions()).with(context.getSchemata());
+        assertThat(other.getHints().hasCriteria, is(false));
+        assertThat(cache.get(cache.keyFor(other, query), other), is(notNullValue()));
+        assertThat(other.getHints().hasCriteria, is(true));
+    }
+
+    @Test
+    public void shouldNotReturnCachedPlanWhenVariableReadDuringPlanningHasDifferentValue() {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("path", "/a");
+        QueryContext context1 = context.with(variables);
+        QueryPlanCache.Key key = cache.keyFor(context1, query);
+        QueryPlanCache.VariableReads reads = noVariablesRead(context1);
+        reads.get("path");
+        cache.put(key, plan, context1.getHints(), reads);
+        assertThat(cache.get(cache.keyFor(context1, query), context1), is(notNullValue()));
+
+        variables.put("path", "/b");
+        QueryContext context2 = context.with(variables);
+        assertThat(cache.get(cache.keyFor(context2, query), context2), is(nullValue()));
+    }
+
+    @Test
+    public void shouldNotReturnCachedPlanWhenNodeTypesOrIndexesChange() {
+        cache.put(cache.keyFor(context, query), plan, context.getHints(), noVariablesRead(context));
+        assertThat(cache.size(), is(1));
+
+        QueryContext newTypes = newContext(mock(NodeTypes.class), context.getIndexDefinitions()).with(context.getSchemata());
+        assertThat(cache.get(cache.keyFor(newTypes, query), newTypes), is(nullValue()));
+        assertThat(cache.size(), is(0));
+
+        cache.put(cache.keyFor(newTypes, query), plan, newTypes.getHints(), noVariablesRead(newTypes));
+        QueryContext newIndexes = newContext(newTypes.getNodeTypes(), mock(RepositoryIndexes.class)).with(newTypes.getSchemata());
+        assertThat(cache.get(cache.keyFor(newIndexes, query), newIndexes), is(nullValue()));
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    public void shouldNotReturnCachedPlanWhenIndexStatisticsChange() {
+        final IndexPlan index = new IndexPlan("titles", "local", Collections.<Constraint>emptyList(), 10, 100L,
+                                              Collections.<String, Object>emptyMap());
+        PlanNode source = plan.getFirstChild();
+        PlanNode indexNode = new PlanNode(Type.INDEX, source);
+        indexNode.setProperty(Property.INDEX_SPECIFICATION, index);
+        final AtomicLong version = new AtomicLong(1L);
+        QueryPlanCache.IndexStatisticsVersions statistics = new QueryPlanCache.IndexStatisticsVersions() {
+            @Override
+            public long versionOf( IndexPlan plan ) {
+                assertThat(plan, is(index));
+                return version.get();
+            }
+        };
+        cache.put(cache.keyFor(context, query), plan, context.getHints(), noVariablesRead(context), statistics);
+        assertThat(cache.get(cache.keyFor(context, query), context, statistics), is(notNullValue()));
+
+        version.incrementAndGet();
+        assertThat(cache.get(cache.keyFor(context, query), context, statistics), is(nullValue()));
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedPlans() {
+        QueryBuilder builder = new QueryBuilder(executionContext.getValueFactories().getTypeSystem());
+        QueryCommand query2 = builder.select("col1").fromAllNodes().query();
+        QueryCommand query3 = builder.select("col2").fromAllNodes().query();
+        cache.put(cache.keyFor(context, query), plan, context.getHints(), noVariablesRead(context));
+        cache.put(cache.keyFor(context, query2), plan, context.getHints(), noVariablesRead(context));
+        assertThat(cache.get(cache.keyFor(context, query), context), is(notNullValue()));
+        cache.put(cache.keyFor(context, query3), plan, context.getHints(), noVariablesRead(context));
+        assertThat(cache.size(), is(2));
+        assertThat(cache.get(cache.keyFor(context, query), context), is(notNullValue()));
+        assertThat(cache.get(cache.keyFor(context, query2), context), is(nullValue()));
+    }
+}
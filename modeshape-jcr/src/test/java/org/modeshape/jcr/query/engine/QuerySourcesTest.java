@@ -0,0 +1,103 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.query.engine;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.jcr.cache.RepositoryCache;
+import org.modeshape.jcr.cache.document.WorkspaceCache;
+import org.modeshape.jcr.query.AbstractNodeSequenceTest;
+import org.modeshape.jcr.query.NodeSequence;
+import org.modeshape.jcr.query.NodeSequence.Batch;
+import org.modeshape.jcr.query.NodeSequence.RowFilter;
+
+public class QuerySourcesTest extends AbstractNodeSequenceTest {
+
+    private ForkJoinPool pool;
+    private QuerySources sources;
+
+    @Override
+    @Before
+    public void beforeEach() {
+        super.beforeEach();
+        pool = new ForkJoinPool(2);
+        RepositoryCache repo = mock(RepositoryCache.class);
+        when(repo.getWorkspaceCache(workspaceName())).thenReturn((WorkspaceCache)cache);
+        sources = new QuerySources(repo, workspaceName(), true);
+    }
+
+    @Override
+    @After
+    public void afterEach() {
+        pool.shutdownNow();
+        super.afterEach();
+    }
+
+    @Test
+    public void shouldReturnSameNodesWhenScanningInParallel() {
+        long expected = countRows(sources.allNodes(1.0f, -1));
+        assertTrue(expected > 0);
+        assertThat(countRows(sources.allNodes(1.0f, pool, null)), is(expected));
+    }
+
+    @Test
+    public void shouldReturnNoNodesWhenFilterRejectsAllRows() {
+        assertThat(countRows(sources.allNodes(1.0f, pool, filters(new AtomicInteger(), false))), is(0L));
+    }
+
+    @Test
+    public void shouldStopScanningWhenClosed() throws Exception {
+        AtomicInteger evaluated = new AtomicInteger();
+        NodeSequence scan = sources.allNodes(1.0f, pool, filters(evaluated, true));
+        Batch first = scan.nextBatch();
+        assertThat(first, is(notNullValue()));
+        scan.close();
+        assertThat(scan.nextBatch(), is(nullValue()));
+
+        // Once the running tasks see the cancellation, nothing more is evaluated ...
+        Thread.sleep(100L);
+        int evaluatedAfterClose = evaluated.get();
+        Thread.sleep(100L);
+        assertThat(evaluated.get(), is(evaluatedAfterClose));
+        assertTrue(evaluatedAfterClose <= countRows(sources.allNodes(1.0f, -1)));
+    }
+
+    protected QuerySources.RowFilterFactory filters( final AtomicInteger evaluated,
+                                                     final boolean result ) {
+        return new QuerySources.RowFilterFactory() {
+            @Override
+            public RowFilter createFilter() {
+                return new RowFilter() {
+                    @Override
+                    public boolean isCurrentRowValid( Batch batch ) {
+                        evaluated.incrementAndGet();
+                        return result;
+                    }
+                };
+            }
+        };
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.query.engine.process;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.cache.CachedNode;
+import org.modeshape.jcr.query.AbstractNodeSequenceTest;
+import org.modeshape.jcr.query.BufferManager;
+import org.modeshape.jcr.query.NodeSequence;
+import org.modeshape.jcr.query.NodeSequence.Batch;
+import org.modeshape.jcr.query.NodeSequence.RowAccessor;
+import org.modeshape.jcr.query.RowExtractors;
+import org.modeshape.jcr.query.RowExtractors.ExtractFromRow;
+import org.modeshape.jcr.query.model.JoinType;
+import org.modeshape.jcr.query.model.NullOrder;
+import org.modeshape.jcr.query.model.TypeSystem;
+import org.modeshape.jcr.query.model.TypeSystem.TypeFactory;
+import org.modeshape.jcr.value.ValueTypeSystem;
+
+public class MergeJoinSequenceTest extends AbstractNodeSequenceTest {
+
+    private ExecutionContext context;
+    private BufferManager bufferMgr;
+    private TypeSystem types;
+
+    @Override
+    @Before
+    public void beforeEach() {
+        super.beforeEach();
+        this.context = new ExecutionContext();
+        this.bufferMgr = new BufferManager(context);
+        this.types = new ValueTypeSystem(context.getValueFactories());
+    }
+
+    @Test
+    public void shouldInnerJoinParentToChildLikeNestedLoopJoin() {
+        assertSameRowsAsNestedLoopJoin(JoinType.INNER);
+    }
+
+    @Test
+    public void shouldLeftOuterJoinParentToChildLikeNestedLoopJoin() {
+        assertSameRowsAsNestedLoopJoin(JoinType.LEFT_OUTER);
+    }
+
+    @Test
+    public void shouldJoinRowOnlyOnceForRepeatedValuesOfMultiValuedProperty() {
+        final ExtractFromRow keyExtractor = RowExtractors.extractNodeKey(0, cache, types);
+        // Each node on the left has the same value twice ...
+        ExtractFromRow repeatedExtractor = new ExtractFromRow() {
+            @Override
+            public TypeFactory<?> getType() {
+                return keyExtractor.getType();
+            }
+
+            @Override
+            public Object getValueInRow( RowAccessor row ) {
+                Object key = keyExtractor.getValueInRow(row);
+                return new Object[] {key, null, key};
+            }
+        };
+        @SuppressWarnings( "unchecked" )
+        Comparator<Object> comparator = (Comparator<Object>)keyExtractor.getType().getComparator();
+        NodeSequence left = sorted(allNodes(), repeatedExtractor);
+        NodeSequence right = sorted(allNodes(), keyExtractor);
+        List<String> actual = rowsOf(new MergeJoinSequence(workspaceName(), left, right, repeatedExtractor, keyExtractor,
+                                                           comparator, JoinType.INNER, cache, 3));
+        // Each node should be joined only with itself, and only once ...
+        List<String> expected = new ArrayList<>();
+        NodeSequence nodes = allNodes();
+        Batch batch = null;
+        while ((batch = nodes.nextBatch()) != null) {
+            while (batch.hasNext()) {
+                batch.nextRow();
+                String key = keyOf(batch.getNode());
+                expected.add(key + " -> " + key);
+            }
+        }
+        nodes.close();
+        Collections.sort(expected);
+        assertTrue(expected.size() > 1);
+        assertThat(actual, is(expected));
+    }
+
+    protected void assertSameRowsAsNestedLoopJoin( JoinType joinType ) {
+        ExtractFromRow leftExtractor = RowExtractors.extractNodeKey(0, cache, types);
+        ExtractFromRow rightExtractor = RowExtractors.extractParentNodeKey(0, cache, types);
+        // The engine uses the hash join for the nested-loop algorithm ...
+        List<String> expected = rowsOf(new HashJoinSequence(workspaceName(), allNodes(), allNodes(), leftExtractor,
+                                                            rightExtractor, joinType, bufferMgr, cache, null, false, true));
+        @SuppressWarnings( "unchecked" )
+        Comparator<Object> comparator = (Comparator<Object>)leftExtractor.getType().getComparator();
+        NodeSequence left = sorted(allNodes(), leftExtractor);
+        NodeSequence right = sorted(allNodes(), rightExtractor);
+        List<String> actual = rowsOf(new MergeJoinSequence(workspaceName(), left, right, leftExtractor, rightExtractor,
+                                                           comparator, joinType, cache, 3));
+        assertTrue(expected.size() > 1);
+        assertThat(actual, is(expected));
+    }
+
+    protected NodeSequence sorted( NodeSequence rows,
+                                   ExtractFromRow joinValue ) {
+        return new SortingSequence(workspaceName(), rows, RowExtractors.extractLowest(joinValue), bufferMgr, cache, false, true,
+                                   true, NullOrder.NULLS_LAST);
+    }
+
+    protected List<String> rowsOf( NodeSequence sequence ) {
+        List<String> rows = new ArrayList<>();
+        try {
+            Batch batch = null;
+            while ((batch = sequence.nextBatch()) != null) {
+                while (batch.hasNext()) {
+                    batch.nextRow();
+                    rows.add(keyOf(batch.getNode(0)) + " -> " + keyOf(batch.getNode(1)));
+                }
+            }
+        } finally {
+            sequence.close();
+        }
+        // The algorithms return the rows in different orders ...
+        Collections.sort(rows);
+        return rows;
+    }
+
+    private String keyOf( CachedNode node ) {
+        return node != null ? node.getKey().toString() : "null";
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.query.engine.process;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.query.AbstractNodeSequenceTest;
+import org.modeshape.jcr.query.BufferManager;
+import org.modeshape.jcr.query.NodeSequence;
+import org.modeshape.jcr.query.NodeSequence.Batch;
+import org.modeshape.jcr.query.RowExtractors;
+import org.modeshape.jcr.query.RowExtractors.ExtractFromRow;
+import org.modeshape.jcr.query.model.NullOrder;
+import org.modeshape.jcr.query.model.TypeSystem;
+import org.modeshape.jcr.value.ValueTypeSystem;
+
+public class TopNSortingSequenceTest extends AbstractNodeSequenceTest {
+
+    private ExecutionContext context;
+    private BufferManager bufferMgr;
+    private TypeSystem types;
+
+    @Override
+    @Before
+    public void beforeEach() {
+        super.beforeEach();
+        this.context = new ExecutionContext();
+        this.bufferMgr = new BufferManager(context);
+        this.types = new ValueTypeSystem(context.getValueFactories());
+    }
+
+    @After
+    @Override
+    public void afterEach() {
+        this.bufferMgr.close();
+    }
+
+    @Test
+    public void shouldReturnFirstRowsOfSortedSequence() {
+        ExtractFromRow extractor = RowExtractors.extractPath(0, cache, types);
+        assertSameAsSorted(extractor, 5, NullOrder.NULLS_LAST);
+    }
+
+    @Test
+    public void shouldReturnAllRowsOfSortedSequenceWhenMaximumExceedsRowCount() {
+        ExtractFromRow extractor = RowExtractors.extractPath(0, cache, types);
+        int maxRows = (int)countRows(allNodes()) + 10;
+        TopNSortingSequence topN = new TopNSortingSequence(workspaceName(), allNodes(), extractor, cache, maxRows,
+                                                           NullOrder.NULLS_LAST);
+        assertThat(topN.getRowCount(), is(countRows(allNodes())));
+        assertSameAsSorted(extractor, maxRows, NullOrder.NULLS_LAST);
+    }
+
+    @Test
+    public void shouldReturnFirstRowsOfSortedSequenceWithNullSortValuesLast() {
+        ExtractFromRow extractor = RowExtractors.extractPropertyValue(name("propC"), 0, cache, types.getStringFactory());
+        assertSameAsSorted(extractor, 3, NullOrder.NULLS_LAST);
+    }
+
+    @Test
+    public void shouldReturnFirstRowsOfSortedSequenceWithNullSortValuesFirst() {
+        ExtractFromRow extractor = RowExtractors.extractPropertyValue(name("propC"), 0, cache, types.getStringFactory());
+        assertSameAsSorted(extractor, 3, NullOrder.NULLS_FIRST);
+    }
+
+    protected void assertSameAsSorted( ExtractFromRow extractor,
+                                       int maxRows,
+                                       NullOrder nullOrder ) {
+        NodeSequence sorted = new SortingSequence(workspaceName(), allNodes(), extractor, bufferMgr, cache, false, true, true,
+                                                  nullOrder);
+        List<Object> expected = valuesIn(sorted, extractor, maxRows);
+        NodeSequence topN = new TopNSortingSequence(workspaceName(), allNodes(), extractor, cache, maxRows, nullOrder);
+        List<Object> actual = valuesIn(topN, extractor, Integer.MAX_VALUE);
+        assertThat(actual, is(expected));
+    }
+
+    protected List<Object> valuesIn( NodeSequence sequence,
+                                     ExtractFromRow extractor,
+                                     int maxRows ) {
+        List<Object> values = new ArrayList<Object>();
+        try {
+            Batch batch = null;
+            while ((batch = sequence.nextBatch()) != null) {
+                while (batch.hasNext() && values.size() < maxRows) {
+                    batch.nextRow();
+                    Object value = extractor.getValueInRow(batch);
+                    values.add(value);
+                    print("Found " + value);
+                }
+            }
+        } finally {
+            sequence.close();
+        }
+        return values;
+    }
+}
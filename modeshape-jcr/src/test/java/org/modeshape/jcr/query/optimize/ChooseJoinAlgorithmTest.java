@@ -34,6 +34,7 @@ import org.modeshape.jcr.query.model.ChildNodeJoinCondition;
 import org.modeshape.jcr.query.model.DescendantNodeJoinCondition;
 import org.modeshape.jcr.query.model.JoinCondition;
 import org.modeshape.jcr.query.model.JoinType;
+import org.modeshape.jcr.query.model.SameNodeJoinCondition;
 import org.modeshape.jcr.query.plan.JoinAlgorithm;
 import org.modeshape.jcr.query.plan.PlanNode;
 import org.modeshape.jcr.query.plan.PlanNode.Property;
@@ -47,6 +48,7 @@ public class ChooseJoinAlgorithmTest extends AbstractQueryTest {
 
     private ChooseJoinAlgorithm bestRule;
     private ChooseJoinAlgorithm nestedRule;
+    private ChooseJoinAlgorithm sortedRule;
     private QueryContext context;
 
     @Before
@@ -56,6 +58,7 @@ public class ChooseJoinAlgorithmTest extends AbstractQueryTest {
                                    mock(BufferManager.class));
         bestRule = ChooseJoinAlgorithm.USE_BEST_JOIN_ALGORITHM;
         nestedRule = ChooseJoinAlgorithm.USE_ONLY_NESTED_JOIN_ALGORITHM;
+        sortedRule = ChooseJoinAlgorithm.USE_MERGE_JOIN_ALGORITHM_WHEN_SORTED;
     }
 
     /**
@@ -153,4 +156,74 @@ public class ChooseJoinAlgorithmTest extends AbstractQueryTest {
 
         assertChildren(join, leftDup, rightDup);
     }
+
+    @Test
+    public void shouldHaveSortedRuleSetJoinAlgorithmToMergeIfBothSidesAreSortedByJoinCondition() {
+        PlanNode join = new PlanNode(Type.JOIN, selector("Left"), selector("Right"));
+        PlanNode leftSort = new PlanNode(Type.SORT, join, selector("Left"));
+        leftSort.setProperty(Property.SORT_ORDER_BY, Collections.singletonList(selector("Left")));
+        PlanNode leftSource = new PlanNode(Type.SOURCE, leftSort, selector("Left"));
+        PlanNode rightDup = new PlanNode(Type.DUP_REMOVE, join, selector("Right"));
+        PlanNode rightSort = new PlanNode(Type.SORT, rightDup, selector("Right"));
+        rightSort.setProperty(Property.SORT_ORDER_BY, Collections.singletonList(selector("Right")));
+        PlanNode rightSource = new PlanNode(Type.SOURCE, rightSort, selector("Right"));
+        // Set the join type and condition ...
+        JoinCondition joinCondition = new SameNodeJoinCondition(selector("Left"), selector("Right"));
+        join.setProperty(Property.JOIN_CONDITION, joinCondition);
+        join.setProperty(Property.JOIN_TYPE, JoinType.INNER);
+
+        // Execute the rule ...
+        PlanNode result = sortedRule.execute(context, join, new LinkedList<OptimizerRule>());
+        assertThat(result, is(sameInstance(join)));
+        assertThat(join.getProperty(Property.JOIN_ALGORITHM, JoinAlgorithm.class), is(JoinAlgorithm.MERGE));
+
+        // The plan should not have been changed ...
+        assertChildren(join, leftSort, rightDup);
+        assertChildren(leftSort, leftSource);
+        assertChildren(rightDup, rightSort);
+        assertChildren(rightSort, rightSource);
+    }
+
+    @Test
+    public void shouldHaveSortedRuleSetJoinAlgorithmToNestedLoopForChildNodeJoinEvenIfBothSidesAreSortedByNodeKeys() {
+        PlanNode join = new PlanNode(Type.JOIN, selector("Parent"), selector("Child"));
+        PlanNode parentSort = new PlanNode(Type.SORT, join, selector("Parent"));
+        parentSort.setProperty(Property.SORT_ORDER_BY, Collections.singletonList(selector("Parent")));
+        PlanNode parentSource = new PlanNode(Type.SOURCE, parentSort, selector("Parent"));
+        PlanNode childSort = new PlanNode(Type.SORT, join, selector("Child"));
+        childSort.setProperty(Property.SORT_ORDER_BY, Collections.singletonList(selector("Child")));
+        PlanNode childSource = new PlanNode(Type.SOURCE, childSort, selector("Child"));
+        // Set the join type and condition ...
+        JoinCondition joinCondition = new ChildNodeJoinCondition(selector("Parent"), selector("Child"));
+        join.setProperty(Property.JOIN_CONDITION, joinCondition);
+        join.setProperty(Property.JOIN_TYPE, JoinType.INNER);
+
+        // Execute the rule; the children are ordered by their own keys, but the join compares the parent keys ...
+        PlanNode result = sortedRule.execute(context, join, new LinkedList<OptimizerRule>());
+        assertThat(result, is(sameInstance(join)));
+        assertThat(join.getProperty(Property.JOIN_ALGORITHM, JoinAlgorithm.class), is(JoinAlgorithm.NESTED_LOOP));
+        assertChildren(join, parentSort, childSort);
+        assertChildren(parentSort, parentSource);
+        assertChildren(childSort, childSource);
+    }
+
+    @Test
+    public void shouldHaveSortedRuleSetJoinAlgorithmToNestedLoopIfEitherSideIsNotSorted() {
+        PlanNode join = new PlanNode(Type.JOIN, selector("Parent"), selector("Child"));
+        PlanNode parentSort = new PlanNode(Type.SORT, join, selector("Parent"));
+        parentSort.setProperty(Property.SORT_ORDER_BY, Collections.singletonList(selector("Parent")));
+        PlanNode parentSource = new PlanNode(Type.SOURCE, parentSort, selector("Parent"));
+        PlanNode childSource = new PlanNode(Type.SOURCE, join, selector("Child"));
+        // Set the join type and condition ...
+        JoinCondition joinCondition = new ChildNodeJoinCondition(selector("Parent"), selector("Child"));
+        join.setProperty(Property.JOIN_CONDITION, joinCondition);
+        join.setProperty(Property.JOIN_TYPE, JoinType.INNER);
+
+        // Execute the rule ...
+        PlanNode result = sortedRule.execute(context, join, new LinkedList<OptimizerRule>());
+        assertThat(result, is(sameInstance(join)));
+        assertThat(join.getProperty(Property.JOIN_ALGORITHM, JoinAlgorithm.class), is(JoinAlgorithm.NESTED_LOOP));
+        assertChildren(join, parentSort, childSource);
+        assertChildren(parentSort, parentSource);
+    }
 }
@@ -120,6 +120,18 @@ public abstract class AbstractBinaryStoreTest {
         storeAndValidate(EMPTY_BINARY_KEY, EMPTY_BINARY);
     }
 
+    @Test
+    public void shouldReadStoredBinaryFromPosition() throws BinaryStoreException, IOException {
+        storeAndValidate(STORED_LARGE_KEY, STORED_LARGE_BINARY);
+        int position = STORED_LARGE_BINARY.length / 2 + 1;
+        InputStream inputStream = getBinaryStore().getInputStream(STORED_LARGE_KEY, position);
+        byte[] content = IoUtil.readBytes(inputStream);
+        assertArrayEquals(Arrays.copyOfRange(STORED_LARGE_BINARY, position, STORED_LARGE_BINARY.length), content);
+
+        inputStream = getBinaryStore().getInputStream(STORED_LARGE_KEY, STORED_LARGE_BINARY.length);
+        assertEquals(0, IoUtil.readBytes(inputStream).length);
+    }
+
     @Test
     public void shouldHaveKey() throws BinaryStoreException, IOException {
         storeAndValidate(STORED_MEDIUM_KEY, STORED_MEDIUM_BINARY);
@@ -0,0 +1,130 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.value.binary;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.common.util.FileUtil;
+import org.modeshape.common.util.IoUtil;
+import org.modeshape.jcr.value.BinaryValue;
+
+public class ChunkedFileSystemBinaryStoreTest extends AbstractBinaryStoreTest {
+
+    protected static final int MIN_BINARY_SIZE = 20;
+
+    protected static File directory;
+    protected static File chunks;
+    protected static ChunkedFileSystemBinaryStore store;
+
+    @Before
+    public void beforeEach() {
+        directory = new File("target/cfsbs/");
+        FileUtil.delete(directory);
+        directory.mkdirs();
+        chunks = new File(directory, ChunkedFileSystemBinaryStore.CHUNKS_DIRECTORY_NAME);
+        store = new ChunkedFileSystemBinaryStore(directory);
+        store.setMinimumBinarySizeInBytes(MIN_BINARY_SIZE);
+    }
+
+    @After
+    public void afterEach() {
+        FileUtil.delete(directory);
+    }
+
+    @Override
+    protected BinaryStore getBinaryStore() {
+        return store;
+    }
+
+    @Override
+    @Test( expected = BinaryStoreException.class )
+    public void shouldStoreZeroLengthBinary() throws BinaryStoreException, IOException {
+        // the file system binary store will not store a 0 byte size content
+        super.shouldStoreZeroLengthBinary();
+    }
+
+    @Test
+    public void shouldShareChunksBetweenSimilarValues() throws Exception {
+        byte[] original = new byte[1024 * 1024];
+        new Random(42L).nextBytes(original);
+        // Insert a single byte into the middle of the content ...
+        byte[] edited = new byte[original.length + 1];
+        System.arraycopy(original, 0, edited, 0, original.length / 2);
+        edited[original.length / 2] = 42;
+        System.arraycopy(original, original.length / 2, edited, original.length / 2 + 1, original.length / 2);
+
+        BinaryValue first = store.storeValue(new ByteArrayInputStream(original));
+        int chunksOfOriginal = countFiles(chunks);
+        BinaryValue second = store.storeValue(new ByteArrayInputStream(edited));
+        int chunksOfBoth = countFiles(chunks);
+        assertThat(first, is(instanceOf(StoredBinaryValue.class)));
+        assertThat(second, is(instanceOf(StoredBinaryValue.class)));
+
+        // Only the chunks around the inserted byte should have been added ...
+        assertTrue(chunksOfOriginal > 2);
+        assertTrue("Expected most chunks to be shared, but found " + chunksOfBoth + " chunks for both values",
+                   chunksOfBoth <= chunksOfOriginal + 3);
+
+        assertArrayEquals(original, IoUtil.readBytes(store.getInputStream(first.getKey())));
+        assertArrayEquals(edited, IoUtil.readBytes(store.getInputStream(second.getKey())));
+    }
+
+    @Test
+    public void shouldRemoveChunksOnlyWhenNoLongerReferenced() throws Exception {
+        BinaryValue large = store.storeValue(new ByteArrayInputStream(STORED_LARGE_BINARY));
+        BinaryValue medium = store.storeValue(new ByteArrayInputStream(STORED_MEDIUM_BINARY));
+        int chunkCount = countFiles(chunks);
+        assertTrue(chunkCount >= 2);
+
+        store.markAsUnused(Collections.singleton(large.getKey()));
+        Thread.sleep(1100L); // Sleep more than a second, since modified times may only be accurate to nearest second ...
+        store.removeValuesUnusedLongerThan(1, TimeUnit.SECONDS);
+
+        // The chunks of the unused value are gone, but those of the other value remain ...
+        assertTrue(countFiles(chunks) < chunkCount);
+        assertTrue(countFiles(chunks) > 0);
+        assertArrayEquals(STORED_MEDIUM_BINARY, IoUtil.readBytes(store.getInputStream(medium.getKey())));
+
+        store.markAsUnused(Collections.singleton(medium.getKey()));
+        Thread.sleep(1100L);
+        store.removeValuesUnusedLongerThan(1, TimeUnit.SECONDS);
+        assertThat(countFiles(chunks), is(0));
+    }
+
+    protected int countFiles( File fileOrDir ) {
+        int result = 0;
+        if (fileOrDir.isDirectory()) {
+            for (File child : fileOrDir.listFiles()) {
+                result += countFiles(child);
+            }
+        } else if (fileOrDir.isFile()) {
+            result++;
+        }
+        return result;
+    }
+}
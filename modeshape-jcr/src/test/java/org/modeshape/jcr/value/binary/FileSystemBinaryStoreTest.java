@@ -57,6 +57,7 @@ import org.modeshape.common.util.SecureHash;
 import org.modeshape.common.util.SecureHash.Algorithm;
 import org.modeshape.jcr.api.Binary;
 import org.modeshape.jcr.value.BinaryKey;
+import org.modeshape.jcr.value.BinaryValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -205,6 +206,20 @@ public class FileSystemBinaryStoreTest extends AbstractBinaryStoreTest {
         storeAndCheckResource("docs/postgresql-8.4.1-US.pdf", "3d4d11208cd130d92075e1111423667c76e61819", "17MB file", 17714435L);
     }
 
+    @Test
+    public void shouldStoreValuesWithoutLeavingTemporaryFiles() throws Exception {
+        // Small values are never written to disk ...
+        BinaryValue small = store.storeValue(new ByteArrayInputStream(new byte[MIN_BINARY_SIZE - 1]));
+        assertThat(small, is(instanceOf(InMemoryBinaryValue.class)));
+        assertThat(countStoredFiles(), is(0));
+
+        BinaryValue large = store.storeValue(new ByteArrayInputStream(STORED_LARGE_BINARY));
+        assertThat(large, is(instanceOf(StoredBinaryValue.class)));
+        assertThat(large.getKey(), is(STORED_LARGE_KEY));
+        assertThat(countStoredFiles(), is(1));
+        assertThat(countFiles(new File(directory, FileSystemBinaryStore.TEMP_DIRECTORY_NAME)), is(0));
+    }
+
     @Test
     public void shouldCreateFileLock() throws IOException {
         File tmpFile = File.createTempFile("foo", "bar");
@@ -36,6 +36,8 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.infinispan.Cache;
 import org.infinispan.manager.DefaultCacheManager;
 import org.junit.After;
@@ -95,6 +97,25 @@ public class ChunkStreamTest {
         assertEquals(AbstractBinaryStoreTest.STORED_LARGE_KEY, BinaryKey.keyFor(IoUtil.readBytes(chunkInputStream)));
     }
 
+    @Test
+    public void testStreamingLargeWithConcurrentChunkWrites() throws IOException {
+        ExecutorService chunkWriters = Executors.newFixedThreadPool(3);
+        try {
+            int smallChunkSize = 1000;
+            String key = AbstractBinaryStoreTest.STORED_LARGE_KEY.toString();
+            ChunkOutputStream chunkOutputStream = new ChunkOutputStream(blobCache, key, smallChunkSize, chunkWriters, 3);
+            IoUtil.write(new ByteArrayInputStream(AbstractBinaryStoreTest.STORED_LARGE_BINARY), chunkOutputStream, 4096);
+            int expectedChunks = (AbstractBinaryStoreTest.STORED_LARGE_BINARY.length + smallChunkSize - 1) / smallChunkSize;
+            assertEquals(expectedChunks, chunkOutputStream.chunksCount());
+
+            ChunkInputStream chunkInputStream = new ChunkInputStream(blobCache, key, smallChunkSize,
+                                                                     AbstractBinaryStoreTest.STORED_LARGE_BINARY.length);
+            assertArrayEquals(AbstractBinaryStoreTest.STORED_LARGE_BINARY, IoUtil.readBytes(chunkInputStream));
+        } finally {
+            chunkWriters.shutdown();
+        }
+    }
+
     @Test
     public void testStreamingSmall() throws IOException {
         ChunkOutputStream chunkOutputStream = new ChunkOutputStream(blobCache, AbstractBinaryStoreTest.IN_MEMORY_KEY.toString());
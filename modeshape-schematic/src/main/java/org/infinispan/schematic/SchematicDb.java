@@ -17,6 +17,7 @@ package org.infinispan.schematic;
 
 import java.util.Collection;
 import java.util.Map;
+import java.util.Set;
 import org.infinispan.Cache;
 import org.infinispan.lifecycle.Lifecycle;
 import org.infinispan.schematic.SchemaLibrary.Results;
@@ -98,6 +99,15 @@ public interface SchematicDb extends Lifecycle {
      */
     SchematicEntry get( String key );
 
+    /**
+     * Get the entries with the supplied keys. All of the entries are requested before waiting for any of them, so that when
+     * the entries must be loaded from a cache store or another process the lookups can proceed concurrently.
+     * 
+     * @param keys the keys or identifiers for the documents; may not be null
+     * @return the entries keyed by their key, excluding any keys for which there is no document; never null
+     */
+    Map<String, SchematicEntry> getAll( Collection<String> keys );
+
     /**
      * Determine whether the database contains an entry with the supplied key.
      * 
@@ -215,6 +225,35 @@ public interface SchematicDb extends Lifecycle {
      */
     SchematicEntry remove( String key );
 
+    /**
+     * Store the supplied documents at the given keys, replacing any existing entries. Unlike {@link #put(String, Document, Document)}
+     * this method does not return the existing entries, so they need not be read, and all of the documents are written in a
+     * single operation.
+     * 
+     * @param documents the documents that are to be stored, keyed by the key or identifier for each document; may not be null
+     */
+    void putAll( Map<String, Document> documents );
+
+    /**
+     * Store the supplied documents at the given keys, but only where there is no existing entry. All of the existing entries are
+     * looked up at once (see {@link #getAll(Collection)}) rather than one at a time, and the remaining documents are then written
+     * in a single operation. The keys must be {@link #lock(Collection) locked} by the current transaction, or another
+     * transaction may create an entry after it is looked up and before it is written.
+     * 
+     * @param documents the documents that are to be stored, keyed by the key or identifier for each document; may not be null
+     * @return the keys of the documents that were not stored because there already was an entry; never null but possibly empty
+     */
+    Set<String> putAllIfAbsent( Map<String, Document> documents );
+
+    /**
+     * Remove the existing documents at the given keys. Unlike {@link #remove(String)} this method does not return the removed
+     * entries, so they need not be read, and all of the documents are removed in a single batch (or as part of the current
+     * transaction, if there is one).
+     * 
+     * @param keys the keys or identifiers for the documents; may not be null
+     */
+    void removeAll( Collection<String> keys );
+
     /**
      * Lock all of the documents with the given keys. This must be called within the context of an existing transaction, and all
      * locks will be held until the completion of the transaction.
@@ -225,6 +264,17 @@ public interface SchematicDb extends Lifecycle {
      */
     boolean lock( Collection<String> keys );
 
+    /**
+     * Lock all of the documents with the given keys, but without waiting for any locks held by other transactions. This must be
+     * called within the context of an existing transaction, and all locks will be held until the completion of the transaction.
+     * 
+     * @param keys the set of keys identifying the documents that are to be locked
+     * @return true if the documents were locked (or if locking is not required), or false if at least one of the documents is
+     *         locked by another transaction
+     * @see #lock(Collection)
+     */
+    boolean tryLock( Collection<String> keys );
+
     /**
      * Return whether explicit {@link #lock(Collection) locking} is used when editing {@link SchematicEntry#editDocumentContent()
      * document content} or {@link SchematicEntry#editMetadata() metadata}. If this method returns true, then it may be useful to
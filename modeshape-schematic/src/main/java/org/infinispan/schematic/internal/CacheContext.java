@@ -37,7 +37,9 @@ final class CacheContext {
 
     private final AdvancedCache<String, SchematicEntry> cache;
     private final AdvancedCache<String, SchematicEntry> cacheForWriting;
+    private final AdvancedCache<String, SchematicEntry> cacheForBulkWriting;
     private final AdvancedCache<String, SchematicEntry> cacheForLocking;
+    private final AdvancedCache<String, SchematicEntry> cacheForTryLocking;
     private final TransactionManager txnMgr;
     private final TransactionTable transactionTable;
     private final boolean explicitLockingEnabled;
@@ -60,6 +62,10 @@ final class CacheContext {
 
         LOGGER.debug("Using cache with flags " + flags + " during SchematicEntry updates");
         this.cacheForWriting = this.cache.withFlags(flags.toArray(new Flag[flags.size()]));
+        // Bulk writes don't return the previous values, so the existing entries need not be read ...
+        EnumSet<Flag> bulkFlags = EnumSet.copyOf(flags);
+        bulkFlags.add(Flag.IGNORE_RETURN_VALUES);
+        this.cacheForBulkWriting = this.cache.withFlags(bulkFlags.toArray(new Flag[bulkFlags.size()]));
 
         this.txnMgr = cache.getTransactionManager();
         this.transactionTable = cache.getComponentRegistry().getComponent(TransactionTable.class);
@@ -67,10 +73,12 @@ final class CacheContext {
         this.explicitLockingEnabled = lockingMode == LockingMode.PESSIMISTIC;
         if (this.isExplicitLockingEnabled()) {
             this.cacheForLocking = this.cache.withFlags(Flag.FAIL_SILENTLY);
+            this.cacheForTryLocking = this.cache.withFlags(Flag.FAIL_SILENTLY, Flag.ZERO_LOCK_ACQUISITION_TIMEOUT);
             LOGGER.debug("Explicit locks will be used when modifying documents in '" + cache.getName()
                          + "' (Infinispan's locking mode is PESSIMISTIC).");
         } else {
             this.cacheForLocking = this.cache;
+            this.cacheForTryLocking = this.cache;
             LOGGER.debug("Explicit locks will NOT be used when modifying documents in '" + cache.getName()
                          + "' (Infinispan's locking mode is not PESSIMISTIC).");
         }
@@ -94,6 +102,16 @@ final class CacheContext {
         return cacheForWriting;
     }
 
+    /**
+     * Get the advanced cache that should be used for writing multiple entries whose previous values are not needed. This uses the
+     * same flags as the {@link #getCacheForWriting() writing cache}, but the existing entries need not be read.
+     * 
+     * @return the cache; never null
+     */
+    public AdvancedCache<String, SchematicEntry> getCacheForBulkWriting() {
+        return cacheForBulkWriting;
+    }
+
     /**
      * Get the advanced cache that should be used for locking.
      * 
@@ -103,6 +121,15 @@ final class CacheContext {
         return cacheForLocking;
     }
 
+    /**
+     * Get the advanced cache that should be used for locking without waiting for locks held by other transactions.
+     * 
+     * @return the locking cache; never null
+     */
+    public AdvancedCache<String, SchematicEntry> getCacheForTryLocking() {
+        return cacheForTryLocking;
+    }
+
     /**
      * Get the cache's transaction table.
      * 
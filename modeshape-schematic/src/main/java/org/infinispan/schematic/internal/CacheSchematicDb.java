@@ -16,13 +16,21 @@
 package org.infinispan.schematic.internal;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
+import javax.transaction.SystemException;
+import javax.transaction.TransactionManager;
+import org.infinispan.AdvancedCache;
 import org.infinispan.Cache;
+import org.infinispan.batch.BatchContainer;
+import org.infinispan.commons.CacheException;
 import org.infinispan.commons.util.concurrent.FutureListener;
 import org.infinispan.commons.util.concurrent.NotifyingFuture;
 import org.infinispan.distexec.mapreduce.Collector;
@@ -227,6 +235,30 @@ public class CacheSchematicDb implements SchematicDb {
         return proxy(key, store.get(key));
     }
 
+    @Override
+    public Map<String, SchematicEntry> getAll( Collection<String> keys ) {
+        Map<String, NotifyingFuture<SchematicEntry>> futures = new LinkedHashMap<String, NotifyingFuture<SchematicEntry>>();
+        for (String key : keys) {
+            if (!futures.containsKey(key)) futures.put(key, store.getAsync(key));
+        }
+        Map<String, SchematicEntry> entries = new HashMap<String, SchematicEntry>();
+        for (Map.Entry<String, NotifyingFuture<SchematicEntry>> future : futures.entrySet()) {
+            String key = future.getKey();
+            SchematicEntry entry = null;
+            try {
+                entry = future.getValue().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                entry = store.get(key);
+            } catch (ExecutionException e) {
+                // Try again without the asynchronous operation, so that the failure is reported to the caller ...
+                entry = store.get(key);
+            }
+            if (entry != null) entries.put(key, proxy(key, entry));
+        }
+        return entries;
+    }
+
     @Override
     public boolean containsKey( String key ) {
         return store.containsKey(key);
@@ -341,6 +373,63 @@ public class CacheSchematicDb implements SchematicDb {
         return existing == null ? null : removedResult(key, existing);
     }
 
+    @Override
+    public void putAll( Map<String, Document> documents ) {
+        if (documents.isEmpty()) return;
+        Map<String, SchematicEntry> entries = new HashMap<String, SchematicEntry>();
+        for (Map.Entry<String, Document> entry : documents.entrySet()) {
+            String key = entry.getKey();
+            Document metadata = Schematic.newDocument(FieldName.ID, key);
+            entries.put(key, new SchematicEntryLiteral(key, entry.getValue(), metadata, defaultContentTypeForDocument));
+        }
+        context.getCacheForBulkWriting().putAll(entries);
+    }
+
+    @Override
+    public Set<String> putAllIfAbsent( Map<String, Document> documents ) {
+        if (documents.isEmpty()) return Collections.emptySet();
+        // Look up all of the existing entries at once, and then write the other documents in one operation ...
+        Set<String> existingKeys = getAll(documents.keySet()).keySet();
+        if (existingKeys.isEmpty()) {
+            putAll(documents);
+        } else {
+            Map<String, Document> absent = new LinkedHashMap<String, Document>(documents);
+            absent.keySet().removeAll(existingKeys);
+            putAll(absent);
+        }
+        return existingKeys;
+    }
+
+    @Override
+    public void removeAll( Collection<String> keys ) {
+        if (keys.isEmpty()) return;
+        AdvancedCache<String, SchematicEntry> cache = context.getCacheForBulkWriting();
+        // Within a transaction all of the removals are committed together. Otherwise, use a batch if the cache supports them
+        // (the batch container is null if invocation batching is not enabled). The batch is started on and ended by this
+        // thread, so it never becomes part of a transaction started later, and it is always ended (and rolled back upon
+        // failure) in the 'finally' block. Without a batch, each removal is committed on its own ...
+        BatchContainer batchContainer = isInTransaction() ? null : cache.getBatchContainer();
+        boolean success = false;
+        if (batchContainer != null) batchContainer.startBatch(true);
+        try {
+            for (String key : keys) {
+                cache.remove(key);
+            }
+            success = true;
+        } finally {
+            if (batchContainer != null) batchContainer.endBatch(true, success);
+        }
+    }
+
+    private boolean isInTransaction() {
+        TransactionManager txnMgr = context.getTransactionManager();
+        try {
+            return txnMgr != null && txnMgr.getTransaction() != null;
+        } catch (SystemException e) {
+            throw new CacheException(e);
+        }
+    }
+
     @Override
     public boolean lock( Collection<String> keys ) {
         if (context.isExplicitLockingEnabled() && !keys.isEmpty()) {
@@ -349,6 +438,14 @@ public class CacheSchematicDb implements SchematicDb {
         return true;
     }
 
+    @Override
+    public boolean tryLock( Collection<String> keys ) {
+        if (context.isExplicitLockingEnabled() && !keys.isEmpty()) {
+            return context.getCacheForTryLocking().lock(keys);
+        }
+        return true;
+    }
+
     @Override
     public boolean isExplicitLockingEnabled() {
         return context.isExplicitLockingEnabled();
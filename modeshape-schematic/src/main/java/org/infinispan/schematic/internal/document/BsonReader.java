@@ -138,6 +138,11 @@ public class BsonReader {
         protected void readElement( byte type,
                                     MutableDocument bson ) throws IOException {
             String name = readCString();
+            Object value = readValue(type);
+            bson.put(name, value);
+        }
+
+        protected Object readValue( byte type ) throws IOException {
             Object value = null;
             switch (type) {
                 case Bson.Type.ARRAY:
@@ -218,7 +223,7 @@ public class BsonReader {
                     // ignore ...
                     break;
             }
-            bson.put(name, value);
+            return value;
         }
 
         protected String readCString() throws IOException {
@@ -35,7 +35,8 @@ public class DocumentExternalizer extends SchematicExternalizer<Document> {
         // Write the type byte ...
         output.writeByte(1);
 
-        // Write the BSON ...
+        // Write the BSON, reusing the original bytes if the document was read but never decoded ...
+        if (doc instanceof LazyBsonDocument && ((LazyBsonDocument)doc).writeBsonTo(output)) return;
         Bson.write(doc, output);
     }
 
@@ -45,8 +46,14 @@ public class DocumentExternalizer extends SchematicExternalizer<Document> {
         int type = input.readByte();
         assert type == 1;
 
-        // Read the BSON ...
-        return Bson.read(input);
+        // Read the BSON bytes, but decode the fields only as they are used ...
+        byte[] size = new byte[4];
+        input.readFully(size);
+        int length = (size[3] & 0xFF) << 24 | (size[2] & 0xFF) << 16 | (size[1] & 0xFF) << 8 | (size[0] & 0xFF);
+        byte[] bytes = new byte[length];
+        System.arraycopy(size, 0, bytes, 0, size.length);
+        input.readFully(bytes, size.length, length - size.length);
+        return new LazyBsonDocument(bytes, 0);
     }
 
     @Override
@@ -57,6 +64,6 @@ public class DocumentExternalizer extends SchematicExternalizer<Document> {
     @SuppressWarnings( "unchecked" )
     @Override
     public Set<Class<? extends Document>> getTypeClasses() {
-        return Util.<Class<? extends Document>>asSet(BasicDocument.class);
+        return Util.<Class<? extends Document>>asSet(BasicDocument.class, LazyBsonDocument.class);
     }
 }
@@ -0,0 +1,361 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infinispan.schematic.internal.document;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.infinispan.commons.marshall.SerializeWith;
+import org.infinispan.schematic.document.Bson;
+import org.infinispan.schematic.document.Document;
+import org.infinispan.schematic.internal.io.BsonDataInput;
+
+/**
+ * A {@link BasicDocument} that is read from its BSON representation only as its fields are used. The first time any field is
+ * used, the BSON bytes are scanned to find the offset of each field (without decoding the values), and then each field's value
+ * is decoded only when that field is first read. Nested documents are themselves lazily decoded, so reading one field of a nested
+ * document decodes only that field. The document is fully decoded (and the BSON bytes released) as soon as it is modified or its
+ * fields are iterated. Because nested documents and arrays can be modified directly, the original bytes are written only when
+ * none of the nested values that have been read may have changed.
+ * <p>
+ * Reading fields is thread-safe, which is necessary because documents are shared by all of the sessions that read the same
+ * node. Modifying the document is no more thread-safe than modifying a {@link BasicDocument}.
+ * </p>
+ */
+@SerializeWith( DocumentExternalizer.class )
+public class LazyBsonDocument extends BasicDocument {
+
+    private static final long serialVersionUID = 1L;
+    private static final Object NULL_VALUE = new Object();
+
+    private final int offset;
+    private transient volatile byte[] bytes;
+    private transient volatile Map<String, Integer> index;
+    private transient final ConcurrentMap<String, Object> decoded = new ConcurrentHashMap<String, Object>();
+
+    /**
+     * Create a document that is read from the BSON representation in the supplied bytes.
+     *
+     * @param bytes the bytes containing the BSON representation of the document; may not be null and may not be modified after
+     *        this call
+     * @param offset the offset within the bytes of the start of the document
+     */
+    public LazyBsonDocument( byte[] bytes,
+                             int offset ) {
+        this.bytes = bytes;
+        this.offset = offset;
+    }
+
+    /**
+     * Determine whether all of the fields in this document have been decoded.
+     *
+     * @return true if the document has been fully decoded, or false otherwise
+     */
+    public boolean isMaterialized() {
+        return bytes == null;
+    }
+
+    @Override
+    public Object get( Object key ) {
+        byte[] bytes = this.bytes;
+        if (bytes == null) return super.get(key);
+        Integer position = index(bytes).get(key);
+        if (position == null) return null;
+        String name = (String)key;
+        Object value = decoded.get(name);
+        if (value == null) {
+            value = decodeField(bytes, position.intValue());
+            Object existing = decoded.putIfAbsent(name, value != null ? value : NULL_VALUE);
+            if (existing != null) value = existing;
+        }
+        return value != NULL_VALUE ? value : null;
+    }
+
+    @Override
+    public Object get( String name ) {
+        return get((Object)name);
+    }
+
+    @Override
+    public boolean containsKey( Object key ) {
+        byte[] bytes = this.bytes;
+        if (bytes == null) return super.containsKey(key);
+        return index(bytes).containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        byte[] bytes = this.bytes;
+        if (bytes == null) return super.size();
+        return index(bytes).size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsValue( Object value ) {
+        materialize();
+        return super.containsValue(value);
+    }
+
+    @Override
+    public Object put( String key,
+                       Object value ) {
+        materialize();
+        return super.put(key, value);
+    }
+
+    @Override
+    public void putAll( Map<? extends String, ? extends Object> map ) {
+        materialize();
+        super.putAll(map);
+    }
+
+    @Override
+    public Object remove( Object key ) {
+        materialize();
+        return super.remove(key);
+    }
+
+    @Override
+    public Object remove( String name ) {
+        return remove((Object)name);
+    }
+
+    @Override
+    public void removeAll() {
+        clear();
+    }
+
+    @Override
+    public void clear() {
+        materialize();
+        super.clear();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        materialize();
+        return super.keySet();
+    }
+
+    @Override
+    public Collection<Object> values() {
+        materialize();
+        return super.values();
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        materialize();
+        return super.entrySet();
+    }
+
+    @Override
+    public int hashCode() {
+        materialize();
+        return super.hashCode();
+    }
+
+    @Override
+    public boolean equals( Object obj ) {
+        materialize();
+        return super.equals(obj);
+    }
+
+    /**
+     * Decode all of the remaining fields and release the BSON bytes.
+     */
+    protected final void materialize() {
+        if (bytes == null) return;
+        synchronized (this) {
+            byte[] bytes = this.bytes;
+            if (bytes == null) return;
+            for (Map.Entry<String, Integer> entry : index(bytes).entrySet()) {
+                Object value = decoded.get(entry.getKey());
+                if (value == null) value = decodeField(bytes, entry.getValue().intValue());
+                super.put(entry.getKey(), value != NULL_VALUE ? value : null);
+            }
+            // Writing the volatile field publishes the decoded fields to other threads ...
+            this.bytes = null;
+            this.index = null;
+            decoded.clear();
+        }
+    }
+
+    private Map<String, Integer> index( byte[] bytes ) {
+        Map<String, Integer> index = this.index;
+        if (index == null) {
+            synchronized (this) {
+                index = this.index;
+                if (index == null) {
+                    index = buildIndex(bytes);
+                    this.index = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Scan the BSON bytes of this document and find the position of each field, without decoding any of the values.
+     *
+     * @param bytes the BSON bytes
+     * @return the positions of the fields keyed by the field names, in the order they appear in the document; never null
+     */
+    private Map<String, Integer> buildIndex( byte[] bytes ) {
+        int end = offset + readInt(bytes, offset);
+        int position = offset + 4;
+        Map<String, Integer> index = new LinkedHashMap<String, Integer>();
+        while (position < end) {
+            byte type = bytes[position];
+            if (type == Bson.END_OF_DOCUMENT) break;
+            int nameStart = position + 1;
+            int nameEnd = endOfCString(bytes, nameStart);
+            index.put(new String(bytes, nameStart, nameEnd - nameStart, StandardCharsets.UTF_8), position);
+            position = nameEnd + 1;
+            position += sizeOfValue(bytes, type, position);
+        }
+        return index;
+    }
+
+    private static Object decodeField( byte[] bytes,
+                                       int position ) {
+        byte type = bytes[position];
+        int valuePosition = endOfCString(bytes, position + 1) + 1;
+        if (type == Bson.Type.DOCUMENT) {
+            return new LazyBsonDocument(bytes, valuePosition);
+        }
+        ByteArrayInputStream stream = new ByteArrayInputStream(bytes, valuePosition, bytes.length - valuePosition);
+        BsonReader.Reader reader = new BsonReader.Reader(new BsonDataInput(new DataInputStream(stream)),
+                                                         BsonReader.VALUE_FACTORY);
+        try {
+            return reader.readValue(type);
+        } catch (IOException e) {
+            // The bytes were already read completely, so this can only happen if the BSON is not valid ...
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Determine the number of bytes used by the value of the supplied type, matching what {@link BsonReader} reads.
+     *
+     * @param bytes the BSON bytes
+     * @param type the BSON type of the value
+     * @param position the position of the value
+     * @return the number of bytes used by the value
+     */
+    private static int sizeOfValue( byte[] bytes,
+                                    byte type,
+                                    int position ) {
+        switch (type) {
+            case Bson.Type.DOUBLE:
+            case Bson.Type.DATETIME:
+            case Bson.Type.INT64:
+            case Bson.Type.TIMESTAMP:
+                return 8;
+            case Bson.Type.INT32:
+                return 4;
+            case Bson.Type.BOOLEAN:
+                return 1;
+            case Bson.Type.OBJECTID:
+                return 12;
+            case Bson.Type.STRING:
+            case Bson.Type.JAVASCRIPT:
+            case Bson.Type.SYMBOL:
+                return 4 + readInt(bytes, position);
+            case Bson.Type.DOCUMENT:
+            case Bson.Type.ARRAY:
+                return readInt(bytes, position);
+            case Bson.Type.BINARY:
+                return 5 + readInt(bytes, position);
+            case Bson.Type.REGEX:
+                int patternEnd = endOfCString(bytes, position);
+                return endOfCString(bytes, patternEnd + 1) + 1 - position;
+            case Bson.Type.JAVASCRIPT_WITH_SCOPE:
+                int codeSize = 4 + readInt(bytes, position + 4);
+                return 4 + codeSize + readInt(bytes, position + 4 + codeSize);
+            default:
+                // These types have no value, or are ignored by the reader ...
+                return 0;
+        }
+    }
+
+    private static int endOfCString( byte[] bytes,
+                                     int position ) {
+        while (bytes[position] != Bson.END_OF_STRING) {
+            ++position;
+        }
+        return position;
+    }
+
+    private static int readInt( byte[] bytes,
+                                int position ) {
+        return (bytes[position + 3] & 0xFF) << 24 | (bytes[position + 2] & 0xFF) << 16 | (bytes[position + 1] & 0xFF) << 8
+               | (bytes[position] & 0xFF);
+    }
+
+    /**
+     * Write the original BSON representation of this document to the supplied output, if this document has not yet been
+     * {@link #isMaterialized() fully decoded}.
+     *
+     * @param output the output; may not be null
+     * @return true if the BSON representation was written, or false if the document has been decoded and must be written by a
+     *         {@link BsonWriter}
+     * @throws IOException if there is a problem writing to the output
+     */
+    public boolean writeBsonTo( DataOutput output ) throws IOException {
+        byte[] bytes = this.bytes;
+        if (bytes == null || !isUnchanged()) return false;
+        output.write(bytes, offset, readInt(bytes, offset));
+        return true;
+    }
+
+    /**
+     * Determine whether the original BSON bytes still represent this document. Nested documents and arrays that have been read
+     * can be modified without this document knowing, so the bytes are used only if every nested document that has been read is
+     * itself an unchanged {@link LazyBsonDocument}. Nested arrays are mutable, so once one has been read the bytes are never used.
+     *
+     * @return true if the BSON bytes can be written as is, or false if this document must be written by a {@link BsonWriter}
+     */
+    private boolean isUnchanged() {
+        for (Object value : decoded.values()) {
+            if (value instanceof LazyBsonDocument) {
+                LazyBsonDocument nested = (LazyBsonDocument)value;
+                if (nested.isMaterialized() || !nested.isUnchanged()) return false;
+            } else if (value instanceof Document) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected Object writeReplace() {
+        // Serialize only the decoded form ...
+        return new BasicDocument(this);
+    }
+}
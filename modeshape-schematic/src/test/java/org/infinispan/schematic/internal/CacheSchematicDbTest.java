@@ -17,7 +17,12 @@ package org.infinispan.schematic.internal;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import javax.transaction.TransactionManager;
 import org.infinispan.Cache;
 import org.infinispan.configuration.cache.ConfigurationBuilder;
 import org.infinispan.manager.EmbeddedCacheManager;
@@ -132,4 +137,78 @@ public class CacheSchematicDbTest {
         assert !resultsByKey.containsKey(key) : "There are validation problems: " + resultsByKey.get(key);
     }
 
+    @Test
+    public void shouldStoreAndRemoveMultipleDocuments() {
+        db.put("existing", new BasicDocument("k1", "old"), null);
+        Map<String, Document> docs = new LinkedHashMap<String, Document>();
+        docs.put("existing", new BasicDocument("k1", "new"));
+        docs.put("other", new BasicDocument("k1", "other"));
+        db.putAll(docs);
+        SchematicEntry entry = db.get("existing");
+        assert entry != null : "Should have found the entry";
+        assert "new".equals(entry.getContentAsDocument().getString("k1"));
+        assert "existing".equals(entry.getMetadata().getString(FieldName.ID));
+        entry = db.get("other");
+        assert entry != null : "Should have found the entry";
+        assert "other".equals(entry.getContentAsDocument().getString("k1"));
+
+        db.removeAll(Arrays.asList("existing", "other", "non-existant"));
+        assert db.get("existing") == null : "Should have removed the entry";
+        assert db.get("other") == null : "Should have removed the entry";
+    }
+
+    @Test
+    public void shouldRemoveMultipleDocumentsInBatchThatEndsOutsideOfTransaction() throws Exception {
+        db.put("first", new BasicDocument("k1", "v1"), null);
+        db.put("second", new BasicDocument("k1", "v2"), null);
+        TransactionManager tm = TestingUtil.getTransactionManager(cache);
+        assert tm.getTransaction() == null;
+        db.removeAll(Arrays.asList("first", "second"));
+        // The batch must not be left associated with this thread ...
+        assert tm.getTransaction() == null : "Should have ended the batch";
+        assert db.get("first") == null : "Should have removed the entry";
+        assert db.get("second") == null : "Should have removed the entry";
+        // Later transactions are not affected by the batch ...
+        tm.begin();
+        db.put("first", new BasicDocument("k1", "v3"), null);
+        tm.rollback();
+        assert db.get("first") == null : "Should not have stored the entry";
+    }
+
+    @Test
+    public void shouldStoreOnlyAbsentDocumentsAndReturnKeysOfExistingDocuments() {
+        db.put("existing", new BasicDocument("k1", "old"), null);
+        Map<String, Document> docs = new LinkedHashMap<String, Document>();
+        docs.put("existing", new BasicDocument("k1", "new"));
+        docs.put("other", new BasicDocument("k1", "other"));
+        Set<String> existingKeys = db.putAllIfAbsent(docs);
+        assert existingKeys.equals(Collections.singleton("existing")) : "Unexpected existing keys: " + existingKeys;
+        assert "old".equals(db.get("existing").getContentAsDocument().getString("k1")) : "Should not have replaced the entry";
+        assert "other".equals(db.get("other").getContentAsDocument().getString("k1")) : "Should have stored the entry";
+        assert db.putAllIfAbsent(new LinkedHashMap<String, Document>()).isEmpty();
+    }
+
+    @Test
+    public void shouldRemoveMultipleDocumentsInCurrentTransaction() throws Exception {
+        db.put("first", new BasicDocument("k1", "v1"), null);
+        db.put("second", new BasicDocument("k1", "v2"), null);
+        TransactionManager tm = TestingUtil.getTransactionManager(cache);
+        tm.begin();
+        db.removeAll(Arrays.asList("first", "second"));
+        tm.rollback();
+        assert db.get("first") != null : "Should not have removed the entry";
+        assert db.get("second") != null : "Should not have removed the entry";
+    }
+
+    @Test
+    public void shouldGetMultipleDocuments() {
+        db.put("first", new BasicDocument("k1", "v1"), null);
+        db.put("second", new BasicDocument("k1", "v2"), null);
+        Map<String, SchematicEntry> entries = db.getAll(Arrays.asList("first", "non-existant", "second", "first"));
+        assert entries.size() == 2 : "Should have found only the existing entries";
+        assert "v1".equals(entries.get("first").getContentAsDocument().getString("k1"));
+        assert "v2".equals(entries.get("second").getContentAsDocument().getString("k1"));
+        assert !entries.containsKey("non-existant");
+    }
+
 }
@@ -40,6 +40,55 @@ public class DocumentExternalizerTest extends AbstractExternalizerTest {
         assertRoundTripJsonDocument("json/empty.json");
     }
 
+    @Test
+    public void shouldDecodeFieldsOnlyWhenUsed() throws Exception {
+        Document doc = Json.read("{ \"name\" : \"node\", \"count\" : 3, \"values\" : [ 1, 2, 3 ], "
+                                 + "\"properties\" : { \"jcr\" : { \"primaryType\" : \"nt:unstructured\" } } }");
+        Document newDoc = (Document)unmarshall(marshall(doc));
+        assertThat(newDoc instanceof LazyBsonDocument, is(true));
+        LazyBsonDocument lazy = (LazyBsonDocument)newDoc;
+        assertThat(lazy.size(), is(4));
+        assertThat(lazy.containsField("values"), is(true));
+        assertThat(lazy.containsField("missing"), is(false));
+        assertThat(lazy.getString("name"), is("node"));
+        assertThat(lazy.getInteger("count"), is(3));
+        assertThat(lazy.getDocument("properties").getDocument("jcr").getString("primaryType"), is("nt:unstructured"));
+        assertThat(lazy.isMaterialized(), is(false));
+
+        // Writing an unchanged document should reuse the BSON bytes ...
+        assertThat((Document)unmarshall(marshall(lazy)), is(doc));
+        assertThat(lazy.isMaterialized(), is(false));
+
+        // Changing the document decodes all of the fields ...
+        lazy.put("count", 4);
+        assertThat(lazy.isMaterialized(), is(true));
+        assertThat(lazy.getInteger("count"), is(4));
+        assertThat(lazy.getArray("values").size(), is(3));
+        assertThat(lazy.size(), is(4));
+    }
+
+    @Test
+    public void shouldWriteChangesToNestedDocumentsAndArrays() throws Exception {
+        Document doc = Json.read("{ \"name\" : \"node\", \"values\" : [ 1, 2, 3 ], "
+                                 + "\"properties\" : { \"jcr\" : { \"primaryType\" : \"nt:unstructured\" } } }");
+        LazyBsonDocument lazy = (LazyBsonDocument)unmarshall(marshall(doc));
+        MutableDocument jcr = (MutableDocument)lazy.getDocument("properties").getDocument("jcr");
+        jcr.put("primaryType", "nt:folder");
+        assertThat(lazy.isMaterialized(), is(false));
+
+        // The change to the nested document must not be lost when the document is written ...
+        Document newDoc = (Document)unmarshall(marshall(lazy));
+        assertThat(newDoc.getDocument("properties").getDocument("jcr").getString("primaryType"), is("nt:folder"));
+        assertThat(newDoc.getString("name"), is("node"));
+
+        // and neither must changes to nested arrays ...
+        lazy = (LazyBsonDocument)unmarshall(marshall(doc));
+        ((MutableArray)lazy.getArray("values")).addValue(4);
+        newDoc = (Document)unmarshall(marshall(lazy));
+        assertThat(newDoc.getArray("values").size(), is(4));
+        assertThat(newDoc.getDocument("properties").getDocument("jcr").getString("primaryType"), is("nt:unstructured"));
+    }
+
     protected void assertRoundTripJsonDocument( String resourcePath ) throws Exception {
         InputStream stream = getClass().getClassLoader().getResourceAsStream(resourcePath);
         assertThat(stream, is(notNullValue()));
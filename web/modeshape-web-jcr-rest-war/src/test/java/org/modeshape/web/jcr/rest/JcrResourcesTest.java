@@ -559,6 +559,14 @@ public class JcrResourcesTest {
         return new Response(newDefaultRequest(HttpGet.class, null, null, url));
     }
 
+    protected Response doGet( String url,
+                              String headerName,
+                              String headerValue ) throws Exception {
+        HttpGet get = newDefaultRequest(HttpGet.class, null, null, url);
+        get.setHeader(headerName, headerValue);
+        return new Response(get);
+    }
+
     protected Response doPost( String payloadFile,
                                String url ) throws Exception {
         InputStream is = null;
@@ -824,17 +832,21 @@ public class JcrResourcesTest {
             }
         }
 
-        private Response hasCode( int responseCode ) throws Exception {
+        protected Response hasCode( int responseCode ) throws Exception {
             assertEquals(responseCode, response.getStatusLine().getStatusCode());
             return this;
         }
 
-        private Response hasHeader( String name,
-                                    String value ) {
+        protected Response hasHeader( String name,
+                                      String value ) {
             assertEquals(value, response.getFirstHeader(name).getValue());
             return this;
         }
 
+        protected String getHeader( String name ) {
+            return response.getFirstHeader(name).getValue();
+        }
+
         protected String getContentTypeHeader() {
             return response.getFirstHeader("Content-Type").getValue();
         }
@@ -853,6 +865,14 @@ public class JcrResourcesTest {
             return hasCode(HttpURLConnection.HTTP_OK);
         }
 
+        protected Response isPartialContent() throws Exception {
+            return hasCode(HttpURLConnection.HTTP_PARTIAL);
+        }
+
+        protected Response isNotModified() throws Exception {
+            return hasCode(HttpURLConnection.HTTP_NOT_MODIFIED);
+        }
+
         protected Response isCreated() throws Exception {
             return hasCode(HttpURLConnection.HTTP_CREATED);
         }
@@ -331,6 +331,41 @@ public class ModeShapeRestServiceTest extends JcrResourcesTest {
         assertArrayEquals(expectedBinaryContent, response.contentAsBytes());
     }
 
+    @Test
+    public void shouldRetrieveRangesOfBinaryPropertyValue() throws Exception {
+        doPost((String)null, itemsUrl(TEST_NODE)).isCreated();
+        doPost(fileStream("v2/post/binary.pdf"), binaryUrl(TEST_NODE, binaryPropertyName())).isCreated();
+        byte[] expectedBinaryContent = IoUtil.readBytes(fileStream("v2/post/binary.pdf"));
+        int size = expectedBinaryContent.length;
+
+        Response response = doGet(binaryUrl(TEST_NODE, binaryPropertyName()), "Range", "bytes=10-19").isPartialContent()
+                                                                                                    .hasHeader("Content-Range",
+                                                                                                               "bytes 10-19/" + size);
+        assertArrayEquals(Arrays.copyOfRange(expectedBinaryContent, 10, 20), response.contentAsBytes());
+
+        response = doGet(binaryUrl(TEST_NODE, binaryPropertyName()), "Range", "bytes=-5").isPartialContent();
+        assertArrayEquals(Arrays.copyOfRange(expectedBinaryContent, size - 5, size), response.contentAsBytes());
+
+        response = doGet(binaryUrl(TEST_NODE, binaryPropertyName()), "Range", "bytes=0-1,5-6").isPartialContent();
+        assertTrue(response.getContentTypeHeader().startsWith("multipart/byteranges"));
+        assertTrue(response.contentAsString().contains("Content-Range: bytes 5-6/" + size));
+
+        doGet(binaryUrl(TEST_NODE, binaryPropertyName()), "Range", "bytes=" + size + "-").hasCode(416)
+                                                                                          .hasHeader("Content-Range",
+                                                                                                     "bytes */" + size);
+    }
+
+    @Test
+    public void shouldNotRetrieveUnmodifiedBinaryPropertyValue() throws Exception {
+        doPost(nodeWithBinaryProperty(), itemsUrl(TEST_NODE)).isCreated();
+        Response response = doGet(binaryUrl(TEST_NODE, binaryPropertyName())).isOk();
+        String eTag = response.getHeader("ETag");
+        assertThat(eTag, is(notNullValue()));
+
+        doGet(binaryUrl(TEST_NODE, binaryPropertyName()), "If-None-Match", eTag).isNotModified();
+        doGet(binaryUrl(TEST_NODE, binaryPropertyName()), "If-None-Match", "\"other\"").isOk();
+    }
+
     @Test
     public void shouldUpdateBinaryPropertyViaPost() throws Exception {
         doPost(nodeWithBinaryProperty(), itemsUrl(TEST_NODE)).isCreated();
@@ -171,7 +171,9 @@ public final class ModeShapeRestService {
 
     /**
      * Retrieves the binary content of the binary property at the given path, allowing 2 extra (optional) parameters: the
-     * mime-type and the content-disposition of the binary value.
+     * mime-type and the content-disposition of the binary value. The response has the SHA-1 hash of the binary as its entity
+     * tag, and the "If-None-Match", "Range" and "If-Range" request headers can be used to avoid downloading content that the client
+     * already has.
      * 
      * @param request a non-null {@link HttpServletRequest} request
      * @param repositoryName a non-null {@link String} representing the name of a repository.
@@ -180,8 +182,8 @@ public final class ModeShapeRestService {
      * @param mimeType an optional {@link String} representing the "already-known" mime-type of the binary. Can be {@code null}
      * @param contentDisposition an optional {@link String} representing the client-preferred content disposition of the respose.
      *        Can be {@code null}
-     * @return the binary stream of the requested binary property or NOT_FOUND if either the property isn't found or it isn't a
-     *         binary
+     * @return the binary stream (or the requested ranges of it) of the requested binary property, NOT_MODIFIED if the client's
+     *         entity tag matches, or NOT_FOUND if either the property isn't found or it isn't a binary
      * @throws RepositoryException if any JCR related operation fails, including the case when the path to the property isn't
      *         valid.
      */
@@ -208,7 +210,7 @@ public final class ModeShapeRestService {
             contentDisposition = binaryHandler.getDefaultContentDisposition(binaryProperty);
         }
 
-        return Response.ok(binary.getStream(), mimeType).header("Content-Disposition", contentDisposition).build();
+        return binaryHandler.getBinaryContent(request, binary, mimeType, contentDisposition);
     }
 
     /**
@@ -111,6 +111,19 @@ public abstract class AbstractHandler {
         }
     }
 
+    /**
+     * Detaches the active session from the current request, so that it is not logged out when the request completes. This is
+     * used when the session is still needed while the response is being written, in which case the caller must log out the
+     * session.
+     * 
+     * @return the active session, or null if there is none
+     */
+    protected static Session detachActiveSession() {
+        Session session = ACTIVE_SESSION.get();
+        ACTIVE_SESSION.remove();
+        return session;
+    }
+
     private String workspaceNameFor( String rawWorkspaceName ) {
         String workspaceName = RestHelper.URL_ENCODER.decode(rawWorkspaceName);
 
@@ -18,8 +18,11 @@ package org.modeshape.web.jcr.rest.handler;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 import javax.jcr.Binary;
 import javax.jcr.Node;
 import javax.jcr.PathNotFoundException;
@@ -29,6 +32,7 @@ import javax.jcr.Session;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import org.modeshape.common.util.CheckArg;
 import org.modeshape.common.util.StringUtil;
 import org.modeshape.jcr.api.JcrConstants;
@@ -48,6 +52,12 @@ public final class RestBinaryHandler extends AbstractHandler {
     public static final String DEFAULT_CONTENT_DISPOSITION_PREFIX = "attachment;filename=";
     private static final String DEFAULT_MIME_TYPE = MediaType.APPLICATION_OCTET_STREAM;
 
+    /**
+     * The maximum number of ranges in a "Range" header that are served; requests with more ranges get the whole binary.
+     */
+    private static final int MAX_RANGES = 64;
+    private static final int RANGE_BUFFER_SIZE = 64 * 1024;
+
     /**
      * Returns a binary {@link Property} for the given repository, workspace and path.
      *
@@ -101,6 +111,228 @@ public final class RestBinaryHandler extends AbstractHandler {
         }
     }
 
+    /**
+     * Returns a response with the content of a binary value, honoring the "If-None-Match", "Range" and "If-Range" headers of the
+     * request. The SHA-1 hash of the binary is used as its (strong) entity tag, so a client that already has the content gets a
+     * NOT_MODIFIED response, and a client that requests one or more byte ranges gets only those ranges of the content, which are
+     * read directly from their positions in the binary.
+     *
+     * @param request a non-null {@link HttpServletRequest} request
+     * @param binary a non-null {@link Binary} whose content is returned
+     * @param mimeType a non-null {@link String} representing the mime-type of the content
+     * @param contentDisposition a non-null {@link String} representing the content disposition of the response
+     * @return a {@link Response} object, which is either OK and contains the whole binary, PARTIAL_CONTENT and contains the
+     *         requested ranges, NOT_MODIFIED, or REQUESTED_RANGE_NOT_SATISFIABLE
+     * @throws RepositoryException if any JCR related operations fail
+     */
+    public Response getBinaryContent( HttpServletRequest request,
+                                      Binary binary,
+                                      String mimeType,
+                                      String contentDisposition ) throws RepositoryException {
+        String eTag = eTagOf(binary);
+        if (eTag != null && matchesETag(request.getHeader("If-None-Match"), eTag)) {
+            return Response.notModified().header("ETag", eTag).header("Content-Disposition", contentDisposition).build();
+        }
+
+        long size = binary.getSize();
+        List<long[]> ranges = null;
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange == null || (eTag != null && eTag.equals(ifRange.trim()))) {
+            // Only serve ranges if the client's copy is still current ...
+            ranges = parseRanges(request.getHeader("Range"), size);
+        }
+
+        Response.ResponseBuilder builder;
+        if (ranges == null) {
+            builder = Response.ok(binary.getStream(), mimeType).header("Content-Length", size);
+        } else if (ranges.isEmpty()) {
+            builder = Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                              .header("Content-Range", "bytes */" + size);
+        } else if (ranges.size() == 1) {
+            long[] range = ranges.get(0);
+            builder = Response.status(Response.Status.PARTIAL_CONTENT)
+                              .entity(new BinaryRanges(binary, ranges, null, mimeType))
+                              .type(mimeType)
+                              .header("Content-Range", contentRange(range, size))
+                              .header("Content-Length", range[1] - range[0] + 1);
+        } else {
+            String boundary = UUID.randomUUID().toString();
+            builder = Response.status(Response.Status.PARTIAL_CONTENT)
+                              .entity(new BinaryRanges(binary, ranges, boundary, mimeType))
+                              .type("multipart/byteranges; boundary=" + boundary);
+        }
+        if (eTag != null) {
+            builder.header("ETag", eTag);
+        }
+        return builder.header("Accept-Ranges", "bytes").header("Content-Disposition", contentDisposition).build();
+    }
+
+    private String eTagOf( Binary binary ) {
+        if (!(binary instanceof org.modeshape.jcr.api.Binary)) {
+            return null;
+        }
+        String hash = ((org.modeshape.jcr.api.Binary)binary).getHexHash();
+        return StringUtil.isBlank(hash) ? null : "\"" + hash + "\"";
+    }
+
+    private boolean matchesETag( String ifNoneMatch,
+                                 String eTag ) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            // GET requests use the weak comparison, so a weak tag with the same value also matches ...
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses the value of a "Range" header into the satisfiable ranges of a binary with the given size.
+     *
+     * @param rangeHeader the value of the header; may be null
+     * @param size the size of the binary
+     * @return the first and last positions of the satisfiable ranges, an empty list if none of the ranges can be satisfied,
+     *         or null if the whole binary should be returned because there is no valid header
+     */
+    private static List<long[]> parseRanges( String rangeHeader,
+                                             long size ) {
+        if (rangeHeader == null) {
+            return null;
+        }
+        rangeHeader = rangeHeader.trim();
+        if (!rangeHeader.regionMatches(true, 0, "bytes=", 0, 6)) {
+            return null;
+        }
+        String[] specs = rangeHeader.substring(6).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        List<long[]> ranges = new ArrayList<>(specs.length);
+        try {
+            for (String spec : specs) {
+                spec = spec.trim();
+                int dash = spec.indexOf('-');
+                if (dash == -1) {
+                    return null;
+                }
+                String first = spec.substring(0, dash).trim();
+                String last = spec.substring(dash + 1).trim();
+                long start;
+                long end;
+                if (first.isEmpty()) {
+                    // A suffix range, with the number of bytes at the end of the binary ...
+                    long suffixLength = Long.parseLong(last);
+                    if (suffixLength < 0) {
+                        return null;
+                    }
+                    if (suffixLength == 0 || size == 0) {
+                        continue;
+                    }
+                    start = Math.max(0, size - suffixLength);
+                    end = size - 1;
+                } else {
+                    start = Long.parseLong(first);
+                    end = last.isEmpty() ? size - 1 : Long.parseLong(last);
+                    if (start < 0 || end < start) {
+                        return null;
+                    }
+                    if (start >= size) {
+                        continue;
+                    }
+                    end = Math.min(end, size - 1);
+                }
+                ranges.add(new long[] {start, end});
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return ranges;
+    }
+
+    private static String contentRange( long[] range,
+                                        long size ) {
+        return "bytes " + range[0] + "-" + range[1] + "/" + size;
+    }
+
+    /**
+     * The entity of a partial response, which writes one or more ranges of a binary by copying each range from a single stream
+     * that starts at the range's position in the binary.
+     */
+    private static final class BinaryRanges implements StreamingOutput {
+        private final Binary binary;
+        private final List<long[]> ranges;
+        private final String boundary;
+        private final String mimeType;
+
+        protected BinaryRanges( Binary binary,
+                                List<long[]> ranges,
+                                String boundary,
+                                String mimeType ) {
+            this.binary = binary;
+            this.ranges = ranges;
+            this.boundary = boundary;
+            this.mimeType = mimeType;
+        }
+
+        @Override
+        public void write( OutputStream output ) throws IOException {
+            byte[] buffer = new byte[RANGE_BUFFER_SIZE];
+            try {
+                long size = binary.getSize();
+                for (long[] range : ranges) {
+                    if (boundary != null) {
+                        String partHeader = "\r\n--" + boundary + "\r\nContent-Type: " + mimeType + "\r\nContent-Range: "
+                                            + contentRange(range, size) + "\r\n\r\n";
+                        output.write(partHeader.getBytes(StandardCharsets.US_ASCII));
+                    }
+                    long remaining = range[1] - range[0] + 1;
+                    try (InputStream stream = streamFrom(range[0])) {
+                        while (remaining > 0) {
+                            int read = stream.read(buffer, 0, (int)Math.min(buffer.length, remaining));
+                            if (read < 0) {
+                                throw new IOException("Unexpected end of binary content at position " + (range[1] + 1 - remaining));
+                            }
+                            output.write(buffer, 0, read);
+                            remaining -= read;
+                        }
+                    }
+                }
+                if (boundary != null) {
+                    output.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+                }
+            } catch (RepositoryException e) {
+                throw new IOException(e);
+            }
+        }
+
+        private InputStream streamFrom( long position ) throws IOException, RepositoryException {
+            if (binary instanceof org.modeshape.jcr.api.Binary) {
+                // The stream starts at the position without reading the content before it ...
+                return ((org.modeshape.jcr.api.Binary)binary).getStream(position);
+            }
+            InputStream stream = binary.getStream();
+            try {
+                long skip = position;
+                while (skip > 0) {
+                    long skipped = stream.skip(skip);
+                    if (skipped <= 0) break;
+                    skip -= skipped;
+                }
+                return stream;
+            } catch (IOException e) {
+                stream.close();
+                throw e;
+            }
+        }
+    }
+
     /**
      * Updates the {@link Property property} at the given path with the content from the given {@link InputStream}.
      *
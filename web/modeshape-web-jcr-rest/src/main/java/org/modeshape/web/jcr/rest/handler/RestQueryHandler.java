@@ -25,13 +25,14 @@ import javax.jcr.PropertyType;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.Value;
-import javax.jcr.query.Query;
 import javax.jcr.query.QueryResult;
 import javax.jcr.query.Row;
 import javax.jcr.query.RowIterator;
 import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.UriInfo;
 import org.modeshape.common.util.StringUtil;
+import org.modeshape.jcr.api.query.Query;
 import org.modeshape.web.jcr.rest.RestHelper;
 import org.modeshape.web.jcr.rest.model.RestQueryPlanResult;
 import org.modeshape.web.jcr.rest.model.RestQueryResult;
@@ -81,6 +82,8 @@ public final class RestQueryHandler extends QueryHandler {
         Session session = getSession(request, repositoryName, workspaceName);
         Query query = createQuery(language, statement, session);
         bindExtraVariables(uriInfo, session.getValueFactory(), query);
+        // The rows are read only once, so there's no need to keep them ...
+        query.streamResults(true);
 
         QueryResult result = query.execute();
         RestQueryResult restQueryResult = new RestQueryResult();
@@ -92,6 +95,8 @@ public final class RestQueryHandler extends QueryHandler {
 
         setRows(offset, limit, session, result, restQueryResult, columnNames, baseUrl);
 
+        // The rows are read as the response is written, after the request's session would have been logged out ...
+        detachActiveSession();
         return restQueryResult;
     }
 
@@ -126,7 +131,7 @@ public final class RestQueryHandler extends QueryHandler {
         assert statement != null;
 
         Session session = getSession(request, repositoryName, workspaceName);
-        org.modeshape.jcr.api.query.Query query = createQuery(language, statement, session);
+        Query query = createQuery(language, statement, session);
         bindExtraVariables(uriInfo, session.getValueFactory(), query);
 
         org.modeshape.jcr.api.query.QueryResult result = query.explain();
@@ -148,16 +153,7 @@ public final class RestQueryHandler extends QueryHandler {
         if (limit < 0) {
             limit = Long.MAX_VALUE;
         }
-
-        while (resultRows.hasNext() && limit > 0) {
-            limit--;
-            Row resultRow = resultRows.nextRow();
-
-            RestQueryResult.RestRow restRow = createRestRow(session, result, restQueryResult, columnNames, baseUrl, resultRow);
-            createLinksFromNodePaths(result, baseUrl, resultRow, restRow);
-
-            restQueryResult.addRow(restRow);
-        }
+        restQueryResult.setRows(new QueryRows(session, result, resultRows, restQueryResult, columnNames, baseUrl, limit));
     }
 
     private void createLinksFromNodePaths( QueryResult result,
@@ -253,4 +249,59 @@ public final class RestQueryHandler extends QueryHandler {
             }
         }
     }
+
+    /**
+     * The rows of a query result, which are converted only as the response is written. The session is logged out once the rows
+     * have been written.
+     */
+    private final class QueryRows implements RestQueryResult.Rows {
+        private final Session session;
+        private final QueryResult result;
+        private final RowIterator resultRows;
+        private final RestQueryResult restQueryResult;
+        private final String[] columnNames;
+        private final String baseUrl;
+        private long remaining;
+
+        protected QueryRows( Session session,
+                             QueryResult result,
+                             RowIterator resultRows,
+                             RestQueryResult restQueryResult,
+                             String[] columnNames,
+                             String baseUrl,
+                             long limit ) {
+            this.session = session;
+            this.result = result;
+            this.resultRows = resultRows;
+            this.restQueryResult = restQueryResult;
+            this.columnNames = columnNames;
+            this.baseUrl = baseUrl;
+            this.remaining = limit;
+        }
+
+        @Override
+        public RestQueryResult.RestRow next() {
+            if (remaining <= 0 || !resultRows.hasNext()) {
+                return null;
+            }
+            remaining--;
+            try {
+                Row resultRow = resultRows.nextRow();
+                RestQueryResult.RestRow restRow = createRestRow(session, result, restQueryResult, columnNames, baseUrl, resultRow);
+                createLinksFromNodePaths(result, baseUrl, resultRow, restRow);
+                return restRow;
+            } catch (RepositoryException e) {
+                throw new WebApplicationException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                session.logout();
+            } catch (RuntimeException e) {
+                logger.warn(e, "Error while trying to logout REST service session");
+            }
+        }
+    }
 }
@@ -16,6 +16,8 @@
 
 package org.modeshape.web.jcr.rest.model;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -26,13 +28,15 @@ import org.codehaus.jettison.json.JSONObject;
 import org.modeshape.common.util.StringUtil;
 
 /**
- * A REST representation of a {@link javax.jcr.query.QueryResult}
+ * A REST representation of a {@link javax.jcr.query.QueryResult}. The rows can either be {@link #addRow(RestRow) added} up front,
+ * or be {@link #setRows(Rows) supplied} as they are written to the response, so that large results are never held in memory.
  * 
  * @author Horia Chiorean (hchiorea@redhat.com)
  */
-public final class RestQueryResult implements JSONAble {
+public final class RestQueryResult implements Streamable {
     private final Map<String, String> columns;
     private final List<RestRow> rows;
+    private Rows pendingRows;
 
     /**
      * Creates an empty instance
@@ -68,8 +72,58 @@ public final class RestQueryResult implements JSONAble {
         return this;
     }
 
+    /**
+     * Sets the source of the rows which are produced only as this result is written. The rows can be read only once, and the
+     * source is closed once all of its rows have been read.
+     * 
+     * @param rows a {@code non-null} {@link Rows}
+     * @return this instance
+     */
+    public RestQueryResult setRows( Rows rows ) {
+        this.pendingRows = rows;
+        return this;
+    }
+
+    @Override
+    public void writeJSON( Writer writer ) throws JSONException, IOException {
+        writer.write('{');
+        boolean first = true;
+        if (!columns.isEmpty()) {
+            writer.write(JSONObject.quote("columns"));
+            writer.write(':');
+            writer.write(new JSONObject(columns).toString());
+            first = false;
+        }
+        Rows rows = pendingRows;
+        pendingRows = null;
+        try {
+            RestRow row = rows != null ? rows.next() : null;
+            if (!this.rows.isEmpty() || row != null) {
+                if (!first) writer.write(',');
+                writer.write(JSONObject.quote("rows"));
+                writer.write(":[");
+                boolean firstRow = true;
+                for (RestRow added : this.rows) {
+                    if (!firstRow) writer.write(',');
+                    writer.write(added.toJSON().toString());
+                    firstRow = false;
+                }
+                for (; row != null; row = rows.next()) {
+                    if (!firstRow) writer.write(',');
+                    writer.write(row.toJSON().toString());
+                    firstRow = false;
+                }
+                writer.write(']');
+            }
+        } finally {
+            if (rows != null) rows.close();
+        }
+        writer.write('}');
+    }
+
     @Override
     public JSONObject toJSON() throws JSONException {
+        readPendingRows();
         JSONObject result = new JSONObject();
         if (!columns.isEmpty()) {
             result.put("columns", columns);
@@ -84,6 +138,36 @@ public final class RestQueryResult implements JSONAble {
         return result;
     }
 
+    private void readPendingRows() {
+        if (pendingRows == null) return;
+        Rows rows = pendingRows;
+        pendingRows = null;
+        try {
+            for (RestRow row = rows.next(); row != null; row = rows.next()) {
+                this.rows.add(row);
+            }
+        } finally {
+            rows.close();
+        }
+    }
+
+    /**
+     * A source of rows which are produced only as they are needed.
+     */
+    public interface Rows {
+        /**
+         * Returns the next row.
+         * 
+         * @return the next {@link RestRow}, or {@code null} if there are no more rows
+         */
+        public RestRow next();
+
+        /**
+         * Releases any resources used to produce the rows.
+         */
+        public void close();
+    }
+
     public class RestRow implements JSONAble {
         private final Map<String, String> values;
 
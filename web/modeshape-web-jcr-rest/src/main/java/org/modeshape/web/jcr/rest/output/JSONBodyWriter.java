@@ -17,9 +17,13 @@
 package org.modeshape.web.jcr.rest.output;
 
 import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
 import java.util.Collection;
@@ -34,6 +38,7 @@ import org.codehaus.jettison.json.JSONException;
 import org.jboss.resteasy.spi.WriterException;
 import org.jboss.resteasy.util.Types;
 import org.modeshape.web.jcr.rest.model.JSONAble;
+import org.modeshape.web.jcr.rest.model.Streamable;
 
 /**
  * Implementation of {@link MessageBodyWriter} which writes a {@link JSONAble} or a {@link Collection Collection<JSONAble>} instances to
@@ -53,7 +58,10 @@ public class JSONBodyWriter implements MessageBodyWriter<Object> {
                          Annotation[] annotations,
                          MediaType mediaType ) {
         try {
-            if (isJSONAble(type)) {
+            if (isStreamed(object)) {
+                // The length is not known until the representation has been written ...
+                return -1;
+            } else if (isJSONAble(type)) {
                 return getString((JSONAble)object).getBytes().length;
             } else if (isJSONAbleCollection(type, genericType)) {
                 return getString((Collection<JSONAble>)object).getBytes().length;
@@ -94,6 +102,10 @@ public class JSONBodyWriter implements MessageBodyWriter<Object> {
                          MediaType mediaType,
                          MultivaluedMap<String, Object> httpHeaders,
                          OutputStream entityStream ) throws WebApplicationException {
+        if (isStreamed(object)) {
+            writeStreamed((Streamable)object, mediaType, httpHeaders, entityStream);
+            return;
+        }
         String content;
         try {
             if (isJSONAble(type)) {
@@ -117,6 +129,32 @@ public class JSONBodyWriter implements MessageBodyWriter<Object> {
         }
     }
 
+    /**
+     * Determines whether the supplied object is written to the response as its representation is produced, rather than being
+     * converted to a string first.
+     * 
+     * @param object the object being written
+     * @return true if the object is written as it is produced
+     */
+    protected boolean isStreamed( Object object ) {
+        return object instanceof Streamable;
+    }
+
+    private void writeStreamed( Streamable streamable,
+                                MediaType mediaType,
+                                MultivaluedMap<String, Object> httpHeaders,
+                                OutputStream entityStream ) {
+        String contentTypeHeader = mediaType.toString() + ";charset=utf-8";
+        httpHeaders.putSingle("Content-Type", contentTypeHeader);
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(entityStream, "UTF-8"));
+            streamable.writeJSON(writer);
+            writer.flush();
+        } catch (JSONException | IOException e) {
+            throw new WriterException(e);
+        }
+    }
+
     protected String getString( JSONAble jsonAble ) throws JSONException {
         return jsonAble.toJSON().toString();
     }
@@ -35,6 +35,12 @@ public class TextBodyWriter extends JSONBodyWriter {
 
     private static final int TEXT_INDENT_FACTOR = 2;
 
+    @Override
+    protected boolean isStreamed( Object object ) {
+        // The text is indented, so it is produced from the whole representation ...
+        return false;
+    }
+
     @Override
     protected String getString( JSONAble jsonAble ) throws JSONException {
         if (jsonAble instanceof Stringable) {